@@ -0,0 +1,232 @@
+/*
+ * Copyright Matt Palmer 2009-2011, All rights reserved.
+ *
+ */
+
+package net.domesdaybook.automata.dfa;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import net.domesdaybook.automata.Transition;
+import net.domesdaybook.automata.nfa.NfaState;
+import net.domesdaybook.automata.transition.TransitionFactory;
+import net.domesdaybook.automata.transition.TransitionSingleByteMatcherFactory;
+
+/**
+ * Builds a deterministic finite automata (DFA) from a non-deterministic
+ * finite automata (NFA), using the subset construction.
+ * <p>
+ * Each state of the DFA stands for a set of NFA states which can all be
+ * active at once.  The transitions of a DFA state go, for each byte, to the
+ * set of all NFA states reachable on that byte from any of its NFA states.
+ * The DFA state is final if any of its NFA states are final.  The NFA must
+ * not contain empty transitions, which is always true of the automata built
+ * by the {@link net.domesdaybook.expression.compiler.nfa.ChamparnaudGlushkovBuilder}.
+ * <p>
+ * A DFA can need exponentially more states than the NFA it is built from.
+ * The builder can be given a maximum number of states to build, after which
+ * it gives up.
+ */
+public final class DfaBuilder {
+
+    private static final int BYTE_VALUES = 256;
+    private static final int BYTE_MASK = 0xFF;
+
+    private final TransitionFactory transitionFactory;
+    private final int maxStates;
+
+
+    public DfaBuilder() {
+        this(new TransitionSingleByteMatcherFactory(), Integer.MAX_VALUE);
+    }
+
+
+    public DfaBuilder(final int maxStates) {
+        this(new TransitionSingleByteMatcherFactory(), maxStates);
+    }
+
+
+    public DfaBuilder(final TransitionFactory transitionFactory, final int maxStates) {
+        this.transitionFactory = transitionFactory;
+        this.maxStates = maxStates;
+    }
+
+
+    /**
+     * Builds a DFA which matches the same bytes as the NFA given.
+     *
+     * @param initialState The initial state of the NFA.
+     * @return The initial state of the DFA.
+     * @throws IllegalArgumentException if the DFA would need more than the maximum number of states.
+     */
+    public DfaState build(final NfaState initialState) {
+        final Map<NfaStateSet, DfaStateImpl> dfaStates = new HashMap<NfaStateSet, DfaStateImpl>();
+        final LinkedList<NfaStateSet> statesToProcess = new LinkedList<NfaStateSet>();
+
+        final Set<NfaState> initialStates = new HashSet<NfaState>();
+        initialStates.add(initialState);
+        final DfaStateImpl dfaInitialState =
+                getOrAddState(new NfaStateSet(initialStates), dfaStates, statesToProcess);
+
+        while (!statesToProcess.isEmpty()) {
+            final NfaStateSet nfaStates = statesToProcess.removeFirst();
+            final DfaStateImpl dfaState = dfaStates.get(nfaStates);
+            final Map<NfaStateSet, boolean[]> bytesToStates = getBytesToStates(nfaStates.states);
+            for (final Map.Entry<NfaStateSet, boolean[]> entry : bytesToStates.entrySet()) {
+                final DfaStateImpl toState = getOrAddState(entry.getKey(), dfaStates, statesToProcess);
+                dfaState.addTransition(createTransition(entry.getValue(), toState));
+            }
+        }
+        return dfaInitialState;
+    }
+
+
+    /*
+     * Creates a transition on the bytes given.  If there are more than half of
+     * all bytes, the matcher is built from the bytes which don't match, and inverted.
+     */
+    private Transition createTransition(final boolean[] bytes, final DfaState toState) {
+        int numMatching = 0;
+        for (int byteValue = 0; byteValue < BYTE_VALUES; byteValue++) {
+            if (bytes[byteValue]) {
+                numMatching++;
+            }
+        }
+        if (numMatching == BYTE_VALUES) {
+            return transitionFactory.createAnyByteTransition(toState);
+        }
+        final boolean inverted = numMatching > BYTE_VALUES / 2;
+        final Set<Byte> byteSet = new HashSet<Byte>();
+        for (int byteValue = 0; byteValue < BYTE_VALUES; byteValue++) {
+            if (bytes[byteValue] != inverted) {
+                byteSet.add((byte) byteValue);
+            }
+        }
+        if (numMatching == 1) {
+            return transitionFactory.createByteTransition(byteSet.iterator().next(), toState);
+        }
+        return transitionFactory.createSetTransition(byteSet, inverted, toState);
+    }
+
+
+    private DfaStateImpl getOrAddState(final NfaStateSet nfaStates,
+            final Map<NfaStateSet, DfaStateImpl> dfaStates,
+            final List<NfaStateSet> statesToProcess) {
+        DfaStateImpl dfaState = dfaStates.get(nfaStates);
+        if (dfaState == null) {
+            if (dfaStates.size() >= maxStates) {
+                final String message = String.format("The DFA needs more than %d states.", maxStates);
+                throw new IllegalArgumentException(message);
+            }
+            dfaState = new DfaStateImpl(Integer.toString(dfaStates.size()), isFinal(nfaStates.states));
+            dfaStates.put(nfaStates, dfaState);
+            statesToProcess.add(nfaStates);
+        }
+        return dfaState;
+    }
+
+
+    /*
+     * Groups the bytes which can be followed from a set of NFA states
+     * by the set of NFA states each of them leads to.  The bytes start off in a
+     * single group leading nowhere, and each transition splits the groups it
+     * overlaps into the bytes it matches and the bytes it doesn't.
+     */
+    private Map<NfaStateSet, boolean[]> getBytesToStates(final Set<NfaState> nfaStates) {
+        final int[] groupForByte = new int[BYTE_VALUES];
+        final List<Set<NfaState>> groupStates = new ArrayList<Set<NfaState>>();
+        groupStates.add(new HashSet<NfaState>());
+        for (final NfaState state : nfaStates) {
+            for (final Transition transition : state.getTransitions()) {
+                final NfaState toState = (NfaState) transition.getToState();
+                final int[] splitGroups = new int[groupStates.size()];
+                for (final byte theByte : transition.getBytes()) {
+                    final int byteValue = theByte & BYTE_MASK;
+                    final int group = groupForByte[byteValue];
+                    int splitGroup = splitGroups[group] - 1;
+                    if (splitGroup < 0) {
+                        final Set<NfaState> states = groupStates.get(group);
+                        if (states.contains(toState)) {
+                            splitGroup = group;
+                        } else {
+                            final Set<NfaState> splitStates = new HashSet<NfaState>(states);
+                            splitStates.add(toState);
+                            splitGroup = groupStates.size();
+                            groupStates.add(splitStates);
+                        }
+                        splitGroups[group] = splitGroup + 1;
+                    }
+                    groupForByte[byteValue] = splitGroup;
+                }
+            }
+        }
+        final NfaStateSet[] groupStateSets = new NfaStateSet[groupStates.size()];
+        final Map<NfaStateSet, boolean[]> bytesToStates = new LinkedHashMap<NfaStateSet, boolean[]>();
+        for (int byteValue = 0; byteValue < BYTE_VALUES; byteValue++) {
+            final int group = groupForByte[byteValue];
+            final Set<NfaState> states = groupStates.get(group);
+            if (!states.isEmpty()) {
+                if (groupStateSets[group] == null) {
+                    groupStateSets[group] = new NfaStateSet(states);
+                }
+                boolean[] bytes = bytesToStates.get(groupStateSets[group]);
+                if (bytes == null) {
+                    bytes = new boolean[BYTE_VALUES];
+                    bytesToStates.put(groupStateSets[group], bytes);
+                }
+                bytes[byteValue] = true;
+            }
+        }
+        return bytesToStates;
+    }
+
+
+    private boolean isFinal(final Set<NfaState> nfaStates) {
+        for (final NfaState state : nfaStates) {
+            if (state.isFinal()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * A set of NFA states standing for a DFA state, which only
+     * calculates its hash code once, as it is looked up many times.
+     */
+    private static final class NfaStateSet {
+
+        private final Set<NfaState> states;
+        private final int hashCode;
+
+        NfaStateSet(final Set<NfaState> states) {
+            this.states = states;
+            this.hashCode = states.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof NfaStateSet)) {
+                return false;
+            }
+            final NfaStateSet otherSet = (NfaStateSet) other;
+            return hashCode == otherSet.hashCode && states.equals(otherSet.states);
+        }
+    }
+
+}
@@ -5,10 +5,118 @@
 
 package net.domesdaybook.automata.dfa;
 
+import net.domesdaybook.automata.State;
+import net.domesdaybook.matcher.Matcher;
+import net.domesdaybook.reader.ByteReader;
+import net.domesdaybook.reader.Window;
+import net.domesdaybook.reader.WindowReader;
+
 /**
+ * Matches bytes against a deterministic finite automata, reading
+ * each byte at most once, in a single pass forwards from the match position.
+ * <p>
+ * A match is found as soon as a final state is reached, and
+ * fails as soon as there is no next state for a byte.  A DFA is
+ * immutable once built, so a matcher can be used by many threads at once.
+ * <p>
+ * If the reader is a {@link WindowReader}, bytes are read from the
+ * arrays of its windows rather than one at a time from the reader.
  *
  * @author Matt Palmer
  */
-public class DfaMatcher {
+public final class DfaMatcher implements Matcher {
+
+    private final DfaState initialState;
+
+
+    public DfaMatcher(final DfaState initialState) {
+        this.initialState = initialState;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Bytes are read until the match succeeds or fails, so the reader
+     * must be able to supply them, or the matcher should be given a
+     * position to read up to with {@link #matches(ByteReader, long, long)}.
+     */
+    @Override
+    public boolean matches(final ByteReader reader, final long matchPosition) {
+        return matches(reader, matchPosition, Long.MAX_VALUE);
+    }
+
+
+    /**
+     * Matches the automata from a position, reading no further than a given position.
+     *
+     * @param reader The {@link ByteReader} to read from.
+     * @param fromPosition The position to try to match at.
+     * @param toPosition The last position which may be read.
+     * @return Whether there is a match at the given position which ends at or before toPosition.
+     */
+    public boolean matches(final ByteReader reader, final long fromPosition, final long toPosition) {
+        if (reader instanceof WindowReader) {
+            return matchesWindows((WindowReader) reader, fromPosition, toPosition);
+        }
+        return matchesBytes(initialState, reader, fromPosition, toPosition);
+    }
+
+
+    /**
+     * @return The initial state of the automata this matcher runs.
+     */
+    public DfaState getInitialState() {
+        return initialState;
+    }
+
+
+    private boolean matchesWindows(final WindowReader reader, final long fromPosition, final long toPosition) {
+        DfaState state = initialState;
+        long position = fromPosition;
+        while (!state.isFinal()) {
+            if (position > toPosition) {
+                return false;
+            }
+            final Window window = reader.getWindow(position);
+            if (window == null) {
+                return matchesBytes(state, reader, position, toPosition);
+            }
+            final byte[] bytes = window.getArray();
+            final long windowPosition = window.getWindowPosition();
+            final int lastIndex = (int) (Math.min(toPosition, window.getWindowEndPosition()) - windowPosition);
+            int index = (int) (position - windowPosition);
+            while (index <= lastIndex) {
+                final State nextState = state.nextState(bytes[index++]);
+                if (nextState == null) {
+                    return false;
+                }
+                state = (DfaState) nextState;
+                if (state.isFinal()) {
+                    return true;
+                }
+            }
+            position = windowPosition + index;
+        }
+        return true;
+    }
+
+
+    private static boolean matchesBytes(final DfaState fromState, final ByteReader reader,
+            final long fromPosition, final long toPosition) {
+        DfaState state = fromState;
+        long position = fromPosition;
+        while (!state.isFinal()) {
+            if (position > toPosition) {
+                return false;
+            }
+            final State nextState = state.nextState(reader.readByte(position++));
+            if (nextState == null) {
+                return false;
+            }
+            state = (DfaState) nextState;
+        }
+        return true;
+    }
 
 }
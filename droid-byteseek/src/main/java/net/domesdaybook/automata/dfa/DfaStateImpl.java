@@ -5,10 +5,112 @@
 
 package net.domesdaybook.automata.dfa;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.domesdaybook.automata.State;
+import net.domesdaybook.automata.Transition;
+import net.domesdaybook.object.copy.DeepCopy;
+
 /**
+ * A state in a deterministic finite automata, which has at most
+ * one next state for any byte.
  *
  * @author Matt Palmer
  */
-public class DfaStateImpl {
+public class DfaStateImpl implements DfaState {
+
+    private DfaTransitionsCollection transitions;
+    private final boolean isFinal;
+    private String label;
+
+
+    public DfaStateImpl(final String label, final boolean isFinal) {
+        this.label = label;
+        this.isFinal = isFinal;
+    }
+
+
+    public DfaStateImpl(final boolean isFinal) {
+        this("", isFinal);
+    }
+
+
+    public DfaStateImpl() {
+        this("", false);
+    }
+
+
+    @Override
+    public final void addTransition(final Transition transition) {
+        if (transitions == null) {
+            transitions = new DfaTransitionsSingle(transition);
+        } else {
+            if (transitions.size() == 1) {
+                transitions = new DfaTransitionsTable(transitions.getTransitions());
+            }
+            transitions.addTransition(transition);
+        }
+    }
+
+
+    @Override
+    public final void addAllTransitions(final List<Transition> transitions) {
+        for (Transition transition : transitions) {
+            addTransition(transition);
+        }
+    }
+
+
+    @Override
+    public final State nextState(final byte theByte) {
+        return transitions == null ? null : transitions.getStateForByte(theByte);
+    }
+
+
+    @Override
+    public final boolean isFinal() {
+        return isFinal;
+    }
+
+
+    @Override
+    public final String getLabel() {
+        return label;
+    }
+
+
+    @Override
+    public final void setLabel(final String label) {
+        this.label = label;
+    }
+
+
+    @Override
+    public List<Transition> getTransitions() {
+        return transitions == null ? new ArrayList<Transition>() : transitions.getTransitions();
+    }
+
+
+    @Override
+    public DfaStateImpl deepCopy() {
+        final Map<DeepCopy, DeepCopy> oldToNewObjects = new HashMap<DeepCopy, DeepCopy>();
+        return deepCopy(oldToNewObjects);
+    }
+
+
+    @Override
+    public DfaStateImpl deepCopy(final Map<DeepCopy, DeepCopy> oldToNewObjects) {
+        DfaStateImpl copy = (DfaStateImpl) oldToNewObjects.get(this);
+        if (copy == null) {
+            copy = new DfaStateImpl(label, isFinal);
+            oldToNewObjects.put(this, copy);
+            for (Transition transition : getTransitions()) {
+                copy.addTransition((Transition) transition.deepCopy(oldToNewObjects));
+            }
+        }
+        return copy;
+    }
 
 }
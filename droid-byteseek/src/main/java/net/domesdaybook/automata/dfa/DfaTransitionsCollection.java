@@ -5,6 +5,7 @@
 
 package net.domesdaybook.automata.dfa;
 
+import java.util.List;
 import net.domesdaybook.automata.State;
 import net.domesdaybook.automata.Transition;
 
@@ -18,4 +19,8 @@ public interface DfaTransitionsCollection {
 
     public State getStateForByte(final byte b);
 
+    public List<Transition> getTransitions();
+
+    public int size();
+
 }
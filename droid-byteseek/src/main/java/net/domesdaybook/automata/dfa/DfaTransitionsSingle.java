@@ -5,6 +5,8 @@
 
 package net.domesdaybook.automata.dfa;
 
+import java.util.ArrayList;
+import java.util.List;
 import net.domesdaybook.automata.State;
 import net.domesdaybook.automata.Transition;
 
@@ -29,4 +31,16 @@ public class DfaTransitionsSingle implements DfaTransitionsCollection {
         return transition.getStateForByte(b);
     }
 
+
+    public List<Transition> getTransitions() {
+        final List<Transition> result = new ArrayList<Transition>();
+        result.add(transition);
+        return result;
+    }
+
+
+    public final int size() {
+        return 1;
+    }
+
 }
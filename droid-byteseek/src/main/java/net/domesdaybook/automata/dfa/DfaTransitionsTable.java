@@ -0,0 +1,106 @@
+/*
+ * Copyright Matt Palmer 2009-2011, All rights reserved.
+ *
+ */
+
+package net.domesdaybook.automata.dfa;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.domesdaybook.automata.State;
+import net.domesdaybook.automata.Transition;
+
+/**
+ * A collection of transitions from a DFA state, which finds the state
+ * for a byte with a single table lookup, whatever the number of transitions.
+ * <p>
+ * The table holds an index into the distinct states the transitions
+ * go to, rather than the states themselves, so a state with many
+ * transitions to only a few states stays small.  If the transitions
+ * go to more states than a byte can index, a table of the states
+ * themselves is used instead.
+ * <p>
+ * The transitions of a DFA state must not overlap.  If they do,
+ * the last transition added for a byte wins.
+ */
+public class DfaTransitionsTable implements DfaTransitionsCollection {
+
+    private static final int BYTE_VALUES = 256;
+    private static final int BYTE_MASK = 0xFF;
+    private static final int MAX_INDEXED_STATES = 255;
+
+    private final List<Transition> transitions = new ArrayList<Transition>();
+    private final List<State> toStates = new ArrayList<State>();
+    private final byte[] stateIndexes = new byte[BYTE_VALUES];
+    private State[] indexedStates = new State[] {null};
+    private State[] stateTable;
+
+
+    public DfaTransitionsTable() {
+    }
+
+
+    public DfaTransitionsTable(final List<Transition> transitions) {
+        for (final Transition transition : transitions) {
+            addTransition(transition);
+        }
+    }
+
+
+    @Override
+    public final void addTransition(final Transition transition) {
+        transitions.add(transition);
+        final State toState = transition.getToState();
+        int index = toStates.indexOf(toState);
+        if (index < 0) {
+            toStates.add(toState);
+            index = toStates.size() - 1;
+            if (stateTable == null && toStates.size() > MAX_INDEXED_STATES) {
+                buildStateTable();
+            } else if (stateTable == null) {
+                final State[] newIndexedStates = new State[toStates.size() + 1];
+                System.arraycopy(indexedStates, 0, newIndexedStates, 0, indexedStates.length);
+                newIndexedStates[index + 1] = toState;
+                indexedStates = newIndexedStates;
+            }
+        }
+        for (final byte theByte : transition.getBytes()) {
+            if (stateTable == null) {
+                stateIndexes[theByte & BYTE_MASK] = (byte) (index + 1);
+            } else {
+                stateTable[theByte & BYTE_MASK] = toState;
+            }
+        }
+    }
+
+
+    @Override
+    public final State getStateForByte(final byte b) {
+        if (stateTable == null) {
+            return indexedStates[stateIndexes[b & BYTE_MASK] & BYTE_MASK];
+        }
+        return stateTable[b & BYTE_MASK];
+    }
+
+
+    @Override
+    public List<Transition> getTransitions() {
+        return new ArrayList<Transition>(transitions);
+    }
+
+
+    @Override
+    public final int size() {
+        return transitions.size();
+    }
+
+
+    private void buildStateTable() {
+        stateTable = new State[BYTE_VALUES];
+        for (int byteValue = 0; byteValue < BYTE_VALUES; byteValue++) {
+            stateTable[byteValue] = indexedStates[stateIndexes[byteValue] & BYTE_MASK];
+        }
+        indexedStates = null;
+    }
+
+}
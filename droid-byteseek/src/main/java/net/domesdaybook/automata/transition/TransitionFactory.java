@@ -24,7 +24,7 @@ public interface TransitionFactory {
 
     public Transition createSetTransition(final Set<Byte> byteSet, final boolean negated, final State toState);
 
-    public Transition createAnyByteTransition(final NfaState toState);
+    public Transition createAnyByteTransition(final State toState);
 
     public Transition createCaseInsensitiveByteTransition(final char Char, final NfaState toState);
 
@@ -45,7 +45,7 @@ public class TransitionSingleByteMatcherFactory implements TransitionFactory {
     }
 
     @Override
-    public final Transition createAnyByteTransition(NfaState toState) {
+    public final Transition createAnyByteTransition(final State toState) {
         return new TransitionSingleByteMatcher(new AnyByteMatcher(), toState);
     }
 
@@ -0,0 +1,56 @@
+/*
+ * Copyright Matt Palmer 2009-2011, All rights reserved.
+ *
+ */
+
+package net.domesdaybook.expression.compiler.dfa;
+
+import net.domesdaybook.automata.dfa.DfaBuilder;
+import net.domesdaybook.automata.dfa.DfaState;
+import net.domesdaybook.automata.nfa.NfaState;
+import net.domesdaybook.expression.compiler.AstCompiler;
+import net.domesdaybook.expression.compiler.nfa.NfaCompiler;
+import net.domesdaybook.expression.parser.ParseException;
+import org.antlr.runtime.tree.CommonTree;
+
+/**
+ * Compiles a regular expression into a deterministic finite automata,
+ * by compiling it into a Glushkov NFA, and then building a DFA from
+ * the NFA with the subset construction.
+ */
+public class DfaCompiler extends AstCompiler<DfaState> {
+
+    private final NfaCompiler nfaCompiler;
+    private final DfaBuilder dfaBuilder;
+
+
+    public DfaCompiler() {
+        this(new NfaCompiler(), new DfaBuilder());
+    }
+
+
+    /**
+     * @param maxStates The maximum number of states a compiled DFA can have.
+     */
+    public DfaCompiler(final int maxStates) {
+        this(new NfaCompiler(), new DfaBuilder(maxStates));
+    }
+
+
+    public DfaCompiler(final NfaCompiler nfaCompiler, final DfaBuilder dfaBuilder) {
+        this.nfaCompiler = nfaCompiler;
+        this.dfaBuilder = dfaBuilder;
+    }
+
+
+    @Override
+    public DfaState compile(final CommonTree ast) throws ParseException {
+        final NfaState nfaInitialState = nfaCompiler.compile(ast);
+        try {
+            return dfaBuilder.build(nfaInitialState);
+        } catch (IllegalArgumentException e) {
+            throw new ParseException(e);
+        }
+    }
+
+}
@@ -157,6 +157,13 @@ public class ChamparnaudGlushkovBuilder implements StateWrapperBuilder {
      */
     @Override
     public final StateWrapper buildSequenceStates(final List<StateWrapper> sequenceStates) {
+        // An empty sequence matches without reading anything.
+        if (sequenceStates.isEmpty()) {
+            final StateWrapper states = new StateWrapper();
+            states.initialState = stateBuilder.build(State.NON_FINAL);
+            states.setIsFinal(states.initialState, State.FINAL);
+            return states;
+        }
         // process the sequence of states joining final states to what the next initial
         // states have transitions to.
         List<NfaState> finalSequenceStates = new ArrayList<NfaState>();
@@ -325,14 +332,38 @@ public class ChamparnaudGlushkovBuilder implements StateWrapperBuilder {
     }
 
     
+    /**
+     * Builds up to numberOptional repeats of an automaton by nesting
+     * optional automata inside each other, (x(x(x)?)?)?, rather than joining them
+     * in a sequence, x?x?x?.  They match the same bytes, but in a sequence of optional
+     * automata, each one has transitions to all of the automata after it,
+     * so the number of transitions grows with the square of the number of repeats.
+     * Nested, each repeat only has transitions to the next one.
+     *
+     * @param numberOptional The maximum number of repeats.  With no repeats, the automaton
+     *        is an empty sequence, which matches without reading anything.
+     * @param optionalState The automaton to repeat.
+     * @return An object holding the initial and final states of the repeated automata.
+     */
     @Override
     public final StateWrapper buildRepeatedOptionalStates(final int numberOptional, final StateWrapper optionalState) {
-        final List<StateWrapper> optionalStates = new ArrayList<StateWrapper>();
+        StateWrapper nestedStates = null;
         for (int count = 0; count < numberOptional; count++) {
-            final StateWrapper optStates = buildOptionalStates(optionalState.deepCopy());
-            optionalStates.add(optStates);
+            final StateWrapper repeatedStates = optionalState.deepCopy();
+            if (nestedStates == null) {
+                nestedStates = repeatedStates;
+            } else {
+                final List<StateWrapper> sequenceStates = new ArrayList<StateWrapper>(2);
+                sequenceStates.add(repeatedStates);
+                sequenceStates.add(nestedStates);
+                nestedStates = buildSequenceStates(sequenceStates);
+            }
+            nestedStates = buildOptionalStates(nestedStates);
+        }
+        if (nestedStates == null) {
+            return buildSequenceStates(new ArrayList<StateWrapper>(0));
         }
-        return buildSequenceStates(optionalStates);
+        return nestedStates;
     }
 
     
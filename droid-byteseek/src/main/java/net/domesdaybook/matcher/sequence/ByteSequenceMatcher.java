@@ -68,6 +68,19 @@ public class ByteSequenceMatcher implements SequenceMatcher {
     }
 
     
+    @Override
+    public final boolean matches(final byte[] bytes, final int matchFrom) {
+        final byte[] localArray = byteArray;
+        final int localStop = length;
+        for (int byteIndex = 0; byteIndex < localStop; byteIndex++) {
+            if (localArray[byteIndex] != bytes[matchFrom + byteIndex]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
     @Override
     public final int length() {
         return length;
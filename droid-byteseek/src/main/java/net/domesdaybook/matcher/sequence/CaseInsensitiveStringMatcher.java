@@ -63,6 +63,19 @@ public class CaseInsensitiveStringMatcher implements SequenceMatcher {
     }
 
 
+    @Override
+    public final boolean matches(final byte[] bytes, final int matchFrom) {
+        final SingleByteMatcher[] matchList = charMatchList;
+        final int localStop = length;
+        for (int byteIndex = 0; byteIndex < localStop; byteIndex++) {
+            if (!matchList[byteIndex].matches(bytes[matchFrom + byteIndex])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
     @Override
     public final SingleByteMatcher getByteMatcherForPosition(int position) {
         return (SingleByteMatcher) charMatchList[position];
@@ -56,6 +56,21 @@ public class CombinedSequenceMatcher implements SequenceMatcher {
     }
 
 
+    @Override
+    public final boolean matches(final byte[] bytes, final int matchFrom) {
+        int matchAt = matchFrom;
+        final List<SequenceMatcher> localList = matchers;
+        for (int matchIndex = 0, stop = localList.size(); matchIndex < stop; matchIndex++) {
+            final SequenceMatcher matcher = localList.get(matchIndex);
+            if (!matcher.matches(bytes, matchAt)) {
+                return false;
+            }
+            matchAt += matcher.length();
+        }
+        return true;
+    }
+
+
     @Override
     public final int length() {
         return length;
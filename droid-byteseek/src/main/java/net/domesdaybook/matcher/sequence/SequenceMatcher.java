@@ -21,6 +21,19 @@ import net.domesdaybook.matcher.singlebyte.SingleByteMatcher;
      */
     public SingleByteMatcher getByteMatcherForPosition(final int position);
 
+
+    /**
+     * Matches the sequence against bytes in an array, usually the array of a
+     * {@link net.domesdaybook.reader.Window}.  No bounds checking is done beyond
+     * the array's own, so the caller must make sure that all {@link #length()} bytes
+     * from the match position lie in the part of the array it means to match against.
+     *
+     * @param bytes The array of bytes to match against.
+     * @param matchFrom The position in the array to try to match at.
+     * @return Whether the sequence matches the array at the given position.
+     */
+    public boolean matches(final byte[] bytes, final int matchFrom);
+
     
     /*
      * @returns Returns the length of a matching byte sequence.
@@ -52,6 +52,19 @@ public class SingleByteSequenceMatcher implements SequenceMatcher {
     }
 
 
+    @Override
+    public final boolean matches(final byte[] bytes, final int matchFrom) {
+        final List<SingleByteMatcher> matchList = this.matcherSequence;
+        final int localStop = length;
+        for (int byteIndex = 0; byteIndex < localStop; byteIndex++) {
+            if (!matchList.get(byteIndex).matches(bytes[matchFrom + byteIndex])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
     @Override
     public final SingleByteMatcher getByteMatcherForPosition(final int position) {
         return matcherSequence.get(position);
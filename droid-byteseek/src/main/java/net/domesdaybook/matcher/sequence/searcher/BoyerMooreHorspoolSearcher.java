@@ -6,6 +6,8 @@
 package net.domesdaybook.matcher.sequence.searcher;
 
 import net.domesdaybook.reader.ByteReader;
+import net.domesdaybook.reader.Window;
+import net.domesdaybook.reader.WindowReader;
 import net.domesdaybook.matcher.sequence.SequenceMatcher;
 import net.domesdaybook.matcher.singlebyte.SingleByteMatcher;
 import net.domesdaybook.searcher.Searcher;
@@ -37,6 +39,10 @@ import net.domesdaybook.searcher.Searcher;
  * One initially counter-intuitive consequence of this type of search is that
  * the longer the pattern you are searching for, the better the performance
  * usually is, as the possible shifts will be correspondingly bigger.
+ * <p>
+ * If the reader is a {@link WindowReader}, the search loops over the array of
+ * each window it passes through, only asking the reader for another window
+ * when it shifts past the end of the current one.
  * 
  * @author Matt Palmer
  */
@@ -77,6 +83,95 @@ public final class BoyerMooreHorspoolSearcher extends SequenceMatcherSearcher {
      */
     @Override
     public final long searchForwards(final ByteReader reader, final long fromPosition, final long toPosition ) {
+        if (reader instanceof WindowReader) {
+            return searchWindowsForwards((WindowReader) reader, fromPosition, toPosition);
+        }
+        return searchBytesForwards(reader, fromPosition, toPosition);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long searchBackwards(final ByteReader reader, final long fromPosition, final long toPosition ) {
+        if (reader instanceof WindowReader) {
+            return searchWindowsBackwards((WindowReader) reader, fromPosition, toPosition);
+        }
+        return searchBytesBackwards(reader, fromPosition, toPosition);
+    }
+
+
+    /**
+     * Searches forwards through the arrays of the windows of a reader.
+     * If there is no window for a position, the rest of the search
+     * reads bytes from the reader one at a time.
+     */
+    private long searchWindowsForwards(final WindowReader reader, final long fromPosition, final long toPosition) {
+        final int[] safeShifts = getForwardShifts();
+        final SingleByteMatcher lastMatcher = lastSingleMatcher;
+        final int lastBytePositionInSequence = matcher.length() - 1;
+        long matchPosition = fromPosition;
+        while (matchPosition <= toPosition) {
+            final Window window = reader.getWindow(matchPosition);
+            if (window == null) {
+                return searchBytesForwards(reader, matchPosition, toPosition);
+            }
+            final byte[] bytes = window.getArray();
+            final long windowPosition = window.getWindowPosition();
+            final int lastSearchIndex = (int) (Math.min(toPosition, window.getWindowEndPosition()) - windowPosition);
+            int searchIndex = (int) (matchPosition - windowPosition);
+            while (searchIndex <= lastSearchIndex) {
+                final byte lastByte = bytes[searchIndex];
+                if (lastMatcher.matches(lastByte)) {
+                    final long lastBytePosition = windowPosition + searchIndex;
+                    if (matches(reader, window, lastBytePosition - lastBytePositionInSequence)) {
+                        return lastBytePosition;
+                    }
+                }
+                searchIndex += safeShifts[(int) lastByte & 0xFF];
+            }
+            matchPosition = windowPosition + searchIndex;
+        }
+        return Searcher.NOT_FOUND;
+    }
+
+
+    /**
+     * Searches backwards through the arrays of the windows of a reader.
+     * If there is no window for a position, the rest of the search
+     * reads bytes from the reader one at a time.
+     */
+    private long searchWindowsBackwards(final WindowReader reader, final long fromPosition, final long toPosition) {
+        final int[] safeShifts = getBackwardShifts();
+        final SingleByteMatcher firstMatcher = firstSingleMatcher;
+        long matchPosition = fromPosition;
+        while (matchPosition >= toPosition) {
+            final Window window = reader.getWindow(matchPosition);
+            if (window == null) {
+                return searchBytesBackwards(reader, matchPosition, toPosition);
+            }
+            final byte[] bytes = window.getArray();
+            final long windowPosition = window.getWindowPosition();
+            final int firstSearchIndex = (int) (Math.max(toPosition, windowPosition) - windowPosition);
+            int searchIndex = (int) (matchPosition - windowPosition);
+            while (searchIndex >= firstSearchIndex) {
+                final byte firstByte = bytes[searchIndex];
+                if (firstMatcher.matches(firstByte)) {
+                    final long firstBytePosition = windowPosition + searchIndex;
+                    if (matches(reader, window, firstBytePosition)) {
+                        return firstBytePosition;
+                    }
+                }
+                searchIndex += safeShifts[(int) firstByte & 0xFF];
+            }
+            matchPosition = windowPosition + searchIndex;
+        }
+        return Searcher.NOT_FOUND;
+    }
+
+
+    private long searchBytesForwards(final ByteReader reader, final long fromPosition, final long toPosition) {
 
         final int[] safeShifts = getForwardShifts();
         final SingleByteMatcher lastMatcher = lastSingleMatcher;
@@ -124,11 +219,7 @@ public final class BoyerMooreHorspoolSearcher extends SequenceMatcherSearcher {
     }
 
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public final long searchBackwards(final ByteReader reader, final long fromPosition, final long toPosition ) {
+    private long searchBytesBackwards(final ByteReader reader, final long fromPosition, final long toPosition) {
         
         final int[] safeShifts = getBackwardShifts();
         final SingleByteMatcher firstMatcher = firstSingleMatcher;
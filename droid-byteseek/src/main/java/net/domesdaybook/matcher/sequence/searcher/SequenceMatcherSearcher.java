@@ -6,6 +6,8 @@
 package net.domesdaybook.matcher.sequence.searcher;
 
 import net.domesdaybook.matcher.sequence.SequenceMatcher;
+import net.domesdaybook.reader.ByteReader;
+import net.domesdaybook.reader.Window;
 import net.domesdaybook.searcher.Searcher;
 
 /**
@@ -44,4 +46,22 @@ public abstract class SequenceMatcherSearcher implements Searcher {
         return matcher;
     }
 
+
+    /**
+     * Matches the sequence at a position, against the array of a window if
+     * the whole sequence lies inside it, or through the reader if it doesn't.
+     *
+     * @param reader The {@link ByteReader} the window was read from.
+     * @param window A {@link Window} which is likely to hold the sequence.
+     * @param matchPosition The position to try to match the sequence at.
+     * @return Whether the sequence matches at the given position.
+     */
+    protected final boolean matches(final ByteReader reader, final Window window, final long matchPosition) {
+        final long windowOffset = matchPosition - window.getWindowPosition();
+        if (windowOffset >= 0 && windowOffset + matcher.length() <= window.length()) {
+            return matcher.matches(window.getArray(), (int) windowOffset);
+        }
+        return matcher.matches(reader, matchPosition);
+    }
+
 }
@@ -7,13 +7,14 @@ package net.domesdaybook.reader;
 
 /**
  * An immutable {@link ByteReader} which reads bytes from an
- * underlying byte array.
+ * underlying byte array.  The whole array is available as a single {@link Window}.
  *
  * @author matt
  */
-public final class ByteArrayReader implements ByteReader {
+public final class ByteArrayReader implements WindowReader {
 
     private final byte[] bytes;
+    private final Window window;
 
 
     /**
@@ -23,6 +24,7 @@ public final class ByteArrayReader implements ByteReader {
      */
     public ByteArrayReader(final byte[] bytes) {
         this.bytes = bytes;
+        this.window = new Window(bytes, 0, bytes.length);
     }
     
     
@@ -37,5 +39,11 @@ public final class ByteArrayReader implements ByteReader {
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public Window getWindow(final long position) {
+        return window.contains(position) ? window : null;
+    }
 
 }
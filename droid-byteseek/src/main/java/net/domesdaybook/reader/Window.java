@@ -0,0 +1,86 @@
+/*
+ * Copyright Matt Palmer 2009-2011, All rights reserved.
+ *
+ */
+
+package net.domesdaybook.reader;
+
+/**
+ * A contiguous run of bytes read from a source, held in a byte array,
+ * together with the position in the source of the first byte in the array.
+ * <p>
+ * Windows let matchers and searchers loop over the bytes in an array
+ * directly, only asking a {@link WindowReader} for another window when
+ * they cross the end of the current one.
+ * <p>
+ * The array is not copied, so the bytes in a window must not be changed.
+ */
+public final class Window {
+
+    private final byte[] array;
+    private final long windowPosition;
+    private final int length;
+
+
+    /**
+     * Constructs a Window.
+     *
+     * @param array The byte array holding the bytes of the window.
+     * @param windowPosition The position in the source of the first byte in the array.
+     * @param length The number of bytes in the array which belong to the window.
+     */
+    public Window(final byte[] array, final long windowPosition, final int length) {
+        if (array == null) {
+            throw new IllegalArgumentException("Null array passed in to Window.");
+        }
+        if (length < 0 || length > array.length) {
+            throw new IllegalArgumentException("Window length must be between 0 and the length of the array.");
+        }
+        this.array = array;
+        this.windowPosition = windowPosition;
+        this.length = length;
+    }
+
+
+    /**
+     * @return The byte array holding the bytes of the window.  Only the
+     *         first {@link #length()} bytes of the array belong to the window.
+     */
+    public byte[] getArray() {
+        return array;
+    }
+
+
+    /**
+     * @return The position in the source of the first byte in the window.
+     */
+    public long getWindowPosition() {
+        return windowPosition;
+    }
+
+
+    /**
+     * @return The position in the source of the last byte in the window.
+     */
+    public long getWindowEndPosition() {
+        return windowPosition + length - 1;
+    }
+
+
+    /**
+     * @return The number of bytes in the window.
+     */
+    public int length() {
+        return length;
+    }
+
+
+    /**
+     * @param position A position in the source.
+     * @return Whether the byte at the position is in this window.
+     */
+    public boolean contains(final long position) {
+        return position >= windowPosition && position - windowPosition < length;
+    }
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright Matt Palmer 2009-2011, All rights reserved.
+ *
+ */
+
+package net.domesdaybook.reader;
+
+/**
+ * A {@link ByteReader} which can also hand out the bytes it reads
+ * a {@link Window} at a time.
+ * <p>
+ * Reading bytes one at a time through {@link ByteReader#readByte(long)}
+ * costs an interface call and a bounds check for every byte.  Matchers and
+ * searchers which read many bytes should get a window instead, and read
+ * from its array directly until they need a byte outside of it.
+ */
+public interface WindowReader extends ByteReader {
+
+    /**
+     * Returns the window holding the byte at a given position.
+     * <p>
+     * The same window may be returned for many positions, and
+     * windows are not guaranteed to be any particular size.
+     *
+     * @param position The position of a byte the window must contain.
+     * @return A window containing the byte at the position, or null if
+     *         no window holds that byte.  Callers should fall back to
+     *         {@link ByteReader#readByte(long)} if no window is returned.
+     */
+    public Window getWindow(final long position);
+
+}
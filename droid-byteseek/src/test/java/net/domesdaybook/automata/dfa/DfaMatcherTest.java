@@ -0,0 +1,123 @@
+/*
+ * Copyright Matt Palmer 2009-2011, All rights reserved.
+ *
+ */
+
+package net.domesdaybook.automata.dfa;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import net.domesdaybook.expression.compiler.dfa.DfaCompiler;
+import net.domesdaybook.expression.parser.ParseException;
+import net.domesdaybook.reader.ByteArrayReader;
+import net.domesdaybook.reader.ByteReader;
+
+import org.junit.Test;
+
+/**
+ * Checks that automata built by the {@link DfaBuilder} match the same bytes
+ * as the expressions they are compiled from.
+ *
+ * @author Matt Palmer
+ */
+public class DfaMatcherTest {
+
+    private final DfaCompiler compiler = new DfaCompiler();
+
+
+    @Test
+    public void testSequenceMatchesAtPosition() throws ParseException {
+        final DfaMatcher matcher = compile("01 02 03");
+        assertTrue(matcher.matches(reader(1, 2, 3), 0));
+        assertTrue(matcher.matches(reader(0, 1, 2, 3), 1));
+        assertFalse(matcher.matches(reader(0, 1, 2, 3), 0));
+        assertFalse(matcher.matches(reader(1, 2, 4), 0));
+    }
+
+
+    @Test
+    public void testZeroRepeatsMatchNothing() throws ParseException {
+        assertTrue(compile("01 .{0} 02").matches(reader(1, 2), 0));
+        assertTrue(compile("01 .{0-0} 02").matches(reader(1, 2), 0));
+        assertFalse(compile("01 .{0} 02").matches(reader(1, 9, 2), 0));
+    }
+
+
+    @Test
+    public void testBoundedGapMatchesEachLength() throws ParseException {
+        final DfaMatcher matcher = compile("01 .{0-2} 02");
+        assertTrue(matcher.matches(reader(1, 2), 0));
+        assertTrue(matcher.matches(reader(1, 9, 2), 0));
+        assertTrue(matcher.matches(reader(1, 9, 9, 2), 0));
+        assertFalse(matcher.matches(reader(1, 9, 9, 9, 2), 0, 4));
+    }
+
+
+    @Test
+    public void testMinToMaxGapMatchesEachLength() throws ParseException {
+        final DfaMatcher matcher = compile("01 .{1-2} 02");
+        assertFalse(matcher.matches(reader(1, 2, 0), 0, 2));
+        assertTrue(matcher.matches(reader(1, 9, 2), 0));
+        assertTrue(matcher.matches(reader(1, 9, 9, 2), 0));
+    }
+
+
+    @Test
+    public void testAlternativesAndSets() throws ParseException {
+        final DfaMatcher matcher = compile("01 (02|03 04) [05 06]");
+        assertTrue(matcher.matches(reader(1, 2, 5), 0));
+        assertTrue(matcher.matches(reader(1, 3, 4, 6), 0));
+        assertFalse(matcher.matches(reader(1, 3, 5), 0));
+        assertFalse(matcher.matches(reader(1, 2, 7), 0));
+    }
+
+
+    @Test
+    public void testMatchDoesNotReadPastLastPosition() throws ParseException {
+        final DfaMatcher matcher = compile("01 02 03");
+        assertFalse(matcher.matches(reader(1, 2, 3), 0, 1));
+        assertTrue(matcher.matches(reader(1, 2, 3), 0, 2));
+    }
+
+
+    @Test
+    public void testByteReaderWithoutWindowsMatchesTheSame() throws ParseException {
+        final DfaMatcher matcher = compile("01 .{0-2} 02");
+        final byte[] bytes = {1, 9, 2};
+        final ByteReader reader = new ByteReader() {
+            public byte readByte(final long position) {
+                return bytes[(int) position];
+            }
+        };
+        assertTrue(matcher.matches(reader, 0, 2));
+        assertFalse(matcher.matches(reader, 0, 1));
+    }
+
+
+    @Test
+    public void testTooManyStatesIsNotCompiled() {
+        try {
+            new DfaCompiler(4).compile("01 02 03 04 05 06");
+            fail("Expected the automaton to be too big");
+        } catch (ParseException expected) {
+            // the DFA needs more than four states.
+        }
+    }
+
+
+    private DfaMatcher compile(final String expression) throws ParseException {
+        return new DfaMatcher(compiler.compile(expression));
+    }
+
+
+    private static ByteArrayReader reader(final int... values) {
+        final byte[] bytes = new byte[values.length];
+        for (int index = 0; index < values.length; index++) {
+            bytes[index] = (byte) values[index];
+        }
+        return new ByteArrayReader(bytes);
+    }
+
+}
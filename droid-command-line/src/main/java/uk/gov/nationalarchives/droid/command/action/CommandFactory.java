@@ -68,6 +68,13 @@ public interface CommandFactory {
      */
     DroidCommand getProfileCommand(CommandLine cli) throws CommandLineSyntaxException;
 
+    /**
+     * @param cli the command line;
+     * @return a new {@link IdentifyCommand}
+     * @throws CommandLineSyntaxException if the command line args were invalid
+     */
+    DroidCommand getIdentifyCommand(CommandLine cli) throws CommandLineSyntaxException;
+
 
     /**
      * @return a new check signature update command.
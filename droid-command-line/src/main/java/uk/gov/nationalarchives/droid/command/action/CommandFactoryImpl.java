@@ -18,6 +18,7 @@ import uk.gov.nationalarchives.droid.command.context.GlobalContext;
 import uk.gov.nationalarchives.droid.command.filter.CommandLineFilter;
 import uk.gov.nationalarchives.droid.command.filter.CommandLineFilter.FilterType;
 import uk.gov.nationalarchives.droid.export.interfaces.ExportOptions;
+import uk.gov.nationalarchives.droid.results.handlers.StreamResultWriter.LineFormat;
 
 /**
  * @author rflitcroft, Alok Kumar Dash
@@ -194,6 +195,25 @@ public class CommandFactoryImpl implements CommandFactory {
         
     }
     
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DroidCommand getIdentifyCommand(CommandLine cli) throws CommandLineSyntaxException {
+        String[] resources = cli.getOptionValues(CommandLineParam.IDENTIFY.toString());
+        if (resources.length == 0) {
+            throw new CommandLineSyntaxException("No resources specified.");
+        }
+        
+        IdentifyCommand command = context.getIdentifyCommand();
+        command.setResources(resources);
+        command.setDestination(cli.getOptionValue(CommandLineParam.OUTPUT_FILE.toString()));
+        command.setRecursive(cli.hasOption(CommandLineParam.RECURSIVE.toString()));
+        command.setFormat(cli.hasOption(CommandLineParam.JSON_LINES.toString()) ? LineFormat.JSON : LineFormat.CSV);
+        
+        return command;
+    }
+    
     /**
      * {@inheritDoc}
      */
@@ -136,6 +136,31 @@ public enum CommandLineParam {
         }
     },
     
+    /** Identifies the specified resources without a profile. */
+    IDENTIFY("i", "identify", true, -1, I18N.IDENTIFY_HELP, "resources...") {
+        @Override
+        public DroidCommand getCommand(CommandFactory commandFactory, CommandLine cli)
+            throws CommandLineSyntaxException {
+            return commandFactory.getIdentifyCommand(cli);
+        }
+    },
+    
+    /** The file identification results are written to. */
+    OUTPUT_FILE("o", "output-file", true, 1, I18N.OUTPUT_FILE_HELP, filename()) {
+        @Override
+        public DroidCommand getCommand(CommandFactory commandFactory, CommandLine cli) {
+            return null;
+        }
+    },
+    
+    /** Write identification results as JSON lines. */
+    JSON_LINES("j", "json-lines", I18N.JSON_LINES_HELP) {
+        @Override
+        public DroidCommand getCommand(CommandFactory commandFactory, CommandLine cli) {
+            return null;
+        }
+    },
+    
     /** Recursive operation flag. */
     RECURSIVE("R", "recurse", I18N.RECURSE_HELP) {
         @Override
@@ -208,6 +233,7 @@ public enum CommandLineParam {
         addTopLevelCommand(REPORT);
         addTopLevelCommand(LIST_FILTER_FIELD);
         addTopLevelCommand(RUN_PROFILE);
+        addTopLevelCommand(IDENTIFY);
         addTopLevelCommand(CHECK_SIGNATURE_UPDATE);
         addTopLevelCommand(DOWNLOAD_SIGNATURE_UPDATE);
         addTopLevelCommand(DEFAULT_SIGNATURE_VERSION);
@@ -302,6 +328,8 @@ public enum CommandLineParam {
         options.addOption(PROFILES.newOption());
         options.addOption(REPORT_NAME.newOption());
         options.addOption(REPORT_OUTPUT_TYPE.newOption());
+        options.addOption(OUTPUT_FILE.newOption());
+        options.addOption(JSON_LINES.newOption());
         
         OptionGroup filterOptions = new OptionGroup();
         filterOptions.addOption(ALL_FILTER.newOption());
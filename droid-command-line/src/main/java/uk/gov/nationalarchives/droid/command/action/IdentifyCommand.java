@@ -0,0 +1,150 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.command.action;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileException;
+import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileInfo;
+import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureManager;
+import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureType;
+import uk.gov.nationalarchives.droid.profile.AbstractProfileResource;
+import uk.gov.nationalarchives.droid.profile.ProfileContextLocator;
+import uk.gov.nationalarchives.droid.results.handlers.StreamResultWriter.LineFormat;
+
+/**
+ * Identifies resources without creating a profile, writing each result
+ * to a file, or to the console, as soon as it is known.
+ *
+ * @version 6.0.0
+ */
+public class IdentifyCommand implements DroidCommand {
+
+    private static final String ENCODING = "UTF-8";
+
+    private String destination;
+    private String[] resources;
+    private boolean recursive;
+    private LineFormat format = LineFormat.CSV;
+    private OutputStream console = System.out;
+
+    private ProfileContextLocator profileContextLocator;
+    private SignatureManager signatureManager;
+    private LocationResolver locationResolver;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute() throws CommandExecutionException {
+        try {
+            Map<SignatureType, SignatureFileInfo> sigs = signatureManager.getDefaultSignatures();
+            List<AbstractProfileResource> profileResources = new ArrayList<AbstractProfileResource>();
+            for (String resource : resources) {
+                profileResources.add(locationResolver.getResource(resource, recursive));
+            }
+
+            final OutputStream out = destination == null ? console : new FileOutputStream(destination);
+            final Writer output = new BufferedWriter(new OutputStreamWriter(out, ENCODING));
+            try {
+                profileContextLocator.streamResources(sigs, profileResources, output, format);
+            } finally {
+                if (destination == null) {
+                    output.flush();
+                } else {
+                    output.close();
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new CommandExecutionException(e);
+        } catch (IOException e) {
+            throw new CommandExecutionException(e);
+        } catch (SignatureFileException e) {
+            throw new CommandExecutionException(e);
+        }
+    }
+
+    /**
+     * @param destination the file to write results to, or null to write them to the console.
+     */
+    public void setDestination(String destination) {
+        this.destination = destination;
+    }
+
+    /**
+     * @param resources the resources to identify
+     */
+    public void setResources(String[] resources) {
+        this.resources = resources;
+    }
+
+    /**
+     * @param recursive whether folders are identified recursively
+     */
+    public void setRecursive(boolean recursive) {
+        this.recursive = recursive;
+    }
+
+    /**
+     * @param format the format to write results in
+     */
+    public void setFormat(LineFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * @param console the stream results are written to if there is no destination
+     */
+    void setConsole(OutputStream console) {
+        this.console = console;
+    }
+
+    /**
+     * @param profileContextLocator the profileContextLocator to set
+     */
+    public void setProfileContextLocator(ProfileContextLocator profileContextLocator) {
+        this.profileContextLocator = profileContextLocator;
+    }
+
+    /**
+     * @param signatureManager the signatureManager to set
+     */
+    public void setSignatureManager(SignatureManager signatureManager) {
+        this.signatureManager = signatureManager;
+    }
+
+    /**
+     * @param locationResolver the locationResolver to set
+     */
+    public void setLocationResolver(LocationResolver locationResolver) {
+        this.locationResolver = locationResolver;
+    }
+
+    /**
+     * @return the file results are written to, or null if they are written to the console.
+     */
+    String getDestination() {
+        return destination;
+    }
+
+    /**
+     * @return the format results are written in
+     */
+    LineFormat getFormat() {
+        return format;
+    }
+}
@@ -13,6 +13,7 @@ import uk.gov.nationalarchives.droid.command.action.ConfigureDefaultSignatureFil
 import uk.gov.nationalarchives.droid.command.action.DisplayDefaultSignatureFileVersionCommand;
 import uk.gov.nationalarchives.droid.command.action.DownloadSignatureUpdateCommand;
 import uk.gov.nationalarchives.droid.command.action.ExportCommand;
+import uk.gov.nationalarchives.droid.command.action.IdentifyCommand;
 import uk.gov.nationalarchives.droid.command.action.ListAllSignatureFilesCommand;
 import uk.gov.nationalarchives.droid.command.action.ListReportsCommand;
 import uk.gov.nationalarchives.droid.command.action.ProfileRunCommand;
@@ -38,6 +39,11 @@ public interface GlobalContext {
      */
     ProfileRunCommand getProfileRunCommand();
 
+    /**
+     * @return an identify command
+     */
+    IdentifyCommand getIdentifyCommand();
+
     /**
      * @param opt the Export options to use when exporting.
      * @return an export command
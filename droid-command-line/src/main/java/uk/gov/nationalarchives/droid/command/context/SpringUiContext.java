@@ -15,6 +15,7 @@ import uk.gov.nationalarchives.droid.command.action.ConfigureDefaultSignatureFil
 import uk.gov.nationalarchives.droid.command.action.DisplayDefaultSignatureFileVersionCommand;
 import uk.gov.nationalarchives.droid.command.action.DownloadSignatureUpdateCommand;
 import uk.gov.nationalarchives.droid.command.action.ExportCommand;
+import uk.gov.nationalarchives.droid.command.action.IdentifyCommand;
 import uk.gov.nationalarchives.droid.command.action.ListAllSignatureFilesCommand;
 import uk.gov.nationalarchives.droid.command.action.ListReportsCommand;
 import uk.gov.nationalarchives.droid.command.action.ProfileRunCommand;
@@ -75,6 +76,14 @@ public class SpringUiContext implements GlobalContext {
         return (ProfileRunCommand) getContext().getBean("profileRunCommand");
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IdentifyCommand getIdentifyCommand() {
+        return (IdentifyCommand) getContext().getBean("identifyCommand");
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -58,6 +58,15 @@ public final class I18N {
     /** Run a profile. */
     public static final String RUN_PROFILE_HELP = "profile.run.help";
     
+    /** Identify resources without a profile. */
+    public static final String IDENTIFY_HELP = "identify.help";
+    
+    /** The file to write identification results to. */
+    public static final String OUTPUT_FILE_HELP = "output.file.help";
+    
+    /** Write identification results as JSON lines. */
+    public static final String JSON_LINES_HELP = "json.lines.help";
+    
     /** Recurse subdirectories. */
     public static final String RECURSE_HELP = "recurse.help";
     
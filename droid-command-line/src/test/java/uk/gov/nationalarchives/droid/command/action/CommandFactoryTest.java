@@ -14,6 +14,7 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -25,6 +26,7 @@ import org.junit.Test;
 
 import uk.gov.nationalarchives.droid.command.context.GlobalContext;
 import uk.gov.nationalarchives.droid.export.interfaces.ExportOptions;
+import uk.gov.nationalarchives.droid.results.handlers.StreamResultWriter.LineFormat;
 
 /**
  * @author rflitcroft
@@ -123,4 +125,46 @@ public class CommandFactoryTest {
         
     }
     
+    @Test
+    public void testIdentifyCommand() throws Exception {
+        
+        IdentifyCommand identifyCommand = new IdentifyCommand();
+        when(context.getIdentifyCommand()).thenReturn(identifyCommand);
+        
+        String[] args = new String[] {
+            "-o",
+            "out.json",
+            "-j",
+            "-i",
+            "tmp/file 1.pdf",
+            "tmp/dir",
+        };
+        
+        CommandLineParser parser = new GnuParser();
+        CommandLine cli = parser.parse(CommandLineParam.options(), args);
+        
+        assertSame(identifyCommand, factory.getIdentifyCommand(cli));
+        assertEquals("out.json", identifyCommand.getDestination());
+        assertEquals(LineFormat.JSON, identifyCommand.getFormat());
+    }
+    
+    @Test
+    public void testIdentifyCommandWritesCsvToConsoleByDefault() throws Exception {
+        
+        IdentifyCommand identifyCommand = new IdentifyCommand();
+        when(context.getIdentifyCommand()).thenReturn(identifyCommand);
+        
+        String[] args = new String[] {
+            "-i",
+            "tmp/file 1.pdf",
+        };
+        
+        CommandLineParser parser = new GnuParser();
+        CommandLine cli = parser.parse(CommandLineParam.options(), args);
+        
+        factory.getIdentifyCommand(cli);
+        assertNull(identifyCommand.getDestination());
+        assertEquals(LineFormat.CSV, identifyCommand.getFormat());
+    }
+    
 }
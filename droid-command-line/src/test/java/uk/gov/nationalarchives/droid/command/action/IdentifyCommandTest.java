@@ -0,0 +1,119 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.command.action;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileInfo;
+import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureManager;
+import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureType;
+import uk.gov.nationalarchives.droid.profile.AbstractProfileResource;
+import uk.gov.nationalarchives.droid.profile.FileProfileResource;
+import uk.gov.nationalarchives.droid.profile.ProfileContextLocator;
+import uk.gov.nationalarchives.droid.results.handlers.StreamResultWriter.LineFormat;
+
+/**
+ * Checks that resources are identified without a profile, with results
+ * written to the console or to a file.
+ */
+public class IdentifyCommandTest {
+
+    private IdentifyCommand command;
+    private ProfileContextLocator profileContextLocator;
+    private SignatureManager signatureManager;
+    private LocationResolver locationResolver;
+    private Map<SignatureType, SignatureFileInfo> sigs;
+    private FileProfileResource resource1;
+    private FileProfileResource resource2;
+
+    @Before
+    public void setup() throws Exception {
+        profileContextLocator = mock(ProfileContextLocator.class);
+        signatureManager = mock(SignatureManager.class);
+        locationResolver = mock(LocationResolver.class);
+        command = new IdentifyCommand();
+        command.setProfileContextLocator(profileContextLocator);
+        command.setSignatureManager(signatureManager);
+        command.setLocationResolver(locationResolver);
+        command.setResources(new String[] {
+            "test1.txt",
+            "dir",
+        });
+
+        sigs = new HashMap<SignatureType, SignatureFileInfo>();
+        sigs.put(SignatureType.BINARY, mock(SignatureFileInfo.class));
+        when(signatureManager.getDefaultSignatures()).thenReturn(sigs);
+
+        resource1 = new FileProfileResource(new File("test1.txt"));
+        resource2 = new FileProfileResource(new File("dir"));
+        when(locationResolver.getResource("test1.txt", true)).thenReturn(resource1);
+        when(locationResolver.getResource("dir", true)).thenReturn(resource2);
+
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                ((Writer) invocation.getArguments()[2]).write("line\n");
+                return null;
+            }
+        }).when(profileContextLocator).streamResources(any(Map.class), any(List.class),
+                any(Writer.class), any(LineFormat.class));
+    }
+
+    @Test
+    public void testResultsAreWrittenToConsole() throws Exception {
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        command.setConsole(console);
+        command.setRecursive(true);
+
+        command.execute();
+
+        List<AbstractProfileResource> resources = Arrays.<AbstractProfileResource>asList(resource1, resource2);
+        verify(profileContextLocator).streamResources(eq(sigs), eq(resources), any(Writer.class),
+                eq(LineFormat.CSV));
+        assertEquals("line\n", console.toString("UTF-8"));
+    }
+
+    @Test
+    public void testResultsAreWrittenToDestination() throws Exception {
+        File destination = File.createTempFile("identify", ".json");
+        try {
+            command.setDestination(destination.getPath());
+            command.setRecursive(true);
+            command.setFormat(LineFormat.JSON);
+
+            command.execute();
+
+            verify(profileContextLocator).streamResources(eq(sigs), any(List.class), any(Writer.class),
+                    eq(LineFormat.JSON));
+            assertEquals("line\n", FileUtils.readFileToString(destination, "UTF-8"));
+        } finally {
+            destination.delete();
+        }
+    }
+}
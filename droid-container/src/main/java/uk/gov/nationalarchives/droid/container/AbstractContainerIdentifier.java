@@ -13,10 +13,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import uk.gov.nationalarchives.droid.core.IdentificationRequestByteReaderAdapter;
 import uk.gov.nationalarchives.droid.core.SignatureParseException;
@@ -55,7 +53,7 @@ public abstract class AbstractContainerIdentifier implements ContainerIdentifier
 
     private List<ContainerSignature> containerSignatures = new ArrayList<ContainerSignature>();
     private Map<Integer, List<FileFormatMapping>> formats = new HashMap<Integer, List<FileFormatMapping>>(); 
-    private List<String> uniqueFileEntries;
+    private volatile ContainerSignatureIndex signatureIndex;
     
     private long maxBytesToScan = -1;
     
@@ -66,21 +64,19 @@ public abstract class AbstractContainerIdentifier implements ContainerIdentifier
     @Override
     public final IdentificationResultCollection submit(IdentificationRequest request) throws IOException {
         ContainerSignatureMatchCollection matches =
-            new ContainerSignatureMatchCollection(getContainerSignatures(), uniqueFileEntries, maxBytesToScan);
+            new ContainerSignatureMatchCollection(getSignatureIndex(), maxBytesToScan);
 
         process(request, matches);
         
         IdentificationResultCollection results = new IdentificationResultCollection(request);
-        for (ContainerSignatureMatch match : matches.getContainerSignatureMatches()) {
-            if (match.isMatch()) {
-                List<FileFormatMapping> mappings = formats.get(match.getSignature().getId());
-                for (FileFormatMapping mapping : mappings) {
-                    IdentificationResultImpl result = new IdentificationResultImpl();
-                    result.setMethod(IdentificationMethod.CONTAINER);
-                    result.setRequestMetaData(request.getRequestMetaData());
-                    result.setPuid(mapping.getPuid());
-                    results.addResult(result);
-                }
+        for (ContainerSignature signature : matches.getMatchingSignatures()) {
+            List<FileFormatMapping> mappings = formats.get(signature.getId());
+            for (FileFormatMapping mapping : mappings) {
+                IdentificationResultImpl result = new IdentificationResultImpl();
+                result.setMethod(IdentificationMethod.CONTAINER);
+                result.setRequestMetaData(request.getRequestMetaData());
+                result.setPuid(mapping.getPuid());
+                results.addResult(result);
             }
         }
         
@@ -99,8 +95,28 @@ public abstract class AbstractContainerIdentifier implements ContainerIdentifier
     /**
      * @param containerSignature the containerSignature to add.
      */
-    public void addContainerSignature(ContainerSignature containerSignature) {
+    public synchronized void addContainerSignature(ContainerSignature containerSignature) {
         containerSignatures.add(containerSignature);
+        signatureIndex = null;
+    }
+    
+    /**
+     * Returns the index of the container signatures, compiling it if
+     * signatures have been added since it was last compiled.
+     * @return the index of the container signatures.
+     */
+    protected ContainerSignatureIndex getSignatureIndex() {
+        ContainerSignatureIndex index = signatureIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = signatureIndex;
+                if (index == null) {
+                    index = new ContainerSignatureIndex(containerSignatures);
+                    signatureIndex = index;
+                }
+            }
+        }
+        return index;
     }
     
     /**
@@ -145,15 +161,12 @@ public abstract class AbstractContainerIdentifier implements ContainerIdentifier
             FileInputStream sigFile = new FileInputStream(signatureFilePath);
             ContainerSignatureDefinitions defs = signatureFileParser.parse(sigFile);
             
-            Set<String> uniqueFileSet = new HashSet<String>();
-            
             for (ContainerSignature sig : defs.getContainerSignatures()) {
                 if (sig.getContainerType().equals(containerType)) {
                     addContainerSignature(sig);
-                    uniqueFileSet.addAll(sig.getFiles().keySet());
                 }
             }
-            uniqueFileEntries = new ArrayList<String>(uniqueFileSet); 
+            getSignatureIndex();
             
             for (FileFormatMapping fmt : defs.getFormats()) {
                 List<FileFormatMapping> mappings = formats.get(fmt.getSignatureId());
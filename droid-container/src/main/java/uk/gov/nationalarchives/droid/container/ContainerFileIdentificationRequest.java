@@ -12,6 +12,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -23,6 +24,7 @@ import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveFileUtils;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.CachedByteArray;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.CachedByteArrays;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.CachedBytes;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.MemorySpool;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.ResourceUtils;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
 
@@ -45,6 +47,7 @@ public class ContainerFileIdentificationRequest implements IdentificationRequest
     private int lruCapacity;
     private int bufferCapacity;
     private File tempDir;
+    private MemorySpool memorySpool;
     private Log log = LogFactory.getLog(this.getClass());
     
     /**
@@ -55,6 +58,16 @@ public class ContainerFileIdentificationRequest implements IdentificationRequest
         this(BUFFER_CACHE_CAPACITY, CAPACITY, tempDir);
     }
     
+    /**
+     * Constructs a new container file resource.
+     * @param tempDir the location to write temp files.
+     * @param memorySpool the spool to hold the file in memory, or null to always write it to a temp file.
+     */
+    public ContainerFileIdentificationRequest(File tempDir, MemorySpool memorySpool) {
+        this(BUFFER_CACHE_CAPACITY, CAPACITY, tempDir);
+        this.memorySpool = memorySpool;
+    }
+    
     /**
      * Constructs a new container file resource.
      * @param lruCapacity the buffer cache capacity
@@ -86,10 +99,18 @@ public class ContainerFileIdentificationRequest implements IdentificationRequest
             cachedBinary = new CachedByteArray(firstBuffer, bytesRead);
             size = (long) bytesRead;
         } else {
-            cachedBinary = new CachedByteArrays(lruCapacity, bufferCapacity, firstBuffer, bufferCapacity);
-            tempFile = ArchiveFileUtils.writeEntryToTemp(tempDir, firstBuffer, in);
-            cachedBinary.setSourceFile(tempFile);
-            size = tempFile.length();
+            if (memorySpool == null) {
+                cachedBinary = new CachedByteArrays(lruCapacity, bufferCapacity, firstBuffer, bufferCapacity);
+                tempFile = ArchiveFileUtils.writeEntryToTemp(tempDir, firstBuffer, in);
+                cachedBinary.setSourceFile(tempFile);
+                size = tempFile.length();
+            } else {
+                // Held in memory if it fits, or written to a temp file if not:
+                final CountingInputStream counter = new CountingInputStream(in);
+                cachedBinary = memorySpool.spool(firstBuffer, counter, tempDir, lruCapacity);
+                tempFile = cachedBinary.getSourceFile();
+                size = bytesRead + counter.getByteCount();
+            }
         }
         
         /* using nio and cachedByteBufers
@@ -13,6 +13,7 @@ import java.io.File;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.IdentificationRequestFactory;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.MemorySpool;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
 
 /**
@@ -22,13 +23,14 @@ import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
 public class ContainerFileIdentificationRequestFactory implements IdentificationRequestFactory {
 
     private File tempDirLocation;
+    private MemorySpool memorySpool;
     
     /**
      * {@inheritDoc}
      */
     @Override
     public final IdentificationRequest newRequest(RequestMetaData metaData, RequestIdentifier identifier) {
-        return new ContainerFileIdentificationRequest(tempDirLocation);
+        return new ContainerFileIdentificationRequest(tempDirLocation, memorySpool);
     }
     
     /**
@@ -37,4 +39,11 @@ public class ContainerFileIdentificationRequestFactory implements Identification
     public void setTempDirLocation(File tempDir) {
         this.tempDirLocation = tempDir;
     }
+    
+    /**
+     * @param memorySpool the spool to hold container files in memory before they spill to temp files.
+     */
+    public void setMemorySpool(MemorySpool memorySpool) {
+        this.memorySpool = memorySpool;
+    }
 }
@@ -0,0 +1,231 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.container;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.w3c.dom.Element;
+
+import uk.gov.nationalarchives.droid.core.signature.droid6.InternalSignatureCollection;
+
+/**
+ * An immutable index of container signatures by the names of the
+ * entries they refer to, shared by all requests to a container identifier.
+ * <p/>
+ * Each file of each signature is given a number, and the files of a signature
+ * are numbered consecutively, so the progress of a request can be held as a
+ * set of bits.  For each entry name, the index holds the files matched by the
+ * name alone, and the distinct binary signatures the entry must be matched
+ * against, with the files each of them satisfies.  Files of different container
+ * signatures with the same binary signature share it, so an entry is matched
+ * against it once.
+ *
+ * @version 6.0.0
+ */
+public final class ContainerSignatureIndex {
+
+    private final Log log = LogFactory.getLog(getClass());
+
+    private final List<ContainerSignature> signatures;
+    private final int[] firstFiles;
+    private final Map<String, EntrySignatures> entries;
+    private final List<String> entryNames;
+
+    /**
+     * Compiles an index of the signatures given.
+     * @param signatures the container signatures to index.
+     */
+    public ContainerSignatureIndex(List<ContainerSignature> signatures) {
+        this.signatures = Collections.unmodifiableList(new ArrayList<ContainerSignature>(signatures));
+        this.firstFiles = new int[signatures.size() + 1];
+
+        final Map<String, EntryBuilder> builders = new LinkedHashMap<String, EntryBuilder>();
+        final Map<Object, InternalSignatureCollection> distinctSignatures =
+            new HashMap<Object, InternalSignatureCollection>();
+        int fileNumber = 0;
+        for (int i = 0; i < signatures.size(); i++) {
+            firstFiles[i] = fileNumber;
+            for (ContainerFile file : signatures.get(i).getFiles().values()) {
+                EntryBuilder builder = builders.get(file.getPath());
+                if (builder == null) {
+                    builder = new EntryBuilder();
+                    builders.put(file.getPath(), builder);
+                }
+                final InternalSignatureCollection binarySignatures = file.getCompiledBinarySignatures();
+                if (binarySignatures == null) {
+                    builder.nameFiles.add(fileNumber);
+                } else {
+                    final Object key = signatureKey(file, binarySignatures);
+                    InternalSignatureCollection shared = distinctSignatures.get(key);
+                    if (shared == null) {
+                        shared = binarySignatures;
+                        distinctSignatures.put(key, shared);
+                    }
+                    builder.addBinaryFile(shared, fileNumber);
+                }
+                fileNumber++;
+            }
+        }
+        firstFiles[signatures.size()] = fileNumber;
+
+        final Map<String, EntrySignatures> entryMap = new HashMap<String, EntrySignatures>();
+        for (Map.Entry<String, EntryBuilder> entry : builders.entrySet()) {
+            entryMap.put(entry.getKey(), entry.getValue().build());
+        }
+        this.entries = entryMap;
+        this.entryNames = Collections.unmodifiableList(new ArrayList<String>(builders.keySet()));
+    }
+
+    /**
+     * @return the signatures in the index, in the order they were given.
+     */
+    public List<ContainerSignature> getSignatures() {
+        return signatures;
+    }
+
+    /**
+     * @return the unique entry names used in the signatures.
+     */
+    public List<String> getEntryNames() {
+        return entryNames;
+    }
+
+    /**
+     * @return the number of signature files in the index.
+     */
+    int getFileCount() {
+        return firstFiles[signatures.size()];
+    }
+
+    /**
+     * @param signature the position of a signature in the index.
+     * @return the number of the first file of the signature.
+     */
+    int getFirstFile(int signature) {
+        return firstFiles[signature];
+    }
+
+    /**
+     * @param entryName the name of a container entry.
+     * @return the signatures for the entry, or null if no signature refers to it.
+     */
+    EntrySignatures getEntrySignatures(String entryName) {
+        return entries.get(entryName);
+    }
+
+    /*
+     * Binary signatures are shared if they are defined by the same XML.  If the XML
+     * can not be written, the compiled signatures are only shared with themselves.
+     */
+    private Object signatureKey(ContainerFile file, InternalSignatureCollection binarySignatures) {
+        final XmlFragment fragment = file.getBinarySignature();
+        final Element element = fragment == null ? null : fragment.getElement();
+        if (element != null) {
+            try {
+                final Transformer transformer = TransformerFactory.newInstance().newTransformer();
+                final StringWriter xml = new StringWriter();
+                transformer.transform(new DOMSource(element), new StreamResult(xml));
+                return xml.toString();
+            } catch (TransformerException e) {
+                log.debug(e.getMessage(), e);
+            }
+        }
+        return binarySignatures;
+    }
+
+    /**
+     * The files a container entry satisfies, by name alone or by matching
+     * one of the distinct binary signatures for the entry.
+     */
+    static final class EntrySignatures {
+
+        private final int[] nameFiles;
+        private final InternalSignatureCollection[] binarySignatures;
+        private final int[][] binaryFiles;
+
+        private EntrySignatures(int[] nameFiles, InternalSignatureCollection[] binarySignatures,
+                int[][] binaryFiles) {
+            this.nameFiles = nameFiles;
+            this.binarySignatures = binarySignatures;
+            this.binaryFiles = binaryFiles;
+        }
+
+        /**
+         * @return the files satisfied by the entry name alone.
+         */
+        int[] getNameFiles() {
+            return nameFiles;
+        }
+
+        /**
+         * @return the distinct binary signatures the entry is matched against.
+         */
+        InternalSignatureCollection[] getBinarySignatures() {
+            return binarySignatures;
+        }
+
+        /**
+         * @param signature the position of a binary signature of the entry.
+         * @return the files satisfied if the entry matches the binary signature.
+         */
+        int[] getBinaryFiles(int signature) {
+            return binaryFiles[signature];
+        }
+    }
+
+    private static final class EntryBuilder {
+
+        private final List<Integer> nameFiles = new ArrayList<Integer>();
+        private final Map<InternalSignatureCollection, List<Integer>> binaryFiles =
+            new LinkedHashMap<InternalSignatureCollection, List<Integer>>();
+
+        void addBinaryFile(InternalSignatureCollection binarySignatures, int fileNumber) {
+            List<Integer> files = binaryFiles.get(binarySignatures);
+            if (files == null) {
+                files = new ArrayList<Integer>();
+                binaryFiles.put(binarySignatures, files);
+            }
+            files.add(fileNumber);
+        }
+
+        EntrySignatures build() {
+            final InternalSignatureCollection[] signatures = new InternalSignatureCollection[binaryFiles.size()];
+            final int[][] files = new int[binaryFiles.size()][];
+            int i = 0;
+            for (Map.Entry<InternalSignatureCollection, List<Integer>> entry : binaryFiles.entrySet()) {
+                signatures[i] = entry.getKey();
+                files[i] = toArray(entry.getValue());
+                i++;
+            }
+            return new EntrySignatures(toArray(nameFiles), signatures, files);
+        }
+
+        private static int[] toArray(List<Integer> values) {
+            final int[] array = new int[values.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = values.get(i);
+            }
+            return array;
+        }
+    }
+}
@@ -9,30 +9,36 @@
 package uk.gov.nationalarchives.droid.container;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
+import uk.gov.nationalarchives.droid.container.ContainerSignatureIndex.EntrySignatures;
+import uk.gov.nationalarchives.droid.core.signature.ByteReader;
+import uk.gov.nationalarchives.droid.core.signature.droid6.InternalSignatureCollection;
+
 /**
+ * Tracks the matching of one container against the signatures of a
+ * {@link ContainerSignatureIndex}.  The only state held for a container is
+ * the set of signature files it has satisfied so far.
+ * 
  * @author a-mpalmer
  *
  */
 public class ContainerSignatureMatchCollection {
 
-    private final List<ContainerSignatureMatch> matches = new ArrayList<ContainerSignatureMatch>();
-    private final List<String> allFileEntries; 
+    private final ContainerSignatureIndex index;
+    private final long maxBytesToScan;
+    private final BitSet matchedFiles;
     
     /**
      * 
-     * @param signatures     The signatures from which to contruct our match objects.
-     * @param allFileEntries A list of all the unique file entries used in the signatures.
+     * @param index          The index of the signatures to match against.
      * @param maxBytesToScan - the max bytes to binary match on, or negative meaning unlimited.
      */
-    public ContainerSignatureMatchCollection(final List<ContainerSignature> signatures, 
-        final List<String> allFileEntries, final long maxBytesToScan) {
-        for (ContainerSignature sig : signatures) {
-            ContainerSignatureMatch match = new ContainerSignatureMatch(sig, maxBytesToScan);
-            matches.add(match);
-        }
-        this.allFileEntries = allFileEntries;
+    public ContainerSignatureMatchCollection(final ContainerSignatureIndex index, final long maxBytesToScan) {
+        this.index = index;
+        this.maxBytesToScan = maxBytesToScan;
+        this.matchedFiles = new BitSet(index.getFileCount());
     }
     
     /**
@@ -40,15 +46,78 @@ public class ContainerSignatureMatchCollection {
      * @return A list of all the unique file entries
      */
     public List<String> getAllFileEntries() {
-        return allFileEntries;
+        return index.getEntryNames();
+    }
+    
+    /**
+     * Matches a file entry name against the signatures.  Signature files
+     * without a binary signature are satisfied by the entry name alone.
+     * 
+     * @param entryName the name of the container file entry
+     * @return true if the content of the entry must still be matched; false otherwise
+     */
+    public boolean matchFileEntry(String entryName) {
+        final EntrySignatures entry = index.getEntrySignatures(entryName);
+        boolean needsBinaryMatch = false;
+        if (entry != null) {
+            setAll(entry.getNameFiles());
+            for (int i = 0; i < entry.getBinarySignatures().length && !needsBinaryMatch; i++) {
+                needsBinaryMatch = !allSet(entry.getBinaryFiles(i));
+            }
+        }
+        return needsBinaryMatch;
     }
     
     /**
+     * Matches the content of an entry against each distinct binary signature 
+     * for the entry once, satisfying every signature file which uses it.
+     * Merely finding the entry satisfies files without a binary signature.
      * 
-     * @return A list of all the container signature match objects.
+     * @param entryName the name of a container entry
+     * @param content the content of the entry
      */
-    public List<ContainerSignatureMatch> getContainerSignatureMatches() {
-        return matches;
+    public void matchBinaryContent(String entryName, ByteReader content) {
+        final EntrySignatures entry = index.getEntrySignatures(entryName);
+        if (entry != null) {
+            setAll(entry.getNameFiles());
+            final InternalSignatureCollection[] binarySignatures = entry.getBinarySignatures();
+            for (int i = 0; i < binarySignatures.length; i++) {
+                final int[] files = entry.getBinaryFiles(i);
+                if (!allSet(files) 
+                    && !binarySignatures[i].getMatchingSignatures(content, maxBytesToScan).isEmpty()) {
+                    setAll(files);
+                }
+            }
+        }
     }
     
+    /**
+     * 
+     * @return the signatures all of whose files have been satisfied.
+     */
+    public List<ContainerSignature> getMatchingSignatures() {
+        final List<ContainerSignature> signatures = index.getSignatures();
+        final List<ContainerSignature> matching = new ArrayList<ContainerSignature>();
+        for (int i = 0; i < signatures.size(); i++) {
+            if (matchedFiles.nextClearBit(index.getFirstFile(i)) >= index.getFirstFile(i + 1)) {
+                matching.add(signatures.get(i));
+            }
+        }
+        return matching;
+    }
+
+    private void setAll(int[] files) {
+        for (int file : files) {
+            matchedFiles.set(file);
+        }
+    }
+
+    private boolean allSet(int[] files) {
+        for (int file : files) {
+            if (!matchedFiles.get(file)) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
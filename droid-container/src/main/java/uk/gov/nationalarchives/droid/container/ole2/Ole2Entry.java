@@ -0,0 +1,71 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.container.ole2;
+
+/**
+ * An entry in the directory of an OLE2 compound document.
+ *
+ * @version 6.0.0
+ */
+public final class Ole2Entry {
+
+    private final String name;
+    private final boolean stream;
+    private final int startSector;
+    private final long size;
+
+    /**
+     * @param name the name of the entry.
+     * @param stream whether the entry is a stream rather than a storage.
+     * @param startSector the first sector of the stream.
+     * @param size the size of the stream in bytes.
+     */
+    Ole2Entry(String name, boolean stream, int startSector, long size) {
+        this.name = name;
+        this.stream = stream;
+        this.startSector = startSector;
+        this.size = size;
+    }
+
+    /**
+     * @return the name of the entry.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return whether the entry is a stream which can be read.
+     */
+    public boolean isStream() {
+        return stream;
+    }
+
+    /**
+     * @return the size of the stream in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the first sector of the stream.
+     */
+    int getStartSector() {
+        return startSector;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+}
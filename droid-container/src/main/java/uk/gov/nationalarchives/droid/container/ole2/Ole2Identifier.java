@@ -18,7 +18,6 @@ import org.apache.poi.poifs.filesystem.Entry;
 import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 
 import uk.gov.nationalarchives.droid.container.AbstractContainerIdentifier;
-import uk.gov.nationalarchives.droid.container.ContainerSignatureMatch;
 import uk.gov.nationalarchives.droid.container.ContainerSignatureMatchCollection;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
 import uk.gov.nationalarchives.droid.core.signature.ByteReader;
@@ -30,11 +29,34 @@ import uk.gov.nationalarchives.droid.core.signature.ByteReader;
 public class Ole2Identifier extends AbstractContainerIdentifier {
     
     /**
+     * Reads the container through the request's random access to its bytes
+     * where the request has them, so only the streams which must be matched 
+     * are read.  Otherwise the whole container is read by POI.
      * {@inheritDoc}
      * @throws IOException 
      */
     @Override
     public final void process(IdentificationRequest request, 
+        ContainerSignatureMatchCollection matches) throws IOException {
+        if (request.getReader() != null) {
+            final Ole2Reader reader = new Ole2Reader(request.getReader(), request.size());
+            for (Ole2Entry entry : reader.getRootEntries()) {
+                String entryName = entry.getName().trim();
+                if (matches.matchFileEntry(entryName) && entry.isStream()) {
+                    final InputStream docIn = reader.openStream(entry);
+                    try {
+                        matchBinaryContent(entryName, docIn, matches);
+                    } finally {
+                        docIn.close();
+                    }
+                }
+            }
+        } else {
+            processFileSystem(request, matches);
+        }
+    }
+
+    private void processFileSystem(IdentificationRequest request, 
         ContainerSignatureMatchCollection matches) throws IOException {
         final InputStream in = request.getSourceInputStream();
         try {
@@ -43,29 +65,12 @@ public class Ole2Identifier extends AbstractContainerIdentifier {
             for (Iterator<Entry> it = root.getEntries(); it.hasNext();) {
                 Entry entry = it.next();
                 String entryName = entry.getName().trim();
-    
-                boolean needsBinaryMatch = false;
-    
-                for (ContainerSignatureMatch match : matches.getContainerSignatureMatches()) {
-                    match.matchFileEntry(entryName);
-                    if (match.needsBinaryMatch(entryName)) {
-                        needsBinaryMatch = true;
-                    }
-                }
-                
-                if (needsBinaryMatch) {
+                if (matches.matchFileEntry(entryName)) {
                     DocumentInputStream docIn = null;
-                    ByteReader byteReader = null;
                     try {
                         docIn = reader.createDocumentInputStream(entry.getName());
-                        byteReader = newByteReader(docIn);
-                        for (ContainerSignatureMatch match : matches.getContainerSignatureMatches()) {
-                            match.matchBinaryContent(entryName, byteReader);
-                        }
+                        matchBinaryContent(entryName, docIn, matches);
                     } finally {
-                        if (byteReader != null) {
-                            byteReader.close();
-                        }
                         if (docIn != null) {
                             docIn.close();
                         }
@@ -78,4 +83,17 @@ public class Ole2Identifier extends AbstractContainerIdentifier {
             }
         }
     }
+
+    private void matchBinaryContent(String entryName, InputStream in, 
+        ContainerSignatureMatchCollection matches) throws IOException {
+        ByteReader byteReader = null;
+        try {
+            byteReader = newByteReader(in);
+            matches.matchBinaryContent(entryName, byteReader);
+        } finally {
+            if (byteReader != null) {
+                byteReader.close();
+            }
+        }
+    }
 }
@@ -0,0 +1,428 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.container.ole2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.domesdaybook.reader.ByteReader;
+import net.domesdaybook.reader.Window;
+import net.domesdaybook.reader.WindowReader;
+
+/**
+ * Reads the root entries and streams of an OLE2 compound document through
+ * random access to its bytes, rather than loading the whole document.
+ * <p/>
+ * Only the locations of the FAT and directory sectors are held in memory.
+ * Sector chains are followed by reading FAT entries from the document as
+ * streams are read, so the memory used does not grow with the size of the
+ * document.
+ * <p/>
+ * Every chain is followed at most as many sectors as the document holds, and
+ * a stream may not claim to be longer than the document or mini stream which
+ * holds it, so a corrupt document with cyclic chains can not be read forever.
+ * <p/>
+ * The layout read is that of the Microsoft Compound File Binary format,
+ * versions 3 and 4.
+ *
+ * @version 6.0.0
+ */
+public final class Ole2Reader {
+
+    private static final byte[] SIGNATURE = {
+        (byte) 0xD0, (byte) 0xCF, (byte) 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, (byte) 0x1A, (byte) 0xE1,
+    };
+
+    private static final int SECTOR_SHIFT = 0x1E;
+    private static final int MINI_SECTOR_SHIFT = 0x20;
+    private static final int FAT_SECTOR_COUNT = 0x2C;
+    private static final int FIRST_DIRECTORY_SECTOR = 0x30;
+    private static final int MINI_STREAM_CUTOFF = 0x38;
+    private static final int FIRST_MINI_FAT_SECTOR = 0x3C;
+    private static final int FIRST_DIFAT_SECTOR = 0x44;
+    private static final int DIFAT_SECTOR_COUNT = 0x48;
+    private static final int HEADER_DIFAT = 0x4C;
+    private static final int HEADER_DIFAT_ENTRIES = 109;
+
+    private static final int DIRECTORY_ENTRY_SIZE = 128;
+    private static final int ENTRY_NAME_LENGTH = 0x40;
+    private static final int ENTRY_TYPE = 0x42;
+    private static final int ENTRY_LEFT_SIBLING = 0x44;
+    private static final int ENTRY_RIGHT_SIBLING = 0x48;
+    private static final int ENTRY_CHILD = 0x4C;
+    private static final int ENTRY_START_SECTOR = 0x74;
+    private static final int ENTRY_SIZE = 0x78;
+    private static final int MAX_NAME_CHARS = 32;
+
+    private static final int STREAM = 2;
+    private static final int NO_STREAM = -1;
+    private static final int END_OF_CHAIN = -2;
+
+    private static final int MIN_SECTOR_SHIFT = 7;
+    private static final int MAX_SECTOR_SHIFT = 16;
+    private static final int VERSION_3_SECTOR_SHIFT = 9;
+    private static final int BYTE_MASK = 0xFF;
+    private static final int BITS_PER_BYTE = 8;
+    private static final int INT_SIZE = 4;
+    private static final int INT_SHIFT = 2;
+    private static final long INT_MASK = 0xFFFFFFFFL;
+
+    private final ByteReader reader;
+    private final WindowReader windowReader;
+    private final long length;
+    private final int sectorShift;
+    private final int sectorSize;
+    private final int miniSectorShift;
+    private final long miniStreamCutoff;
+    private final int firstMiniFatSector;
+    private final int[] fatSectors;
+    private final int[] directorySectors;
+    private final Ole2Entry rootEntry;
+    private final List<Ole2Entry> entries;
+
+    private int[] miniFatSectors;
+    private int[] miniStreamSectors;
+
+    /**
+     * Reads the header and root directory of a compound document.
+     *
+     * @param reader random access to the bytes of the document.
+     * @param length the length of the document in bytes.
+     * @throws IOException if the bytes are not a valid compound document.
+     */
+    public Ole2Reader(ByteReader reader, long length) throws IOException {
+        this.reader = reader;
+        this.windowReader = reader instanceof WindowReader ? (WindowReader) reader : null;
+        this.length = length;
+        if (length < HEADER_DIFAT + HEADER_DIFAT_ENTRIES * INT_SIZE) {
+            throw new IOException("Too short to be an OLE2 compound document");
+        }
+        for (int i = 0; i < SIGNATURE.length; i++) {
+            if (reader.readByte(i) != SIGNATURE[i]) {
+                throw new IOException("Not an OLE2 compound document");
+            }
+        }
+        sectorShift = readShort(SECTOR_SHIFT);
+        miniSectorShift = readShort(MINI_SECTOR_SHIFT);
+        if (sectorShift < MIN_SECTOR_SHIFT || sectorShift > MAX_SECTOR_SHIFT
+            || miniSectorShift <= 0 || miniSectorShift >= sectorShift) {
+            throw new IOException("Invalid OLE2 sector sizes");
+        }
+        sectorSize = 1 << sectorShift;
+        miniStreamCutoff = readInt(MINI_STREAM_CUTOFF) & INT_MASK;
+        firstMiniFatSector = readInt(FIRST_MINI_FAT_SECTOR);
+        fatSectors = readFatSectors();
+        directorySectors = readChain(readInt(FIRST_DIRECTORY_SECTOR), sectorCount());
+
+        rootEntry = readEntry(0);
+        entries = Collections.unmodifiableList(readChildren(0));
+    }
+
+    /**
+     * @return the entries in the root storage of the document.
+     */
+    public List<Ole2Entry> getRootEntries() {
+        return entries;
+    }
+
+    /**
+     * Opens a stream to read the bytes of an entry.  Bytes are read
+     * from the document as the stream is read.
+     *
+     * @param entry a stream entry of this document.
+     * @return an input stream over the bytes of the entry.
+     * @throws IOException if the entry is not a stream, or is longer than the
+     * document or mini stream which holds it.
+     */
+    public InputStream openStream(Ole2Entry entry) throws IOException {
+        if (!entry.isStream()) {
+            throw new IOException("Not an OLE2 stream: " + entry.getName());
+        }
+        final boolean mini = entry.getSize() < miniStreamCutoff;
+        if (mini && miniStreamSectors == null) {
+            miniFatSectors = readChain(firstMiniFatSector, sectorCount());
+            miniStreamSectors = readChain(rootEntry.getStartSector(), sectorCount());
+        }
+        final long maxSize = mini ? miniStreamLength() : length;
+        if (entry.getSize() > maxSize) {
+            throw new IOException(String.format("OLE2 stream %s claims %d bytes, but only %d can be held",
+                entry.getName(), entry.getSize(), maxSize));
+        }
+        return new EntryInputStream(entry, mini);
+    }
+
+    /*
+     * The header holds the first 109 FAT sector locations, and any more are held in a
+     * chain of DIFAT sectors, the last int of each being the location of the next.
+     */
+    private int[] readFatSectors() throws IOException {
+        final int count = readInt(FAT_SECTOR_COUNT);
+        final int intsPerSector = sectorSize >> INT_SHIFT;
+        if (count < 0 || count > (sectorCount() / intsPerSector) + 1) {
+            throw new IOException("Invalid OLE2 FAT sector count: " + count);
+        }
+        final int[] sectors = new int[count];
+        int index = 0;
+        for (; index < count && index < HEADER_DIFAT_ENTRIES; index++) {
+            sectors[index] = readInt(HEADER_DIFAT + (index << INT_SHIFT));
+        }
+        int difatSector = readInt(FIRST_DIFAT_SECTOR);
+        int difatSectors = readInt(DIFAT_SECTOR_COUNT);
+        if (difatSectors > sectorCount()) {
+            throw new IOException("Invalid OLE2 DIFAT sector count: " + difatSectors);
+        }
+        final Set<Integer> visited = new HashSet<Integer>();
+        while (index < count) {
+            if (difatSector < 0 || difatSectors-- <= 0) {
+                throw new IOException("Truncated OLE2 DIFAT chain");
+            }
+            if (!visited.add(difatSector)) {
+                throw new IOException("Cyclic OLE2 DIFAT chain at sector: " + difatSector);
+            }
+            final long position = sectorPosition(difatSector);
+            for (int i = 0; i < intsPerSector - 1 && index < count; i++) {
+                sectors[index++] = readInt(position + (i << INT_SHIFT));
+            }
+            difatSector = readInt(position + sectorSize - INT_SIZE);
+        }
+        return sectors;
+    }
+
+    private int[] readChain(int startSector, long maxSectors) throws IOException {
+        int[] chain = new int[INT_SIZE];
+        int count = 0;
+        int sector = startSector;
+        while (sector != END_OF_CHAIN && sector != NO_STREAM) {
+            if (sector < 0 || count >= maxSectors) {
+                throw new IOException("Invalid OLE2 sector chain");
+            }
+            if (count == chain.length) {
+                final int[] longer = new int[count * 2];
+                System.arraycopy(chain, 0, longer, 0, count);
+                chain = longer;
+            }
+            chain[count++] = sector;
+            sector = nextSector(sector);
+        }
+        final int[] result = new int[count];
+        System.arraycopy(chain, 0, result, 0, count);
+        return result;
+    }
+
+    private int nextSector(int sector) throws IOException {
+        final int intsPerSector = sectorSize >> INT_SHIFT;
+        final int fatIndex = sector / intsPerSector;
+        if (fatIndex >= fatSectors.length) {
+            throw new IOException("OLE2 sector outside the FAT: " + sector);
+        }
+        return readInt(sectorPosition(fatSectors[fatIndex]) + ((sector % intsPerSector) << INT_SHIFT));
+    }
+
+    private int nextMiniSector(int miniSector) throws IOException {
+        final int intsPerSector = sectorSize >> INT_SHIFT;
+        final int fatIndex = miniSector / intsPerSector;
+        if (fatIndex >= miniFatSectors.length) {
+            throw new IOException("OLE2 mini sector outside the mini FAT: " + miniSector);
+        }
+        return readInt(sectorPosition(miniFatSectors[fatIndex]) + ((miniSector % intsPerSector) << INT_SHIFT));
+    }
+
+    /*
+     * The children of a storage are held as a tree of siblings, which is walked in order
+     * without recursion.  Each directory entry can be visited at most once, so a
+     * corrupt tree with cycles can not loop forever.
+     */
+    private List<Ole2Entry> readChildren(int storageId) throws IOException {
+        final List<Ole2Entry> children = new ArrayList<Ole2Entry>();
+        final int maxEntries = (directorySectors.length << sectorShift) / DIRECTORY_ENTRY_SIZE;
+        final int[] stack = new int[maxEntries];
+        int depth = 0;
+        int visited = 0;
+        int id = readInt(entryPosition(storageId) + ENTRY_CHILD);
+        while (id != NO_STREAM || depth > 0) {
+            if (id != NO_STREAM) {
+                if (id < 0 || id >= maxEntries || depth >= maxEntries) {
+                    throw new IOException("Invalid OLE2 directory entry: " + id);
+                }
+                stack[depth++] = id;
+                id = readInt(entryPosition(id) + ENTRY_LEFT_SIBLING);
+            } else {
+                id = stack[--depth];
+                if (++visited > maxEntries) {
+                    throw new IOException("Invalid OLE2 directory tree");
+                }
+                children.add(readEntry(id));
+                id = readInt(entryPosition(id) + ENTRY_RIGHT_SIBLING);
+            }
+        }
+        return children;
+    }
+
+    private Ole2Entry readEntry(int id) throws IOException {
+        final long position = entryPosition(id);
+        final int nameChars = Math.min(MAX_NAME_CHARS, Math.max(0, readShort(position + ENTRY_NAME_LENGTH) / 2 - 1));
+        final char[] name = new char[nameChars];
+        for (int i = 0; i < nameChars; i++) {
+            name[i] = (char) readShort(position + i * 2);
+        }
+        final int type = reader.readByte(position + ENTRY_TYPE);
+        long size = readInt(position + ENTRY_SIZE) & INT_MASK;
+        if (sectorShift != VERSION_3_SECTOR_SHIFT) {
+            size |= (readInt(position + ENTRY_SIZE + INT_SIZE) & INT_MASK) << (INT_SIZE * BITS_PER_BYTE);
+        }
+        return new Ole2Entry(new String(name), type == STREAM, readInt(position + ENTRY_START_SECTOR), size);
+    }
+
+    private long entryPosition(int id) throws IOException {
+        final int entriesPerSector = sectorSize / DIRECTORY_ENTRY_SIZE;
+        final int index = id / entriesPerSector;
+        if (index >= directorySectors.length) {
+            throw new IOException("OLE2 directory entry outside the directory: " + id);
+        }
+        return sectorPosition(directorySectors[index]) + (id % entriesPerSector) * DIRECTORY_ENTRY_SIZE;
+    }
+
+    private long sectorPosition(int sector) throws IOException {
+        final long position = ((long) sector + 1) << sectorShift;
+        if (sector < 0 || position >= length) {
+            throw new IOException("OLE2 sector beyond the end of the document: " + sector);
+        }
+        return position;
+    }
+
+    private long sectorCount() {
+        return (length >> sectorShift) + 1;
+    }
+
+    private long miniStreamLength() {
+        return Math.min(rootEntry.getSize(), (long) miniStreamSectors.length << sectorShift);
+    }
+
+    private int readShort(long position) {
+        return (reader.readByte(position) & BYTE_MASK)
+            | (reader.readByte(position + 1) & BYTE_MASK) << BITS_PER_BYTE;
+    }
+
+    private int readInt(long position) {
+        int value = 0;
+        for (int i = INT_SIZE - 1; i >= 0; i--) {
+            value = (value << BITS_PER_BYTE) | (reader.readByte(position + i) & BYTE_MASK);
+        }
+        return value;
+    }
+
+    /*
+     * Copies bytes from the document, an array at a time if the reader has windows.
+     */
+    private void readBytes(long position, byte[] buffer, int offset, int count) {
+        int copied = 0;
+        while (copied < count) {
+            final long from = position + copied;
+            final Window window = windowReader == null ? null : windowReader.getWindow(from);
+            if (window != null && window.contains(from)) {
+                final int windowOffset = (int) (from - window.getWindowPosition());
+                final int toCopy = Math.min(count - copied, window.length() - windowOffset);
+                System.arraycopy(window.getArray(), windowOffset, buffer, offset + copied, toCopy);
+                copied += toCopy;
+            } else {
+                buffer[offset + copied] = reader.readByte(from);
+                copied++;
+            }
+        }
+    }
+
+    /**
+     * Reads the sectors of a stream, or the mini sectors of a small stream
+     * held in the mini stream, as the stream is read.
+     */
+    private final class EntryInputStream extends InputStream {
+
+        private final boolean mini;
+        private final int unitSize;
+        private final long maxUnits;
+        private long remaining;
+        private int sector;
+        private int unitOffset;
+        private long units = 1;
+
+        EntryInputStream(Ole2Entry entry, boolean mini) {
+            this.mini = mini;
+            this.unitSize = 1 << (mini ? miniSectorShift : sectorShift);
+            this.maxUnits = mini ? (miniStreamLength() >> miniSectorShift) + 1 : sectorCount();
+            this.remaining = entry.getSize();
+            this.sector = entry.getStartSector();
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] one = new byte[1];
+            return read(one, 0, 1) == 1 ? one[0] & BYTE_MASK : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            if (unitOffset == unitSize) {
+                nextUnit();
+            }
+            final int toRead = (int) Math.min(Math.min(count, unitSize - unitOffset), remaining);
+            readBytes(position(), buffer, offset, toRead);
+            unitOffset += toRead;
+            remaining -= toRead;
+            return toRead;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = 0;
+            while (skipped < count && remaining > 0) {
+                if (unitOffset == unitSize) {
+                    nextUnit();
+                }
+                final int toSkip = (int) Math.min(Math.min(count - skipped, unitSize - unitOffset), remaining);
+                unitOffset += toSkip;
+                remaining -= toSkip;
+                skipped += toSkip;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, remaining);
+        }
+
+        private void nextUnit() throws IOException {
+            if (++units > maxUnits) {
+                throw new IOException("OLE2 stream chain longer than the document: " + sector);
+            }
+            sector = mini ? nextMiniSector(sector) : nextSector(sector);
+            unitOffset = 0;
+        }
+
+        private long position() throws IOException {
+            if (!mini) {
+                return sectorPosition(sector) + unitOffset;
+            }
+            final long miniOffset = ((long) sector << miniSectorShift) + unitOffset;
+            final long index = miniOffset >> sectorShift;
+            if (sector < 0 || index >= miniStreamSectors.length) {
+                throw new IOException("OLE2 mini sector beyond the mini stream: " + sector);
+            }
+            return sectorPosition(miniStreamSectors[(int) index]) + (miniOffset & (sectorSize - 1));
+        }
+    }
+}
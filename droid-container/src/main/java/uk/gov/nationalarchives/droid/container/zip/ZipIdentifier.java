@@ -10,7 +10,6 @@ package uk.gov.nationalarchives.droid.container.zip;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.List;
 
 
 import de.schlichtherle.util.zip.BasicZipFile;
@@ -20,9 +19,10 @@ import de.schlichtherle.util.zip.ZipEntry;
 //import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
 
 import uk.gov.nationalarchives.droid.container.AbstractContainerIdentifier;
-import uk.gov.nationalarchives.droid.container.ContainerSignatureMatch;
 import uk.gov.nationalarchives.droid.container.ContainerSignatureMatchCollection;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.archive.ByteReaderReadOnlyFile;
 import uk.gov.nationalarchives.droid.core.signature.ByteReader;
 
 /**
@@ -30,6 +30,8 @@ import uk.gov.nationalarchives.droid.core.signature.ByteReader;
  *
  */
 public class ZipIdentifier extends AbstractContainerIdentifier {
+
+    private static final String FILE_SCHEME = "file";
     
     /**
      * {@inheritDoc}
@@ -37,22 +39,19 @@ public class ZipIdentifier extends AbstractContainerIdentifier {
     @Override
     public final void process(IdentificationRequest request, 
         ContainerSignatureMatchCollection matches) throws IOException {
-        BasicZipFile zipFile = new BasicZipFile(request.getSourceFile());
+        BasicZipFile zipFile = openZipFile(request);
         try {
             // For each entry:
             for (String entryName : matches.getAllFileEntries()) {
                 final ZipEntry entry = zipFile.getEntry(entryName);
-                if (entry != null) {
+                // Only read entries whose content is still to be matched:
+                if (entry != null && matches.matchFileEntry(entryName)) {
                     // Get a stream for the entry and a byte reader over the stream:
                     InputStream stream = zipFile.getInputStream(entry);
                     ByteReader reader = null;
                     try {
                         reader = newByteReader(stream);
-                        // For each signature to match:
-                        List<ContainerSignatureMatch> matchList = matches.getContainerSignatureMatches(); 
-                        for (ContainerSignatureMatch match : matchList) {
-                            match.matchBinaryContent(entryName, reader);
-                        }
+                        matches.matchBinaryContent(entryName, reader);
                     } finally {
                         if (reader != null) {
                             reader.close();
@@ -108,5 +107,21 @@ public class ZipIdentifier extends AbstractContainerIdentifier {
         
     }
 
+    /**
+     * Zips on the file system are read from their file.  Zips nested in other archives
+     * are read from the bytes their request already holds, rather than a copy in a temporary file.
+     * @param request the request for the zip.
+     * @return the zip file.
+     * @throws IOException if the zip file could not be opened.
+     */
+    private static BasicZipFile openZipFile(IdentificationRequest request) throws IOException {
+        final RequestIdentifier identifier = request.getIdentifier();
+        if (request.getReader() == null
+            || identifier != null && FILE_SCHEME.equals(identifier.getUri().getScheme())) {
+            return new BasicZipFile(request.getSourceFile());
+        }
+        return new BasicZipFile(new ByteReaderReadOnlyFile(request.getReader(), request.size()));
+    }
+
 
 }
@@ -0,0 +1,124 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.container;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.signature.ByteReader;
+import uk.gov.nationalarchives.droid.core.signature.droid6.InternalSignature;
+import uk.gov.nationalarchives.droid.core.signature.droid6.InternalSignatureCollection;
+
+public class ContainerSignatureMatchCollectionTest {
+
+    @Test
+    public void testSignatureWithoutBinarySignaturesMatchesOnEntryNames() {
+        ContainerSignature sig = newSignature(1, newFile("entry1", null), newFile("entry2", null));
+        ContainerSignatureMatchCollection matches = newMatches(sig);
+
+        assertFalse(matches.matchFileEntry("entry1"));
+        assertTrue(matches.getMatchingSignatures().isEmpty());
+        assertFalse(matches.matchFileEntry("entry2"));
+        assertEquals(Arrays.asList(sig), matches.getMatchingSignatures());
+    }
+
+    @Test
+    public void testUnknownEntryMatchesNothing() {
+        ContainerSignatureMatchCollection matches = newMatches(newSignature(1, newFile("entry1", null)));
+
+        assertFalse(matches.matchFileEntry("other"));
+        matches.matchBinaryContent("other", mock(ByteReader.class));
+        assertTrue(matches.getMatchingSignatures().isEmpty());
+    }
+
+    @Test
+    public void testSharedBinarySignatureIsMatchedOnceForAllSignatures() {
+        ByteReader content = mock(ByteReader.class);
+        InternalSignatureCollection binarySignatures = newBinarySignatures(content, true);
+        ContainerSignature sig1 = newSignature(1, newFile("CompObj", binarySignatures));
+        ContainerSignature sig2 = newSignature(2, newFile("CompObj", binarySignatures), newFile("Workbook", null));
+        ContainerSignatureMatchCollection matches = newMatches(sig1, sig2);
+
+        assertTrue(matches.matchFileEntry("CompObj"));
+        matches.matchBinaryContent("CompObj", content);
+        assertFalse(matches.matchFileEntry("CompObj"));
+        assertEquals(Arrays.asList(sig1), matches.getMatchingSignatures());
+
+        matches.matchFileEntry("Workbook");
+        assertEquals(Arrays.asList(sig1, sig2), matches.getMatchingSignatures());
+        verify(binarySignatures, times(1)).getMatchingSignatures(content, -1L);
+    }
+
+    @Test
+    public void testFailedBinaryMatchDoesNotSatisfyTheFile() {
+        ByteReader content = mock(ByteReader.class);
+        ContainerSignature sig = newSignature(1, newFile("WordDocument", newBinarySignatures(content, false)));
+        ContainerSignatureMatchCollection matches = newMatches(sig);
+
+        assertTrue(matches.matchFileEntry("WordDocument"));
+        matches.matchBinaryContent("WordDocument", content);
+        assertTrue(matches.getMatchingSignatures().isEmpty());
+    }
+
+    @Test
+    public void testAllFileEntriesAreUnique() {
+        ContainerSignatureMatchCollection matches = newMatches(
+            newSignature(1, newFile("entry1", null)),
+            newSignature(2, newFile("entry1", null), newFile("entry2", null)));
+
+        assertEquals(Arrays.asList("entry1", "entry2"), matches.getAllFileEntries());
+    }
+
+    private static ContainerSignatureMatchCollection newMatches(ContainerSignature... signatures) {
+        return new ContainerSignatureMatchCollection(new ContainerSignatureIndex(Arrays.asList(signatures)), -1L);
+    }
+
+    private static ContainerSignature newSignature(int id, ContainerFile... files) {
+        Map<String, ContainerFile> fileMap = new HashMap<String, ContainerFile>();
+        for (ContainerFile file : files) {
+            fileMap.put(file.getPath(), file);
+        }
+        ContainerSignature sig = mock(ContainerSignature.class);
+        when(sig.getId()).thenReturn(id);
+        when(sig.getFiles()).thenReturn(fileMap);
+        return sig;
+    }
+
+    private static ContainerFile newFile(String path, InternalSignatureCollection binarySignatures) {
+        ContainerFile file = mock(ContainerFile.class);
+        when(file.getPath()).thenReturn(path);
+        when(file.getCompiledBinarySignatures()).thenReturn(binarySignatures);
+        return file;
+    }
+
+    private static InternalSignatureCollection newBinarySignatures(ByteReader content, boolean matches) {
+        List<InternalSignature> matching = new ArrayList<InternalSignature>();
+        if (matches) {
+            matching.add(mock(InternalSignature.class));
+        }
+        InternalSignatureCollection binarySignatures = mock(InternalSignatureCollection.class);
+        when(binarySignatures.getMatchingSignatures(content, -1L)).thenReturn(
+            matches ? matching : Collections.<InternalSignature>emptyList());
+        return binarySignatures;
+    }
+}
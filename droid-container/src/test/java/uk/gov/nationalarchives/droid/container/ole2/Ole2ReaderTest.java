@@ -0,0 +1,202 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.container.ole2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import net.domesdaybook.reader.ByteArrayReader;
+import net.domesdaybook.reader.ByteReader;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.poi.poifs.filesystem.DirectoryEntry;
+import org.apache.poi.poifs.filesystem.DocumentEntry;
+import org.apache.poi.poifs.filesystem.DocumentInputStream;
+import org.apache.poi.poifs.filesystem.Entry;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.junit.Test;
+
+public class Ole2ReaderTest {
+
+    @Test
+    public void testRootEntriesAndStreamsMatchPoi() throws IOException {
+        InputStream in = getClass().getClassLoader().getResourceAsStream("word97.doc");
+        byte[] document = IOUtils.toByteArray(in);
+        in.close();
+
+        assertSameAsPoi(document, new ByteArrayReader(document));
+    }
+
+    @Test
+    public void testLargeAndSmallStreamsAreReadWithoutWindows() throws IOException {
+        POIFSFileSystem fileSystem = new POIFSFileSystem();
+        fileSystem.createDocument(new ByteArrayInputStream(newBytes(100000, 7)), "Large");
+        fileSystem.createDocument(new ByteArrayInputStream(newBytes(100, 3)), "Small");
+        fileSystem.createDocument(new ByteArrayInputStream(new byte[0]), "Empty");
+        fileSystem.createDirectory("Storage").createDocument("Inner", new ByteArrayInputStream(newBytes(10, 1)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        fileSystem.writeFilesystem(out);
+        final byte[] document = out.toByteArray();
+
+        assertSameAsPoi(document, new ByteReader() {
+            @Override
+            public byte readByte(long position) {
+                return document[(int) position];
+            }
+        });
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotACompoundDocument() throws IOException {
+        byte[] document = newBytes(4096, 5);
+        new Ole2Reader(new ByteArrayReader(document), document.length);
+    }
+
+    @Test
+    public void testCyclicStreamChainClaimingMoreThanTheDocumentIsRejected() throws IOException {
+        byte[] document = newDocument();
+        Ole2Entry large = findEntry(new Ole2Reader(new ByteArrayReader(document), document.length), "Large");
+        writeInt(document, fatEntryPosition(document, large.getStartSector()), large.getStartSector());
+        writeInt(document, entryPosition(document, "Large") + 0x78, 0xFFFFFFF0);
+
+        Ole2Reader reader = new Ole2Reader(new ByteArrayReader(document), document.length);
+        try {
+            reader.openStream(findEntry(reader, "Large"));
+            fail("Expected the stream to be rejected");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("Large"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testCyclicDirectoryChainIsRejected() throws IOException {
+        byte[] document = newDocument();
+        int directorySector = readInt(document, 0x30);
+        writeInt(document, fatEntryPosition(document, directorySector), directorySector);
+
+        new Ole2Reader(new ByteArrayReader(document), document.length);
+    }
+
+    @Test
+    public void testCyclicDifatChainIsRejected() {
+        // 128 byte sectors, so 200 FAT sectors fit in a short document.
+        byte[] document = new byte[819200];
+        System.arraycopy(new byte[] {
+            (byte) 0xD0, (byte) 0xCF, (byte) 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, (byte) 0x1A, (byte) 0xE1,
+        }, 0, document, 0, 8);
+        document[0x1E] = 7;
+        document[0x20] = 6;
+        writeInt(document, 0x2C, 200);
+        writeInt(document, 0x44, 10);
+        writeInt(document, 0x48, 100);
+        int difatSectorEnd = (10 + 1) * 128 + 128;
+        writeInt(document, difatSectorEnd - 4, 10);
+
+        try {
+            new Ole2Reader(new ByteArrayReader(document), document.length);
+            fail("Expected the DIFAT chain to be rejected");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("DIFAT"));
+        }
+    }
+
+    private static void assertSameAsPoi(byte[] document, ByteReader bytes) throws IOException {
+        Ole2Reader reader = new Ole2Reader(bytes, document.length);
+        DirectoryEntry root = new POIFSFileSystem(new ByteArrayInputStream(document)).getRoot();
+
+        Set<String> names = new HashSet<String>();
+        for (Iterator<Entry> it = root.getEntries(); it.hasNext();) {
+            names.add(it.next().getName());
+        }
+        assertEquals(names.size(), reader.getRootEntries().size());
+        assertFalse(names.isEmpty());
+
+        for (Ole2Entry entry : reader.getRootEntries()) {
+            assertTrue(names.contains(entry.getName()));
+            Entry poiEntry = root.getEntry(entry.getName());
+            assertEquals(poiEntry.isDocumentEntry(), entry.isStream());
+            if (entry.isStream()) {
+                InputStream expected = new DocumentInputStream((DocumentEntry) poiEntry);
+                InputStream actual = reader.openStream(entry);
+                assertArrayEquals(entry.getName(), IOUtils.toByteArray(expected), IOUtils.toByteArray(actual));
+                expected.close();
+                actual.close();
+            }
+        }
+    }
+
+    private static byte[] newDocument() throws IOException {
+        POIFSFileSystem fileSystem = new POIFSFileSystem();
+        fileSystem.createDocument(new ByteArrayInputStream(newBytes(10000, 7)), "Large");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        fileSystem.writeFilesystem(out);
+        return out.toByteArray();
+    }
+
+    private static Ole2Entry findEntry(Ole2Reader reader, String name) {
+        for (Ole2Entry entry : reader.getRootEntries()) {
+            if (entry.getName().equals(name)) {
+                return entry;
+            }
+        }
+        throw new AssertionError("No entry named " + name);
+    }
+
+    /*
+     * The documents written by POI have 512 byte sectors, and a FAT which fits in its first sector.
+     */
+    private static int fatEntryPosition(byte[] document, int sector) {
+        return (readInt(document, 0x4C) + 1) * 512 + sector * 4;
+    }
+
+    private static int entryPosition(byte[] document, String name) throws IOException {
+        int directory = (readInt(document, 0x30) + 1) * 512;
+        byte[] encoded = name.getBytes("UTF-16LE");
+        for (int position = directory; position < directory + 512; position += 128) {
+            boolean matches = true;
+            for (int i = 0; i < encoded.length && matches; i++) {
+                matches = document[position + i] == encoded[i];
+            }
+            if (matches) {
+                return position;
+            }
+        }
+        throw new AssertionError("No directory entry named " + name);
+    }
+
+    private static int readInt(byte[] bytes, int position) {
+        return (bytes[position] & 0xFF) | (bytes[position + 1] & 0xFF) << 8
+            | (bytes[position + 2] & 0xFF) << 16 | (bytes[position + 3] & 0xFF) << 24;
+    }
+
+    private static void writeInt(byte[] bytes, int position, int value) {
+        for (int i = 0; i < 4; i++) {
+            bytes[position + i] = (byte) (value >> (i * 8));
+        }
+    }
+
+    private static byte[] newBytes(int length, int seed) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * seed + i / 251);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.container.zip;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.container.ContainerFile;
+import uk.gov.nationalarchives.droid.container.ContainerSignature;
+import uk.gov.nationalarchives.droid.container.FileFormatMapping;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultCollection;
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveFileUtils;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.CachedByteArray;
+
+public class ZipIdentifierTest {
+
+    @Test
+    public void testNestedZipIsReadFromItsBytesWithoutATempFile() throws IOException {
+        ZipIdentifier zipIdentifier = new ZipIdentifier();
+        ContainerFile containerFile = new ContainerFile();
+        containerFile.setPath("[Content_Types].xml");
+        ContainerSignature signature = new ContainerSignature();
+        signature.setId(100);
+        signature.setFiles(Arrays.asList(containerFile));
+        zipIdentifier.addContainerSignature(signature);
+
+        FileFormatMapping mapping = new FileFormatMapping();
+        mapping.setPuid("fmt/189");
+        List<FileFormatMapping> mappings = new ArrayList<FileFormatMapping>();
+        mappings.add(mapping);
+        Map<Integer, List<FileFormatMapping>> formats = new HashMap<Integer, List<FileFormatMapping>>();
+        formats.put(100, mappings);
+        zipIdentifier.setFormats(formats);
+
+        byte[] docx = readResource("word_ooxml.docx");
+        URI nestedUri = ArchiveFileUtils.toZipUri(new File("outer.zip").toURI(), "word_ooxml.docx");
+        IdentificationRequest request = mock(IdentificationRequest.class);
+        when(request.getIdentifier()).thenReturn(new RequestIdentifier(nestedUri));
+        when(request.getReader()).thenReturn(new CachedByteArray(docx, docx.length));
+        when(request.size()).thenReturn((long) docx.length);
+
+        IdentificationResultCollection results = zipIdentifier.submit(request);
+        assertEquals(1, results.getResults().size());
+        assertEquals("fmt/189", results.getResults().iterator().next().getPuid());
+        verify(request, never()).getSourceFile();
+        verify(request, never()).getSourceInputStream();
+    }
+
+    private byte[] readResource(String name) throws IOException {
+        InputStream in = getClass().getClassLoader().getResourceAsStream(name);
+        try {
+            return IOUtils.toByteArray(in);
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -11,6 +11,8 @@ package uk.gov.nationalarchives.droid.core.interfaces;
 import java.io.IOException;
 import java.util.concurrent.Future;
 
+import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveCheckpoint;
+
 
 /**
  * @author rflitcroft
@@ -24,6 +26,14 @@ public interface AsynchDroid {
      * @return future task
      */
     Future<IdentificationResultCollection> submit(final IdentificationRequest request);
+    
+    /**
+     * Carries on expanding an archive which was identified before, 
+     * from a checkpoint of its progress.
+     * @param request the archive, whose identifier holds the id of its existing node.
+     * @param checkpoint the progress through the archive so far.
+     */
+    void resumeArchive(IdentificationRequest request, ArchiveCheckpoint checkpoint);
 
     /**
      * Waits until in-flight jobs have finished.
@@ -8,6 +8,7 @@
  */
 package uk.gov.nationalarchives.droid.core.interfaces;
 
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
@@ -20,20 +21,33 @@ import java.util.concurrent.atomic.AtomicInteger;
 /**
  * @author rflitcroft
  * Executor service which which will block new tasks until a thread is available to service a task.
+ * 
+ * <p/>If the work queue size is zero, tasks are handed directly to a free thread, 
+ * and the submitting thread runs the task itself if no thread is free.
+ * 
+ * <p/>If the work queue size is positive, tasks wait in a bounded queue, and a thread 
+ * submitting a task while the queue is full blocks until there is space.  Tasks submitted 
+ * by the pool's own threads (e.g. archive entries submitted while an archive is processed) 
+ * are run by that thread instead of blocking, so the pool can't deadlock on itself.
+ * If the pool is set to run tasks in the caller when the queue is full, no thread ever 
+ * blocks, and the submitting thread runs the task itself instead.
  */
 public class BlockingThreadPoolExecutorFactory {
 
-    private static final int DEFAULT_CORE_POOL_SIZE = 10;
-    private static final int DEFAULT_MAX_CORE_POOL_SIZE = 10;
-    
-    //private static final int DEFAULT_CORE_POOL_SIZE = 4;
-    //private static final int DEFAULT_MAX_CORE_POOL_SIZE = 4;
+    private static final int DEFAULT_POOL_SIZE = Runtime.getRuntime().availableProcessors();
     
     private static final int DEFAULT_KEEP_ALIVE_TIME_MILLIS = 1000;
     
-    private int corePoolSize = DEFAULT_CORE_POOL_SIZE;
-    private int maxPoolSize = DEFAULT_MAX_CORE_POOL_SIZE;
+    private static final long QUEUE_OFFER_TIMEOUT_MILLIS = 100;
+    
+    private static final String DEFAULT_THREAD_NAME_PREFIX = "core-thread-";
+    
+    private int corePoolSize = DEFAULT_POOL_SIZE;
+    private int maxPoolSize = DEFAULT_POOL_SIZE;
     private long keepAliveTimeMillis = DEFAULT_KEEP_ALIVE_TIME_MILLIS;
+    private int workQueueSize;
+    private boolean callerRunsWhenFull;
+    private String threadNamePrefix = DEFAULT_THREAD_NAME_PREFIX;
     
     /**
      * Returns a new instance of a BlockingThreadPoolExecutor.
@@ -41,13 +55,20 @@ public class BlockingThreadPoolExecutorFactory {
      */
     public ThreadPoolExecutor newInstance() {
         
-        final BlockingQueue<Runnable> workQueue = new SynchronousQueue<Runnable>();
-        RejectedExecutionHandler rejectedExecutionHandler = new CallerRunsUnlessPoolShutdownPolicy();
-        
-        ThreadFactory tf = new MyThreadFactory();
+        final MyThreadFactory tf = new MyThreadFactory(threadNamePrefix);
+        final BlockingQueue<Runnable> workQueue;
+        final RejectedExecutionHandler rejectedExecutionHandler;
+        if (workQueueSize > 0) {
+            workQueue = new ArrayBlockingQueue<Runnable>(workQueueSize);
+            rejectedExecutionHandler = callerRunsWhenFull ? new CallerRunsUnlessPoolShutdownPolicy()
+                : new BlockUnlessPoolThreadPolicy(tf);
+        } else {
+            workQueue = new SynchronousQueue<Runnable>();
+            rejectedExecutionHandler = new CallerRunsUnlessPoolShutdownPolicy();
+        }
         
         ThreadPoolExecutor executor = new ThreadPoolExecutor(
-                corePoolSize, maxPoolSize, keepAliveTimeMillis, TimeUnit.MILLISECONDS, 
+                corePoolSize, Math.max(corePoolSize, maxPoolSize), keepAliveTimeMillis, TimeUnit.MILLISECONDS, 
                 workQueue, tf, rejectedExecutionHandler);
         return executor;
     }
@@ -64,22 +85,61 @@ public class BlockingThreadPoolExecutorFactory {
         }
     }
     
+    /**
+     * Blocks the submitting thread until there is space in the work queue, 
+     * unless the submitting thread belongs to the pool itself, in which case
+     * it runs the task.
+     */
+    private static final class BlockUnlessPoolThreadPolicy implements RejectedExecutionHandler {
+        
+        private final MyThreadFactory poolThreads;
+        
+        private BlockUnlessPoolThreadPolicy(MyThreadFactory poolThreads) {
+            this.poolThreads = poolThreads;
+        }
+        
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Executor has been shut down.");
+            }
+            
+            if (poolThreads.isPoolThread(Thread.currentThread())) {
+                r.run();
+            } else {
+                try {
+                    final BlockingQueue<Runnable> queue = executor.getQueue();
+                    while (!queue.offer(r, QUEUE_OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                        if (executor.isShutdown()) {
+                            throw new RejectedExecutionException("Executor has been shut down.");
+                        }
+                    }
+                    if (executor.isShutdown() && queue.remove(r)) {
+                        throw new RejectedExecutionException("Executor has been shut down.");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("Interrupted while waiting for space in the work queue.", e);
+                }
+            }
+        }
+    }
+    
     private static final class MyThreadFactory implements ThreadFactory {
         
         private final ThreadGroup group;
         private final AtomicInteger threadNumber = new AtomicInteger(1);
         private final String namePrefix;
 
-        private MyThreadFactory() {
+        private MyThreadFactory(String namePrefix) {
             SecurityManager s = System.getSecurityManager();
             group = (s != null) ? s.getThreadGroup() : Thread.currentThread().getThreadGroup();
-            namePrefix = "core-thread-";
+            this.namePrefix = namePrefix;
         }
 
         public Thread newThread(Runnable r) {
-            Thread t = new Thread(group, r,
-                                  namePrefix + threadNumber.getAndIncrement(),
-                                  0);
+            Thread t = new PoolThread(this, group, r,
+                                  namePrefix + threadNumber.getAndIncrement());
             
             if (t.isDaemon()) {
                 t.setDaemon(false);
@@ -89,20 +149,39 @@ public class BlockingThreadPoolExecutorFactory {
             }
             return t;
         }
+        
+        private boolean isPoolThread(Thread thread) {
+            return thread instanceof PoolThread && ((PoolThread) thread).factory == this;
+        }
+    }
+    
+    /**
+     * A thread which remembers which pool created it.
+     */
+    private static final class PoolThread extends Thread {
+        
+        private final MyThreadFactory factory;
+        
+        private PoolThread(MyThreadFactory factory, ThreadGroup group, Runnable r, String name) {
+            super(group, r, name, 0);
+            this.factory = factory;
+        }
     }
 
     /**
-     * @param corePoolSize the corePoolSize to set
+     * @param corePoolSize the corePoolSize to set.  Zero or less means
+     * the number of available processors.
      */
     public void setCorePoolSize(int corePoolSize) {
-        this.corePoolSize = corePoolSize;
+        this.corePoolSize = corePoolSize > 0 ? corePoolSize : DEFAULT_POOL_SIZE;
     }
 
     /**
-     * @param maxPoolSize the maxPoolSize to set
+     * @param maxPoolSize the maxPoolSize to set.  Zero or less means
+     * the number of available processors.
      */
     public void setMaxPoolSize(int maxPoolSize) {
-        this.maxPoolSize = maxPoolSize;
+        this.maxPoolSize = maxPoolSize > 0 ? maxPoolSize : DEFAULT_POOL_SIZE;
     }
 
     /**
@@ -113,8 +192,25 @@ public class BlockingThreadPoolExecutorFactory {
     }
 
     /**
-     * @param workQueueSize the workQueueSize to set
+     * @param workQueueSize the workQueueSize to set.  Zero means tasks are handed
+     * directly to a free thread, with no queue.
      */
     public void setWorkQueueSize(int workQueueSize) {
+        this.workQueueSize = workQueueSize;
+    }
+
+    /**
+     * @param callerRunsWhenFull whether a thread submitting a task when the work queue 
+     * is full runs the task itself, rather than blocking until there is space.
+     */
+    public void setCallerRunsWhenFull(boolean callerRunsWhenFull) {
+        this.callerRunsWhenFull = callerRunsWhenFull;
+    }
+
+    /**
+     * @param threadNamePrefix the prefix of the names given to threads in the pool.
+     */
+    public void setThreadNamePrefix(String threadNamePrefix) {
+        this.threadNamePrefix = threadNamePrefix;
     }
 }
@@ -0,0 +1,31 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces;
+
+import java.io.IOException;
+
+/**
+ * An identification request which is submitted before it is opened, holding only
+ * what it needs to open itself.  The thread which identifies it must open it first,
+ * so the work of reading it is spread over the identification threads rather than
+ * done by the thread which submitted it.
+ *
+ * <p/>Only the meta data and identifier of the request can be used before it is opened.
+ *
+ * @version 6.0.0
+ */
+public interface LazyIdentificationRequest extends IdentificationRequest {
+
+    /**
+     * Opens the request from its source, if it is not already open.
+     * @throws IOException if the source could not be read.
+     */
+    void open() throws IOException;
+
+}
@@ -10,6 +10,10 @@ package uk.gov.nationalarchives.droid.core.interfaces.archive;
 
 import java.io.File;
 
+import uk.gov.nationalarchives.droid.core.interfaces.hash.HashGenerator;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.MemorySpool;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+
 /**
  * @author rflitcroft
  *
@@ -17,6 +21,9 @@ import java.io.File;
 public abstract class AbstractArchiveRequestFactory implements IdentificationRequestFactory {
  
     private File tempDirLocation;
+    private HashGenerator hashGenerator;
+    private boolean generateHash;
+    private MemorySpool memorySpool;
     
     /**
      * @param tempDirLocation the tempDirLocation to set
@@ -32,4 +39,43 @@ public abstract class AbstractArchiveRequestFactory implements IdentificationReq
         return tempDirLocation;
     }
     
+    /**
+     * @param hashGenerator the hash generator used to hash entries as they are read.
+     */
+    public final void setHashGenerator(HashGenerator hashGenerator) {
+        this.hashGenerator = hashGenerator;
+    }
+    
+    /**
+     * @param generateHash whether entries are hashed as they are read.
+     */
+    public final void setGenerateHash(boolean generateHash) {
+        this.generateHash = generateHash;
+    }
+    
+    /**
+     * @param memorySpool the spool to hold entries in memory before they spill to temp files,
+     * or null to always write entries bigger than a buffer to temp files.
+     */
+    public final void setMemorySpool(MemorySpool memorySpool) {
+        this.memorySpool = memorySpool;
+    }
+    
+    /**
+     * @return the spool to hold entries in memory, or null if there is none.
+     */
+    protected MemorySpool getMemorySpool() {
+        return memorySpool;
+    }
+    
+    /**
+     * Starts a running hash for a new request, if hashes are being generated.
+     * @param metaData the meta data of the new request.
+     */
+    protected final void startRunningHash(RequestMetaData metaData) {
+        if (generateHash && hashGenerator != null) {
+            metaData.setRunningHash(hashGenerator.newRunningHash());
+        }
+    }
+    
 }
@@ -0,0 +1,153 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.archive;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
+
+/**
+ * Records how far the entries of an archive have been submitted, so an interrupted
+ * profile can carry on from where it stopped rather than starting the archive again.
+ *
+ * <p/>The checkpoint holds the number of entries walked so far, and the directories
+ * created for them, so entries walked after a resume still go into the same directories.
+ * Entries are counted once they have been submitted, so when a paused profile is idle
+ * every entry counted has also been identified.
+ *
+ * @version 6.0.0
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+public class ArchiveCheckpoint {
+
+    @XmlAttribute(name = "NodeId")
+    private Long nodeId;
+
+    @XmlAttribute(name = "Format")
+    private String archiveFormat;
+
+    @XmlAttribute(name = "EntriesDone")
+    private int entriesDone;
+
+    @XmlElement(name = "Directory")
+    private List<Directory> directories = new ArrayList<Directory>();
+
+    /**
+     * Default Constructor.
+     */
+    ArchiveCheckpoint() { }
+
+    /**
+     * Creates a checkpoint for an archive no entries of which have been walked.
+     * @param nodeId the node id of the archive.
+     * @param archiveFormat the format of the archive, as given by an {@link ArchiveFormatResolver}.
+     */
+    public ArchiveCheckpoint(Long nodeId, String archiveFormat) {
+        this.nodeId = nodeId;
+        this.archiveFormat = archiveFormat;
+    }
+
+    /**
+     * @return the node id of the archive.
+     */
+    public Long getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return the format of the archive.
+     */
+    public String getArchiveFormat() {
+        return archiveFormat;
+    }
+
+    /**
+     * @return the number of entries walked so far.
+     */
+    public synchronized int getEntriesDone() {
+        return entriesDone;
+    }
+
+    /**
+     * Records that another entry has been walked.
+     */
+    public synchronized void entryDone() {
+        entriesDone++;
+    }
+
+    /**
+     * Records a directory created for the entries of the archive.
+     * @param path the path of the directory in the archive.
+     * @param id the id of the directory's node.
+     */
+    public synchronized void addDirectory(String path, ResourceId id) {
+        directories.add(new Directory(path, id));
+    }
+
+    /**
+     * @return the directories created so far, keyed by their path in the archive.
+     */
+    public synchronized Map<String, ResourceId> getDirectories() {
+        final Map<String, ResourceId> directoryIds = new HashMap<String, ResourceId>();
+        for (Directory directory : directories) {
+            directoryIds.put(directory.path, directory.nodeId == null 
+                ? null : new ResourceId(directory.nodeId, directory.prefix));
+        }
+        return directoryIds;
+    }
+
+    /**
+     * @return a copy of this checkpoint as it stands, which can be saved
+     * while the archive is still being walked.
+     */
+    public synchronized ArchiveCheckpoint copy() {
+        final ArchiveCheckpoint copy = new ArchiveCheckpoint(nodeId, archiveFormat);
+        copy.entriesDone = entriesDone;
+        copy.directories.addAll(directories);
+        return copy;
+    }
+
+    /**
+     * A directory created for the entries of the archive.
+     */
+    @XmlAccessorType(XmlAccessType.FIELD)
+    private static final class Directory {
+
+        @XmlAttribute(name = "Path")
+        private String path;
+
+        @XmlAttribute(name = "NodeId")
+        private Long nodeId;
+
+        @XmlAttribute(name = "Prefix")
+        private String prefix;
+
+        /**
+         * Default Constructor.
+         */
+        Directory() { }
+
+        Directory(String path, ResourceId id) {
+            this.path = path;
+            if (id != null) {
+                this.nodeId = id.getId();
+                this.prefix = id.getPath();
+            }
+        }
+    }
+
+}
@@ -9,6 +9,10 @@
 package uk.gov.nationalarchives.droid.core.interfaces.archive;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
 
 /**
  * Abstract archive walker which walks archive entries.
@@ -18,6 +22,8 @@ import java.io.IOException;
  */
 public abstract class ArchiveFileWalker<T> {
 
+    private ArchiveCheckpoint checkpoint;
+    
     /**
      * Invoked whenever an entry is encountered.
      * @param entry the entry encountered
@@ -31,6 +37,18 @@ public abstract class ArchiveFileWalker<T> {
      * @throws IOException if the the archive source could not be read
      */
     protected final void walk(Iterable<T> iterable) throws IOException {
+        walk(iterable, null);
+    }
+    
+    /**
+     * Walks the Iterable archive from a checkpoint, skipping the entries already walked,
+     * and counting each entry walked in the checkpoint.
+     * @param iterable an iterable archive.
+     * @param archiveCheckpoint the progress through the archive so far, or null to walk all of it.
+     * @throws IOException if the the archive source could not be read
+     */
+    protected final void walk(Iterable<T> iterable, ArchiveCheckpoint archiveCheckpoint) throws IOException {
+        this.checkpoint = archiveCheckpoint;
         try {
             walkInternal(iterable);
         } catch (CancelException cancel) {
@@ -40,9 +58,37 @@ public abstract class ArchiveFileWalker<T> {
     
     
     private void walkInternal(Iterable<T> archiveFile) throws IOException {
+        final int entriesToSkip = checkpoint == null ? 0 : checkpoint.getEntriesDone();
+        int entryIndex = 0;
         for (T entry : archiveFile) {
-            checkIfCancelled(entry);
-            handleEntry(entry);
+            if (entryIndex++ >= entriesToSkip) {
+                checkIfCancelled(entry);
+                handleEntry(entry);
+                if (checkpoint != null) {
+                    checkpoint.entryDone();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Gets the directories created by an earlier walk of the archive, which
+     * can be reused by entries walked from the checkpoint.
+     * @param archiveCheckpoint the progress through the archive so far, or null if there is none.
+     * @return a modifiable map of the directories created so far, keyed by their path in the archive.
+     */
+    protected static Map<String, ResourceId> getDirectories(ArchiveCheckpoint archiveCheckpoint) {
+        return archiveCheckpoint == null ? new HashMap<String, ResourceId>() : archiveCheckpoint.getDirectories();
+    }
+    
+    /**
+     * Records a directory created for the entries of the archive in the checkpoint, if there is one.
+     * @param path the path of the directory in the archive.
+     * @param id the id of the directory's node.
+     */
+    protected final void directoryDone(String path, ResourceId id) {
+        if (checkpoint != null) {
+            checkpoint.addDirectory(path, id);
         }
     }
     
@@ -0,0 +1,121 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.archive;
+
+import java.io.IOException;
+
+import net.domesdaybook.reader.ByteReader;
+import net.domesdaybook.reader.Window;
+import net.domesdaybook.reader.WindowReader;
+
+import de.schlichtherle.io.rof.AbstractReadOnlyFile;
+
+/**
+ * A read only file over the bytes of an identification request, so a container
+ * nested in an archive can be opened where its bytes already are, in memory or
+ * in a temporary file, without copying it to another temporary file first.
+ *
+ * <p/>Bytes are copied a window at a time where the reader hands out windows.
+ * Closing the file does not close the reader, which belongs to the request.
+ *
+ * @version 6.0.0
+ */
+public final class ByteReaderReadOnlyFile extends AbstractReadOnlyFile {
+
+    private final ByteReader reader;
+    private final WindowReader windowReader;
+    private final long length;
+    private long filePointer;
+
+    /**
+     * @param reader the reader of the bytes.
+     * @param length the number of bytes which can be read.
+     */
+    public ByteReaderReadOnlyFile(ByteReader reader, long length) {
+        this.reader = reader;
+        this.windowReader = reader instanceof WindowReader ? (WindowReader) reader : null;
+        this.length = length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long length() throws IOException {
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getFilePointer() throws IOException {
+        return filePointer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void seek(long position) throws IOException {
+        if (position < 0) {
+            throw new IOException("Cannot seek to a negative position: " + position);
+        }
+        filePointer = position;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read() throws IOException {
+        if (filePointer >= length) {
+            return -1;
+        }
+        return reader.readByte(filePointer++) & 0xFF;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(byte[] bytes, int offset, int count) throws IOException {
+        if (count == 0) {
+            return 0;
+        }
+        if (filePointer >= length) {
+            return -1;
+        }
+        final int toRead = (int) Math.min(count, length - filePointer);
+        int bytesRead = 0;
+        while (bytesRead < toRead) {
+            final long position = filePointer + bytesRead;
+            final Window window = windowReader == null ? null : windowReader.getWindow(position);
+            if (window == null) {
+                bytes[offset + bytesRead++] = reader.readByte(position);
+            } else {
+                final int windowOffset = (int) (position - window.getWindowPosition());
+                final int windowBytes = Math.min(toRead - bytesRead, window.length() - windowOffset);
+                System.arraycopy(window.getArray(), windowOffset, bytes, offset + bytesRead, windowBytes);
+                bytesRead += windowBytes;
+            }
+        }
+        filePointer += bytesRead;
+        return bytesRead;
+    }
+
+    /**
+     * Does nothing, as the reader belongs to the request it came from.
+     * @throws IOException never.
+     */
+    @Override
+    public void close() throws IOException {
+    }
+
+}
@@ -0,0 +1,109 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.archive;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import de.schlichtherle.io.rof.AbstractReadOnlyFile;
+
+/**
+ * A read only file which several threads can seek and read at once.
+ *
+ * <p/>Each thread has its own file pointer, and reads from it with positional
+ * reads on a shared file channel.  A thread which seeks and then reads
+ * always reads from where it sought to, whatever other threads are doing.
+ *
+ * @version 6.0.0
+ */
+final class ConcurrentReadOnlyFile extends AbstractReadOnlyFile {
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ThreadLocal<long[]> filePointer = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    /**
+     * @param file the file to read.
+     * @throws FileNotFoundException if the file could not be opened.
+     */
+    ConcurrentReadOnlyFile(File file) throws FileNotFoundException {
+        this.file = new RandomAccessFile(file, "r");
+        this.channel = this.file.getChannel();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long length() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getFilePointer() throws IOException {
+        return filePointer.get()[0];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void seek(long position) throws IOException {
+        if (position < 0) {
+            throw new IOException("Cannot seek to a negative position: " + position);
+        }
+        filePointer.get()[0] = position;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read() throws IOException {
+        final byte[] oneByte = new byte[1];
+        return read(oneByte, 0, 1) == 1 ? oneByte[0] & 0xFF : -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        final long[] pointer = filePointer.get();
+        final int bytesRead = channel.read(ByteBuffer.wrap(bytes, offset, length), pointer[0]);
+        if (bytesRead > 0) {
+            pointer[0] += bytesRead;
+        }
+        return bytesRead;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+}
@@ -24,8 +24,9 @@ public class GZipRequestFactory extends AbstractArchiveRequestFactory {
      */
     @Override
     public final IdentificationRequest newRequest(RequestMetaData metaData, RequestIdentifier identifier) {
+        startRunningHash(metaData);
         final IdentificationRequest request = new GZipIdentificationRequest(metaData, 
-                identifier, getTempDirLocation());
+                identifier, getTempDirLocation(), getMemorySpool());
         return request;
     }
 }
@@ -0,0 +1,167 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import net.domesdaybook.reader.ByteReader;
+
+import de.schlichtherle.util.zip.ZipEntry;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.LazyIdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+
+/**
+ * A zip entry which holds only its central directory entry until it is opened.
+ * Opening it inflates the entry into the request it wraps, on the thread which
+ * identifies it, after which it releases its reference to the zip file.
+ *
+ * @version 6.0.0
+ */
+final class LazyZipEntryRequest implements LazyIdentificationRequest {
+
+    private final IdentificationRequest request;
+    private final ZipEntry entry;
+    private SharedZipFile zipFile;
+
+    /**
+     * @param request the unopened request to read the entry into.
+     * @param zipFile the zip file holding the entry, which this acquires a reference to.
+     * @param entry the entry.
+     */
+    LazyZipEntryRequest(IdentificationRequest request, SharedZipFile zipFile, ZipEntry entry) {
+        this.request = request;
+        this.entry = entry;
+        this.zipFile = zipFile;
+        zipFile.acquire();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void open() throws IOException {
+        if (zipFile != null) {
+            final InputStream in = zipFile.getInputStream(entry);
+            try {
+                open(in);
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void open(InputStream in) throws IOException {
+        try {
+            request.open(in);
+        } finally {
+            releaseZipFile();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            request.close();
+        } finally {
+            releaseZipFile();
+        }
+    }
+
+    private void releaseZipFile() {
+        if (zipFile != null) {
+            zipFile.release();
+            zipFile = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte getByte(long position) {
+        return request.getByte(position);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ByteReader getReader() {
+        return request.getReader();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getFileName() {
+        return request.getFileName();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long size() {
+        return request.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getExtension() {
+        return request.getExtension();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InputStream getSourceInputStream() throws IOException {
+        return request.getSourceInputStream();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public File getSourceFile() throws IOException {
+        return request.getSourceFile();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RequestMetaData getRequestMetaData() {
+        return request.getRequestMetaData();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RequestIdentifier getIdentifier() {
+        return request.getIdentifier();
+    }
+
+}
@@ -0,0 +1,32 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.archive;
+
+import java.io.IOException;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+
+/**
+ * An archive handler which records its progress through an archive
+ * in a checkpoint, and can carry on from a checkpoint it recorded before.
+ *
+ * @version 6.0.0
+ */
+public interface ResumableArchiveHandler extends ArchiveHandler {
+
+    /**
+     * Handles an archive, skipping the entries already walked in the checkpoint
+     * and recording each entry walked from then on.
+     * @param request the originator request.
+     * @param checkpoint the progress through the archive so far.
+     * @throws IOException if there was an error reading from the input stream
+     */
+    void handle(IdentificationRequest request, ArchiveCheckpoint checkpoint) throws IOException;
+
+}
@@ -0,0 +1,72 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.schlichtherle.io.rof.ReadOnlyFile;
+import de.schlichtherle.util.zip.BasicZipFile;
+
+/**
+ * A zip file whose entries can be read by several threads at once, which
+ * stays open until everything holding a reference to it has released it.
+ *
+ * <p/>The zip file starts with one reference, held by whoever opened it.
+ *
+ * @version 6.0.0
+ */
+final class SharedZipFile extends BasicZipFile {
+
+    private final Log log = LogFactory.getLog(getClass());
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    /**
+     * Opens a zip file, reading its central directory.
+     * @param file the zip file.
+     * @throws IOException if the zip file could not be read.
+     */
+    SharedZipFile(File file) throws IOException {
+        super(file);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected ReadOnlyFile createReadOnlyFile(File file) throws IOException {
+        return new ConcurrentReadOnlyFile(file);
+    }
+
+    /**
+     * Adds a reference to the zip file.  Must only be called
+     * by something which already holds a reference.
+     */
+    void acquire() {
+        references.incrementAndGet();
+    }
+
+    /**
+     * Releases a reference to the zip file, closing it if it was the last one.
+     */
+    void release() {
+        if (references.decrementAndGet() == 0) {
+            try {
+                close();
+            } catch (IOException e) {
+                log.warn("Could not close zip file: " + e.getMessage(), e);
+            }
+        }
+    }
+
+}
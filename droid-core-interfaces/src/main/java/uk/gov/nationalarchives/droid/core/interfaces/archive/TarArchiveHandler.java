@@ -12,7 +12,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -34,7 +33,7 @@ import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
  * @author rflitcroft
  *
  */
-public class TarArchiveHandler implements ArchiveHandler {
+public class TarArchiveHandler implements ResumableArchiveHandler {
 
     private AsynchDroid droidCore;
     private IdentificationRequestFactory factory;
@@ -45,6 +44,14 @@ public class TarArchiveHandler implements ArchiveHandler {
      */
     @Override
     public final void handle(IdentificationRequest request) throws IOException {
+        handle(request, null);
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void handle(IdentificationRequest request, ArchiveCheckpoint checkpoint) throws IOException {
 
         InputStream tarIn = request.getSourceInputStream(); 
         try {
@@ -57,8 +64,8 @@ public class TarArchiveHandler implements ArchiveHandler {
                     }
                 };
                 
-                TarArchiveWalker walker = new TarArchiveWalker(request.getIdentifier(), in);
-                walker.walk(iterable);
+                TarArchiveWalker walker = new TarArchiveWalker(request.getIdentifier(), in, checkpoint);
+                walker.walk(iterable, checkpoint);
             } finally {
                 if (in != null) {
                     in.close();
@@ -183,9 +190,10 @@ public class TarArchiveHandler implements ArchiveHandler {
         private final long originatorNodeId;
         private final URI parentName;
         private final ArchiveInputStream in;
-        private final Map<String, ResourceId> directories = new HashMap<String, ResourceId>();
+        private final Map<String, ResourceId> directories;
         
-        TarArchiveWalker(RequestIdentifier parent, ArchiveInputStream in) {
+        TarArchiveWalker(RequestIdentifier parent, ArchiveInputStream in, ArchiveCheckpoint checkpoint) {
+            this.directories = getDirectories(checkpoint);
             this.in = in;
             this.parentId = parent.getResourceId();
             this.parentName = parent.getUri();
@@ -280,6 +288,7 @@ public class TarArchiveHandler implements ArchiveHandler {
                 String dirName = FilenameUtils.getName(pathName.substring(0, pathName.length() - 1));
                 longestParentId = submitDirectory(parentName, entry, dirName, longestParentId);
                 directories.put(pathName, longestParentId);
+                directoryDone(pathName, longestParentId);
             }
             
             return longestParentId;
@@ -24,8 +24,9 @@ public class TarEntryRequestFactory extends AbstractArchiveRequestFactory {
      */
     @Override
     public final IdentificationRequest newRequest(RequestMetaData metaData, RequestIdentifier identifier) {
+        startRunningHash(metaData);
         final IdentificationRequest request =
-            new TarEntryIdentificationRequest(metaData, identifier, getTempDirLocation());
+            new TarEntryIdentificationRequest(metaData, identifier, getTempDirLocation(), getMemorySpool());
         
         return request;
     }
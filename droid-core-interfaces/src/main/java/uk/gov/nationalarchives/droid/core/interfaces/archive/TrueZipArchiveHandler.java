@@ -12,7 +12,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -31,10 +30,20 @@ import uk.gov.nationalarchives.droid.core.interfaces.ResultHandler;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
 
 /**
+ * Handles zip archives, submitting each entry in the archive for identification.
+ *
+ * <p/>Entries of zip files on the file system are submitted unopened, holding only their
+ * central directory entries, and are inflated by the threads which identify them.
+ * Zip files nested in other archives are read from the bytes of their request, wherever
+ * those are held, and their entries are inflated as they are submitted, as the bytes of
+ * the nested zip are released once it has been handled.
+ *
  * @author a-mpalmer
  *
  */
-public class TrueZipArchiveHandler implements ArchiveHandler {
+public class TrueZipArchiveHandler implements ResumableArchiveHandler {
+
+    private static final String FILE_SCHEME = "file";
 
     private AsynchDroid droidCore;
     private IdentificationRequestFactory factory;
@@ -45,24 +54,46 @@ public class TrueZipArchiveHandler implements ArchiveHandler {
      */
     @Override
     public void handle(IdentificationRequest request) throws IOException {
-        
-        final BasicZipFile zipFile = new BasicZipFile(request.getSourceFile());
-        try {
-            Iterable<ZipEntry> iterable = new Iterable<ZipEntry>() {
-                @Override
-                public final Iterator<ZipEntry> iterator() {
-                    return new ZipFileIterator(zipFile);
-                }
-            };
+        handle(request, null);
+    }
     
-            ZipArchiveWalker walker = new ZipArchiveWalker(request.getIdentifier(), zipFile);  
-            walker.walk(iterable);
-        } finally {
-            if (zipFile != null) {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void handle(IdentificationRequest request, ArchiveCheckpoint checkpoint) throws IOException {
+        
+        if (FILE_SCHEME.equals(request.getIdentifier().getUri().getScheme())) {
+            final SharedZipFile zipFile = new SharedZipFile(request.getSourceFile());
+            try {
+                walk(request, zipFile, zipFile, checkpoint);
+            } finally {
+                // Entries not yet identified keep the zip file open until they are opened:
+                zipFile.release();
+            }
+        } else {
+            final BasicZipFile zipFile = new BasicZipFile(
+                    new ByteReaderReadOnlyFile(request.getReader(), request.size()));
+            try {
+                walk(request, zipFile, null, checkpoint);
+            } finally {
                 zipFile.close();
             }
         }
     }
+    
+    private void walk(IdentificationRequest request, final BasicZipFile zipFile, SharedZipFile sharedZipFile,
+            ArchiveCheckpoint checkpoint) throws IOException {
+        Iterable<ZipEntry> iterable = new Iterable<ZipEntry>() {
+            @Override
+            public final Iterator<ZipEntry> iterator() {
+                return new ZipFileIterator(zipFile);
+            }
+        };
+
+        ZipArchiveWalker walker = new ZipArchiveWalker(request.getIdentifier(), zipFile, sharedZipFile, checkpoint);  
+        walker.walk(iterable, checkpoint);
+    }
 
     /**
      * @param parentName
@@ -97,12 +128,14 @@ public class TrueZipArchiveHandler implements ArchiveHandler {
      * @param parentName the name of the parent file
      * @param entryName the name of the Zip entry
      * @param file the Truezip zipFile
+     * @param sharedFile the zip file as a shared zip file, if the entry is to be opened
+     * by the thread which identifies it, or null to open the entry now.
      * @param correlationId an ID to correlate this submission to
      * @param originatorNodeId the ID of the originator node
      * @throws IOException if there was an error accessing the input stream 'in'
      */
     final void submit(ZipEntry entry, String entryName, URI parentName, 
-            BasicZipFile file, ResourceId correlationId, long originatorNodeId) 
+            BasicZipFile file, SharedZipFile sharedFile, ResourceId correlationId, long originatorNodeId) 
         throws IOException {
         
         long size = entry.getSize();
@@ -118,16 +151,26 @@ public class TrueZipArchiveHandler implements ArchiveHandler {
         identifier.setParentResourceId(correlationId);
 
         IdentificationRequest request = factory.newRequest(metaData, identifier);
-        InputStream in = null;
-        try {
-            in = file.getInputStream(entry);
-            request.open(in);
-        } finally {
-            if (in != null) {
-                in.close();
+        if (sharedFile != null) {
+            request = new LazyZipEntryRequest(request, sharedFile, entry);
+        } else {
+            InputStream in = null;
+            try {
+                in = file.getInputStream(entry);
+                request.open(in);
+            } finally {
+                if (in != null) {
+                    in.close();
+                }
             }
         }
-        droidCore.submit(request);
+        try {
+            droidCore.submit(request);
+        } catch (RuntimeException e) {
+            // a request which was never submitted must still let go of the zip file.
+            request.close();
+            throw e;
+        }
     }
     
     /**
@@ -192,13 +235,17 @@ public class TrueZipArchiveHandler implements ArchiveHandler {
     private final class ZipArchiveWalker extends ArchiveFileWalker<ZipEntry> {
         
         private final BasicZipFile zipFile;
+        private final SharedZipFile sharedZipFile;
         private final ResourceId parentId;
         private final long originatorNodeId;
         private final URI parentName;
-        private final Map<String, ResourceId> directories = new HashMap<String, ResourceId>();
+        private final Map<String, ResourceId> directories;
         
-        ZipArchiveWalker(RequestIdentifier identifier, BasicZipFile zipFile) {
+        ZipArchiveWalker(RequestIdentifier identifier, BasicZipFile zipFile, SharedZipFile sharedZipFile,
+                ArchiveCheckpoint checkpoint) {
+            this.directories = getDirectories(checkpoint);
             this.zipFile = zipFile;
+            this.sharedZipFile = sharedZipFile;
             this.parentId = identifier.getResourceId();
             this.parentName = identifier.getUri();
             this.originatorNodeId = identifier.getAncestorId();
@@ -235,6 +282,7 @@ public class TrueZipArchiveHandler implements ArchiveHandler {
                 String dirName = FilenameUtils.getName(pathName.substring(0, pathName.length() - 1));
                 longestParentId = submitDirectory(parentName, entry, dirName, longestParentId);
                 directories.put(pathName, longestParentId);
+                directoryDone(pathName, longestParentId);
             }
             
             return longestParentId;
@@ -259,7 +307,7 @@ public class TrueZipArchiveHandler implements ArchiveHandler {
             // If there is a file, submit the file:
             entryName = FilenameUtils.getName(entryName);
             if (!entryName.isEmpty()) {
-                submit(entry, entryName, parentName, zipFile, correlationId, originatorNodeId);
+                submit(entry, entryName, parentName, zipFile, sharedZipFile, correlationId, originatorNodeId);
             }
         }
     }
@@ -26,8 +26,9 @@ public class ZipEntryRequestFactory extends AbstractArchiveRequestFactory {
     @Override
     public final ZipEntryIdentificationRequest newRequest(RequestMetaData metaData, RequestIdentifier identifier) {
         
+        startRunningHash(metaData);
         final ZipEntryIdentificationRequest request = new ZipEntryIdentificationRequest(
-                metaData, identifier, getTempDirLocation());
+                metaData, identifier, getTempDirLocation(), getMemorySpool());
         return request;
     }
     
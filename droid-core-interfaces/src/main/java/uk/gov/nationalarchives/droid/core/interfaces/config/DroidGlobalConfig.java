@@ -52,7 +52,7 @@ public class DroidGlobalConfig {
     private static final String DATABASE_DURABILITY = "database.durability";
     
     // UPDATE THIS SCHEMA VERSION IF THE DATABASE SCHEMA CHANGES.
-    private static final String TEMPLATE_SCHEMA_VERSION = "schema 6.03";
+    private static final String TEMPLATE_SCHEMA_VERSION = "schema 6.04";
 
 
     
@@ -81,6 +81,9 @@ public enum DroidGlobalProperty {
     /** Generate hashes for each file analysed?. */
     GENERATE_HASH("profile.generateHash", PropertyType.BOOLEAN, true),
     
+    /** The hash algorithm, or comma separated algorithms, to generate hashes with. */
+    HASH_ALGORITHM("profile.hashAlgorithm", PropertyType.TEXT, true),
+    
     /** CSV Export one row per format. */
     CSV_EXPORT_ROW_PER_FORMAT("export.rowPerFormat", PropertyType.BOOLEAN, true),
     
@@ -93,6 +96,42 @@ public enum DroidGlobalProperty {
     /** Whether to match all extensions, or just ones without another signature attached. */
     EXTENSION_ALL("profile.matchAllExtensions", PropertyType.BOOLEAN, true),
     
+    /** The number of identification threads, or zero to use one per available processor. */
+    THREAD_COUNT("profile.threadCount", PropertyType.INTEGER, true),
+    
+    /** The number of files waiting to be identified, or zero to hand files straight to a free thread. */
+    WORK_QUEUE_SIZE("profile.workQueueSize", PropertyType.INTEGER, true),
+    
+    /** The number of threads identifying containers and expanding archives, or zero for one per processor. */
+    POST_PROCESS_THREAD_COUNT("profile.postProcessThreadCount", PropertyType.INTEGER, true),
+    
+    /** The number of containers and archives which can wait for a post-process thread. */
+    POST_PROCESS_QUEUE_SIZE("profile.postProcessQueueSize", PropertyType.INTEGER, true),
+    
+    /** The number of threads listing directories ahead of the profile walk, or zero for none. */
+    DIRECTORY_LISTING_THREADS("profile.directoryListingThreads", PropertyType.INTEGER, true),
+    
+    /** Whether to read large files through memory mapping rather than heap buffers. */
+    MEMORY_MAP_FILES("profile.memoryMapFiles", PropertyType.BOOLEAN, true),
+    
+    /** The minimum size of file, in bytes, which is read through memory mapping. */
+    MEMORY_MAP_THRESHOLD("profile.memoryMapThreshold", PropertyType.LONG, true),
+    
+    /** Whether byte sequences at the start of files are matched with compiled automata. */
+    AUTOMATON_MATCHING("profile.automatonMatching", PropertyType.BOOLEAN, true),
+    
+    /** Whether snapshots of parsed signature files are stored next to them. */
+    SIGNATURE_SNAPSHOTS("profile.signatureSnapshots", PropertyType.BOOLEAN, true),
+    
+    /** The memory, in bytes, shared by all archive entries held in memory rather than in temp files. */
+    ARCHIVE_SPOOL_MEMORY("profile.archiveSpoolMemory", PropertyType.LONG, true),
+    
+    /** The largest archive entry, in bytes, which can be held in memory rather than in a temp file. */
+    ARCHIVE_SPOOL_MAX_ENTRY_SIZE("profile.archiveSpoolMaxEntrySize", PropertyType.LONG, true),
+    
+    /** Where new profiles keep their results: in the profile "database", or in append-only "segments". */
+    RESULTS_STORE("profile.resultsStore", PropertyType.TEXT, true),
+    
     /** Whether the database plays safe (=true), or gains performance
      * but loses resilience in the face of failures (=false).
      */
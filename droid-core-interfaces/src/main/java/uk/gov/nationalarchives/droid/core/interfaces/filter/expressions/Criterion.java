@@ -26,5 +26,13 @@ public interface Criterion {
      */
     String toEjbQl(QueryBuilder parent);
 
+    /**
+     * Evaluates this criterion against the property values of a single object.
+     * As in a query, a comparison with a missing value does not hold.
+     * @param values the property values to evaluate against
+     * @return whether the criterion holds for the values
+     */
+    boolean evaluate(PropertyValues values);
+
 
 }
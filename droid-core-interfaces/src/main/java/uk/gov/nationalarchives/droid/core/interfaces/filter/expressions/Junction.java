@@ -77,4 +77,22 @@ public abstract class Junction implements Criterion {
         
         return sb.toString();
     }
+
+    /**
+     * An empty junction is not part of a query, so it holds for any values.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean evaluate(PropertyValues values) {
+        if (criteria.isEmpty()) {
+            return true;
+        }
+        final boolean and = "AND".equals(op);
+        for (Criterion criterion : criteria) {
+            if (criterion.evaluate(values) != and) {
+                return !and;
+            }
+        }
+        return and;
+    }
 }
@@ -0,0 +1,24 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.filter.expressions;
+
+/**
+ * Supplies the values of the properties a criterion names, so a criterion
+ * can be evaluated against a single object rather than turned into a query.
+ * 
+ * @version 6.0.0
+ */
+public interface PropertyValues {
+
+    /**
+     * @param propertyName the name of a property, as given to {@link Restrictions}.
+     * @return the value of the property, or null if it has no value.
+     */
+    Object getValue(String propertyName);
+}
@@ -94,6 +94,19 @@ public final class QueryBuilder implements Criterion {
         
         return sb.toString();
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean evaluate(PropertyValues values) {
+        for (Criterion criterion : criteria) {
+            if (criterion != null && !criterion.evaluate(values)) {
+                return false;
+            }
+        }
+        return true;
+    }
     
     /**
      * 
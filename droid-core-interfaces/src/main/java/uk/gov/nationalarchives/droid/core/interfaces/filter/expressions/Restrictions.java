@@ -9,7 +9,9 @@
 package uk.gov.nationalarchives.droid.core.interfaces.filter.expressions;
 
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
@@ -28,6 +30,8 @@ public final class Restrictions {
     private static final char SPACE = ' ';
     private static final String AND = "AND";
     private static final String OR = "OR";
+    private static final String LIKE = "LIKE";
+    private static final String NOT_LIKE = "NOT LIKE";
 
     private Restrictions() { }
     
@@ -98,7 +102,7 @@ public final class Restrictions {
      * @return a like expression
      */
     public static Criterion like(String propertyName, String value) {
-        return new SimpleExpression(propertyName, value, "LIKE");
+        return new SimpleExpression(propertyName, value, LIKE);
     }
     
     /**
@@ -108,7 +112,7 @@ public final class Restrictions {
      * @return a not like expression
      */
     public static Criterion notLike(String propertyName, String value) {
-        return new SimpleExpression(propertyName, value, "NOT LIKE");
+        return new SimpleExpression(propertyName, value, NOT_LIKE);
     }
 
     /**
@@ -190,6 +194,7 @@ public final class Restrictions {
         private String op;
         private String propertyName;
         private Object[] values;
+        private volatile Pattern likePattern;
         
         /**
          * 
@@ -219,6 +224,42 @@ public final class Restrictions {
             return values;
         }
         
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean evaluate(PropertyValues propertyValues) {
+            final Object actual = propertyValues.getValue(propertyName);
+            final Object expected = values[0];
+            if (actual == null || expected == null) {
+                return false;
+            }
+            if (LIKE.equals(op) || NOT_LIKE.equals(op)) {
+                Pattern pattern = likePattern;
+                if (pattern == null) {
+                    pattern = toPattern(expected.toString());
+                    likePattern = pattern;
+                }
+                return pattern.matcher(actual.toString()).matches() == LIKE.equals(op);
+            }
+            final int comparison = compare(actual, expected);
+            boolean result;
+            if ("=".equals(op)) {
+                result = comparison == 0;
+            } else if ("!=".equals(op)) {
+                result = comparison != 0;
+            } else if (">".equals(op)) {
+                result = comparison > 0;
+            } else if ("<".equals(op)) {
+                result = comparison < 0;
+            } else if (">=".equals(op)) {
+                result = comparison >= 0;
+            } else {
+                result = comparison <= 0;
+            }
+            return result;
+        }
+        
         /**
          * {@inheritDoc}
          */
@@ -242,6 +283,69 @@ public final class Restrictions {
         
     }
     
+    /*
+     * Compares values the way the database compares the columns they are stored in:
+     * numbers by value, dates by time, and enumerations by their ordinals.
+     */
+    @SuppressWarnings("unchecked")
+    private static int compare(Object actual, Object expected) {
+        int comparison;
+        if (actual instanceof Enum<?> || expected instanceof Enum<?>) {
+            comparison = compareLongs(ordinal(actual), ordinal(expected));
+        } else if (actual instanceof Number && expected instanceof Number) {
+            final Number lhs = (Number) actual;
+            final Number rhs = (Number) expected;
+            if (isIntegral(lhs) && isIntegral(rhs)) {
+                comparison = compareLongs(lhs.longValue(), rhs.longValue());
+            } else {
+                comparison = Double.compare(lhs.doubleValue(), rhs.doubleValue());
+            }
+        } else if (actual instanceof Date && expected instanceof Date) {
+            comparison = compareLongs(((Date) actual).getTime(), ((Date) expected).getTime());
+        } else if (actual instanceof Comparable<?> && actual.getClass().isInstance(expected)) {
+            comparison = ((Comparable<Object>) actual).compareTo(expected);
+        } else {
+            comparison = actual.toString().compareTo(expected.toString());
+        }
+        return comparison;
+    }
+    
+    private static long ordinal(Object value) {
+        return value instanceof Enum<?> ? ((Enum<?>) value).ordinal() : ((Number) value).longValue();
+    }
+    
+    private static boolean isIntegral(Number number) {
+        return number instanceof Long || number instanceof Integer 
+            || number instanceof Short || number instanceof Byte;
+    }
+    
+    private static int compareLongs(long lhs, long rhs) {
+        return lhs < rhs ? -1 : (lhs == rhs ? 0 : 1);
+    }
+    
+    /*
+     * Translates a LIKE pattern into a regular expression, in which % matches
+     * any run of characters and _ matches any single character.
+     */
+    private static Pattern toPattern(String like) {
+        final StringBuilder regex = new StringBuilder(like.length() + 8);
+        int literalStart = 0;
+        for (int i = 0; i < like.length(); i++) {
+            final char c = like.charAt(i);
+            if (c == '%' || c == '_') {
+                if (i > literalStart) {
+                    regex.append(Pattern.quote(like.substring(literalStart, i)));
+                }
+                regex.append(c == '%' ? ".*" : ".");
+                literalStart = i + 1;
+            }
+        }
+        if (literalStart < like.length()) {
+            regex.append(Pattern.quote(like.substring(literalStart)));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+    
     private static final class InExpression implements Criterion {
         
         private String propertyName;
@@ -271,6 +375,25 @@ public final class Restrictions {
                     + repeat("?, ", values.length - 1) + "?)";
         }
         
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean evaluate(PropertyValues propertyValues) {
+            final Object actual = propertyValues.getValue(propertyName);
+            if (actual == null) {
+                return false;
+            }
+            boolean found = false;
+            for (Object value : values) {
+                if (value != null && compare(actual, value) == 0) {
+                    found = true;
+                    break;
+                }
+            }
+            return found != inverse;
+        }
+        
         private static String repeat(String string, int times) {
             StringBuilder buf = new StringBuilder(string.length() * times);
             for (int i = 0; i < times; i++) {
@@ -316,6 +439,16 @@ public final class Restrictions {
         public String toEjbQl(QueryBuilder parent) {
             return '(' + lhs.toEjbQl(parent) + ' ' + op + ' ' + rhs.toEjbQl(parent) + ')';
         }
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean evaluate(PropertyValues propertyValues) {
+            return AND.equals(op) 
+                ? lhs.evaluate(propertyValues) && rhs.evaluate(propertyValues)
+                : lhs.evaluate(propertyValues) || rhs.evaluate(propertyValues);
+        }
     }
     
     /**
@@ -376,6 +509,22 @@ public final class Restrictions {
             builder.append(") ");
             return builder.toString();
         }
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean evaluate(PropertyValues propertyValues) {
+            final boolean and = AND.equals(op);
+            boolean result = and;
+            for (int i = 0; i < propertyNames.size(); i++) {
+                if (values[i].equals(propertyValues.getValue(propertyNames.get(i))) != and) {
+                    result = !and;
+                    break;
+                }
+            }
+            return result != inverse;
+        }
     }
   
 }
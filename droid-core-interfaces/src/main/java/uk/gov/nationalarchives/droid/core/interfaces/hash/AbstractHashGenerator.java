@@ -0,0 +1,62 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.hash;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Base class for hash generators built on one or more message digests.
+ * <p/>Every digest is calculated over a single read of the input.
+ *
+ * @version 6.0.0
+ */
+public abstract class AbstractHashGenerator implements HashGenerator {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final String hash(InputStream in) throws IOException {
+        if (in == null) {
+            throw new IllegalArgumentException("Cannot hash a null input stream.");
+        }
+        return newRunningHash().getHash(in);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final RunningHash newRunningHash() {
+        return new RunningHash(newDigests());
+    }
+
+    /**
+     * @return new message digests, one for each algorithm this generator calculates.
+     */
+    protected abstract MessageDigest[] newDigests();
+
+    /**
+     * Returns a new message digest for a standard algorithm.
+     * @param algorithm the name of the algorithm.
+     * @return a new message digest.
+     * @throws IllegalStateException if the algorithm is not supported by the JVM.
+     */
+    protected static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
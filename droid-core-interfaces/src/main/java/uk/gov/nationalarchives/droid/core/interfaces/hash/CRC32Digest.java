@@ -0,0 +1,71 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.hash;
+
+import java.security.MessageDigest;
+import java.util.zip.CRC32;
+
+/**
+ * Adapts a CRC32 checksum to the message digest interface, so it can
+ * be calculated alongside other digests.
+ *
+ * @version 6.0.0
+ */
+final class CRC32Digest extends MessageDigest {
+
+    /**
+     * The name of the CRC32 algorithm.
+     */
+    static final String ALGORITHM = "CRC32";
+
+    private static final int DIGEST_LENGTH = 4;
+    private static final int BITS_PER_BYTE = 8;
+    private static final int BYTEMASK = 0xFF;
+
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Constructs a new CRC32 digest.
+     */
+    CRC32Digest() {
+        super(ALGORITHM);
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return DIGEST_LENGTH;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        crc.update(input);
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+        crc.update(input, offset, len);
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        final long value = crc.getValue();
+        crc.reset();
+        final byte[] digest = new byte[DIGEST_LENGTH];
+        for (int i = 0; i < DIGEST_LENGTH; i++) {
+            digest[i] = (byte) ((value >>> (BITS_PER_BYTE * (DIGEST_LENGTH - 1 - i))) & BYTEMASK);
+        }
+        return digest;
+    }
+
+    @Override
+    protected void engineReset() {
+        crc.reset();
+    }
+
+}
@@ -0,0 +1,36 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.hash;
+
+import java.security.MessageDigest;
+
+/**
+ * Generates CRC32 checksums, written as eight hex digits.
+ *
+ * @version 6.0.0
+ */
+public class CRC32HashGenerator extends AbstractHashGenerator {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAlgorithm() {
+        return CRC32Digest.ALGORITHM;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected MessageDigest[] newDigests() {
+        return new MessageDigest[] {new CRC32Digest()};
+    }
+
+}
@@ -0,0 +1,72 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.hash;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Calculates the hashes of several other generators over a single read
+ * of the input, sharing one buffer between all of them.
+ *
+ * <p/>The combined hash is the hash of each generator in turn, separated
+ * by commas, and the algorithm is named in the same way, e.g.
+ * <code>MD5,SHA-256</code>.
+ *
+ * @version 6.0.0
+ */
+public class CombinedHashGenerator extends AbstractHashGenerator {
+
+    /**
+     * The separator between the hashes and algorithm names of the combined generators.
+     */
+    public static final String SEPARATOR = ",";
+
+    private final List<AbstractHashGenerator> generators;
+    private final String algorithm;
+
+    /**
+     * @param generators the generators whose hashes are combined.
+     */
+    public CombinedHashGenerator(List<AbstractHashGenerator> generators) {
+        this.generators = new ArrayList<AbstractHashGenerator>(generators);
+        final StringBuilder names = new StringBuilder();
+        for (HashGenerator generator : generators) {
+            if (names.length() > 0) {
+                names.append(SEPARATOR);
+            }
+            names.append(generator.getAlgorithm());
+        }
+        algorithm = names.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected MessageDigest[] newDigests() {
+        final List<MessageDigest> digests = new ArrayList<MessageDigest>();
+        for (AbstractHashGenerator generator : generators) {
+            for (MessageDigest digest : generator.newDigests()) {
+                digests.add(digest);
+            }
+        }
+        return digests.toArray(new MessageDigest[digests.size()]);
+    }
+
+}
@@ -24,5 +24,16 @@ public interface HashGenerator {
      * @throws IOException if there was an error reading the input stream.
      */
     String hash(InputStream in) throws IOException;
+    
+    /**
+     * Creates a new hash which can be calculated while a request is read.
+     * @return a new running hash.
+     */
+    RunningHash newRunningHash();
+    
+    /**
+     * @return the name of the hash algorithm, e.g. MD5.
+     */
+    String getAlgorithm();
 
 }
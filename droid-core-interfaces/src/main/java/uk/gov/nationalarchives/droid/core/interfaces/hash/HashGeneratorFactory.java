@@ -0,0 +1,63 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.hash;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates hash generators from the names of their algorithms.
+ *
+ * <p/>Names are not case sensitive, and may be written with or without
+ * hyphens, e.g. <code>sha256</code> or <code>SHA-256</code>.  Several
+ * names separated by commas give a {@link CombinedHashGenerator}.
+ *
+ * @version 6.0.0
+ */
+public final class HashGeneratorFactory {
+
+    private HashGeneratorFactory() {
+    }
+
+    /**
+     * @param algorithms the algorithm name, or comma separated names, of the hashes to generate.
+     * @return a hash generator for the algorithms.
+     * @throws IllegalArgumentException if an algorithm is not known.
+     */
+    public static HashGenerator newHashGenerator(String algorithms) {
+        final List<AbstractHashGenerator> generators = new ArrayList<AbstractHashGenerator>();
+        for (String name : algorithms.split(CombinedHashGenerator.SEPARATOR)) {
+            if (name.trim().length() > 0) {
+                generators.add(newSingleHashGenerator(name));
+            }
+        }
+        if (generators.isEmpty()) {
+            throw new IllegalArgumentException("No hash algorithm specified.");
+        }
+        return generators.size() == 1 ? generators.get(0) : new CombinedHashGenerator(generators);
+    }
+
+    private static AbstractHashGenerator newSingleHashGenerator(String name) {
+        final String algorithm = name.trim().replace("-", "").toUpperCase();
+        final AbstractHashGenerator generator;
+        if ("MD5".equals(algorithm)) {
+            generator = new MD5HashGenerator();
+        } else if ("SHA1".equals(algorithm)) {
+            generator = new SHA1HashGenerator();
+        } else if ("SHA256".equals(algorithm)) {
+            generator = new SHA256HashGenerator();
+        } else if ("CRC32".equals(algorithm)) {
+            generator = new CRC32HashGenerator();
+        } else {
+            throw new IllegalArgumentException(String.format("Unknown hash algorithm: [%s]", name));
+        }
+        return generator;
+    }
+
+}
@@ -8,24 +8,31 @@
  */
 package uk.gov.nationalarchives.droid.core.interfaces.hash;
 
-import java.io.IOException;
-import java.io.InputStream;
-
-import org.apache.commons.codec.digest.DigestUtils;
+import java.security.MessageDigest;
 
 /**
+ * Generates MD5 hashes.
  * @author rflitcroft
  *
  */
-public class MD5HashGenerator implements HashGenerator {
+public class MD5HashGenerator extends AbstractHashGenerator {
+
+    private static final String ALGORITHM = "MD5";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAlgorithm() {
+        return ALGORITHM;
+    }
 
     /**
      * {@inheritDoc}
-     * @throws IOException 
      */
     @Override
-    public String hash(InputStream in) throws IOException {
-        return DigestUtils.md5Hex(in);
+    protected MessageDigest[] newDigests() {
+        return new MessageDigest[] {newDigest(ALGORITHM)};
     }
 
 }
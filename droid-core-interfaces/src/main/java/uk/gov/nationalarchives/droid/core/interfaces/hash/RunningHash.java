@@ -0,0 +1,176 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.hash;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * A hash which is calculated while the bytes of a request are read
+ * for identification, so the file does not have to be read again
+ * just to hash it.
+ *
+ * <p/>Bytes can be offered in any order, but the digest only consumes
+ * them when they carry on directly from the last byte hashed.  Anything
+ * which is not offered in order is read from the source when the hash
+ * is finished.
+ *
+ * <p/>A running hash belongs to a single request, and is not thread safe.
+ *
+ * @version 6.0.0
+ */
+public final class RunningHash {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final char SEPARATOR = ',';
+
+    private final MessageDigest[] digests;
+    private long bytesHashed;
+
+    /**
+     * @param digests the message digests to calculate.  If there is more than
+     *        one, the hash is each digest in turn, separated by commas.
+     */
+    public RunningHash(MessageDigest... digests) {
+        this.digests = digests;
+    }
+
+    /**
+     * Offers some bytes of the source to the hash.  Only the bytes
+     * following on from the last byte hashed are consumed.
+     *
+     * @param position the position in the source of the first byte offered.
+     * @param bytes the bytes to offer.
+     * @param offset the offset in the array of the first byte offered.
+     * @param length the number of bytes offered.
+     */
+    public void update(long position, byte[] bytes, int offset, int length) {
+        if (position <= bytesHashed && position + length > bytesHashed) {
+            final int skip = (int) (bytesHashed - position);
+            digest(bytes, offset + skip, length - skip);
+        }
+    }
+
+    /**
+     * Wraps an input stream, so all bytes read through it are offered to the hash.
+     *
+     * @param in the stream to wrap.
+     * @param position the position in the source of the next byte in the stream.
+     * @return an input stream which updates the hash as it is read.
+     */
+    public InputStream hashingStream(InputStream in, long position) {
+        return new HashingInputStream(in, position);
+    }
+
+    /**
+     * @return the number of bytes from the start of the source which have been hashed.
+     */
+    public long getBytesHashed() {
+        return bytesHashed;
+    }
+
+    /**
+     * Finishes the hash, reading any bytes of the source not already hashed.
+     *
+     * @param source a stream over the whole source, positioned at its start,
+     *        or null if the whole source has already been hashed.
+     * @return the hash, as a string of lower case hex digits.
+     * @throws IOException if there was an error reading the source.
+     */
+    public String getHash(InputStream source) throws IOException {
+        if (source != null) {
+            skipFully(source, bytesHashed);
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int bytesRead = source.read(buffer);
+            while (bytesRead >= 0) {
+                digest(buffer, 0, bytesRead);
+                bytesRead = source.read(buffer);
+            }
+        }
+        final StringBuilder hash = new StringBuilder();
+        for (MessageDigest digest : digests) {
+            if (hash.length() > 0) {
+                hash.append(SEPARATOR);
+            }
+            hash.append(Hex.encodeHex(digest.digest()));
+        }
+        return hash.toString();
+    }
+
+    private void digest(byte[] bytes, int offset, int length) {
+        for (MessageDigest digest : digests) {
+            digest.update(bytes, offset, length);
+        }
+        bytesHashed += length;
+    }
+
+    private static void skipFully(InputStream in, long bytesToSkip) throws IOException {
+        long remaining = bytesToSkip;
+        while (remaining > 0) {
+            final long skipped = in.skip(remaining);
+            if (skipped > 0) {
+                remaining -= skipped;
+            } else if (in.read() >= 0) {
+                remaining--;
+            } else {
+                throw new IOException("The source is shorter than the bytes already hashed.");
+            }
+        }
+    }
+
+    /**
+     * Offers bytes to the hash as they are read through it.
+     */
+    private final class HashingInputStream extends FilterInputStream {
+
+        private long position;
+
+        HashingInputStream(InputStream in, long position) {
+            super(in);
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int value = super.read();
+            if (value >= 0) {
+                update(position++, new byte[] {(byte) value}, 0, 1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int bytesRead = super.read(b, off, len);
+            if (bytesRead > 0) {
+                update(position, b, off, bytesRead);
+                position += bytesRead;
+            }
+            return bytesRead;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long skipped = super.skip(n);
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+}
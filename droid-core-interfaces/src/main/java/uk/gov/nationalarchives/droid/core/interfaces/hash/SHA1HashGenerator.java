@@ -0,0 +1,38 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.hash;
+
+import java.security.MessageDigest;
+
+/**
+ * Generates SHA-1 hashes.
+ *
+ * @version 6.0.0
+ */
+public class SHA1HashGenerator extends AbstractHashGenerator {
+
+    private static final String ALGORITHM = "SHA-1";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAlgorithm() {
+        return ALGORITHM;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected MessageDigest[] newDigests() {
+        return new MessageDigest[] {newDigest(ALGORITHM)};
+    }
+
+}
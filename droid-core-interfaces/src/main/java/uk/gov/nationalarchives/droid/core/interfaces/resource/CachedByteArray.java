@@ -15,14 +15,20 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
 
+import net.domesdaybook.reader.Window;
+import net.domesdaybook.reader.WindowReader;
+
 /**
+ * Holds all the bytes of a small binary in a single array,
+ * which can be read as a single {@link Window}.
  * @author a-mpalmer
  *
  */
-public final class CachedByteArray implements CachedBytes {
+public final class CachedByteArray implements CachedBytes, WindowReader {
 
     private File source;
     private final byte[] bytes;
+    private final Window window;
     private int maxSize;
     
     /**
@@ -36,6 +42,7 @@ public final class CachedByteArray implements CachedBytes {
     public CachedByteArray(byte[] bytes, int maxSize) {
         this.bytes = bytes;
         this.maxSize = maxSize;
+        this.window = new Window(bytes, 0, bytes.length);
     }
     
     /**
@@ -84,4 +91,12 @@ public final class CachedByteArray implements CachedBytes {
         return bytes[(int) position];
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Window getWindow(long position) {
+        return window.contains(position) ? window : null;
+    }
+
 }
@@ -18,17 +18,24 @@ import java.io.RandomAccessFile;
 import java.util.Arrays;
 import java.util.Map;
 
+import net.domesdaybook.reader.Window;
+import net.domesdaybook.reader.WindowReader;
+
 import org.apache.commons.collections.FunctorException;
 import org.apache.commons.collections.Transformer;
 import org.apache.commons.collections.map.LRUMap;
 import org.apache.commons.collections.map.LazyMap;
 
+import uk.gov.nationalarchives.droid.core.interfaces.hash.RunningHash;
+
 
 /**
+ * Caches blocks of a file in byte arrays, each of which can be
+ * read a {@link Window} at a time.
  * @author Matt Palmer
  *
  */
-public final class CachedByteArrays implements CachedBytes {
+public final class CachedByteArrays implements CachedBytes, WindowReader {
 
     private static final String READ_ONLY = "r";
     
@@ -39,7 +46,9 @@ public final class CachedByteArrays implements CachedBytes {
     private long currentBufferStart;
     private long currentBufferEnd;
     private byte[] currentBuffer;
+    private Window currentWindow;
     private int limit; // if block is less than cache size.
+    private RunningHash runningHash;
 
     /**
      * Creates a new Cached Binary.
@@ -71,6 +80,14 @@ public final class CachedByteArrays implements CachedBytes {
         raf = file;
     }
     
+    /**
+     * Sets a hash to offer each block to as it is first read from the file.
+     * @param runningHash the hash to update, or null if not hashing.
+     */
+    void setRunningHash(RunningHash runningHash) {
+        this.runningHash = runningHash;
+    }
+    
     /**
      * Transformer for building a buffer.
      * @author rflitcroft
@@ -82,8 +99,12 @@ public final class CachedByteArrays implements CachedBytes {
             final Long block = (Long) input;
             try {
                 final byte[] buffer = new byte[bufferCapacity];
-                raf.seek(block);
-                ResourceUtils.readBuffer(raf, buffer);
+                final RandomAccessFile file = getRaf();
+                file.seek(block);
+                final int bytesRead = ResourceUtils.readBuffer(file, buffer);
+                if (runningHash != null) {
+                    runningHash.update(block, buffer, 0, bytesRead);
+                }
                 return buffer;
             } catch (IOException e) {
                 final String message = "Error reading from file into CachedByteArray.";
@@ -107,6 +128,30 @@ public final class CachedByteArrays implements CachedBytes {
         }
         return currentBuffer[(int) (position - currentBufferStart)];
     }
+
+    /**
+     * Gets the cached block holding the given position as a window.
+     * @param position the position, p
+     * @return the window holding the byte at position p, or null if the position is negative.
+     */
+    @Override
+    public Window getWindow(long position) {
+        final Window window = currentWindow;
+        if (window != null && window.contains(position)) {
+            return window;
+        }
+        if (position < 0) {
+            return null;
+        }
+        final long blockStart = position - (position % bufferCapacity);
+        final byte[] block = cache.get(blockStart);
+        final Window blockWindow = new Window(block, blockStart, Math.min(block.length, bufferCapacity));
+        if (!blockWindow.contains(position)) {
+            return null;
+        }
+        currentWindow = blockWindow;
+        return blockWindow;
+    }
     
 
     /**
@@ -147,7 +192,7 @@ public final class CachedByteArrays implements CachedBytes {
     public InputStream getSourceInputStream() throws IOException {
         InputStream in = null;
         try {
-            if (raf == null) {
+            if (source == null) {
                 byte[] bytes = cache.get(0L);
                 if (bytes.length > limit) {
                     bytes = Arrays.copyOf(bytes, limit);
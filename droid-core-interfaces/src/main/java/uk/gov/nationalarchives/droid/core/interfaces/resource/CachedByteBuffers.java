@@ -20,6 +20,8 @@ import java.nio.channels.FileChannel;
 import java.util.Map;
 
 import net.domesdaybook.reader.ByteReader;
+import net.domesdaybook.reader.Window;
+import net.domesdaybook.reader.WindowReader;
 
 //CHECKSTYLE:OFF getting wrong order of import style warnings.
 import org.apache.commons.collections.FunctorException;
@@ -30,10 +32,11 @@ import org.apache.commons.collections.map.LazyMap;
 
 /**
  * Wraps a binary data source to allow efficient Random Access reading.
+ * Blocks held in buffers backed by arrays can be read a {@link Window} at a time.
  * @author rflitcroft
  *
  */
-public final class CachedByteBuffers implements ByteReader, CachedBytes {
+public final class CachedByteBuffers implements ByteReader, CachedBytes, WindowReader {
 
     private static final String READ_ONLY = "r";
 
@@ -45,6 +48,7 @@ public final class CachedByteBuffers implements ByteReader, CachedBytes {
     private long currentBufferStart;
     private long currentBufferEnd;
     private ByteBuffer currentBuffer;
+    private Window currentWindow;
     
     /**
      * Creates a new Cached Binary.
@@ -113,6 +117,34 @@ public final class CachedByteBuffers implements ByteReader, CachedBytes {
         }
         return currentBuffer.get((int) (position - currentBufferStart));
     }
+
+    /**
+     * Gets the cached buffer holding the given position as a window.
+     * @param position the position, p
+     * @return the window holding the byte at position p, or null if
+     * the position is outside the buffers, or the buffer has no array.
+     */
+    @Override
+    public Window getWindow(long position) {
+        final Window window = currentWindow;
+        if (window != null && window.contains(position)) {
+            return window;
+        }
+        if (position < 0) {
+            return null;
+        }
+        final long blockStart = position - (position % bufferCapacity);
+        final ByteBuffer buffer = cache.get(blockStart);
+        if (!buffer.hasArray() || buffer.arrayOffset() != 0) {
+            return null;
+        }
+        final Window blockWindow = new Window(buffer.array(), blockStart, buffer.limit());
+        if (!blockWindow.contains(position)) {
+            return null;
+        }
+        currentWindow = blockWindow;
+        return blockWindow;
+    }
     
     /**
      * {@inheritDoc}
@@ -0,0 +1,153 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.resource;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Reads a local file through read-only memory mapped windows, rather than
+ * copying blocks of it into byte arrays held on the heap.
+ *
+ * <p/>Each window is mapped the first time a byte inside it is read,
+ * and stays mapped until the cache is closed.  Windows are kept to a fixed
+ * size, so very large files never need a single huge mapping.
+ *
+ * <p/>Mapped windows have no array to read from, so unlike the other caches
+ * this does not hand out {@link net.domesdaybook.reader.Window}s, and is
+ * always read a byte at a time.
+ *
+ * @version 6.0.0
+ */
+public final class CachedMappedByteBuffers implements CachedBytes {
+
+    private static final String READ_ONLY = "r";
+
+    private final int windowCapacity;
+    private File source;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private long length;
+    private MappedByteBuffer[] windows;
+    private long currentWindowStart;
+    private long currentWindowEnd = -1;
+    private MappedByteBuffer currentWindow;
+
+    /**
+     * Creates a new memory mapped cache.  No file is mapped until
+     * the source file is set.
+     * @param windowCapacity the size of each mapped window of the file.
+     */
+    public CachedMappedByteBuffers(int windowCapacity) {
+        this.windowCapacity = windowCapacity;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setSourceFile(File sourceFile) throws IOException {
+        close();
+        source = sourceFile;
+        raf = new RandomAccessFile(source, READ_ONLY);
+        channel = raf.getChannel();
+        length = channel.size();
+        final long numWindows = (length + windowCapacity - 1) / windowCapacity;
+        windows = new MappedByteBuffer[(int) numWindows];
+        currentWindow = null;
+        currentWindowStart = 0;
+        currentWindowEnd = -1;
+    }
+
+    /**
+     * Gets the byte at the given position.
+     * @param position the position, p
+     * @return the byte at position p
+     * @throws IndexOutOfBoundsException if the position is not inside the file.
+     */
+    @Override
+    public byte readByte(long position) {
+        if (position > currentWindowEnd || position < currentWindowStart) {
+            if (position < 0 || position >= length) {
+                throw new IndexOutOfBoundsException("No byte at position [" + position + "]");
+            }
+            final int windowIndex = (int) (position / windowCapacity);
+            currentWindow = getWindow(windowIndex);
+            currentWindowStart = (long) windowIndex * windowCapacity;
+            currentWindowEnd = currentWindowStart + currentWindow.limit() - 1;
+        }
+        return currentWindow.get((int) (position - currentWindowStart));
+    }
+
+    private MappedByteBuffer getWindow(int windowIndex) {
+        MappedByteBuffer window = windows[windowIndex];
+        if (window == null) {
+            final long windowStart = (long) windowIndex * windowCapacity;
+            final long windowLength = Math.min(windowCapacity, length - windowStart);
+            try {
+                window = channel.map(MapMode.READ_ONLY, windowStart, windowLength);
+            } catch (IOException e) {
+                final String message = String.format("Error mapping file [%s] at position [%d]",
+                        source, windowStart);
+                throw new IllegalStateException(message, e);
+            }
+            windows[windowIndex] = window;
+        }
+        return window;
+    }
+
+    /**
+     * Closes the underlying file and releases the mapped windows.
+     * Windows are unmapped by the garbage collector once they are no longer
+     * referenced.
+     * @throws IOException if the file could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        windows = null;
+        currentWindow = null;
+        currentWindowStart = 0;
+        currentWindowEnd = -1;
+        if (raf != null) {
+            raf.close();
+            raf = null;
+            channel = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InputStream getSourceInputStream() throws IOException {
+        return new FileInputStream(source);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public File getSourceFile() {
+        return source;
+    }
+
+    /**
+     * @return the length of the mapped file.
+     */
+    long getLength() {
+        return length;
+    }
+
+}
@@ -0,0 +1,168 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.List;
+import java.util.Vector;
+
+import net.domesdaybook.reader.Window;
+import net.domesdaybook.reader.WindowReader;
+
+/**
+ * Holds all the bytes of an entry spooled into memory by a {@link MemorySpool}:
+ * the first buffer read from the entry, followed by blocks from the spool.
+ * Each buffer or block can be read as a {@link Window}.
+ *
+ * <p/>The blocks are returned to the spool when this is closed, so
+ * nothing read from it, including its source input stream, can be used after that.
+ *
+ * @version 6.0.0
+ */
+final class CachedSpooledBytes implements CachedBytes, WindowReader {
+
+    private final MemorySpool spool;
+    private final byte[] firstBuffer;
+    private final int blockSize;
+    private final long length;
+    private List<byte[]> blockList;
+    private byte[][] blocks;
+    private File source;
+    private Window currentWindow;
+
+    /**
+     * @param spool the spool the blocks came from.
+     * @param firstBuffer the first buffer of the entry.
+     * @param blocks the blocks holding the rest of the entry.
+     * @param length the length of the entry.
+     */
+    CachedSpooledBytes(MemorySpool spool, byte[] firstBuffer, List<byte[]> blocks, long length) {
+        this.spool = spool;
+        this.firstBuffer = firstBuffer;
+        this.blockSize = spool.getBlockSize();
+        this.length = length;
+        this.blockList = blocks;
+        this.blocks = blocks.toArray(new byte[blocks.size()][]);
+    }
+
+    /**
+     * Gets the byte at the given position.
+     * @param position the position, p
+     * @return the byte at position p
+     * @throws IndexOutOfBoundsException if the position is not inside the entry.
+     */
+    @Override
+    public byte readByte(long position) {
+        if (position < firstBuffer.length) {
+            return firstBuffer[(int) position];
+        }
+        // The last block is reused from the pool, so may hold bytes of another entry past the end of this one:
+        if (position >= length) {
+            throw new IndexOutOfBoundsException("No byte at position [" + position + "]");
+        }
+        final long blockPosition = position - firstBuffer.length;
+        return blocks[(int) (blockPosition / blockSize)][(int) (blockPosition % blockSize)];
+    }
+
+    /**
+     * Gets the buffer or block holding the given position as a window.
+     * @param position the position, p
+     * @return the window holding the byte at position p, or null if the position is outside the entry.
+     */
+    @Override
+    public Window getWindow(long position) {
+        final Window window = currentWindow;
+        if (window != null && window.contains(position)) {
+            return window;
+        }
+        if (position < 0 || position >= length) {
+            return null;
+        }
+        final Window positionWindow;
+        if (position < firstBuffer.length) {
+            positionWindow = new Window(firstBuffer, 0, firstBuffer.length);
+        } else {
+            final int blockIndex = (int) ((position - firstBuffer.length) / blockSize);
+            final long blockStart = firstBuffer.length + (long) blockIndex * blockSize;
+            positionWindow = new Window(blocks[blockIndex], blockStart, (int) Math.min(blockSize, length - blockStart));
+        }
+        currentWindow = positionWindow;
+        return positionWindow;
+    }
+
+    /**
+     * Returns the blocks to the spool.
+     * @throws IOException never.
+     */
+    @Override
+    public void close() throws IOException {
+        if (blockList != null) {
+            spool.releaseBlocks(blockList);
+            blockList = null;
+            blocks = null;
+            currentWindow = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InputStream getSourceInputStream() throws IOException {
+        final long blocksLength = length - firstBuffer.length;
+        final int lastBlockLength = (int) (blocksLength - (long) (blocks.length - 1) * blockSize);
+        return new SequenceInputStream(new ByteArrayInputStream(firstBuffer),
+                newBlocksInputStream(blockList, lastBlockLength));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setSourceFile(File sourceFile) {
+        this.source = sourceFile;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public File getSourceFile() {
+        return source;
+    }
+
+    /**
+     * @return the length of the entry.
+     */
+    long getLength() {
+        return length;
+    }
+
+    /**
+     * Returns an input stream over a list of blocks, all of which are full except the last.
+     * @param blocks the blocks to read.
+     * @param lastBlockLength the number of bytes in the last block.
+     * @return an input stream over the bytes in the blocks.
+     */
+    static InputStream newBlocksInputStream(List<byte[]> blocks, int lastBlockLength) {
+        final Vector<InputStream> streams = new Vector<InputStream>(blocks.size());
+        final int lastBlock = blocks.size() - 1;
+        for (int blockIndex = 0; blockIndex <= lastBlock; blockIndex++) {
+            final byte[] block = blocks.get(blockIndex);
+            final int blockLength = blockIndex == lastBlock ? lastBlockLength : block.length;
+            streams.add(new ByteArrayInputStream(block, 0, blockLength));
+        }
+        return new SequenceInputStream(streams.elements());
+    }
+
+}
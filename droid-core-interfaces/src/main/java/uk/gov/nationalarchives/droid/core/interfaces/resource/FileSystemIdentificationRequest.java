@@ -16,6 +16,7 @@ import net.domesdaybook.reader.ByteReader;
 
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.hash.RunningHash;
 
 /**
  * Encapsulated the binary data for a file system identification request.
@@ -26,6 +27,7 @@ public class FileSystemIdentificationRequest implements IdentificationRequest {
 
     private static final int BUFFER_CACHE_CAPACITY = 16;
     private static final int CAPACITY = 32 * 1024; 
+    private static final int MAPPED_WINDOW_CAPACITY = 64 * 1024 * 1024;
 
     private final String extension;
     private final String fileName;
@@ -36,6 +38,7 @@ public class FileSystemIdentificationRequest implements IdentificationRequest {
 
     private final int lruCapacity;
     private final int bufferCapacity;
+    private final boolean memoryMapped;
     
     private RequestMetaData requestMetaData;
 
@@ -45,9 +48,10 @@ public class FileSystemIdentificationRequest implements IdentificationRequest {
      * @param lruCapacity the buffer cache capacity
      * @param identifier the request's identifier
      * @param bufferCapacity the buffer capacity
+     * @param memoryMapped whether to read the file through memory mapped windows
      */
     FileSystemIdentificationRequest(RequestMetaData metaData, RequestIdentifier identifier,
-            int lruCapacity, int bufferCapacity) {
+            int lruCapacity, int bufferCapacity, boolean memoryMapped) {
         this.identifier = identifier;
         
         requestMetaData = metaData;
@@ -57,7 +61,19 @@ public class FileSystemIdentificationRequest implements IdentificationRequest {
         extension = ResourceUtils.getExtension(fileName);
         this.lruCapacity = lruCapacity;
         this.bufferCapacity = bufferCapacity;
-
+        this.memoryMapped = memoryMapped;
+    }
+    
+    /**
+     * Constructs a new identification request.
+     * @param metaData the metaData about the binary.
+     * @param lruCapacity the buffer cache capacity
+     * @param identifier the request's identifier
+     * @param bufferCapacity the buffer capacity
+     */
+    FileSystemIdentificationRequest(RequestMetaData metaData, RequestIdentifier identifier,
+            int lruCapacity, int bufferCapacity) {
+        this(metaData, identifier, lruCapacity, bufferCapacity, false);
     }
     
     /**
@@ -66,7 +82,19 @@ public class FileSystemIdentificationRequest implements IdentificationRequest {
      * @param identifier the request's identifier
      */
     public FileSystemIdentificationRequest(RequestMetaData metaData, RequestIdentifier identifier) {
-        this(metaData, identifier, BUFFER_CACHE_CAPACITY, CAPACITY);
+        this(metaData, identifier, BUFFER_CACHE_CAPACITY, CAPACITY, false);
+    }
+    
+    /**
+     * Constructs a new identification request.
+     * @param metaData the metaData about the binary.
+     * @param identifier the request's identifier
+     * @param memoryMapped whether to read the file through memory mapped windows,
+     *        instead of copying blocks of it into a cache on the heap.
+     */
+    public FileSystemIdentificationRequest(RequestMetaData metaData, RequestIdentifier identifier,
+            boolean memoryMapped) {
+        this(metaData, identifier, BUFFER_CACHE_CAPACITY, CAPACITY, memoryMapped);
     }
     
     /**
@@ -74,9 +102,21 @@ public class FileSystemIdentificationRequest implements IdentificationRequest {
      */
     @Override
     public final void open(InputStream in) throws IOException {
+        final File theFile = new File(identifier.getUri());
+        if (memoryMapped) {
+            // The file is read directly through the mapping, so the stream is not needed.
+            cachedBinary = new CachedMappedByteBuffers(MAPPED_WINDOW_CAPACITY);
+            cachedBinary.setSourceFile(theFile);
+            return;
+        }
+        
         /* using normal stream access and CachedByteArrays */
+        final RunningHash runningHash = requestMetaData.getRunningHash();
         byte[] firstBuffer = new byte[bufferCapacity];
         int bytesRead = ResourceUtils.readBuffer(in, firstBuffer);
+        if (runningHash != null && bytesRead > 0) {
+            runningHash.update(0, firstBuffer, 0, bytesRead);
+        }
         if (bytesRead < 1) {
             firstBuffer = new byte[0];
             cachedBinary = new CachedByteArray(firstBuffer, 0);
@@ -85,7 +125,10 @@ public class FileSystemIdentificationRequest implements IdentificationRequest {
             // firstBuffer = Arrays.copyOf(firstBuffer, bytesRead);
             cachedBinary = new CachedByteArray(firstBuffer, bytesRead);
         } else {
-            cachedBinary = new CachedByteArrays(lruCapacity, bufferCapacity, firstBuffer, bufferCapacity);
+            final CachedByteArrays blocks =
+                new CachedByteArrays(lruCapacity, bufferCapacity, firstBuffer, bufferCapacity);
+            blocks.setRunningHash(runningHash);
+            cachedBinary = blocks;
         }
         
         /* using nio and CachedByteBuffers
@@ -110,7 +153,6 @@ public class FileSystemIdentificationRequest implements IdentificationRequest {
         // Always set source file, so we can access it for file-oriented processing
         // if necessary (e.g. container identification of zip files, if the file
         // proves to be a zip file).
-        final File theFile = new File(identifier.getUri());
         cachedBinary.setSourceFile(theFile);
     }
     
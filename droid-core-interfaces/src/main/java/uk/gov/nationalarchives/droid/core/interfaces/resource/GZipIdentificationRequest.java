@@ -16,6 +16,7 @@ import net.domesdaybook.reader.ByteReader;
 
 //CHECKSTYLE:OFF - getting wrong import order - no idea why.
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 //CHECKSTYLE:ON
@@ -23,6 +24,7 @@ import org.apache.commons.logging.LogFactory;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveFileUtils;
+import uk.gov.nationalarchives.droid.core.interfaces.hash.RunningHash;
 
 /**
  * @author rflitcroft
@@ -43,6 +45,7 @@ public class GZipIdentificationRequest implements IdentificationRequest {
     private final int bufferCapacity;
     private final int lruCapacity;
     private File tempDir;
+    private final MemorySpool memorySpool;
     
     private RequestMetaData requestMetaData;
     private final RequestIdentifier identifier;
@@ -59,6 +62,18 @@ public class GZipIdentificationRequest implements IdentificationRequest {
         this(metaData, identifier, BUFFER_CACHE_CAPACITY, CAPACITY, tempDir);
     }
 
+    /**
+     * Constructs a new GZip file resource.
+     * @param metaData the name of the tar entry
+     * @param identifier request identification object
+     * @param tempDir the location to write temp files.
+     * @param memorySpool the spool to hold the entry in memory, or null to always write it to a temp file.
+     */
+    public GZipIdentificationRequest(RequestMetaData metaData, RequestIdentifier identifier, File tempDir,
+            MemorySpool memorySpool) {
+        this(metaData, identifier, BUFFER_CACHE_CAPACITY, CAPACITY, tempDir, memorySpool);
+    }
+
     /**
      * Constructs a new GZip file resource.
      * @param metaData the name of the tar entry
@@ -69,6 +84,20 @@ public class GZipIdentificationRequest implements IdentificationRequest {
      */
     GZipIdentificationRequest(RequestMetaData metaData, RequestIdentifier identifier,
             int lruCapacity, int bufferCapacity, File tempDir) {
+        this(metaData, identifier, lruCapacity, bufferCapacity, tempDir, null);
+    }
+
+    /**
+     * Constructs a new GZip file resource.
+     * @param metaData the name of the tar entry
+     * @param identifier request identification object
+     * @param bufferCapacity the buffer cache capacity
+     * @param lruCapacity the cache block size
+     * @param tempDir the location to write temp files.
+     * @param memorySpool the spool to hold the entry in memory, or null to always write it to a temp file.
+     */
+    GZipIdentificationRequest(RequestMetaData metaData, RequestIdentifier identifier,
+            int lruCapacity, int bufferCapacity, File tempDir, MemorySpool memorySpool) {
         this.identifier = identifier;
         
         String path = identifier.getUri().getSchemeSpecificPart();
@@ -78,6 +107,7 @@ public class GZipIdentificationRequest implements IdentificationRequest {
         this.bufferCapacity = bufferCapacity;
         this.lruCapacity = lruCapacity;
         this.tempDir = tempDir;
+        this.memorySpool = memorySpool;
         this.requestMetaData = metaData;
 
     }
@@ -88,8 +118,12 @@ public class GZipIdentificationRequest implements IdentificationRequest {
     @Override
     public final void open(InputStream in) throws IOException {
         /* using normal stream access and CachedByteArrays */
+        final RunningHash runningHash = requestMetaData.getRunningHash();
         byte[] firstBuffer = new byte[bufferCapacity];
         int bytesRead = ResourceUtils.readBuffer(in, firstBuffer);
+        if (runningHash != null && bytesRead > 0) {
+            runningHash.update(0, firstBuffer, 0, bytesRead);
+        }
         if (bytesRead < 1) {
             firstBuffer = new byte[0];
             cachedBinary = new CachedByteArray(firstBuffer, 0);
@@ -100,10 +134,20 @@ public class GZipIdentificationRequest implements IdentificationRequest {
             cachedBinary = new CachedByteArray(firstBuffer, bytesRead);
             size = (long) bytesRead;
         } else {
-            cachedBinary = new CachedByteArrays(lruCapacity, bufferCapacity, firstBuffer, bufferCapacity);
-            tempFile = ArchiveFileUtils.writeEntryToTemp(tempDir, firstBuffer, in);
-            cachedBinary.setSourceFile(tempFile);
-            size = tempFile.length();
+            // The rest of the entry is hashed as it is spooled:
+            final InputStream remainder = runningHash == null ? in : runningHash.hashingStream(in, bytesRead);
+            if (memorySpool == null) {
+                cachedBinary = new CachedByteArrays(lruCapacity, bufferCapacity, firstBuffer, bufferCapacity);
+                tempFile = ArchiveFileUtils.writeEntryToTemp(tempDir, firstBuffer, remainder);
+                cachedBinary.setSourceFile(tempFile);
+                size = tempFile.length();
+            } else {
+                // Held in memory if it fits, or written to a temp file if not:
+                final CountingInputStream counter = new CountingInputStream(remainder);
+                cachedBinary = memorySpool.spool(firstBuffer, counter, tempDir, lruCapacity);
+                tempFile = cachedBinary.getSourceFile();
+                size = bytesRead + counter.getByteCount();
+            }
         }                
         /* using nio and byte buffers:
         ReadableByteChannel channel = Channels.newChannel(in);
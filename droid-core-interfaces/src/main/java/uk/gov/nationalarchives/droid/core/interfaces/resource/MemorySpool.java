@@ -0,0 +1,159 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveFileUtils;
+
+/**
+ * Spools archive entries into memory, spilling them to temporary files
+ * only when they are too big, or when the memory set aside for spooling
+ * is used up.
+ *
+ * <p/>Entries are held in fixed size blocks, which are returned to a pool
+ * when the entry is closed and reused by later entries.  The memory budget
+ * is shared by every thread spooling through the same spool, so the memory
+ * held by entries waiting to be identified is bounded however many of them
+ * there are.
+ *
+ * @version 6.0.0
+ */
+public final class MemorySpool {
+
+    private static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    private final long maxBlocks;
+    private final long maxEntrySize;
+    private final int blockSize;
+    private final AtomicLong blocksInUse = new AtomicLong();
+    private final ConcurrentLinkedQueue<byte[]> freeBlocks = new ConcurrentLinkedQueue<byte[]>();
+
+    /**
+     * Creates a memory spool.
+     * @param memoryBudget the most memory, in bytes, the spool can use for all entries together.
+     * @param maxEntrySize the largest entry, in bytes, which can be spooled into memory.
+     */
+    public MemorySpool(long memoryBudget, long maxEntrySize) {
+        this(memoryBudget, maxEntrySize, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a memory spool.
+     * @param memoryBudget the most memory, in bytes, the spool can use for all entries together.
+     * @param maxEntrySize the largest entry, in bytes, which can be spooled into memory.
+     * @param blockSize the size of each block of memory an entry is held in.
+     */
+    public MemorySpool(long memoryBudget, long maxEntrySize, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("The block size must be at least one byte.");
+        }
+        this.maxBlocks = Math.max(0, memoryBudget / blockSize);
+        this.maxEntrySize = maxEntrySize;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Spools the rest of an entry, after the first buffer of it has been read.
+     *
+     * <p/>If the entry fits in the memory left in the budget, and is no bigger than the
+     * largest entry allowed, the bytes returned are held in memory.  Otherwise the whole entry
+     * is written to a temporary file, which the caller can get from
+     * {@link CachedBytes#getSourceFile()}, and must delete once the entry is closed.
+     *
+     * @param firstBuffer the first buffer of the entry, which must be full.
+     * @param in the rest of the entry.
+     * @param tempDir the directory to write a temporary file to, if the entry spills to disk.
+     * @param lruCapacity the number of blocks of a temporary file to cache.
+     * @return the bytes of the entry.
+     * @throws IOException if the entry could not be read, or a temporary file could not be written.
+     */
+    public CachedBytes spool(byte[] firstBuffer, InputStream in, File tempDir, int lruCapacity)
+        throws IOException {
+        final List<byte[]> blocks = new ArrayList<byte[]>();
+        boolean spooled = false;
+        try {
+            long length = firstBuffer.length;
+            int lastBlockLength = blockSize;
+            boolean spill = false;
+            while (!spill && lastBlockLength == blockSize) {
+                final byte[] block = allocateBlock();
+                if (block == null) {
+                    spill = true;
+                } else {
+                    blocks.add(block);
+                    lastBlockLength = ResourceUtils.readBuffer(in, block);
+                    length += lastBlockLength;
+                    spill = length > maxEntrySize;
+                }
+            }
+            final CachedBytes bytes;
+            if (spill) {
+                final InputStream rest = new SequenceInputStream(
+                        CachedSpooledBytes.newBlocksInputStream(blocks, lastBlockLength), in);
+                final File tempFile = ArchiveFileUtils.writeEntryToTemp(tempDir, firstBuffer, rest);
+                bytes = new CachedByteArrays(lruCapacity, firstBuffer.length, firstBuffer, firstBuffer.length);
+                bytes.setSourceFile(tempFile);
+            } else {
+                bytes = new CachedSpooledBytes(this, firstBuffer, blocks, length);
+                spooled = true;
+            }
+            return bytes;
+        } finally {
+            if (!spooled) {
+                releaseBlocks(blocks);
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes of the budget in use by open entries.
+     */
+    public long getMemoryInUse() {
+        return blocksInUse.get() * blockSize;
+    }
+
+    /**
+     * @return the size of each block of memory an entry is held in.
+     */
+    int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Returns blocks to the pool, once the entry held in them is closed.
+     * @param blocks the blocks to return.
+     */
+    void releaseBlocks(List<byte[]> blocks) {
+        for (final byte[] block : blocks) {
+            freeBlocks.offer(block);
+        }
+        blocksInUse.addAndGet(-blocks.size());
+    }
+
+    private byte[] allocateBlock() {
+        long inUse;
+        do {
+            inUse = blocksInUse.get();
+            if (inUse >= maxBlocks) {
+                return null;
+            }
+        } while (!blocksInUse.compareAndSet(inUse, inUse + 1));
+        final byte[] block = freeBlocks.poll();
+        return block == null ? new byte[blockSize] : block;
+    }
+
+}
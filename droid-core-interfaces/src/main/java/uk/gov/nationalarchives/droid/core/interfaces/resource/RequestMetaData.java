@@ -8,6 +8,7 @@
  */
 package uk.gov.nationalarchives.droid.core.interfaces.resource;
 
+import uk.gov.nationalarchives.droid.core.interfaces.hash.RunningHash;
 
 /**
  * @author rflitcroft
@@ -19,6 +20,8 @@ public class RequestMetaData {
     private final Long time;
     private final String name;
     private String hash;
+    private String hashAlgorithm;
+    private RunningHash runningHash;
 
     /**
      * @param size - the size in bytes of the request data
@@ -65,4 +68,34 @@ public class RequestMetaData {
     public final String getHash() {
         return hash;
     }
+    
+    /**
+     * @param hashAlgorithm the name of the algorithm the hash was generated with.
+     */
+    public final void setHashAlgorithm(String hashAlgorithm) {
+        this.hashAlgorithm = hashAlgorithm;
+    }
+    
+    /**
+     * @return the name of the algorithm the hash was generated with.
+     */
+    public final String getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    /**
+     * @param runningHash a hash to calculate while the request data is read,
+     *        or null if no hash is being calculated.
+     */
+    public final void setRunningHash(RunningHash runningHash) {
+        this.runningHash = runningHash;
+    }
+    
+    /**
+     * @return the hash being calculated while the request data is read,
+     *         or null if no hash is being calculated.
+     */
+    public final RunningHash getRunningHash() {
+        return runningHash;
+    }
 }
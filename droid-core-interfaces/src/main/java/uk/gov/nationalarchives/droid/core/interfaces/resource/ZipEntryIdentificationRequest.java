@@ -12,6 +12,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -20,6 +21,7 @@ import net.domesdaybook.reader.ByteReader;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveFileUtils;
+import uk.gov.nationalarchives.droid.core.interfaces.hash.RunningHash;
 
 /**
  * Identification request encapsulating a zipped resource.
@@ -43,6 +45,7 @@ public class ZipEntryIdentificationRequest implements IdentificationRequest {
     private final int lruCapacity;
     private final int bufferCapacity;
     private File tempDir;
+    private final MemorySpool memorySpool;
     
     private final RequestMetaData requestMetaData;
     private final RequestIdentifier identifier;
@@ -58,6 +61,18 @@ public class ZipEntryIdentificationRequest implements IdentificationRequest {
     public ZipEntryIdentificationRequest(RequestMetaData metaData, RequestIdentifier identifier, File tempDir) {
         this(metaData, identifier, BUFFER_CACHE_CAPACITY, CAPACITY, tempDir);
     }
+
+    /**
+     * Constructs a new Zip file resource.
+     * @param metaData meta data about the request
+     * @param identifier request identifier
+     * @param tempDir the location to write temp files.
+     * @param memorySpool the spool to hold the entry in memory, or null to always write it to a temp file.
+     */
+    public ZipEntryIdentificationRequest(RequestMetaData metaData, RequestIdentifier identifier, File tempDir,
+            MemorySpool memorySpool) {
+        this(metaData, identifier, BUFFER_CACHE_CAPACITY, CAPACITY, tempDir, memorySpool);
+    }
     
     /**
      * Constructs a new Zip file resource.
@@ -69,6 +84,20 @@ public class ZipEntryIdentificationRequest implements IdentificationRequest {
      */
     ZipEntryIdentificationRequest(RequestMetaData metaData, RequestIdentifier identifier,
             int lruCapacity, int bufferCapacity, File tempDir) {
+        this(metaData, identifier, lruCapacity, bufferCapacity, tempDir, null);
+    }
+
+    /**
+     * Constructs a new Zip file resource.
+     * @param metaData meta data about the request
+     * @param identifier request identifier
+     * @param lruCapacity the buffer cache capacity
+     * @param bufferCapacity the buffer capacity
+     * @param tempDir the location to write temp files.
+     * @param memorySpool the spool to hold the entry in memory, or null to always write it to a temp file.
+     */
+    ZipEntryIdentificationRequest(RequestMetaData metaData, RequestIdentifier identifier,
+            int lruCapacity, int bufferCapacity, File tempDir, MemorySpool memorySpool) {
         this.identifier = identifier;
         
         size = metaData.getSize();
@@ -80,6 +109,7 @@ public class ZipEntryIdentificationRequest implements IdentificationRequest {
         this.lruCapacity = lruCapacity;
         this.bufferCapacity = bufferCapacity;
         this.tempDir = tempDir;
+        this.memorySpool = memorySpool;
         this.requestMetaData = metaData;
         
     }
@@ -90,8 +120,12 @@ public class ZipEntryIdentificationRequest implements IdentificationRequest {
     @Override
     public final void open(InputStream in) throws IOException {
         /* using normal stream access and CachedByteArrays */
+        final RunningHash runningHash = requestMetaData.getRunningHash();
         byte[] firstBuffer = new byte[bufferCapacity];
         int bytesRead = ResourceUtils.readBuffer(in, firstBuffer);
+        if (runningHash != null && bytesRead > 0) {
+            runningHash.update(0, firstBuffer, 0, bytesRead);
+        }
         if (bytesRead < 1) {
             firstBuffer = new byte[0];
             cachedBinary = new CachedByteArray(firstBuffer, 0);
@@ -102,10 +136,20 @@ public class ZipEntryIdentificationRequest implements IdentificationRequest {
             cachedBinary = new CachedByteArray(firstBuffer, bytesRead);
             size = (long) bytesRead;
         } else {
-            cachedBinary = new CachedByteArrays(lruCapacity, bufferCapacity, firstBuffer, bufferCapacity);
-            tempFile = ArchiveFileUtils.writeEntryToTemp(tempDir, firstBuffer, in);
-            cachedBinary.setSourceFile(tempFile);
-            size = tempFile.length();
+            // The rest of the entry is hashed as it is spooled:
+            final InputStream remainder = runningHash == null ? in : runningHash.hashingStream(in, bytesRead);
+            if (memorySpool == null) {
+                cachedBinary = new CachedByteArrays(lruCapacity, bufferCapacity, firstBuffer, bufferCapacity);
+                tempFile = ArchiveFileUtils.writeEntryToTemp(tempDir, firstBuffer, remainder);
+                cachedBinary.setSourceFile(tempFile);
+                size = tempFile.length();
+            } else {
+                // Held in memory if it fits, or written to a temp file if not:
+                final CountingInputStream counter = new CountingInputStream(remainder);
+                cachedBinary = memorySpool.spool(firstBuffer, counter, tempDir, lruCapacity);
+                tempFile = cachedBinary.getSourceFile();
+                size = bytesRead + counter.getByteCount();
+            }
         }        
         
         /* using nio and bytebuffers
@@ -0,0 +1,518 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.signature;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * A binary snapshot of the SAX events of a signature file.  Replaying
+ * a snapshot into a content handler builds the same model as parsing
+ * the XML, without reading or parsing the XML again.
+ * <p/>
+ * Snapshots are keyed by a hash of the signature file, held in memory
+ * while anything still uses them, and optionally stored in a file next to
+ * the signature file, so later runs only need to hash the signature file
+ * to find its snapshot.  A stored snapshot is checked against its checksum,
+ * and every string it refers to, before it is used, and is deleted if it is corrupt.
+ *
+ * @version 6.0.0
+ */
+public final class SignatureFileSnapshot {
+
+    /** The extension added to the name of a signature file to name its snapshot. */
+    public static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+    private static final int MAGIC = 0x44534E50;
+    private static final int VERSION = 2;
+    private static final byte START_ELEMENT = 1;
+    private static final byte END_ELEMENT = 2;
+    private static final byte CHARACTERS = 3;
+    private static final int NAME_STRINGS = 3;
+    private static final int ATTRIBUTE_STRINGS = 5;
+    private static final String UTF8 = "UTF-8";
+    private static final int BUFFER_SIZE = 65536;
+    private static final int HEX_RADIX = 16;
+    private static final int BYTE_MASK = 0xFF;
+
+    private static final Log LOG = LogFactory.getLog(SignatureFileSnapshot.class);
+    private static final Map<String, WeakReference<SignatureFileSnapshot>> SNAPSHOTS =
+        new ConcurrentHashMap<String, WeakReference<SignatureFileSnapshot>>();
+
+    private final File signatureFile;
+    private final String hash;
+    private volatile Recording recording;
+
+    /**
+     * @param signatureFile the signature file the snapshot is of.
+     * @param hash a hash of the content of the signature file.
+     * @param strings the distinct strings of the signature file.
+     * @param events the events of the signature file, referring to the strings by index.
+     */
+    SignatureFileSnapshot(File signatureFile, String hash, String[] strings, byte[] events) {
+        this.signatureFile = signatureFile;
+        this.hash = hash;
+        this.recording = new Recording(strings, events);
+    }
+
+    /**
+     * Returns the snapshot of a signature file, from memory if the file has been
+     * read before in this JVM, from a stored snapshot if one exists for the current
+     * content of the file, or by parsing the file.
+     *
+     * @param signatureFile the signature file.
+     * @param store whether to store a snapshot next to the signature file if it was parsed.
+     * @return the snapshot of the signature file.
+     * @throws IOException if the signature file could not be read.
+     * @throws SAXException if the signature file is not valid XML.
+     */
+    public static SignatureFileSnapshot forFile(File signatureFile, boolean store)
+        throws IOException, SAXException {
+        final String hash = hash(signatureFile);
+        final WeakReference<SignatureFileSnapshot> held = SNAPSHOTS.get(hash);
+        SignatureFileSnapshot snapshot = held == null ? null : held.get();
+        if (snapshot == null) {
+            final File snapshotFile = getSnapshotFile(signatureFile);
+            snapshot = load(signatureFile, snapshotFile, hash);
+            if (snapshot == null) {
+                snapshot = record(signatureFile, hash);
+                if (store) {
+                    save(snapshot, snapshotFile);
+                }
+            }
+            hold(snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Parses the signature file again, replacing the events of this snapshot, and
+     * deletes any stored snapshot of the file.  Used when replaying the snapshot fails,
+     * so a snapshot which is corrupt in a way its checks did not find is not used again.
+     *
+     * @throws IOException if the signature file could not be read.
+     * @throws SAXException if the signature file is not valid XML.
+     */
+    public synchronized void reparse() throws IOException, SAXException {
+        final File snapshotFile = getSnapshotFile(signatureFile);
+        if (snapshotFile.exists() && !snapshotFile.delete()) {
+            LOG.warn(String.format("Could not delete signature snapshot [%s]", snapshotFile));
+        }
+        recording = record(signatureFile, hash).recording;
+    }
+
+    /**
+     * @return a hash of the content of the signature file.
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * Sends the events of the signature file to a content handler.
+     * Each element's namespace URI, local name and qualified name
+     * are those given by a namespace aware parser.
+     *
+     * @param handler the content handler to receive the events.
+     * @throws SAXException if the handler throws an exception.
+     */
+    public void replay(ContentHandler handler) throws SAXException {
+        final Recording current = recording;
+        final String[] strings = current.strings;
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(current.events));
+        final AttributesImpl attributes = new AttributesImpl();
+        try {
+            handler.startDocument();
+            while (in.available() > 0) {
+                final byte event = in.readByte();
+                if (event == START_ELEMENT) {
+                    final String uri = strings[in.readInt()];
+                    final String localName = strings[in.readInt()];
+                    final String qName = strings[in.readInt()];
+                    attributes.clear();
+                    final int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        attributes.addAttribute(strings[in.readInt()], strings[in.readInt()],
+                                strings[in.readInt()], strings[in.readInt()], strings[in.readInt()]);
+                    }
+                    handler.startElement(uri, localName, qName, attributes);
+                } else if (event == END_ELEMENT) {
+                    handler.endElement(strings[in.readInt()], strings[in.readInt()], strings[in.readInt()]);
+                } else {
+                    final char[] text = strings[in.readInt()].toCharArray();
+                    handler.characters(text, 0, text.length);
+                }
+            }
+            handler.endDocument();
+        } catch (IOException e) {
+            // Only thrown if the events are corrupt, as they are read from memory.
+            throw new SAXException(e);
+        }
+    }
+
+    private static SignatureFileSnapshot record(File signatureFile, String hash)
+        throws IOException, SAXException {
+        final SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        final Recorder recorder = new Recorder();
+        final InputStream in = new BufferedInputStream(new FileInputStream(signatureFile), BUFFER_SIZE);
+        try {
+            final XMLReader reader = factory.newSAXParser().getXMLReader();
+            reader.setContentHandler(recorder);
+            reader.parse(new InputSource(in));
+        } catch (ParserConfigurationException e) {
+            throw new SAXException(e);
+        } finally {
+            in.close();
+        }
+        return new SignatureFileSnapshot(signatureFile, hash, recorder.getStrings(), recorder.getEvents());
+    }
+
+    /*
+     * A snapshot of another version, or of different content, is ignored.  A snapshot
+     * which is not a snapshot at all, or fails its checks, is corrupt and is deleted,
+     * so the signature file is parsed instead, and the snapshot stored again if asked to.
+     */
+    private static SignatureFileSnapshot load(File signatureFile, File snapshotFile, String hash) {
+        SignatureFileSnapshot snapshot = null;
+        if (snapshotFile.isFile()) {
+            boolean corrupt = false;
+            try {
+                final long maxLength = snapshotFile.length();
+                final CheckedInputStream checked = new CheckedInputStream(
+                        new BufferedInputStream(new FileInputStream(snapshotFile), BUFFER_SIZE), new CRC32());
+                final DataInputStream in = new DataInputStream(checked);
+                try {
+                    corrupt = in.readInt() != MAGIC;
+                    if (!corrupt && in.readInt() == VERSION && hash.equals(in.readUTF())) {
+                        corrupt = true;
+                        final String[] strings = new String[readLength(in, maxLength)];
+                        for (int i = 0; i < strings.length; i++) {
+                            strings[i] = readString(in, maxLength);
+                        }
+                        final byte[] events = new byte[readLength(in, maxLength)];
+                        in.readFully(events);
+                        final long checksum = checked.getChecksum().getValue();
+                        if (in.readLong() != checksum) {
+                            throw new IOException("Checksum does not match");
+                        }
+                        checkEvents(strings.length, events);
+                        snapshot = new SignatureFileSnapshot(signatureFile, hash, strings, events);
+                        corrupt = false;
+                    }
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                LOG.warn(String.format("Could not read signature snapshot [%s]: %s", snapshotFile, e.getMessage()));
+            } catch (RuntimeException e) {
+                LOG.warn(String.format("Could not read signature snapshot [%s]: %s", snapshotFile, e.getMessage()));
+            }
+            if (corrupt && !snapshotFile.delete()) {
+                LOG.warn(String.format("Could not delete corrupt signature snapshot [%s]", snapshotFile));
+            }
+        }
+        return snapshot;
+    }
+
+    /*
+     * Reads through the events, checking each is one which can be recorded,
+     * and refers only to strings in the snapshot, so replaying them can't fail.
+     */
+    private static void checkEvents(int stringCount, byte[] events) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(events));
+        while (in.available() > 0) {
+            final byte event = in.readByte();
+            if (event == START_ELEMENT) {
+                checkStrings(in, stringCount, NAME_STRINGS);
+                final int count = in.readInt();
+                if (count < 0) {
+                    throw new IOException("Negative attribute count: " + count);
+                }
+                for (int i = 0; i < count; i++) {
+                    checkStrings(in, stringCount, ATTRIBUTE_STRINGS);
+                }
+            } else if (event == END_ELEMENT) {
+                checkStrings(in, stringCount, NAME_STRINGS);
+            } else if (event == CHARACTERS) {
+                checkStrings(in, stringCount, 1);
+            } else {
+                throw new IOException("Unknown event: " + event);
+            }
+        }
+    }
+
+    private static void checkStrings(DataInputStream in, int stringCount, int strings) throws IOException {
+        for (int i = 0; i < strings; i++) {
+            final int index = in.readInt();
+            if (index < 0 || index >= stringCount) {
+                throw new IOException("String index out of range: " + index);
+            }
+        }
+    }
+
+    /*
+     * The snapshot is written to a temporary file which is then renamed, so a
+     * snapshot being written is never read by another profile.  A snapshot
+     * which can't be written is not an error, as the signature file can still be parsed.
+     */
+    static void save(SignatureFileSnapshot snapshot, File snapshotFile) {
+        final File tempFile = new File(snapshotFile.getPath() + ".tmp");
+        final Recording saved = snapshot.recording;
+        try {
+            final CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE), new CRC32());
+            final DataOutputStream out = new DataOutputStream(checked);
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(snapshot.hash);
+                out.writeInt(saved.strings.length);
+                for (String string : saved.strings) {
+                    writeString(out, string);
+                }
+                out.writeInt(saved.events.length);
+                out.write(saved.events);
+                out.writeLong(checked.getChecksum().getValue());
+            } finally {
+                out.close();
+            }
+            if (!tempFile.renameTo(snapshotFile)) {
+                snapshotFile.delete();
+                if (!tempFile.renameTo(snapshotFile)) {
+                    throw new IOException("Could not rename " + tempFile);
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn(String.format("Could not write signature snapshot [%s]: %s", snapshotFile, e.getMessage()));
+            tempFile.delete();
+        }
+    }
+
+    private static String hash(File file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        final InputStream in = new FileInputStream(file);
+        try {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read = in.read(buffer);
+            while (read >= 0) {
+                digest.update(buffer, 0, read);
+                read = in.read(buffer);
+            }
+        } finally {
+            in.close();
+        }
+        final StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            final String digits = Integer.toString(b & BYTE_MASK, HEX_RADIX);
+            if (digits.length() == 1) {
+                hex.append('0');
+            }
+            hex.append(digits);
+        }
+        return hex.toString();
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        final byte[] bytes = string.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in, long maxLength) throws IOException {
+        final byte[] bytes = new byte[readLength(in, maxLength)];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    /*
+     * Nothing in a snapshot can be longer than the snapshot, so a corrupt
+     * length fails here rather than allocating a huge array.
+     */
+    private static int readLength(DataInputStream in, long maxLength) throws IOException {
+        final int length = in.readInt();
+        if (length < 0 || length > maxLength) {
+            throw new IOException("Length out of range: " + length);
+        }
+        return length;
+    }
+
+    private static File getSnapshotFile(File signatureFile) {
+        return new File(signatureFile.getPath() + SNAPSHOT_EXTENSION);
+    }
+
+    /*
+     * Snapshots are only held weakly, so one no longer used by any profile, such as the
+     * snapshot of a signature file which has since changed, is forgotten.
+     */
+    private static void hold(SignatureFileSnapshot snapshot) {
+        for (Iterator<WeakReference<SignatureFileSnapshot>> it = SNAPSHOTS.values().iterator(); it.hasNext();) {
+            if (it.next().get() == null) {
+                it.remove();
+            }
+        }
+        SNAPSHOTS.put(snapshot.hash, new WeakReference<SignatureFileSnapshot>(snapshot));
+    }
+
+    /**
+     * The strings and events recorded from a signature file, replaced together if it is parsed again.
+     */
+    private static final class Recording {
+
+        private final String[] strings;
+        private final byte[] events;
+
+        Recording(String[] strings, byte[] events) {
+            this.strings = strings;
+            this.events = events;
+        }
+    }
+
+    /**
+     * Records SAX events, with each distinct string stored once.
+     * Consecutive character events are recorded as one, as element
+     * text is accumulated by the model builder in any case.
+     */
+    private static final class Recorder extends DefaultHandler {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+        private final List<String> strings = new ArrayList<String>();
+        private final StringBuilder text = new StringBuilder();
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts)
+            throws SAXException {
+            try {
+                flushText();
+                out.writeByte(START_ELEMENT);
+                writeName(uri, localName, qName);
+                out.writeInt(atts.getLength());
+                for (int i = 0; i < atts.getLength(); i++) {
+                    writeName(atts.getURI(i), atts.getLocalName(i), atts.getQName(i));
+                    out.writeInt(indexOf(atts.getType(i)));
+                    out.writeInt(indexOf(atts.getValue(i)));
+                }
+            } catch (IOException e) {
+                throw new SAXException(e);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            try {
+                flushText();
+                out.writeByte(END_ELEMENT);
+                writeName(uri, localName, qName);
+            } catch (IOException e) {
+                throw new SAXException(e);
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            text.append(ch, start, length);
+        }
+
+        String[] getStrings() {
+            return strings.toArray(new String[strings.size()]);
+        }
+
+        byte[] getEvents() throws IOException {
+            flushText();
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private void flushText() throws IOException {
+            if (text.length() > 0) {
+                out.writeByte(CHARACTERS);
+                out.writeInt(indexOf(text.toString()));
+                text.setLength(0);
+            }
+        }
+
+        private void writeName(String uri, String localName, String qName) throws IOException {
+            out.writeInt(indexOf(uri));
+            out.writeInt(indexOf(localName));
+            out.writeInt(indexOf(qName));
+        }
+
+        private int indexOf(String string) {
+            final String value = string == null ? "" : string;
+            Integer index = stringIndexes.get(value);
+            if (index == null) {
+                index = strings.size();
+                strings.add(value);
+                stringIndexes.put(value, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Forgets the snapshots held in memory.  Snapshots already handed out are unaffected.
+     */
+    static void clearSnapshots() {
+        SNAPSHOTS.clear();
+    }
+
+    /**
+     * @return the number of snapshots held in memory which are still in use.
+     */
+    static int countSnapshots() {
+        int count = 0;
+        for (WeakReference<SignatureFileSnapshot> held : SNAPSHOTS.values()) {
+            if (held.get() != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -23,6 +23,7 @@ import static org.mockito.Matchers.anyBoolean;
 
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -111,6 +112,73 @@ public class TarArchiveHandlerTest {
         
     }
     
+    @Test
+    public void testHandleTarFileRecordsCheckpoint() throws Exception {
+        File file = new File(getClass().getResource("/saved.tar").getFile());
+        ResourceId directoryId = new ResourceId(40L, "X");
+        
+        TarArchiveHandler handler = new TarArchiveHandler();
+        handler.setFactory(new TarEntryRequestFactory());
+        handler.setDroidCore(mock(AsynchDroid.class));
+        ResultHandler resultHandler = mock(ResultHandler.class);
+        when(resultHandler.handleDirectory(any(IdentificationResult.class), 
+                any(ResourceId.class), anyBoolean())).thenReturn(directoryId);
+        handler.setResultHandler(resultHandler);
+        
+        ArchiveCheckpoint checkpoint = new ArchiveCheckpoint(30L, "TAR");
+        handler.handle(newTarRequest(file), checkpoint);
+        
+        assertEquals(7, checkpoint.getEntriesDone());
+        assertEquals(2, checkpoint.getDirectories().size());
+        assertEquals(directoryId, checkpoint.getDirectories().get("saved/db/"));
+    }
+    
+    @Test
+    public void testResumeTarFileFromCheckpoint() throws Exception {
+        File file = new File(getClass().getResource("/saved.tar").getFile());
+        ResourceId savedId = new ResourceId(40L, "X");
+        ResourceId dbId = new ResourceId(41L, "Y");
+        
+        // The directories and the first two files were done before:
+        ArchiveCheckpoint checkpoint = new ArchiveCheckpoint(30L, "TAR");
+        checkpoint.addDirectory("saved/", savedId);
+        checkpoint.addDirectory("saved/db/", dbId);
+        for (int i = 0; i < 4; i++) {
+            checkpoint.entryDone();
+        }
+        
+        TarArchiveHandler handler = new TarArchiveHandler();
+        handler.setFactory(new TarEntryRequestFactory());
+        AsynchDroid droidCore = mock(AsynchDroid.class);
+        handler.setDroidCore(droidCore);
+        ResultHandler resultHandler = mock(ResultHandler.class);
+        handler.setResultHandler(resultHandler);
+        
+        handler.handle(newTarRequest(file), checkpoint);
+        
+        verify(resultHandler, never()).handleDirectory(any(IdentificationResult.class), 
+                any(ResourceId.class), anyBoolean());
+        ArgumentCaptor<IdentificationRequest> captor = ArgumentCaptor.forClass(IdentificationRequest.class);
+        verify(droidCore, times(3)).submit(captor.capture());
+        List<IdentificationRequest> requests = captor.getAllValues();
+        assertEquals("file4", requests.get(0).getFileName());
+        assertEquals(dbId, requests.get(0).getIdentifier().getParentResourceId());
+        assertEquals("service.properties", requests.get(1).getFileName());
+        assertEquals("profile.xml", requests.get(2).getFileName());
+        assertEquals(savedId, requests.get(2).getIdentifier().getParentResourceId());
+        assertEquals(7, checkpoint.getEntriesDone());
+    }
+    
+    private IdentificationRequest newTarRequest(File file) throws IOException {
+        IdentificationRequest originalRequest = mock(IdentificationRequest.class);
+        RequestIdentifier originalIdentifier = new RequestIdentifier(file.toURI());
+        originalIdentifier.setAncestorId(30L);
+        originalIdentifier.setNodeId(30L);
+        when(originalRequest.getIdentifier()).thenReturn(originalIdentifier);
+        when(originalRequest.getSourceInputStream()).thenReturn(new FileInputStream(file));
+        return originalRequest;
+    }
+    
     @Test
     public void testZipEntryRequestHandlerGeneratesCorrectRequestMetaData() throws IOException {
         
@@ -0,0 +1,275 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import uk.gov.nationalarchives.droid.core.interfaces.AsynchDroid;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.LazyIdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
+import uk.gov.nationalarchives.droid.core.interfaces.ResultHandler;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.CachedByteArray;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.MemorySpool;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.ZipEntryIdentificationRequest;
+
+public class TrueZipArchiveHandlerTest {
+
+    private static File tmpDir;
+
+    @BeforeClass
+    public static void createTmpFileDirectory() {
+        tmpDir = new File("tmp_truezip");
+        tmpDir.mkdir();
+    }
+
+    @AfterClass
+    public static void removeTmpDir() {
+        FileUtils.deleteQuietly(tmpDir);
+    }
+
+    @Test
+    public void testEntriesOfFileSystemZipAreOpenedByIdentificationThreads() throws Exception {
+        File file = new File(getClass().getResource("/persistence.jar").getFile());
+        List<IdentificationRequest> requests = handle(file.toURI(), file);
+        assertEquals(countFiles(file), requests.size());
+        for (IdentificationRequest request : requests) {
+            assertTrue(request instanceof LazyIdentificationRequest);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Void>> opened = new ArrayList<Future<Void>>();
+            for (final IdentificationRequest request : requests) {
+                opened.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        ((LazyIdentificationRequest) request).open();
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : opened) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertSameContents(file, requests);
+    }
+
+    @Test
+    public void testEntriesOfNestedZipAreOpenedWhenSubmitted() throws Exception {
+        File file = new File(getClass().getResource("/persistence.jar").getFile());
+        URI nestedUri = ArchiveFileUtils.toZipUri(new File("outer.zip").toURI(), "persistence.jar");
+        List<IdentificationRequest> requests = handle(nestedUri, file);
+        assertEquals(countFiles(file), requests.size());
+        for (IdentificationRequest request : requests) {
+            assertFalse(request instanceof LazyIdentificationRequest);
+        }
+        assertSameContents(file, requests);
+    }
+
+    @Test
+    public void testNestedZipHeldInMemoryIsReadWithoutATempFile() throws Exception {
+        File spoolDir = new File(tmpDir, "spool");
+        spoolDir.mkdir();
+        MemorySpool spool = new MemorySpool(1024 * 1024, 1024 * 1024);
+        byte[] nestedZip = newStoredZip(10, 4096);
+
+        URI nestedUri = ArchiveFileUtils.toZipUri(new File("outer.zip").toURI(), "nested.zip");
+        RequestIdentifier identifier = new RequestIdentifier(nestedUri);
+        identifier.setAncestorId(10L);
+        identifier.setResourceId(new ResourceId(20L, "X"));
+        ZipEntryIdentificationRequest nestedRequest = new ZipEntryIdentificationRequest(
+                new RequestMetaData((long) nestedZip.length, null, "nested.zip"), identifier, spoolDir, spool);
+        nestedRequest.open(new ByteArrayInputStream(nestedZip));
+        assertTrue(spool.getMemoryInUse() > 0);
+
+        List<IdentificationRequest> requests = handle(nestedRequest, spoolDir, spool);
+        assertEquals(10, requests.size());
+        assertEquals(0, spoolDir.list().length);
+        for (IdentificationRequest request : requests) {
+            assertEquals(4096, request.size());
+            request.close();
+        }
+        nestedRequest.close();
+        assertEquals(0, spool.getMemoryInUse());
+    }
+
+    @Test
+    public void testEntryWhichCouldNotBeSubmittedReleasesZipFile() throws Exception {
+        File file = new File(getClass().getResource("/persistence.jar").getFile());
+        ZipEntryRequestFactory factory = new ZipEntryRequestFactory();
+        factory.setTempDirLocation(tmpDir);
+        AsynchDroid droidCore = mock(AsynchDroid.class);
+        doThrow(new IllegalStateException("shut down")).when(droidCore).submit(any(IdentificationRequest.class));
+
+        TrueZipArchiveHandler handler = new TrueZipArchiveHandler();
+        handler.setFactory(factory);
+        handler.setDroidCore(droidCore);
+
+        SharedZipFile zipFile = new SharedZipFile(file);
+        de.schlichtherle.util.zip.ZipEntry entry = firstFile(zipFile);
+        try {
+            handler.submit(entry, entry.getName(), file.toURI(), zipFile, zipFile, new ResourceId(20L, "X"), 10L);
+            fail("Expected the submission to fail");
+        } catch (IllegalStateException e) {
+            assertEquals("shut down", e.getMessage());
+        }
+
+        // only the reference taken when the zip file was opened is left.
+        zipFile.release();
+        try {
+            zipFile.getInputStream(entry);
+            fail("Expected the zip file to be closed");
+        } catch (IOException e) {
+            // the zip file has been closed.
+        }
+    }
+
+    private static de.schlichtherle.util.zip.ZipEntry firstFile(SharedZipFile zipFile) {
+        for (Object entry : Collections.list(zipFile.entries())) {
+            de.schlichtherle.util.zip.ZipEntry zipEntry = (de.schlichtherle.util.zip.ZipEntry) entry;
+            if (!zipEntry.isDirectory()) {
+                return zipEntry;
+            }
+        }
+        throw new IllegalStateException("No files in zip");
+    }
+
+    private List<IdentificationRequest> handle(URI uri, File file) throws IOException {
+        RequestIdentifier identifier = new RequestIdentifier(uri);
+        identifier.setAncestorId(10L);
+        identifier.setResourceId(new ResourceId(20L, "X"));
+        byte[] bytes = FileUtils.readFileToByteArray(file);
+        IdentificationRequest originalRequest = mock(IdentificationRequest.class);
+        when(originalRequest.getIdentifier()).thenReturn(identifier);
+        when(originalRequest.getSourceFile()).thenReturn(file);
+        when(originalRequest.getReader()).thenReturn(new CachedByteArray(bytes, bytes.length));
+        when(originalRequest.size()).thenReturn((long) bytes.length);
+        return handle(originalRequest, tmpDir, null);
+    }
+
+    private List<IdentificationRequest> handle(IdentificationRequest originalRequest, File tempDir,
+            MemorySpool spool) throws IOException {
+        ZipEntryRequestFactory factory = new ZipEntryRequestFactory();
+        factory.setTempDirLocation(tempDir);
+        factory.setMemorySpool(spool);
+        AsynchDroid droidCore = mock(AsynchDroid.class);
+
+        TrueZipArchiveHandler handler = new TrueZipArchiveHandler();
+        handler.setFactory(factory);
+        handler.setDroidCore(droidCore);
+        handler.setResultHandler(mock(ResultHandler.class));
+        handler.handle(originalRequest);
+
+        ArgumentCaptor<IdentificationRequest> captor = ArgumentCaptor.forClass(IdentificationRequest.class);
+        verify(droidCore, atLeastOnce()).submit(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private void assertSameContents(File file, List<IdentificationRequest> requests) throws IOException {
+        ZipFile zipFile = new ZipFile(file);
+        try {
+            for (IdentificationRequest request : requests) {
+                String path = request.getIdentifier().getUri().getSchemeSpecificPart();
+                String entryName = path.substring(path.lastIndexOf("!/") + 2);
+                ZipEntry entry = zipFile.getEntry(entryName);
+                assertEquals(entryName, entry.getSize(), request.size());
+
+                InputStream expected = zipFile.getInputStream(entry);
+                InputStream actual = request.getSourceInputStream();
+                try {
+                    assertArrayEquals(entryName, IOUtils.toByteArray(expected), IOUtils.toByteArray(actual));
+                } finally {
+                    expected.close();
+                    actual.close();
+                }
+                request.close();
+            }
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    private static byte[] newStoredZip(int entries, int entrySize) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream zip = new ZipOutputStream(bytes);
+        for (int entryIndex = 0; entryIndex < entries; entryIndex++) {
+            byte[] content = new byte[entrySize];
+            Arrays.fill(content, (byte) entryIndex);
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            ZipEntry entry = new ZipEntry("dir/entry" + entryIndex);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(entrySize);
+            entry.setCrc(crc.getValue());
+            zip.putNextEntry(entry);
+            zip.write(content);
+            zip.closeEntry();
+        }
+        zip.close();
+        return bytes.toByteArray();
+    }
+
+    private int countFiles(File file) throws IOException {
+        ZipFile zipFile = new ZipFile(file);
+        try {
+            int files = 0;
+            for (ZipEntry entry : Collections.list(zipFile.entries())) {
+                if (!entry.isDirectory()) {
+                    files++;
+                }
+            }
+            return files;
+        } finally {
+            zipFile.close();
+        }
+    }
+}
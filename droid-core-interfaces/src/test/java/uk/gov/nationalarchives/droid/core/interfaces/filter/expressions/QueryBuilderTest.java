@@ -9,11 +9,17 @@
 package uk.gov.nationalarchives.droid.core.interfaces.filter.expressions;
 
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
+import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
+
 /**
  * @author rflitcroft
  *
@@ -120,4 +126,66 @@ public class QueryBuilderTest {
         assertEquals("fmt/2", values[3]);
         assertEquals("fmt/3", values[4]);
     }
+
+    @Test
+    public void testEvaluateComparesValuesAsTheDatabaseWould() {
+        Map<String, Object> node = new HashMap<String, Object>();
+        node.put("metaData.name", "foo bar.txt");
+        node.put("metaData.size", 100L);
+        node.put("metaData.nodeStatus", NodeStatus.DONE);
+        node.put("metaData.lastModifiedDate", new Date(1000L));
+        PropertyValues values = valuesOf(node);
+
+        assertTrue(Restrictions.eq("metaData.name", "foo bar.txt").evaluate(values));
+        assertTrue(Restrictions.gt("metaData.size", 99).evaluate(values));
+        assertFalse(Restrictions.lt("metaData.size", 100L).evaluate(values));
+        assertTrue(Restrictions.lte("metaData.lastModifiedDate", new Date(1000L)).evaluate(values));
+        assertTrue(Restrictions.eq("metaData.nodeStatus", NodeStatus.DONE).evaluate(values));
+        assertTrue(Restrictions.like("metaData.name", "foo%.txt").evaluate(values));
+        assertFalse(Restrictions.like("metaData.name", "foo_.txt").evaluate(values));
+        assertTrue(Restrictions.notLike("metaData.name", "%.pdf").evaluate(values));
+        assertTrue(Restrictions.in("metaData.nodeStatus", 
+                new Object[] {NodeStatus.ERROR, NodeStatus.DONE}).evaluate(values));
+        assertFalse(Restrictions.notIn("metaData.nodeStatus", new Object[] {NodeStatus.DONE}).evaluate(values));
+    }
+
+    @Test
+    public void testEvaluateDoesNotMatchMissingValues() {
+        PropertyValues values = valuesOf(new HashMap<String, Object>());
+
+        assertFalse(Restrictions.eq("metaData.extension", "txt").evaluate(values));
+        assertFalse(Restrictions.neq("metaData.extension", "txt").evaluate(values));
+        assertFalse(Restrictions.notLike("metaData.extension", "%t").evaluate(values));
+        assertTrue(QueryBuilder.forAlias("prn").evaluate(values));
+        assertTrue(Restrictions.disjunction().evaluate(values));
+    }
+
+    @Test
+    public void testEvaluateCombinesCriteria() {
+        Map<String, Object> node = new HashMap<String, Object>();
+        node.put("metaData.name", "foo");
+        node.put("format.puid", "fmt/2");
+        PropertyValues values = valuesOf(node);
+
+        QueryBuilder queryBuilder = QueryBuilder.forAlias("prn");
+        queryBuilder.add(Restrictions.disjunction()
+                .add(Restrictions.eq("metaData.name", "bar"))
+                .add(Restrictions.in("format.puid", new Object[] {"fmt/1", "fmt/2"})));
+        assertTrue(queryBuilder.evaluate(values));
+
+        queryBuilder.add(Restrictions.and(
+                Restrictions.eq("metaData.name", "foo"), Restrictions.eq("format.puid", "fmt/1")));
+        assertFalse(queryBuilder.evaluate(values));
+        assertTrue(Restrictions.or(
+                Restrictions.eq("metaData.name", "foo"), Restrictions.eq("format.puid", "fmt/1")).evaluate(values));
+    }
+
+    private static PropertyValues valuesOf(final Map<String, Object> properties) {
+        return new PropertyValues() {
+            @Override
+            public Object getValue(String propertyName) {
+                return properties.get(propertyName);
+            }
+        };
+    }
 }
@@ -0,0 +1,61 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.hash;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HashGeneratorFactoryTest {
+
+    private static final byte[] ABC = {'a', 'b', 'c'};
+
+    private static final String MD5_ABC = "900150983cd24fb0d6963f7d28e17f72";
+    private static final String SHA1_ABC = "a9993e364706816aba3e25717850c26c9cd0d89d";
+    private static final String SHA256_ABC = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+    private static final String CRC32_ABC = "352441c2";
+
+    @Test
+    public void testSingleAlgorithms() throws IOException {
+        assertHash("md5", "MD5", MD5_ABC);
+        assertHash("SHA1", "SHA-1", SHA1_ABC);
+        assertHash("sha-256", "SHA-256", SHA256_ABC);
+        assertHash("crc32", "CRC32", CRC32_ABC);
+    }
+
+    @Test
+    public void testCombinedAlgorithmsGiveEachHashInTurn() throws IOException {
+        HashGenerator generator = HashGeneratorFactory.newHashGenerator("md5, sha256,crc32");
+        assertTrue(generator instanceof CombinedHashGenerator);
+        assertHash("md5, sha256,crc32", "MD5,SHA-256,CRC32", MD5_ABC + "," + SHA256_ABC + "," + CRC32_ABC);
+    }
+
+    @Test
+    public void testRunningHashGivesSameHashAsStream() throws IOException {
+        HashGenerator generator = HashGeneratorFactory.newHashGenerator("sha1,crc32");
+        RunningHash hash = generator.newRunningHash();
+        hash.update(0, ABC, 0, 2);
+        assertEquals(SHA1_ABC + "," + CRC32_ABC, hash.getHash(new ByteArrayInputStream(ABC)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownAlgorithm() {
+        HashGeneratorFactory.newHashGenerator("md4");
+    }
+
+    private void assertHash(String algorithms, String expectedName, String expectedHash) throws IOException {
+        HashGenerator generator = HashGeneratorFactory.newHashGenerator(algorithms);
+        assertEquals(expectedName, generator.getAlgorithm());
+        assertEquals(expectedHash, generator.hash(new ByteArrayInputStream(ABC)));
+    }
+}
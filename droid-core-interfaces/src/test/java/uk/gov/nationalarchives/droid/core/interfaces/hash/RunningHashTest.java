@@ -0,0 +1,115 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.hash;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.FileSystemIdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+
+public class RunningHashTest {
+
+    private byte[] data;
+    private String expectedHash;
+
+    @Before
+    public void setup() {
+        data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        expectedHash = DigestUtils.md5Hex(data);
+    }
+
+    @Test
+    public void testBytesOfferedInOrderAreHashedWithoutReadingSource() throws IOException {
+        RunningHash hash = new MD5HashGenerator().newRunningHash();
+        hash.update(0, data, 0, 400);
+        hash.update(400, data, 400, 600);
+        assertEquals(1000, hash.getBytesHashed());
+        assertEquals(expectedHash, hash.getHash(null));
+    }
+
+    @Test
+    public void testBytesOfferedOutOfOrderAreIgnored() throws IOException {
+        RunningHash hash = new MD5HashGenerator().newRunningHash();
+        hash.update(0, data, 0, 100);
+        hash.update(500, data, 500, 100);
+        assertEquals(100, hash.getBytesHashed());
+
+        // overlapping the bytes already hashed only consumes the new bytes:
+        hash.update(50, data, 50, 150);
+        assertEquals(200, hash.getBytesHashed());
+
+        assertEquals(expectedHash, hash.getHash(new ByteArrayInputStream(data)));
+        assertEquals(1000, hash.getBytesHashed());
+    }
+
+    @Test
+    public void testHashingStreamHashesBytesReadThroughIt() throws IOException {
+        RunningHash hash = new MD5HashGenerator().newRunningHash();
+        hash.update(0, data, 0, 10);
+        InputStream in = hash.hashingStream(new ByteArrayInputStream(data, 10, 990), 10);
+        byte[] buffer = new byte[64];
+        while (in.read(buffer) >= 0) {
+            continue;
+        }
+        assertEquals(1000, hash.getBytesHashed());
+        assertEquals(expectedHash, hash.getHash(null));
+    }
+
+    @Test
+    public void testFileSystemRequestHashesBlocksAsTheyAreRead() throws IOException {
+        File file = new File(getClass().getResource("/testXmlFile.xml").getFile());
+        RequestMetaData metaData = new RequestMetaData(file.length(), file.lastModified(), file.getName());
+        metaData.setRunningHash(new MD5HashGenerator().newRunningHash());
+        FileSystemIdentificationRequest request =
+            new FileSystemIdentificationRequest(metaData, new RequestIdentifier(file.toURI()));
+
+        InputStream in = new FileInputStream(file);
+        try {
+            request.open(in);
+        } finally {
+            in.close();
+        }
+        RunningHash hash = metaData.getRunningHash();
+        assertEquals(32 * 1024, hash.getBytesHashed());
+
+        // reading the end of the file can't be hashed yet, but the next block can:
+        request.getByte(file.length() - 1);
+        assertEquals(32 * 1024, hash.getBytesHashed());
+        request.getByte(40000);
+        assertEquals(64 * 1024, hash.getBytesHashed());
+
+        in = new FileInputStream(file);
+        try {
+            String expected = DigestUtils.md5Hex(in);
+            InputStream source = request.getSourceInputStream();
+            try {
+                assertEquals(expected, hash.getHash(source));
+            } finally {
+                source.close();
+            }
+        } finally {
+            in.close();
+            request.close();
+        }
+    }
+}
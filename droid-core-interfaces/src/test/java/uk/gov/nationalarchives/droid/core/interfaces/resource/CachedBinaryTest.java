@@ -10,17 +10,24 @@ package uk.gov.nationalarchives.droid.core.interfaces.resource;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
 import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import net.domesdaybook.reader.Window;
+import net.domesdaybook.reader.WindowReader;
+
 import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveFileUtils;
 
 
@@ -91,4 +98,76 @@ public class CachedBinaryTest {
         
         assertEquals(8500, count);
     }
+
+    @Test
+    public void testByteBufferWindowsHoldTheSameBytesAsReadByte() throws Exception {
+        byte[] rawBytes = new byte[8500];
+        new Random().nextBytes(rawBytes);
+
+        ByteArrayInputStream in = new ByteArrayInputStream(rawBytes);
+        ByteBuffer blockZero = ByteBuffer.allocate(1000);
+        ReadableByteChannel ch = Channels.newChannel(in);
+        ch.read(blockZero);
+
+        cache = new CachedByteBuffers(2, 1000, blockZero);
+        final File tempDir = new File("tmp");
+        tempDir.mkdir();
+        cache.setSourceFile(ArchiveFileUtils.writeEntryToTemp(tempDir, blockZero, ch));
+
+        assertWindowsHoldBytes(cache, rawBytes);
+        assertNull(cache.getWindow(-1));
+    }
+
+    @Test
+    public void testByteArrayWindowsHoldTheSameBytesAsReadByte() throws Exception {
+        byte[] rawBytes = new byte[8500];
+        new Random().nextBytes(rawBytes);
+
+        final File tempDir = new File("tmp");
+        tempDir.mkdir();
+        final File sourceFile = File.createTempFile("cached", ".bin", tempDir);
+        sourceFile.deleteOnExit();
+        final FileOutputStream out = new FileOutputStream(sourceFile);
+        try {
+            out.write(rawBytes);
+        } finally {
+            out.close();
+        }
+
+        CachedByteArrays arrays = new CachedByteArrays(2, 1000, Arrays.copyOf(rawBytes, 1000), 1000);
+        arrays.setSourceFile(sourceFile);
+        try {
+            assertWindowsHoldBytes(arrays, rawBytes);
+            assertNull(arrays.getWindow(-1));
+        } finally {
+            arrays.close();
+        }
+    }
+
+    @Test
+    public void testSingleArrayIsOneWindow() {
+        byte[] rawBytes = new byte[800];
+        new Random().nextBytes(rawBytes);
+
+        CachedByteArray array = new CachedByteArray(rawBytes, rawBytes.length);
+        Window window = array.getWindow(0);
+        assertEquals(0, window.getWindowPosition());
+        assertEquals(800, window.length());
+        assertTrue(window == array.getWindow(799));
+        assertNull(array.getWindow(800));
+    }
+
+    private void assertWindowsHoldBytes(WindowReader reader, byte[] rawBytes) {
+        int position = 0;
+        while (position < rawBytes.length) {
+            Window window = reader.getWindow(position);
+            assertTrue("Window should contain position " + position, window.contains(position));
+            final int windowOffset = (int) (position - window.getWindowPosition());
+            for (int index = windowOffset; index < window.length() && position < rawBytes.length; index++) {
+                assertEquals("Incorrect byte: " + position, rawBytes[position], window.getArray()[index]);
+                assertEquals("Incorrect byte: " + position, reader.readByte(position), window.getArray()[index]);
+                position++;
+            }
+        }
+    }
 }
@@ -13,9 +13,12 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import org.junit.After;
 import org.junit.Before;
@@ -155,4 +158,49 @@ public class FileSystemIdentificationRequestTest {
         
     }
     
+    @Test
+    public void testMemoryMappedRequestReadsEveryByte() throws IOException {
+        FileSystemIdentificationRequest mappedRequest = new FileSystemIdentificationRequest(
+                metaData, identifier, 3, 5, true);
+        mappedRequest.open(new FileInputStream(file));
+        try {
+            assertTrue(mappedRequest.getCache() instanceof CachedMappedByteBuffers);
+            int size = (int) mappedRequest.size();
+            byte[] bin = new byte[size];
+            for (int i = size - 1; i >= 0; i--) {
+                bin[i] = mappedRequest.getByte(i);
+            }
+            assertEquals(fileData, new String(bin));
+            assertEquals(file, mappedRequest.getSourceFile());
+        } finally {
+            mappedRequest.close();
+        }
+    }
+
+    @Test
+    public void testMemoryMappedRequestThrowsIndexOutOfBoundsPastEndOfFile() throws IOException {
+        FileSystemIdentificationRequest mappedRequest = new FileSystemIdentificationRequest(
+                metaData, identifier, true);
+        mappedRequest.open(new FileInputStream(file));
+        try {
+            mappedRequest.getByte(file.length());
+            fail("Expected IndexOutOfBoundsException.");
+        } catch (IndexOutOfBoundsException e) {
+            assertEquals("No byte at position [" + file.length() + "]", e.getMessage());
+        } finally {
+            mappedRequest.close();
+        }
+    }
+
+    @Test
+    public void testSourceInputStreamReturnsWholeFileWhenLargerThanFirstBuffer() throws IOException {
+        InputStream in = fileRequest.getSourceInputStream();
+        try {
+            byte[] buffer = new byte[(int) file.length() + 1];
+            assertEquals(file.length(), ResourceUtils.readBuffer(in, buffer));
+        } finally {
+            in.close();
+        }
+    }
+    
 }
@@ -0,0 +1,176 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import net.domesdaybook.reader.Window;
+import net.domesdaybook.reader.WindowReader;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+
+public class MemorySpoolTest {
+
+    private static final int FIRST_BUFFER_SIZE = 16;
+    private static final int BLOCK_SIZE = 8;
+
+    private static File tmpDir;
+
+    @BeforeClass
+    public static void createTmpFileDirectory() {
+        tmpDir = new File("tmp_spool");
+        tmpDir.mkdir();
+    }
+
+    @AfterClass
+    public static void removeTmpDir() {
+        FileUtils.deleteQuietly(tmpDir);
+    }
+
+    @Test
+    public void testSmallEntryIsHeldInMemory() throws IOException {
+        MemorySpool spool = new MemorySpool(1024, 1024, BLOCK_SIZE);
+        byte[] entry = newEntry(37);
+
+        CachedBytes bytes = spool(spool, entry);
+        assertNull(bytes.getSourceFile());
+        assertEquals(24, spool.getMemoryInUse());
+        for (int i = 0; i < entry.length; i++) {
+            assertEquals(entry[i], bytes.readByte(i));
+        }
+        assertArrayEquals(entry, IOUtils.toByteArray(bytes.getSourceInputStream()));
+
+        bytes.close();
+        assertEquals(0, spool.getMemoryInUse());
+    }
+
+    @Test
+    public void testWindowsCoverTheWholeEntry() throws IOException {
+        MemorySpool spool = new MemorySpool(1024, 1024, BLOCK_SIZE);
+        byte[] entry = newEntry(37);
+
+        WindowReader reader = (WindowReader) spool(spool, entry);
+        Window window = reader.getWindow(0);
+        assertEquals(0, window.getWindowPosition());
+        assertEquals(FIRST_BUFFER_SIZE, window.length());
+
+        window = reader.getWindow(36);
+        assertEquals(32, window.getWindowPosition());
+        assertEquals(5, window.length());
+        assertEquals(entry[36], window.getArray()[4]);
+
+        assertNull(reader.getWindow(37));
+        assertNull(reader.getWindow(-1));
+    }
+
+    @Test
+    public void testReusedBlockIsNotReadPastTheEndOfTheEntry() throws IOException {
+        MemorySpool spool = new MemorySpool(1024, 1024, BLOCK_SIZE);
+        spool(spool, newEntry(40)).close();
+
+        CachedBytes bytes = spool(spool, newEntry(37));
+        assertEquals(newEntry(37)[36], bytes.readByte(36));
+        try {
+            bytes.readByte(37);
+            fail("Expected the read past the end of the entry to fail");
+        } catch (IndexOutOfBoundsException e) {
+            assertEquals("No byte at position [37]", e.getMessage());
+        }
+        bytes.close();
+    }
+
+    @Test
+    public void testEntryBiggerThanMaxEntrySizeSpillsToTempFile() throws IOException {
+        MemorySpool spool = new MemorySpool(1024, 32, BLOCK_SIZE);
+        byte[] entry = newEntry(100);
+
+        CachedBytes bytes = spool(spool, entry);
+        File tempFile = bytes.getSourceFile();
+        assertNotNull(tempFile);
+        assertArrayEquals(entry, FileUtils.readFileToByteArray(tempFile));
+        assertEquals(0, spool.getMemoryInUse());
+        bytes.close();
+        assertTrue(tempFile.delete());
+    }
+
+    @Test
+    public void testEntrySpillsToTempFileWhenBudgetIsUsedUp() throws IOException {
+        MemorySpool spool = new MemorySpool(32, 1024, BLOCK_SIZE);
+        byte[] entry = newEntry(38);
+
+        CachedBytes inMemory = spool(spool, entry);
+        assertNull(inMemory.getSourceFile());
+        assertEquals(24, spool.getMemoryInUse());
+
+        CachedBytes spilled = spool(spool, entry);
+        File tempFile = spilled.getSourceFile();
+        assertNotNull(tempFile);
+        assertArrayEquals(entry, FileUtils.readFileToByteArray(tempFile));
+        assertEquals(24, spool.getMemoryInUse());
+        spilled.close();
+        assertTrue(tempFile.delete());
+
+        inMemory.close();
+        assertEquals(0, spool.getMemoryInUse());
+        CachedBytes reused = spool(spool, entry);
+        assertNull(reused.getSourceFile());
+        reused.close();
+    }
+
+    @Test
+    public void testZipEntryRequestWithSpool() throws Exception {
+        MemorySpool spool = new MemorySpool(1024, 1024, BLOCK_SIZE);
+        byte[] entry = newEntry(50);
+        RequestMetaData metaData = new RequestMetaData(-1L, null, "entry");
+        RequestIdentifier identifier = new RequestIdentifier(new File("entry").toURI());
+
+        ZipEntryIdentificationRequest request =
+            new ZipEntryIdentificationRequest(metaData, identifier, 3, FIRST_BUFFER_SIZE, tmpDir, spool);
+        request.open(new ByteArrayInputStream(entry));
+        assertEquals(entry.length, request.size());
+        assertNull(request.getCache().getSourceFile());
+        assertEquals(entry[49], request.getByte(49));
+
+        File sourceFile = request.getSourceFile();
+        assertArrayEquals(entry, FileUtils.readFileToByteArray(sourceFile));
+        request.close();
+        assertEquals(0, spool.getMemoryInUse());
+    }
+
+    private CachedBytes spool(MemorySpool spool, byte[] entry) throws IOException {
+        byte[] firstBuffer = Arrays.copyOf(entry, FIRST_BUFFER_SIZE);
+        ByteArrayInputStream rest =
+            new ByteArrayInputStream(entry, FIRST_BUFFER_SIZE, entry.length - FIRST_BUFFER_SIZE);
+        return spool.spool(firstBuffer, rest, tmpDir, 3);
+    }
+
+    private byte[] newEntry(int length) {
+        byte[] entry = new byte[length];
+        for (int i = 0; i < length; i++) {
+            entry[i] = (byte) (i * 7);
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,259 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.signature;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Checks that replaying a signature file snapshot gives the same events as parsing the file.
+ */
+public class SignatureFileSnapshotTest {
+
+    private static final String SIGNATURES =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<FFSignatureFile xmlns=\"http://www.nationalarchives.gov.uk/pronom/SignatureFile\" Version=\"26\">\n"
+        + "  <InternalSignatureCollection>\n"
+        + "    <InternalSignature ID=\"1\" Specificity=\"Specific\">\n"
+        + "      <ByteSequence Reference=\"BOFoffset\">\n"
+        + "        <SubSequence Position=\"1\" SubSeqMinOffset=\"0\">"
+        + "<Sequence>25504446</Sequence><![CDATA[&]]>&amp;texté</SubSequence>\n"
+        + "      </ByteSequence>\n"
+        + "    </InternalSignature>\n"
+        + "  </InternalSignatureCollection>\n"
+        + "  <FileFormatCollection>\n"
+        + "    <FileFormat ID=\"1\" Name=\"Acrobat PDF\" PUID=\"fmt/14\" Version=\"1.0\" MIMEType=\"application/pdf\">\n"
+        + "      <InternalSignatureID>1</InternalSignatureID>\n"
+        + "      <Extension>pdf</Extension>\n"
+        + "    </FileFormat>\n"
+        + "  </FileFormatCollection>\n"
+        + "</FFSignatureFile>\n";
+
+    private File sigFile;
+    private File snapshotFile;
+
+    @Before
+    public void setup() throws IOException {
+        SignatureFileSnapshot.clearSnapshots();
+        sigFile = File.createTempFile("signatures", ".xml");
+        snapshotFile = new File(sigFile.getPath() + SignatureFileSnapshot.SNAPSHOT_EXTENSION);
+        FileUtils.writeStringToFile(sigFile, SIGNATURES, "UTF-8");
+    }
+
+    @After
+    public void tearDown() {
+        SignatureFileSnapshot.clearSnapshots();
+        sigFile.delete();
+        snapshotFile.delete();
+    }
+
+    @Test
+    public void testReplayGivesSameEventsAsParsing() throws Exception {
+        List<String> events = replay(SignatureFileSnapshot.forFile(sigFile, false));
+
+        assertTrue(events.contains("text [&&texté]"));
+        assertEquals(parse(sigFile), events);
+        assertFalse(snapshotFile.exists());
+    }
+
+    @Test
+    public void testSnapshotIsSharedAndStored() throws Exception {
+        SignatureFileSnapshot snapshot = SignatureFileSnapshot.forFile(sigFile, true);
+        assertSame(snapshot, SignatureFileSnapshot.forFile(sigFile, true));
+        assertTrue(snapshotFile.isFile());
+
+        SignatureFileSnapshot.clearSnapshots();
+        SignatureFileSnapshot loaded = SignatureFileSnapshot.forFile(sigFile, false);
+        assertNotSame(snapshot, loaded);
+        assertEquals(snapshot.getHash(), loaded.getHash());
+        assertEquals(parse(sigFile), replay(loaded));
+    }
+
+    @Test
+    public void testChangedSignatureFileIsRecordedAgain() throws Exception {
+        SignatureFileSnapshot snapshot = SignatureFileSnapshot.forFile(sigFile, true);
+        FileUtils.writeStringToFile(sigFile, SIGNATURES.replace("fmt/14", "fmt/15"), "UTF-8");
+
+        SignatureFileSnapshot changed = SignatureFileSnapshot.forFile(sigFile, false);
+        assertFalse(snapshot.getHash().equals(changed.getHash()));
+        List<String> events = replay(changed);
+        assertEquals(parse(sigFile), events);
+        assertTrue(events.toString().contains("fmt/15"));
+    }
+
+    @Test
+    public void testCorruptSnapshotIsIgnored() throws Exception {
+        FileUtils.writeStringToFile(snapshotFile, "not a snapshot");
+
+        assertEquals(parse(sigFile), replay(SignatureFileSnapshot.forFile(sigFile, false)));
+    }
+
+    @Test
+    public void testSnapshotWhichFailsItsChecksumIsDeletedAndTheFileParsed() throws Exception {
+        SignatureFileSnapshot.forFile(sigFile, true);
+        byte[] stored = FileUtils.readFileToByteArray(snapshotFile);
+        int name = indexOf(stored, "Acrobat PDF".getBytes("UTF-8"));
+        assertTrue(name > 0);
+        stored[name] = 'B';
+        FileUtils.writeByteArrayToFile(snapshotFile, stored);
+
+        SignatureFileSnapshot.clearSnapshots();
+        List<String> events = replay(SignatureFileSnapshot.forFile(sigFile, false));
+        assertEquals(parse(sigFile), events);
+        assertTrue(events.toString().contains("Acrobat PDF"));
+        assertFalse(snapshotFile.exists());
+    }
+
+    @Test
+    public void testSnapshotReferringToAMissingStringIsDeletedAndTheFileParsed() throws Exception {
+        String hash = SignatureFileSnapshot.forFile(sigFile, false).getHash();
+        SignatureFileSnapshot.save(newSnapshotWithMissingString(hash), snapshotFile);
+        assertTrue(snapshotFile.isFile());
+
+        SignatureFileSnapshot.clearSnapshots();
+        assertEquals(parse(sigFile), replay(SignatureFileSnapshot.forFile(sigFile, false)));
+        assertFalse(snapshotFile.exists());
+    }
+
+    @Test
+    public void testReparseReplacesEventsWhichCanNotBeReplayed() throws Exception {
+        String hash = SignatureFileSnapshot.forFile(sigFile, false).getHash();
+        SignatureFileSnapshot snapshot = newSnapshotWithMissingString(hash);
+        SignatureFileSnapshot.save(snapshot, snapshotFile);
+        try {
+            replay(snapshot);
+            fail("Expected the replay to fail");
+        } catch (ArrayIndexOutOfBoundsException e) {
+            // the string does not exist.
+        }
+
+        snapshot.reparse();
+        assertEquals(parse(sigFile), replay(snapshot));
+        assertFalse(snapshotFile.exists());
+    }
+
+    @Test
+    public void testSnapshotsNoLongerUsedAreForgotten() throws Exception {
+        SignatureFileSnapshot snapshot = SignatureFileSnapshot.forFile(sigFile, false);
+        FileUtils.writeStringToFile(sigFile, SIGNATURES.replace("fmt/14", "fmt/15"), "UTF-8");
+        SignatureFileSnapshot changed = SignatureFileSnapshot.forFile(sigFile, false);
+        assertEquals(2, SignatureFileSnapshot.countSnapshots());
+
+        snapshot = null;
+        for (int i = 0; i < 10 && SignatureFileSnapshot.countSnapshots() > 1; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(1, SignatureFileSnapshot.countSnapshots());
+        assertSame(changed, SignatureFileSnapshot.forFile(sigFile, false));
+    }
+
+    private SignatureFileSnapshot newSnapshotWithMissingString(String hash) {
+        // A start element whose qualified name is string 7, of only one string:
+        byte[] events = {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 7, 0, 0, 0, 0};
+        return new SignatureFileSnapshot(sigFile, hash, new String[] {""}, events);
+    }
+
+    private static int indexOf(byte[] bytes, byte[] find) {
+        for (int i = 0; i <= bytes.length - find.length; i++) {
+            int matched = 0;
+            while (matched < find.length && bytes[i + matched] == find[matched]) {
+                matched++;
+            }
+            if (matched == find.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static List<String> parse(File file) throws Exception {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        XMLReader reader = factory.newSAXParser().getXMLReader();
+        EventList events = new EventList();
+        reader.setContentHandler(events);
+        reader.parse(file.toURI().toString());
+        return events.events;
+    }
+
+    private static List<String> replay(SignatureFileSnapshot snapshot) throws Exception {
+        EventList events = new EventList();
+        snapshot.replay(events);
+        return events.events;
+    }
+
+    /**
+     * Describes each event, with adjacent character events joined.
+     */
+    private static final class EventList extends DefaultHandler {
+
+        private final List<String> events = new ArrayList<String>();
+        private final StringBuilder text = new StringBuilder();
+
+        @Override
+        public void startDocument() {
+            events.add("start");
+        }
+
+        @Override
+        public void endDocument() {
+            flushText();
+            events.add("end");
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) {
+            flushText();
+            StringBuilder event = new StringBuilder("<" + uri + " " + localName + " " + qName);
+            for (int i = 0; i < atts.getLength(); i++) {
+                event.append(' ').append(atts.getQName(i)).append('=').append(atts.getValue(i));
+                event.append(' ').append(atts.getValue(atts.getQName(i)));
+            }
+            events.add(event.toString());
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            flushText();
+            events.add(">" + uri + " " + localName + " " + qName);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            text.append(ch, start, length);
+        }
+
+        private void flushText() {
+            if (text.length() > 0) {
+                events.add("text [" + text.toString().trim() + "]");
+                text.setLength(0);
+            }
+        }
+    }
+}
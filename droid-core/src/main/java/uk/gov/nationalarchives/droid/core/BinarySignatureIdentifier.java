@@ -24,6 +24,7 @@ import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResult;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultCollection;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultImpl;
+import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileSnapshot;
 import uk.gov.nationalarchives.droid.core.signature.ByteReader;
 import uk.gov.nationalarchives.droid.core.signature.FileFormat;
 import uk.gov.nationalarchives.droid.core.signature.FileFormatCollection;
@@ -40,9 +41,15 @@ public final class BinarySignatureIdentifier implements DroidCore {
 
     private final Log log = LogFactory.getLog(getClass());
 
-    private FFSignatureFile sigFile;
     private SignatureFileParser sigFileParser = new SignatureFileParser();
     private URI signatureFile;
+    private boolean automatonMatching;
+    private volatile long maxBytesToScan = -1;
+
+    private SignatureFileSnapshot snapshot;
+    private final Set<String> removedPuids = new HashSet<String>();
+    private SignatureEngineRegistry.Engine engine;
+    private volatile FFSignatureFile sigFile;
     
     /**
      * Default constructor.
@@ -50,17 +57,30 @@ public final class BinarySignatureIdentifier implements DroidCore {
     public BinarySignatureIdentifier() { }
     
     /**
-     * Initialises this droid core with its signature file.
+     * Initialises this droid core with its signature file.  The prepared signature
+     * file is shared with other identifiers using the same signature file, and is
+     * acquired when it is first used, so signatures removed before then are taken
+     * into account when looking for one to share.
      */
     public void init() {
         try {
-            sigFile = sigFileParser.parseSigFile(signatureFile.getPath());
-            sigFile.prepareForUse();
+            snapshot = sigFileParser.getSnapshot(signatureFile.getPath());
         } catch (SignatureParseException e) {
             String message = String.format("Could not parse the binary signature file at: %s", signatureFile.getPath());
             log.warn(message);
         }
     }
+
+    /**
+     * Releases the shared signature file used by this droid core.
+     */
+    public synchronized void close() {
+        if (engine != null) {
+            SignatureEngineRegistry.release(engine);
+            engine = null;
+            sigFile = null;
+        }
+    }
     
     /**
      * Sets the signature file.
@@ -71,6 +91,23 @@ public final class BinarySignatureIdentifier implements DroidCore {
         this.signatureFile = new File(signatureFile).toURI();
     }
 
+    /**
+     * Sets whether byte sequences are matched with compiled automata where possible.
+     * @param automatonMatching whether to compile byte sequences to automata
+     */
+    public void setAutomatonMatching(boolean automatonMatching) {
+        this.automatonMatching = automatonMatching;
+    }
+
+    /**
+     * Sets whether a snapshot of the signature file is stored next to it,
+     * so later runs can read the snapshot instead of parsing the file.
+     * @param signatureSnapshots whether to store signature file snapshots
+     */
+    public void setSignatureSnapshots(boolean signatureSnapshots) {
+        sigFileParser.setStoreSnapshots(signatureSnapshots);
+    }
+
 
     /**
      * {@inheritDoc}
@@ -80,7 +117,7 @@ public final class BinarySignatureIdentifier implements DroidCore {
         IdentificationResultCollection results = new IdentificationResultCollection(request);
         results.setRequestMetaData(request.getRequestMetaData());
         ByteReader byteReader = new IdentificationRequestByteReaderAdapter(request);
-        sigFile.runFileIdentification(byteReader);
+        getSigFile().runFileIdentification(byteReader, maxBytesToScan);
         final int numHits = byteReader.getNumHits();
         for (int i = 0; i < numHits; i++) {
             FileFormatHit hit = byteReader.getHit(i);
@@ -110,9 +147,9 @@ public final class BinarySignatureIdentifier implements DroidCore {
         if (fileExtension != null && !fileExtension.isEmpty()) {
             List<FileFormat> fileFormats;
             if (allExtensions) {
-                fileFormats = sigFile.getFileFormatsForExtension(fileExtension);
+                fileFormats = getSigFile().getFileFormatsForExtension(fileExtension);
             } else {
-                fileFormats = sigFile.getTentativeFormatsForExtension(fileExtension);
+                fileFormats = getSigFile().getTentativeFormatsForExtension(fileExtension);
             }
             if (fileFormats != null) {
                 for (FileFormat format : fileFormats) {
@@ -135,14 +172,40 @@ public final class BinarySignatureIdentifier implements DroidCore {
      * {@inheritDoc}
      */
     @Override
-    public void removeSignatureForPuid(String puid) {
-        sigFile.puidHasOverridingSignatures(puid);
+    public synchronized void removeSignatureForPuid(String puid) {
+        removedPuids.add(puid);
+        if (engine != null) {
+            try {
+                engine = SignatureEngineRegistry.removeSignatureForPuid(engine, puid, snapshot, sigFileParser);
+                sigFile = engine.getSigFile();
+            } catch (SignatureParseException e) {
+                log.warn(String.format("Could not remove signatures for puid %s: %s", puid, e.getMessage()));
+            }
+        }
     }
     
     /**
      * @return the sigFile
      */
     FFSignatureFile getSigFile() {
+        FFSignatureFile file = sigFile;
+        if (file == null) {
+            file = acquireSigFile();
+        }
+        return file;
+    }
+
+    private synchronized FFSignatureFile acquireSigFile() {
+        if (sigFile == null && snapshot != null) {
+            try {
+                engine = SignatureEngineRegistry.acquire(snapshot, automatonMatching, removedPuids, sigFileParser);
+                sigFile = engine.getSigFile();
+            } catch (SignatureParseException e) {
+                String message = String.format("Could not parse the binary signature file at: %s",
+                        signatureFile.getPath());
+                log.warn(message);
+            }
+        }
         return sigFile;
     }
 
@@ -151,7 +214,7 @@ public final class BinarySignatureIdentifier implements DroidCore {
      */
     @Override
     public void setMaxBytesToScan(long maxBytes) {
-        sigFile.setMaxBytesToScan(maxBytes);
+        this.maxBytesToScan = maxBytes;
     }
 
     /**
@@ -161,7 +224,7 @@ public final class BinarySignatureIdentifier implements DroidCore {
     public void removeLowerPriorityHits(
             IdentificationResultCollection results) {
         // Build a set of format ids the results have priority over:
-        FileFormatCollection allFormats = sigFile.getFileFormatCollection();
+        FileFormatCollection allFormats = getSigFile().getFileFormatCollection();
         Set<Integer> lowerPriorityIDs = new HashSet<Integer>();
         for (IdentificationResult result : results.getResults()) {
             final String resultPUID = result.getPuid();
@@ -201,7 +264,7 @@ public final class BinarySignatureIdentifier implements DroidCore {
     public void checkForExtensionsMismatches(
             IdentificationResultCollection results, String fileExtension) {
         if (fileExtension == null || fileExtension.isEmpty()) {
-            FileFormatCollection allFormats = sigFile.getFileFormatCollection();
+            FileFormatCollection allFormats = getSigFile().getFileFormatCollection();
             for (IdentificationResult result : results.getResults()) {
                 final String resultPUID = result.getPuid();
                 final FileFormat format = allFormats.getFormatForPUID(resultPUID);
@@ -211,7 +274,7 @@ public final class BinarySignatureIdentifier implements DroidCore {
                 }
             }
         } else {
-            FileFormatCollection allFormats = sigFile.getFileFormatCollection();
+            FileFormatCollection allFormats = getSigFile().getFileFormatCollection();
             for (IdentificationResult result : results.getResults()) {
                 final String resultPUID = result.getPuid();
                 final FileFormat format = allFormats.getFormatForPUID(resultPUID);
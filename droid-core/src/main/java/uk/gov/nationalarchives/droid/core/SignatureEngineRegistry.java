@@ -0,0 +1,171 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileSnapshot;
+import uk.gov.nationalarchives.droid.core.signature.droid6.FFSignatureFile;
+
+/**
+ * A registry of prepared signature files, shared by every binary signature
+ * identifier in the JVM which uses the same signature file, with the same
+ * matching options and the same signatures removed.  Open profiles using the
+ * same signature file therefore hold one copy of it between them.
+ * <p/>
+ * Engines are counted by reference, and forgotten when the last identifier
+ * using one releases it.  A shared engine is never changed: removing a
+ * signature from an engine in use by other identifiers gives the caller
+ * a different engine.
+ *
+ * @version 6.0.0
+ */
+final class SignatureEngineRegistry {
+
+    private static final Map<Key, Engine> ENGINES = new HashMap<Key, Engine>();
+
+    private SignatureEngineRegistry() {
+    }
+
+    /**
+     * Acquires an engine for a signature file, preparing it if it is not already in use.
+     *
+     * @param snapshot the snapshot of the signature file.
+     * @param automatonMatching whether byte sequences are compiled to automata.
+     * @param removedPuids the puids whose signatures are removed.
+     * @param parser the parser which builds signature files from snapshots.
+     * @return an engine which must be released when it is no longer used.
+     * @throws SignatureParseException if the signature file could not be built.
+     */
+    static synchronized Engine acquire(SignatureFileSnapshot snapshot, boolean automatonMatching,
+            Set<String> removedPuids, SignatureFileParser parser) throws SignatureParseException {
+        return acquire(new Key(snapshot.getHash(), automatonMatching, removedPuids), snapshot, parser);
+    }
+
+    /**
+     * Releases an engine, forgetting it if no other identifier uses it.
+     *
+     * @param engine the engine to release.
+     */
+    static synchronized void release(Engine engine) {
+        engine.references--;
+        if (engine.references == 0 && ENGINES.get(engine.key) == engine) {
+            ENGINES.remove(engine.key);
+        }
+    }
+
+    /**
+     * Returns an engine which is the same as the one given, without the signatures
+     * for a puid.  An engine used by no other identifier is changed in place,
+     * unless an engine without the signatures is already shared.
+     *
+     * @param engine the engine to remove the signatures from, which is released if
+     *        a different engine is returned.
+     * @param puid the puid whose signatures are removed.
+     * @param snapshot the snapshot of the signature file.
+     * @param parser the parser which builds signature files from snapshots.
+     * @return an engine without the signatures for the puid.
+     * @throws SignatureParseException if a new signature file could not be built.
+     */
+    static synchronized Engine removeSignatureForPuid(Engine engine, String puid,
+            SignatureFileSnapshot snapshot, SignatureFileParser parser) throws SignatureParseException {
+        if (engine.key.removedPuids.contains(puid)) {
+            return engine;
+        }
+        final Set<String> removedPuids = new TreeSet<String>(engine.key.removedPuids);
+        removedPuids.add(puid);
+        final Key key = new Key(engine.key.hash, engine.key.automatonMatching, removedPuids);
+        if (engine.references == 1 && !ENGINES.containsKey(key)) {
+            if (ENGINES.get(engine.key) == engine) {
+                ENGINES.remove(engine.key);
+            }
+            engine.sigFile.puidHasOverridingSignatures(puid);
+            engine.key = key;
+            ENGINES.put(key, engine);
+            return engine;
+        }
+        final Engine removed = acquire(key, snapshot, parser);
+        release(engine);
+        return removed;
+    }
+
+    private static Engine acquire(Key key, SignatureFileSnapshot snapshot, SignatureFileParser parser)
+        throws SignatureParseException {
+        Engine engine = ENGINES.get(key);
+        if (engine == null) {
+            final FFSignatureFile sigFile = parser.parseSigFile(snapshot);
+            sigFile.setAutomatonMatching(key.automatonMatching);
+            sigFile.prepareForUse();
+            for (String puid : key.removedPuids) {
+                sigFile.puidHasOverridingSignatures(puid);
+            }
+            engine = new Engine(key, sigFile);
+            ENGINES.put(key, engine);
+        }
+        engine.references++;
+        return engine;
+    }
+
+    /**
+     * A prepared signature file and the number of identifiers using it.
+     */
+    static final class Engine {
+
+        private final FFSignatureFile sigFile;
+        private Key key;
+        private int references;
+
+        private Engine(Key key, FFSignatureFile sigFile) {
+            this.key = key;
+            this.sigFile = sigFile;
+        }
+
+        /**
+         * @return the prepared signature file, which must not be changed.
+         */
+        FFSignatureFile getSigFile() {
+            return sigFile;
+        }
+    }
+
+    /**
+     * Identifies an engine by the hash of its signature file and the options it was prepared with.
+     */
+    private static final class Key {
+
+        private final String hash;
+        private final boolean automatonMatching;
+        private final Set<String> removedPuids;
+
+        Key(String hash, boolean automatonMatching, Set<String> removedPuids) {
+            this.hash = hash;
+            this.automatonMatching = automatonMatching;
+            this.removedPuids = Collections.unmodifiableSet(new TreeSet<String>(removedPuids));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return hash.equals(other.hash) && automatonMatching == other.automatonMatching
+                && removedPuids.equals(other.removedPuids);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash.hashCode() ^ removedPuids.hashCode() ^ (automatonMatching ? 1 : 0);
+        }
+    }
+}
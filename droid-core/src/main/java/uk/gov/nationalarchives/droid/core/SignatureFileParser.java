@@ -8,19 +8,14 @@
  */
 package uk.gov.nationalarchives.droid.core;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
-import org.xml.sax.InputSource;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.xml.sax.SAXException;
-import org.xml.sax.XMLReader;
 
+import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileSnapshot;
 import uk.gov.nationalarchives.droid.core.signature.droid6.FFSignatureFile;
 import uk.gov.nationalarchives.droid.core.signature.xml.SAXModelBuilder;
 
@@ -33,53 +28,82 @@ public class SignatureFileParser {
     /** Namespace for the xml file format signatures file. */
     public static final String SIGNATURE_FILE_NS = "http://www.nationalarchives.gov.uk/pronom/SignatureFile";
 
+    private final Log log = LogFactory.getLog(getClass());
+    private boolean storeSnapshots;
+
     /**
      * Create a new signature file object based on a signature file.
+     * The file is read from a snapshot of its parse events if one is
+     * held in memory or stored next to the file.
      *
      * @param theFileName the file name
      * @return sig file
      * @throws SignatureParseException if there is a problem parsing the signature file.
      */
     FFSignatureFile parseSigFile(String theFileName) throws SignatureParseException {
+        return parseSigFile(getSnapshot(theFileName));
+    }
 
-        SAXModelBuilder mb = new SAXModelBuilder();
-        XMLReader parser = getXMLReader(mb);
-
-        //read in the XML file
+    /**
+     * Returns the snapshot of a signature file's parse events.
+     *
+     * @param theFileName the file name
+     * @return the snapshot of the signature file.
+     * @throws SignatureParseException if there is a problem parsing the signature file.
+     */
+    SignatureFileSnapshot getSnapshot(String theFileName) throws SignatureParseException {
         try {
-            BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(theFileName), "UTF-8"));
-            parser.parse(new InputSource(in));
+            return SignatureFileSnapshot.forFile(new File(theFileName), storeSnapshots);
         } catch (IOException e) {
             throw new SignatureParseException(e.getMessage(), e);
         } catch (SAXException e) {
             throw new SignatureParseException(e.getMessage(), e);
         }
-        return (FFSignatureFile) mb.getModel();
     }
-    
+
     /**
-     * Create the XML parser for the signature file.
+     * Create a new signature file object from the snapshot of a signature file.
+     * If the snapshot can not be replayed, the signature file is parsed again
+     * and the signature file object built from that instead.
      *
-     * @param mb sax builder
-     * @return XMLReader
-     * @throws SignatureParseException on error
+     * @param snapshot the snapshot of the signature file.
+     * @return sig file
+     * @throws SignatureParseException if the snapshot does not build a signature file.
      */
-    private XMLReader getXMLReader(SAXModelBuilder mb) throws SignatureParseException {
+    FFSignatureFile parseSigFile(SignatureFileSnapshot snapshot) throws SignatureParseException {
+        try {
+            return buildSigFile(snapshot);
+        } catch (RuntimeException e) {
+            log.warn(String.format("Could not replay the snapshot of a signature file, parsing it again: %s",
+                    e.getMessage()), e);
+            try {
+                snapshot.reparse();
+            } catch (IOException ioe) {
+                throw new SignatureParseException(ioe.getMessage(), ioe);
+            } catch (SAXException saxe) {
+                throw new SignatureParseException(saxe.getMessage(), saxe);
+            }
+            return buildSigFile(snapshot);
+        }
+    }
 
-        SAXParserFactory factory = SAXParserFactory.newInstance();
-        factory.setNamespaceAware(true);
-        SAXParser saxParser;
+    private FFSignatureFile buildSigFile(SignatureFileSnapshot snapshot) throws SignatureParseException {
+        SAXModelBuilder mb = new SAXModelBuilder();
+        mb.setupNamespace(SIGNATURE_FILE_NS, true);
         try {
-            saxParser = factory.newSAXParser();
-            XMLReader parser = saxParser.getXMLReader();
-            mb.setupNamespace(SIGNATURE_FILE_NS, true);
-            parser.setContentHandler(mb);
-            return parser;
-        } catch (ParserConfigurationException e) {
-            throw new SignatureParseException(e.getMessage(), e);
+            snapshot.replay(mb);
         } catch (SAXException e) {
             throw new SignatureParseException(e.getMessage(), e);
         }
+        return (FFSignatureFile) mb.getModel();
+    }
+
+    /**
+     * @param storeSnapshots whether to store a snapshot next to a signature file
+     * which had to be parsed, so later runs can read the snapshot instead.
+     */
+    void setStoreSnapshots(boolean storeSnapshots) {
+        this.storeSnapshots = storeSnapshots;
     }
 
 }
@@ -0,0 +1,281 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+
+package uk.gov.nationalarchives.droid.core.signature.droid6;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import net.domesdaybook.matcher.sequence.SequenceMatcher;
+import net.domesdaybook.matcher.singlebyte.SingleByteMatcher;
+import net.domesdaybook.reader.Window;
+import net.domesdaybook.reader.WindowReader;
+
+import uk.gov.nationalarchives.droid.core.signature.ByteReader;
+
+/**
+ * A compiled index over the anchoring sequences of all internal
+ * signatures which must begin at a known offset from the start of a file.
+ *
+ * <p/>Each indexed signature is registered in a trie keyed on the
+ * offset of its anchor, and then on the first few bytes the anchor
+ * can match at that offset.  When matching a file, its header is read
+ * once, and each trie is walked over it to find the signatures whose
+ * anchor could possibly match.  Only those signatures need to be fully
+ * evaluated.
+ *
+ * <p/>Signatures which can't be indexed (those with no BOF sequence,
+ * indirect offsets, left fragments before the anchor, or an anchor which
+ * can float over a large window) are always candidates for matching.
+ *
+ * <p/>The index is immutable once built, and so is safe to use from
+ * many threads at once.
+ *
+ * @version 6.0.0
+ */
+public final class BOFAnchorIndex {
+
+    /**
+     * The maximum number of bytes read from the start of a file to check anchors.
+     */
+    private static final int MAX_HEADER_LENGTH = 4096;
+    /**
+     * The maximum number of anchor bytes indexed for a signature.
+     */
+    private static final int MAX_PREFIX_LENGTH = 4;
+    /**
+     * The maximum number of different offsets an anchor can begin at to be indexed.
+     */
+    private static final int MAX_OFFSET_RANGE = 16;
+    /**
+     * The maximum number of trie branches a single anchor prefix can expand into.
+     */
+    private static final int MAX_BRANCHES = 64;
+    /**
+     * The number of possible values of a byte.
+     */
+    private static final int BYTE_VALUES = 256;
+    /**
+     * A mask to convert bytes into integers.
+     */
+    private static final int BYTEMASK = 0xFF;
+
+    private final Set<InternalSignature> indexedSignatures = new HashSet<InternalSignature>();
+    private final int[] offsets;
+    private final TrieNode[] roots;
+    private final int headerLength;
+
+    /**
+     * Compiles an index over the signatures given.
+     *
+     * @param signatures The signatures to index.  They must already be prepared for use.
+     */
+    public BOFAnchorIndex(final List<InternalSignature> signatures) {
+        final Map<Integer, TrieNode> offsetTries = new TreeMap<Integer, TrieNode>();
+        int maxHeaderLength = 0;
+        for (InternalSignature signature : signatures) {
+            final SubSequence anchor = getIndexableAnchor(signature);
+            if (anchor != null) {
+                final SequenceMatcher matcher = anchor.getAnchorMatcher();
+                final int prefixLength = getPrefixLength(matcher);
+                final int minOffset = anchor.getMinSeqOffset();
+                final int maxOffset = anchor.getMaxSeqOffset();
+                if (prefixLength > 0 && minOffset >= 0 && maxOffset + prefixLength <= MAX_HEADER_LENGTH) {
+                    for (int offset = minOffset; offset <= maxOffset; offset++) {
+                        TrieNode root = offsetTries.get(offset);
+                        if (root == null) {
+                            root = new TrieNode();
+                            offsetTries.put(offset, root);
+                        }
+                        addPrefix(root, matcher, 0, prefixLength, signature);
+                    }
+                    indexedSignatures.add(signature);
+                    if (maxOffset + prefixLength > maxHeaderLength) {
+                        maxHeaderLength = maxOffset + prefixLength;
+                    }
+                }
+            }
+        }
+        headerLength = maxHeaderLength;
+        offsets = new int[offsetTries.size()];
+        roots = new TrieNode[offsetTries.size()];
+        int index = 0;
+        for (Map.Entry<Integer, TrieNode> entry : offsetTries.entrySet()) {
+            offsets[index] = entry.getKey();
+            roots[index] = entry.getValue();
+            index++;
+        }
+    }
+
+    /**
+     * @return The number of signatures which are filtered by this index.
+     */
+    public int getNumIndexedSignatures() {
+        return indexedSignatures.size();
+    }
+
+    /**
+     * Reads the header of the target file once, and returns all the
+     * indexed signatures whose anchor matches the bytes found there.
+     *
+     * @param targetFile The file to scan.
+     * @return The indexed signatures whose anchor matched, or null if the
+     *         header could not be read, in which case no signatures should be filtered.
+     */
+    public Set<InternalSignature> getAnchorHits(final ByteReader targetFile) {
+        final Set<InternalSignature> hits = new HashSet<InternalSignature>();
+        final byte[] header = readHeader(targetFile);
+        if (header == null) {
+            return null;
+        }
+        final int[] localOffsets = offsets;
+        final TrieNode[] localRoots = roots;
+        for (int offsetIndex = 0; offsetIndex < localOffsets.length; offsetIndex++) {
+            int position = localOffsets[offsetIndex];
+            TrieNode node = localRoots[offsetIndex];
+            while (node != null) {
+                node.addSignaturesTo(hits);
+                if (position >= header.length) {
+                    break;
+                }
+                node = node.getChild(header[position++]);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * @param signature The signature to test.
+     * @param anchorHits The anchor hits returned from {@link #getAnchorHits(ByteReader)}.
+     * @return Whether the signature needs to be fully evaluated against the file.
+     */
+    public boolean isCandidate(final InternalSignature signature, final Set<InternalSignature> anchorHits) {
+        return anchorHits == null || anchorHits.contains(signature) || !indexedSignatures.contains(signature);
+    }
+
+    private byte[] readHeader(final ByteReader targetFile) {
+        final long fileLength = targetFile.getNumBytes();
+        final int length = fileLength < headerLength ? (int) fileLength : headerLength;
+        final byte[] header = new byte[length];
+        try {
+            final net.domesdaybook.reader.ByteReader reader = targetFile.getReader();
+            if (reader instanceof WindowReader) {
+                final Window window = ((WindowReader) reader).getWindow(0);
+                if (window != null && window.getWindowPosition() == 0 && window.length() >= length) {
+                    System.arraycopy(window.getArray(), 0, header, 0, length);
+                    return header;
+                }
+            }
+            for (int position = 0; position < length; position++) {
+                header[position] = reader.readByte(position);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+        return header;
+    }
+
+    /*
+     * Returns the first subsequence of the first byte sequence anchored
+     * directly to the beginning of the file, as long as the start of its
+     * anchoring sequence is known to within a small range of offsets.
+     * Since all byte sequences must match for the signature to match,
+     * the anchor matching is a necessary condition for the signature.
+     */
+    private SubSequence getIndexableAnchor(final InternalSignature signature) {
+        for (ByteSequence sequence : signature.getByteSequences()) {
+            if (sequence.isAnchoredToBOF() && !sequence.hasIndirectOffset()
+                    && sequence.getNumberOfSubSequences() > 0) {
+                final SubSequence first = sequence.getSubSequenceAt(0);
+                if (first.getAnchorMatcher() != null && !first.hasLeftFragments()
+                        && first.getMaxSeqOffset() - first.getMinSeqOffset() < MAX_OFFSET_RANGE) {
+                    return first;
+                }
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Returns how many leading positions of the anchor can be indexed,
+     * without the number of branches in the trie growing too large.
+     */
+    private int getPrefixLength(final SequenceMatcher matcher) {
+        final int maxLength = matcher.length() < MAX_PREFIX_LENGTH ? matcher.length() : MAX_PREFIX_LENGTH;
+        int branches = 1;
+        int length = 0;
+        while (length < maxLength) {
+            branches *= matcher.getByteMatcherForPosition(length).getNumberOfMatchingBytes();
+            if (branches > MAX_BRANCHES) {
+                break;
+            }
+            length++;
+        }
+        return length;
+    }
+
+    private void addPrefix(final TrieNode node, final SequenceMatcher matcher,
+            final int position, final int prefixLength, final InternalSignature signature) {
+        if (position == prefixLength) {
+            node.addSignature(signature);
+        } else {
+            final SingleByteMatcher byteMatcher = matcher.getByteMatcherForPosition(position);
+            for (byte value : byteMatcher.getMatchingBytes()) {
+                addPrefix(node.getOrAddChild(value), matcher, position + 1, prefixLength, signature);
+            }
+        }
+    }
+
+    /**
+     * A node in an anchor trie, holding the signatures whose
+     * indexed prefix ends at this node.
+     */
+    private static final class TrieNode {
+
+        private TrieNode[] children;
+        private List<InternalSignature> signatures;
+
+        TrieNode getChild(final byte value) {
+            return children == null ? null : children[value & BYTEMASK];
+        }
+
+        TrieNode getOrAddChild(final byte value) {
+            if (children == null) {
+                children = new TrieNode[BYTE_VALUES];
+            }
+            final int index = value & BYTEMASK;
+            TrieNode child = children[index];
+            if (child == null) {
+                child = new TrieNode();
+                children[index] = child;
+            }
+            return child;
+        }
+
+        void addSignature(final InternalSignature signature) {
+            if (signatures == null) {
+                signatures = new ArrayList<InternalSignature>();
+            }
+            if (!signatures.contains(signature)) {
+                signatures.add(signature);
+            }
+        }
+
+        void addSignaturesTo(final Set<InternalSignature> hits) {
+            if (signatures != null) {
+                hits.addAll(signatures);
+            }
+        }
+    }
+
+}
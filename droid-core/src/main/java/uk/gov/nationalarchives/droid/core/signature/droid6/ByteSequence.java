@@ -62,6 +62,10 @@ package uk.gov.nationalarchives.droid.core.signature.droid6;
 import java.util.ArrayList;
 import java.util.List;
 
+import net.domesdaybook.automata.dfa.DfaMatcher;
+import net.domesdaybook.expression.compiler.dfa.DfaCompiler;
+import net.domesdaybook.expression.parser.ParseException;
+
 import uk.gov.nationalarchives.droid.core.signature.ByteReader;
 
 /**
@@ -152,6 +156,8 @@ public class ByteSequence extends uk.gov.nationalarchives.droid.core.signature.x
     private int sortOrder;
 
     private boolean isInvalidByteSequence;
+    private DfaMatcher compiledMatcher;
+    private int automatonOverrun;
     
     /**
      * 
@@ -169,6 +175,23 @@ public class ByteSequence extends uk.gov.nationalarchives.droid.core.signature.x
         return anchoredToEOF;
     }
 
+    /**
+     * 
+     * @return Whether the byte sequence begins at an offset read from the file itself.
+     */
+    public final boolean hasIndirectOffset() {
+        return hasIndirectOffset;
+    }
+
+    /**
+     * 
+     * @param theIndex The index of the subsequence to get.
+     * @return The subsequence at the given index.
+     */
+    public final SubSequence getSubSequenceAt(final int theIndex) {
+        return subSequences.get(theIndex);
+    }
+
     /**
      * 
      * @return The sort order of this byte sequence.
@@ -375,6 +398,10 @@ public class ByteSequence extends uk.gov.nationalarchives.droid.core.signature.x
      * @return boolean
      */
     public final boolean matches(final ByteReader targetFile, final long maxBytesToScan) {
+        final DfaMatcher automaton = compiledMatcher;
+        if (automaton != null && !mayMatchAutomaton(automaton, targetFile, maxBytesToScan)) {
+            return false;
+        }
         boolean matchResult = true;
 
         // Use a local reference to the sequence list for better performance:
@@ -401,6 +428,90 @@ public class ByteSequence extends uk.gov.nationalarchives.droid.core.signature.x
     }
 
 
+    /*
+     * Runs the compiled automaton forwards from the start of the file, in a single pass,
+     * to rule out files the sequence can't match.  The automaton accepts any way of laying
+     * out the sequence, where the subsequences take the first match of each in turn, so a
+     * file it accepts is still matched by the subsequences.  It reads as far as they can:
+     * their anchors end within the maximum bytes to scan, but the right fragments of the
+     * last one may run past it.
+     */
+    private boolean mayMatchAutomaton(final DfaMatcher automaton, final ByteReader targetFile,
+            final long maxBytesToScan) {
+        long lastPosition = targetFile.getNumBytes() - 1;
+        if (maxBytesToScan > 0 && lastPosition > maxBytesToScan + automatonOverrun) {
+            lastPosition = maxBytesToScan + automatonOverrun;
+        }
+        return automaton.matches(targetFile.getReader(), 0, lastPosition);
+    }
+
+
+    /**
+     * Compiles the byte sequence into a deterministic finite automaton, which
+     * rules out files the sequence can't match in a single pass forwards from the start
+     * of the file, however many subsequences, fragments and gaps it has.  Files which
+     * aren't ruled out are matched by the subsequences, as before.
+     * 
+     * <p/>Only sequences anchored directly to the beginning of a file are compiled.
+     * If the sequence can't be compiled, or its automaton would be too big,
+     * it only matches its subsequences.
+     * 
+     * @param compiler The compiler to compile the regular expression of the sequence with.
+     * @return Whether the byte sequence was compiled.
+     */
+    public final boolean compileAutomaton(final DfaCompiler compiler) {
+        compiledMatcher = null;
+        if (anchoredToBOF && !hasIndirectOffset && !isInvalidByteSequence) {
+            final String expression = toAutomatonExpression(toRegularExpression(false));
+            try {
+                compiledMatcher = new DfaMatcher(compiler.compile(expression));
+                automatonOverrun = subSequences.get(subSequences.size() - 1).getMaxRightFragmentLength();
+            } catch (ParseException e) {
+                getLog().debug(String.format("Byte sequence %s not compiled: %s", expression, e.getMessage()));
+            }
+        }
+        return compiledMatcher != null;
+    }
+
+
+    /**
+     * 
+     * @return Whether the byte sequence matches using a compiled automaton.
+     */
+    public final boolean isCompiledAutomaton() {
+        return compiledMatcher != null;
+    }
+
+
+    /**
+     * Signature regular expressions write gaps as bare repeats, e.g. {4}, {0-1024} or *,
+     * but the automaton compiler must be told what is repeated - any byte.
+     * 
+     * @param expression A regular expression from {@link #toRegularExpression(boolean)}.
+     * @return The regular expression with an any byte . before each gap.
+     */
+    static String toAutomatonExpression(final String expression) {
+        final StringBuilder automatonExpression = new StringBuilder(expression.length() * 2);
+        boolean inSet = false;
+        boolean inRepeat = false;
+        for (int charIndex = 0; charIndex < expression.length(); charIndex++) {
+            final char theChar = expression.charAt(charIndex);
+            if (theChar == '[') {
+                inSet = true;
+            } else if (theChar == ']') {
+                inSet = false;
+            } else if (theChar == '}') {
+                inRepeat = false;
+            } else if (!inSet && !inRepeat && (theChar == '{' || theChar == '*')) {
+                automatonExpression.append('.');
+                inRepeat = theChar == '{';
+            }
+            automatonExpression.append(theChar);
+        }
+        return automatonExpression.toString();
+    }
+
+
     /**
      * 
      * @param prettyPrint whether to pretty print the regular expression.
@@ -104,6 +104,12 @@ public class FFSignatureFile extends SimpleElement {
      */
     private static final int DEFAULT_TENTATIVE_EXTENSION_SIZE = 100;
     private static final int DEFAULT_ALL_EXTENSION_SIZE = 300;
+
+    /**
+     * The most states a byte sequence can compile to before it is
+     * left to the default matching engine instead.
+     */
+    private static final int MAX_AUTOMATON_STATES = 4096;
     
     //private Log log = LogFactory.getLog(this.getClass());
     
@@ -117,6 +123,7 @@ public class FFSignatureFile extends SimpleElement {
         new HashMap<String, List<FileFormat>>(DEFAULT_ALL_EXTENSION_SIZE);
     
     private long maxBytesToScan = -1; // default to scanning all bytes.
+    private boolean automatonMatching;
 
     /* setters */
     /**
@@ -303,6 +310,11 @@ public class FFSignatureFile extends SimpleElement {
         this.setAllSignatureFileFormats();
         this.intSigs.prepareForUse();
         intSigs.sortSignatures(new InternalSignatureComparator());
+        intSigs.buildAnchorIndex();
+        if (automatonMatching) {
+            final int compiled = intSigs.compileAutomata(MAX_AUTOMATON_STATES);
+            getLog().info(String.format("Compiled %d byte sequences to automata.", compiled));
+        }
         buildFileExtensions();
     }
     
@@ -462,6 +474,19 @@ public class FFSignatureFile extends SimpleElement {
         this.maxBytesToScan = maxBytesToScan;
     }
 
+
+    /**
+     * Sets whether byte sequences anchored to the beginning of a file are
+     * compiled to deterministic automata, which read each byte at most once.
+     * Sequences which would compile to too many states are still matched
+     * by the default engine.  Must be set before the signature file is prepared for use.
+     *
+     * @param automatonMatching Whether to match byte sequences with compiled automata.
+     */
+    public void setAutomatonMatching(final boolean automatonMatching) {
+        this.automatonMatching = automatonMatching;
+    }
+
     
     /**
      * Identify the target file using the signatures defined in this signature file.
@@ -469,7 +494,22 @@ public class FFSignatureFile extends SimpleElement {
      * @param targetFile The binary file to be identified
      */
     public final void runFileIdentification(final ByteReader targetFile) {
-        List<InternalSignature> matchingSigs = intSigs.getMatchingSignatures(targetFile, maxBytesToScan);
+        runFileIdentification(targetFile, maxBytesToScan);
+    }
+
+
+    /**
+     * Identify the target file using the signatures defined in this signature file,
+     * scanning at most the number of bytes given rather than the number set on this
+     * signature file, so a prepared signature file can be shared by callers with
+     * different limits.
+     *
+     * @param targetFile The binary file to be identified
+     * @param maxBytes The maximum number of bytes to scan from each end of the file.
+     *         If the number is less than zero, then the full file can be scanned.
+     */
+    public final void runFileIdentification(final ByteReader targetFile, final long maxBytes) {
+        List<InternalSignature> matchingSigs = intSigs.getMatchingSignatures(targetFile, maxBytes);
         for (InternalSignature internalSig : matchingSigs) {
             targetFile.setPositiveIdent();
             final int numFileFormats = internalSig.getNumFileFormats();
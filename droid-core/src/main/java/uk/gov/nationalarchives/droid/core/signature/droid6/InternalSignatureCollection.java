@@ -37,6 +37,9 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+
+import net.domesdaybook.expression.compiler.dfa.DfaCompiler;
 
 import uk.gov.nationalarchives.droid.core.signature.ByteReader;
 import uk.gov.nationalarchives.droid.core.signature.xml.SimpleElement;
@@ -58,6 +61,7 @@ public class InternalSignatureCollection extends SimpleElement {
     
     private List<InternalSignature> intSigs = new ArrayList<InternalSignature>(DEFAULT_COLLECTION_SIZE);
     private Map<Integer, InternalSignature> sigsByID = new HashMap<Integer, InternalSignature>();
+    private BOFAnchorIndex anchorIndex;
     
     /**
      * Runs all the signatures against the target file,
@@ -70,10 +74,13 @@ public class InternalSignatureCollection extends SimpleElement {
     public List<InternalSignature> getMatchingSignatures(ByteReader targetFile, long maxBytesToScan) {
         List<InternalSignature> matchingSigs = new ArrayList<InternalSignature>();
         if (targetFile.getNumBytes() > 0) {
+            final BOFAnchorIndex index = anchorIndex;
+            final Set<InternalSignature> anchorHits = index == null ? null : index.getAnchorHits(targetFile);
             final int stop = intSigs.size();
             for (int sigIndex = 0; sigIndex < stop; sigIndex++) {
                 final InternalSignature internalSig = intSigs.get(sigIndex);
-                if (internalSig.matches(targetFile, maxBytesToScan)) {
+                if ((index == null || index.isCandidate(internalSig, anchorHits))
+                        && internalSig.matches(targetFile, maxBytesToScan)) {
                     matchingSigs.add(internalSig);
                 }
             }
@@ -97,6 +104,38 @@ public class InternalSignatureCollection extends SimpleElement {
         }
     }
     
+    /**
+     * Compiles an index over the signatures anchored to the beginning of a file,
+     * so that only signatures whose anchor matches the file header are fully evaluated.
+     * Must be called after the signatures have been prepared for use.
+     */
+    public void buildAnchorIndex() {
+        anchorIndex = new BOFAnchorIndex(intSigs);
+    }
+    
+    /**
+     * Compiles the byte sequences anchored to the beginning of a file into
+     * deterministic finite automata, so files each of them can't match are ruled out in
+     * a single pass over the file, before searching for each subsequence and fragment in turn.
+     * Must be called after the signatures have been prepared for use.
+     * 
+     * @param maxStates The maximum number of states in the automaton of a byte sequence.
+     *        Byte sequences which need more states carry on matching as before.
+     * @return The number of byte sequences compiled.
+     */
+    public int compileAutomata(final int maxStates) {
+        final DfaCompiler compiler = new DfaCompiler(maxStates);
+        int numCompiled = 0;
+        for (InternalSignature signature : intSigs) {
+            for (ByteSequence sequence : signature.getByteSequences()) {
+                if (sequence.compileAutomaton(compiler)) {
+                    numCompiled++;
+                }
+            }
+        }
+        return numCompiled;
+    }
+
     private String getInvalidSignatureWarningMessage(InternalSignature sig) {
         return String.format("Removing invalid signature [id:%d]. " 
                 + "Matches formats: %s", sig.getID(), sig.getFileFormatDescriptions());
@@ -239,6 +239,19 @@ public class SideFragment extends SimpleElement {
     }
 
 
+    /**
+     * Matches the fragment against a position in an array of bytes, usually
+     * the array of a window.  All the bytes of the fragment must lie in the array.
+     * 
+     * @param bytes The array to match the bytes with.
+     * @param matchFrom The position in the array to match from.
+     * @return Whether the fragment matches at the position given.
+     */
+    public final boolean matchesBytes(final byte[] bytes, final int matchFrom) {
+        return matcher.matches(bytes, matchFrom);
+    }
+
+
     /**
      * Returns a regular expression representation of this fragment.
      * 
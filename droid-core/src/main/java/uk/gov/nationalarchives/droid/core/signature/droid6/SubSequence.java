@@ -95,6 +95,8 @@ import net.domesdaybook.expression.parser.ParseException;
 import net.domesdaybook.matcher.sequence.SequenceMatcher;
 import net.domesdaybook.matcher.sequence.searcher.BoyerMooreHorspoolSearcher;
 import net.domesdaybook.matcher.sequence.searcher.SequenceMatcherSearcher;
+import net.domesdaybook.reader.Window;
+import net.domesdaybook.reader.WindowReader;
 
 import uk.gov.nationalarchives.droid.core.signature.ByteReader;
 import uk.gov.nationalarchives.droid.core.signature.xml.SimpleElement;
@@ -304,6 +306,23 @@ public class SubSequence extends SimpleElement {
                         : (SideFragment) (this.orderedRightFragments.get(thePosition - 1)).get(alternateIndex);
     }
 
+    /**
+     * @return The sequence matcher for the anchoring sequence, or null if
+     * the anchoring sequence could not be parsed.
+     */
+    public final SequenceMatcher getAnchorMatcher() {
+        return matcher;
+    }
+
+    /**
+     * Only valid after the subsequence has been prepared for use.
+     * 
+     * @return Whether there are any left fragments preceding the anchoring sequence.
+     */
+    public final boolean hasLeftFragments() {
+        return !orderedLeftFragments.isEmpty();
+    }
+
     /**
      * @return the number of bytes matched by the anchoring sequence.
      */
@@ -527,6 +546,14 @@ public class SubSequence extends SimpleElement {
     }
 
     
+    /**
+     * 
+     * @return The most bytes the right fragments can take up after the anchoring sequence.
+     */
+    public final int getMaxRightFragmentLength() {
+        return maxRightFragmentLength;
+    }
+
     /**
      * 
      * @return Whether the subsequence is invalid.
@@ -1050,8 +1077,20 @@ public class SubSequence extends SimpleElement {
         //compare sequence with file contents directly at fileMarker position
         //boolean subSeqFound = false;
         //while ((!subSeqFound) && ((searchDirectionL) * (lastStartPosInFile - startPosInFile) >= 0L)) {
+        // If the bytes can be read a window at a time, match against the array of the
+        // current window, only getting a new window when the search moves out of it.
+        final WindowReader windowReader = bytes instanceof WindowReader ? (WindowReader) bytes : null;
+        Window window = null;
         while (searchDirectionL * (lastStartPosInFile - startPosInFile) >= 0L) {
-            if (fragment.matchesBytes(bytes, startPosInFile - byteOffset)) {
+            final long matchFrom = startPosInFile - byteOffset;
+            if (windowReader != null && (window == null || !window.contains(matchFrom))) {
+                window = windowReader.getWindow(matchFrom);
+            }
+            final long windowOffset = window == null ? -1 : matchFrom - window.getWindowPosition();
+            final boolean matches = windowOffset >= 0 && windowOffset + numBytes <= window.length()
+                ? fragment.matchesBytes(window.getArray(), (int) windowOffset)
+                : fragment.matchesBytes(bytes, matchFrom);
+            if (matches) {
                 endPosInFile = startPosInFile + (numBytes * searchDirectionL) - searchDirectionL;
                 break;
             }
@@ -54,7 +54,9 @@
 package uk.gov.nationalarchives.droid.core.signature.xml;
 
 import java.lang.reflect.Method;
+import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -75,6 +77,10 @@ public class SAXModelBuilder extends DefaultHandler {
     private static final String ADD = "add";
     private static final String SET = "set";
 
+    /* Element classes and setters are looked up once, not for every element of every file. */
+    private static final Map<String, Class<?>> ELEMENT_CLASSES = new ConcurrentHashMap<String, Class<?>>();
+    private static final Map<String, PropertySetter> SETTERS = new ConcurrentHashMap<String, PropertySetter>();
+
     private Log log = LogFactory.getLog(this.getClass());
     
     private Stack<Object> stack = new Stack<Object>();
@@ -165,7 +171,7 @@ public class SAXModelBuilder extends DefaultHandler {
         }
         String fullName = packName + "." + elementName; 
         try {
-            elem = (SimpleElement) Class.forName(fullName).newInstance();
+            elem = (SimpleElement) elementClass(fullName).newInstance();
         //CHECKSTYLE:OFF
         } catch (Exception e) {
         	log.debug("No class exists for element name:" + elementName);
@@ -225,47 +231,65 @@ public class SAXModelBuilder extends DefaultHandler {
      * @throws SAXException exception if a problem occurs
      */
     void setProperty(String name, Object target, Object value) throws SAXException {
-        Method method = null;
-        Object val = value;
-        try {
-            method = target.getClass().getMethod(
-                    ADD + name, new Class[]{val.getClass()});
-        //CHECKSTYLE:OFF
-        } catch (NoSuchMethodException e) {
+        final String key = target.getClass().getName() + ':' + name + ':' + value.getClass().getName();
+        PropertySetter setter = SETTERS.get(key);
+        if (setter == null) {
+            setter = findSetter(name, target.getClass(), value.getClass());
+            SETTERS.put(key, setter);
         }
-        //CHECKSTYLE:ON
-        if (method == null) {
+        if (setter.method == null) {
+            unknownElementWarning(name, ((SimpleElement) target).getElementName());
+        } else {
+            final Object val = setter.text ? ((SimpleElement) value).getText().trim() : value;
             try {
-                method = target.getClass().getMethod(
-                        SET + name, new Class[]{val.getClass()});
-              //CHECKSTYLE:OFF
-            } catch (NoSuchMethodException e) {
+                setter.method.invoke(target, val);
+            //CHECKSTYLE:OFF
+            } catch (Exception e) {
+                throw new SAXException(e);
             }
             //CHECKSTYLE:ON
         }
+    }
+
+    /*
+     * Looks for an add or set method taking the element, and then for one taking the
+     * text of the element.
+     */
+    private static PropertySetter findSetter(String name, Class<?> targetClass, Class<?> valueClass) {
+        Method method = findMethod(targetClass, ADD + name, valueClass);
         if (method == null) {
-            try {
-                val = ((SimpleElement) val).getText().trim();
-                method = target.getClass().getMethod(
-                        ADD + name, new Class[]{String.class});
-              //CHECKSTYLE:OFF
-            } catch (NoSuchMethodException e) {
-            }
-            //CHECKSTYLE:ON
+            method = findMethod(targetClass, SET + name, valueClass);
         }
-        try {
+        boolean text = false;
+        if (method == null) {
+            text = true;
+            method = findMethod(targetClass, ADD + name, String.class);
             if (method == null) {
-                method = target.getClass().getMethod(
-                        SET + name, new Class[]{String.class});
+                method = findMethod(targetClass, SET + name, String.class);
             }
-            method.invoke(target, val);
+        }
+        return new PropertySetter(method, text);
+    }
+
+    private static Method findMethod(Class<?> targetClass, String methodName, Class<?> parameterClass) {
+        try {
+            return targetClass.getMethod(methodName, new Class[]{parameterClass});
         } catch (NoSuchMethodException e) {
-            unknownElementWarning(name, ((SimpleElement) target).getElementName());
-          //CHECKSTYLE:OFF
-        } catch (Exception e) {
-            throw new SAXException(e);
+            return null;
         }
-        //CHECKSTYLE:ON
+    }
+
+    private static Class<?> elementClass(String fullName) {
+        Class<?> elementClass = ELEMENT_CLASSES.get(fullName);
+        if (elementClass == null) {
+            try {
+                elementClass = Class.forName(fullName);
+            } catch (ClassNotFoundException e) {
+                elementClass = SimpleElement.class;
+            }
+            ELEMENT_CLASSES.put(fullName, elementClass);
+        }
+        return elementClass;
     }
 
     /**
@@ -288,4 +312,17 @@ public class SAXModelBuilder extends DefaultHandler {
         log.debug(warning);
     }    
 
+    /**
+     * The method which sets an element on its parent, and whether it takes the element's text.
+     */
+    private static final class PropertySetter {
+
+        private final Method method;
+        private final boolean text;
+
+        PropertySetter(Method method, boolean text) {
+            this.method = method;
+            this.text = text;
+        }
+    }
 }
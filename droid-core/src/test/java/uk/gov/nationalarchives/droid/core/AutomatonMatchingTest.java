@@ -0,0 +1,237 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.FileSystemIdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+import uk.gov.nationalarchives.droid.core.signature.droid6.ByteSequence;
+import uk.gov.nationalarchives.droid.core.signature.droid6.FFSignatureFile;
+import uk.gov.nationalarchives.droid.core.signature.droid6.InternalSignature;
+
+/**
+ * Checks that matching byte sequences with compiled automata gives
+ * exactly the same hits as the default matching engine.
+ */
+public class AutomatonMatchingTest {
+
+    private static final int MAX_SAMPLE_SIZE = 32 * 1024 - 1;
+    private static final int MAX_BYTES_TO_SCAN = 16;
+
+    /*
+     * fmt/1 has three subsequences, fmt/2 two, fmt/3 a right fragment which may be in one of
+     * several places, fmt/4 an offset window and fmt/5 a right fragment on its last subsequence.
+     */
+    private static final String SEQUENCE_SIGNATURES =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+        + "<FFSignatureFile xmlns=\"http://www.nationalarchives.gov.uk/pronom/SignatureFile\" Version=\"1\">"
+        + "<InternalSignatureCollection>"
+        + "<InternalSignature ID=\"1\" Specificity=\"Specific\"><ByteSequence Reference=\"BOFoffset\">"
+        + "<SubSequence Position=\"1\" SubSeqMinOffset=\"0\" SubSeqMaxOffset=\"0\"><Sequence>41</Sequence>"
+        + "</SubSequence>"
+        + "<SubSequence Position=\"2\" SubSeqMinOffset=\"0\" SubSeqMaxOffset=\"4\"><Sequence>42</Sequence>"
+        + "</SubSequence>"
+        + "<SubSequence Position=\"3\" SubSeqMinOffset=\"0\" SubSeqMaxOffset=\"0\"><Sequence>43</Sequence>"
+        + "</SubSequence>"
+        + "</ByteSequence></InternalSignature>"
+        + "<InternalSignature ID=\"2\" Specificity=\"Specific\"><ByteSequence Reference=\"BOFoffset\">"
+        + "<SubSequence Position=\"1\" SubSeqMinOffset=\"0\" SubSeqMaxOffset=\"0\"><Sequence>41</Sequence>"
+        + "</SubSequence>"
+        + "<SubSequence Position=\"2\" SubSeqMinOffset=\"0\"><Sequence>5A5A</Sequence></SubSequence>"
+        + "</ByteSequence></InternalSignature>"
+        + "<InternalSignature ID=\"3\" Specificity=\"Specific\"><ByteSequence Reference=\"BOFoffset\">"
+        + "<SubSequence Position=\"1\" SubSeqMinOffset=\"0\" SubSeqMaxOffset=\"0\"><Sequence>4142</Sequence>"
+        + "<RightFragment Position=\"1\" MinOffset=\"0\" MaxOffset=\"2\">43</RightFragment>"
+        + "</SubSequence>"
+        + "<SubSequence Position=\"2\" SubSeqMinOffset=\"0\" SubSeqMaxOffset=\"0\"><Sequence>44</Sequence>"
+        + "</SubSequence>"
+        + "</ByteSequence></InternalSignature>"
+        + "<InternalSignature ID=\"4\" Specificity=\"Specific\"><ByteSequence Reference=\"BOFoffset\">"
+        + "<SubSequence Position=\"1\" SubSeqMinOffset=\"0\" SubSeqMaxOffset=\"30\"><Sequence>5A5A</Sequence>"
+        + "</SubSequence>"
+        + "</ByteSequence></InternalSignature>"
+        + "<InternalSignature ID=\"5\" Specificity=\"Specific\"><ByteSequence Reference=\"BOFoffset\">"
+        + "<SubSequence Position=\"1\" SubSeqMinOffset=\"0\" SubSeqMaxOffset=\"0\"><Sequence>41</Sequence>"
+        + "</SubSequence>"
+        + "<SubSequence Position=\"2\" SubSeqMinOffset=\"0\"><Sequence>5A</Sequence>"
+        + "<RightFragment Position=\"1\" MinOffset=\"0\" MaxOffset=\"0\">59</RightFragment>"
+        + "</SubSequence>"
+        + "</ByteSequence></InternalSignature>"
+        + "</InternalSignatureCollection>"
+        + "<FileFormatCollection>"
+        + "<FileFormat ID=\"1\" Name=\"Bounded gap\" PUID=\"fmt/1\"><InternalSignatureID>1</InternalSignatureID>"
+        + "</FileFormat>"
+        + "<FileFormat ID=\"2\" Name=\"Unbounded gap\" PUID=\"fmt/2\"><InternalSignatureID>2</InternalSignatureID>"
+        + "</FileFormat>"
+        + "<FileFormat ID=\"3\" Name=\"Right fragment\" PUID=\"fmt/3\"><InternalSignatureID>3</InternalSignatureID>"
+        + "</FileFormat>"
+        + "<FileFormat ID=\"4\" Name=\"Offset\" PUID=\"fmt/4\"><InternalSignatureID>4</InternalSignatureID>"
+        + "</FileFormat>"
+        + "<FileFormat ID=\"5\" Name=\"Fragment\" PUID=\"fmt/5\"><InternalSignatureID>5</InternalSignatureID>"
+        + "</FileFormat>"
+        + "</FileFormatCollection>"
+        + "</FFSignatureFile>";
+
+    private FFSignatureFile sigFile;
+    private FFSignatureFile automatonSigFile;
+
+    @Before
+    public void setup() {
+        sigFile = newSignatureFile(false);
+        automatonSigFile = newSignatureFile(true);
+    }
+
+    @Test
+    public void testAutomataAreOnlyCompiledWhenEnabled() {
+        assertFalse(hasCompiledAutomata(sigFile));
+        assertTrue(hasCompiledAutomata(automatonSigFile));
+    }
+
+    @Test
+    public void testAutomatonMatchingGivesSameHitsForTestFiles() throws IOException {
+        for (File file : new File("test_sig_files").listFiles()) {
+            if (file.isFile()) {
+                assertSameHits(file.getName(), readSample(file));
+            }
+        }
+    }
+
+    @Test
+    public void testAutomatonMatchingGivesSameHitsForKnownHeaders() throws IOException {
+        assertSameHits("test.pdf", pad("%PDF-1.4\n%âã\n1 0 obj\n<<>>\nendobj\n%%EOF\n"));
+        assertSameHits("test.gif", pad("GIF89a\u0001\u0000\u0001\u0000\u0000\u0000\u0000;"));
+        assertSameHits("test.png", pad("\u0089PNG\r\n\u001a\n\u0000\u0000\u0000\rIHDR"));
+        assertSameHits("test.zip", pad("PK\u0003\u0004\u0014\u0000\u0000\u0000"));
+        assertSameHits("test.html", pad("<html><head><title>x</title></head></html>"));
+        assertSameHits("test.wav", pad("RIFF$\u0000\u0000\u0000WAVEfmt \u0010\u0000\u0000\u0000"));
+        assertSameHits("test.bin", new byte[] {1});
+    }
+
+    @Test
+    public void testAutomatonMatchingGivesSameHitsAsEachSubsequenceMatchedInTurn() throws IOException {
+        final File dir = new File("tmp/" + getClass().getSimpleName());
+        FileUtils.deleteQuietly(dir);
+        dir.mkdirs();
+        try {
+            final File signatureFile = new File(dir, "sequences.xml");
+            FileUtils.writeStringToFile(signatureFile, SEQUENCE_SIGNATURES, "UTF-8");
+            sigFile = newSignatureFile(signatureFile.getPath(), false);
+            automatonSigFile = newSignatureFile(signatureFile.getPath(), true);
+            assertTrue(hasCompiledAutomata(automatonSigFile));
+
+            assertSameHits("subsequences", pad("ABxBC"), -1);
+            assertSameHits("subsequences", pad("ACB"), -1);
+            assertSameHits("fragment", pad("ABxCD"), -1);
+            assertSameHits("fragment", pad("ABxxxCD"), -1);
+            // The anchor of the last subsequence must end within the bytes scanned, but its fragments need not:
+            for (int end = MAX_BYTES_TO_SCAN - 2; end <= MAX_BYTES_TO_SCAN + 2; end++) {
+                final byte[] bytes = pad("A");
+                bytes[end - 1] = 'Z';
+                bytes[end] = 'Z';
+                bytes[end + 1] = 'Y';
+                assertSameHits("ends at " + end, bytes, MAX_BYTES_TO_SCAN);
+                assertSameHits("ends at " + end, bytes, -1);
+            }
+        } finally {
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+
+    private FFSignatureFile newSignatureFile(boolean automatonMatching) {
+        return newSignatureFile("test_sig_files/DROID_SignatureFile_V26.xml", automatonMatching);
+    }
+
+    private FFSignatureFile newSignatureFile(String signatureFile, boolean automatonMatching) {
+        BinarySignatureIdentifier droid = new BinarySignatureIdentifier();
+        droid.setSignatureFile(signatureFile);
+        droid.setAutomatonMatching(automatonMatching);
+        droid.init();
+        return droid.getSigFile();
+    }
+
+    private boolean hasCompiledAutomata(FFSignatureFile signatureFile) {
+        for (InternalSignature signature : signatureFile.getSignatures()) {
+            for (ByteSequence sequence : signature.getByteSequences()) {
+                if (sequence.isCompiledAutomaton()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void assertSameHits(String fileName, byte[] bytes) throws IOException {
+        assertSameHits(fileName, bytes, -1);
+    }
+
+    private void assertSameHits(String fileName, byte[] bytes, long maxBytesToScan) throws IOException {
+        final List<String> hits = getHits(sigFile, fileName, bytes, maxBytesToScan);
+        assertEquals(fileName, hits, getHits(automatonSigFile, fileName, bytes, maxBytesToScan));
+    }
+
+    private List<String> getHits(FFSignatureFile signatureFile, String fileName, byte[] bytes,
+            long maxBytesToScan) throws IOException {
+        final IdentificationRequestByteReaderAdapter reader = newReader(fileName, bytes);
+        signatureFile.runFileIdentification(reader, maxBytesToScan);
+        final List<String> hits = new ArrayList<String>();
+        for (int i = 0; i < reader.getNumHits(); i++) {
+            hits.add(reader.getHit(i).getFileFormatPUID());
+        }
+        return hits;
+    }
+
+    private IdentificationRequestByteReaderAdapter newReader(String fileName, byte[] bytes) throws IOException {
+        RequestMetaData metaData = new RequestMetaData((long) bytes.length, 1L, fileName);
+        RequestIdentifier identifier = new RequestIdentifier(new File(fileName).toURI());
+        IdentificationRequest request = new FileSystemIdentificationRequest(metaData, identifier);
+        request.open(new ByteArrayInputStream(bytes));
+        return new IdentificationRequestByteReaderAdapter(request);
+    }
+
+    private byte[] readSample(File file) throws IOException {
+        final byte[] buffer = new byte[MAX_SAMPLE_SIZE];
+        final InputStream in = new FileInputStream(file);
+        try {
+            int total = 0;
+            int read = 0;
+            while (total < buffer.length && (read = in.read(buffer, total, buffer.length - total)) > 0) {
+                total += read;
+            }
+            return Arrays.copyOf(buffer, total);
+        } finally {
+            in.close();
+        }
+    }
+
+    private byte[] pad(String header) {
+        final byte[] bytes = new byte[1024];
+        for (int i = 0; i < header.length(); i++) {
+            bytes[i] = (byte) header.charAt(i);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.FileSystemIdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+import uk.gov.nationalarchives.droid.core.signature.droid6.BOFAnchorIndex;
+import uk.gov.nationalarchives.droid.core.signature.droid6.FFSignatureFile;
+import uk.gov.nationalarchives.droid.core.signature.droid6.InternalSignature;
+
+/**
+ * Checks that filtering signatures through the BOF anchor index gives
+ * exactly the same hits as evaluating every signature.
+ */
+public class BOFAnchorIndexTest {
+
+    private static final int MAX_SAMPLE_SIZE = 32 * 1024 - 1;
+
+    private FFSignatureFile sigFile;
+
+    @Before
+    public void setup() {
+        BinarySignatureIdentifier droid = new BinarySignatureIdentifier();
+        droid.setSignatureFile("test_sig_files/DROID_SignatureFile_V26.xml");
+        droid.init();
+        sigFile = droid.getSigFile();
+    }
+
+    @Test
+    public void testIndexCoversMostSignatures() {
+        BOFAnchorIndex index = new BOFAnchorIndex(sigFile.getSignatures());
+        assertTrue(index.getNumIndexedSignatures() > sigFile.getSignatures().size() / 2);
+    }
+
+    @Test
+    public void testIndexedMatchingGivesSameHitsForTestFiles() throws IOException {
+        for (File file : new File("test_sig_files").listFiles()) {
+            if (file.isFile()) {
+                assertSameHits(file.getName(), readSample(file));
+            }
+        }
+    }
+
+    @Test
+    public void testIndexedMatchingGivesSameHitsForKnownHeaders() throws IOException {
+        assertSameHits("test.pdf", pad("%PDF-1.4\n%\u00e2\u00e3\n1 0 obj\n<<>>\nendobj\n%%EOF\n"));
+        assertSameHits("test.gif", pad("GIF89a\u0001\u0000\u0001\u0000\u0000\u0000\u0000;"));
+        assertSameHits("test.png", pad("\u0089PNG\r\n\u001a\n\u0000\u0000\u0000\rIHDR"));
+        assertSameHits("test.zip", pad("PK\u0003\u0004\u0014\u0000\u0000\u0000"));
+        assertSameHits("test.html", pad("<html><head><title>x</title></head></html>"));
+        assertSameHits("test.bin", new byte[] {1});
+    }
+
+    private void assertSameHits(String fileName, byte[] bytes) throws IOException {
+        final IdentificationRequestByteReaderAdapter reader = newReader(fileName, bytes);
+        sigFile.runFileIdentification(reader);
+        final List<String> indexedHits = new ArrayList<String>();
+        for (int i = 0; i < reader.getNumHits(); i++) {
+            indexedHits.add(reader.getHit(i).getFileFormatPUID());
+        }
+
+        final List<String> allHits = new ArrayList<String>();
+        final IdentificationRequestByteReaderAdapter allReader = newReader(fileName, bytes);
+        for (InternalSignature signature : sigFile.getSignatures()) {
+            if (signature.matches(allReader, -1)) {
+                for (int i = 0; i < signature.getNumFileFormats(); i++) {
+                    allHits.add(signature.getFileFormat(i).getPUID());
+                }
+            }
+        }
+        assertEquals(fileName, allHits, indexedHits);
+    }
+
+    private IdentificationRequestByteReaderAdapter newReader(String fileName, byte[] bytes) throws IOException {
+        RequestMetaData metaData = new RequestMetaData((long) bytes.length, 1L, fileName);
+        RequestIdentifier identifier = new RequestIdentifier(new File(fileName).toURI());
+        IdentificationRequest request = new FileSystemIdentificationRequest(metaData, identifier);
+        request.open(new ByteArrayInputStream(bytes));
+        return new IdentificationRequestByteReaderAdapter(request);
+    }
+
+    private byte[] readSample(File file) throws IOException {
+        final byte[] buffer = new byte[MAX_SAMPLE_SIZE];
+        final InputStream in = new FileInputStream(file);
+        try {
+            int total = 0;
+            int read = 0;
+            while (total < buffer.length && (read = in.read(buffer, total, buffer.length - total)) > 0) {
+                total += read;
+            }
+            return Arrays.copyOf(buffer, total);
+        } finally {
+            in.close();
+        }
+    }
+
+    private byte[] pad(String header) {
+        final byte[] bytes = new byte[1024];
+        for (int i = 0; i < header.length(); i++) {
+            bytes[i] = (byte) header.charAt(i);
+        }
+        return bytes;
+    }
+}
@@ -102,7 +102,8 @@ public class Droid4LegacyDroidTest {
             droid.removeSignatureForPuid(puidToRemove);
         }
         
-        assertEquals(1, signatures.size());
+        // the shared signature file is not changed; the identifier uses one without the signatures.
+        assertEquals(1, droid.getSigFile().getSignatures().size());
         
     }
     
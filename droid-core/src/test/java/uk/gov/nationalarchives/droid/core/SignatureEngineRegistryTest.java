@@ -0,0 +1,124 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.signature.droid6.FFSignatureFile;
+
+/**
+ * Checks that binary signature identifiers share prepared signature files
+ * without changing them for each other.
+ */
+public class SignatureEngineRegistryTest {
+
+    private static final String SIGNATURE_FILE = "test_sig_files/DROID_SignatureFile_V26.xml";
+
+    private final List<BinarySignatureIdentifier> identifiers = new ArrayList<BinarySignatureIdentifier>();
+
+    @After
+    public void tearDown() {
+        for (BinarySignatureIdentifier droid : identifiers) {
+            droid.close();
+        }
+    }
+
+    @Test
+    public void testIdentifiersShareSignatureFileUntilReleased() throws IOException {
+        // a signature file no other test uses, so no other identifier holds its engine.
+        File file = File.createTempFile("signatures", ".xml");
+        try {
+            FileUtils.copyFile(new File(SIGNATURE_FILE), file);
+            FileUtils.writeStringToFile(file, FileUtils.readFileToString(file, "UTF-8")
+                    + "<!-- " + file.getName() + " -->", "UTF-8");
+            BinarySignatureIdentifier droid1 = newIdentifier(file.getPath(), false);
+            BinarySignatureIdentifier droid2 = newIdentifier(file.getPath(), false);
+            FFSignatureFile sigFile = droid1.getSigFile();
+            assertNotNull(sigFile);
+            assertSame(sigFile, droid2.getSigFile());
+            assertNotSame(sigFile, newIdentifier(file.getPath(), true).getSigFile());
+
+            droid1.close();
+            droid2.close();
+            assertNotSame(sigFile, newIdentifier(file.getPath(), false).getSigFile());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testRemovingSignaturesDoesNotChangeSharedSignatureFile() {
+        BinarySignatureIdentifier droid1 = newIdentifier(false);
+        BinarySignatureIdentifier droid2 = newIdentifier(false);
+        FFSignatureFile shared = droid1.getSigFile();
+        assertSame(shared, droid2.getSigFile());
+        int signatures = shared.getSignatures().size();
+
+        droid1.removeSignatureForPuid("fmt/18");
+        assertNotSame(shared, droid1.getSigFile());
+        assertSame(shared, droid2.getSigFile());
+        assertEquals(signatures, shared.getSignatures().size());
+        assertEquals(0, droid1.getSigFile().getFileFormat("fmt/18").getNumInternalSignatures());
+        assertTrue(shared.getFileFormat("fmt/18").getNumInternalSignatures() > 0);
+    }
+
+    @Test
+    public void testSignaturesRemovedBeforeFirstUseAreShared() {
+        BinarySignatureIdentifier droid1 = newIdentifier(false);
+        BinarySignatureIdentifier droid2 = newIdentifier(false);
+        droid1.removeSignatureForPuid("fmt/18");
+        droid2.removeSignatureForPuid("fmt/18");
+
+        assertSame(droid1.getSigFile(), droid2.getSigFile());
+        assertEquals(0, droid1.getSigFile().getFileFormat("fmt/18").getNumInternalSignatures());
+    }
+
+    @Test
+    public void testMaxBytesToScanIsNotSetOnSharedSignatureFile() {
+        BinarySignatureIdentifier droid = newIdentifier(false);
+        droid.setMaxBytesToScan(100);
+        assertEquals(-1, droid.getSigFile().getMaxBytesToScan());
+    }
+
+    @Test
+    public void testClosedIdentifierWithoutSignatureFileIsIgnored() {
+        BinarySignatureIdentifier droid = new BinarySignatureIdentifier();
+        droid.setSignatureFile("test_sig_files/no_such_file.xml");
+        droid.init();
+        assertNull(droid.getSigFile());
+        droid.close();
+    }
+
+    private BinarySignatureIdentifier newIdentifier(boolean automatonMatching) {
+        return newIdentifier(SIGNATURE_FILE, automatonMatching);
+    }
+
+    private BinarySignatureIdentifier newIdentifier(String signatureFile, boolean automatonMatching) {
+        BinarySignatureIdentifier droid = new BinarySignatureIdentifier();
+        droid.setSignatureFile(signatureFile);
+        droid.setAutomatonMatching(automatonMatching);
+        droid.init();
+        identifiers.add(droid);
+        return droid;
+    }
+}
@@ -19,6 +19,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import org.junit.Before;
@@ -47,7 +48,7 @@ public class ThreadPoolExecutorTest {
     public void testPoolBlocksWhenMoreThanTenTasksAreQueued() throws Exception {
         factory.setCorePoolSize(10);
         factory.setMaxPoolSize(10);
-        factory.setWorkQueueSize(5);
+        factory.setWorkQueueSize(0);
         factory.setKeepAliveTimeMillis(1000);
         
         final ThreadPoolExecutor executor = factory.newInstance();
@@ -83,7 +84,7 @@ public class ThreadPoolExecutorTest {
     public void testPoolRejectsTasksAfterShutdown() throws Exception {
         factory.setCorePoolSize(10);
         factory.setMaxPoolSize(10);
-        factory.setWorkQueueSize(5);
+        factory.setWorkQueueSize(0);
         factory.setKeepAliveTimeMillis(1000);
         
         final ThreadPoolExecutor executor = factory.newInstance();
@@ -129,7 +130,7 @@ public class ThreadPoolExecutorTest {
         
         factory.setCorePoolSize(10);
         factory.setMaxPoolSize(10);
-        factory.setWorkQueueSize(5);
+        factory.setWorkQueueSize(0);
         factory.setKeepAliveTimeMillis(1000);
         
         final ThreadPoolExecutor executor = factory.newInstance();
@@ -145,6 +146,80 @@ public class ThreadPoolExecutorTest {
         }
     }
 
+    @Test
+    public void testBoundedQueueBlocksSubmitterWhenFull() throws Exception {
+        startLatch = new CountDownLatch(2);
+        factory.setCorePoolSize(2);
+        factory.setMaxPoolSize(2);
+        factory.setWorkQueueSize(3);
+        
+        final ThreadPoolExecutor executor = factory.newInstance();
+        
+        final AtomicInteger count = new AtomicInteger();
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 10; i++) {
+                    Callable<Object> task = new TestTask();
+                    executor.submit(task);
+                    count.incrementAndGet();
+                }
+            }
+        };
+        t.start();
+        
+        startLatch.await();
+        waitUntilBlocked(t);
+        
+        // 2 tasks running, 3 queued, and the submitter waiting for space rather than running tasks itself.
+        assertEquals(3, executor.getQueue().size());
+        assertEquals(5, count.intValue());
+        
+        stopLatch.countDown();
+        t.join(5000);
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+        assertEquals(10, count.intValue());
+        assertEquals(10, executor.getCompletedTaskCount());
+    }
+    
+    @Test
+    public void testBoundedQueueRunsTasksSubmittedByPoolThreadsWhenFull() throws Exception {
+        factory.setCorePoolSize(1);
+        factory.setMaxPoolSize(1);
+        factory.setWorkQueueSize(1);
+        
+        final ThreadPoolExecutor executor = factory.newInstance();
+        final Thread[] nestedThread = new Thread[1];
+        
+        Future<Thread> outer = executor.submit(new Callable<Thread>() {
+            @Override
+            public Thread call() throws Exception {
+                // fills the queue:
+                executor.submit(new ExceptionTask());
+                // no space left, so runs on this thread rather than deadlocking:
+                executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() {
+                        nestedThread[0] = Thread.currentThread();
+                        return null;
+                    }
+                }).get(5, TimeUnit.SECONDS);
+                return Thread.currentThread();
+            }
+        });
+        
+        assertSame(outer.get(5, TimeUnit.SECONDS), nestedThread[0]);
+        executor.shutdown();
+    }
+    
+    private void waitUntilBlocked(Thread t) throws InterruptedException {
+        for (int i = 0; i < 500 && t.getState() != Thread.State.TIMED_WAITING; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(Thread.State.TIMED_WAITING, t.getState());
+    }
+
     private final class TestTask implements Callable<Object> {
         
         @Override
@@ -8,17 +8,10 @@
  */
 package uk.gov.nationalarchives.droid.export;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
-import java.net.URI;
-import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 
-import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.lang.time.DateFormatUtils;
-import org.apache.commons.lang.time.FastDateFormat;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -27,44 +20,31 @@ import au.com.bytecode.opencsv.CSVWriter;
 import uk.gov.nationalarchives.droid.core.interfaces.config.DroidGlobalConfig;
 import uk.gov.nationalarchives.droid.export.interfaces.ExportOptions;
 import uk.gov.nationalarchives.droid.export.interfaces.ItemWriter;
-import uk.gov.nationalarchives.droid.profile.NodeMetaData;
 import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.export.CsvRowFormatter;
+import uk.gov.nationalarchives.droid.profile.export.NodeRow;
+import uk.gov.nationalarchives.droid.profile.export.NodeRowWriter;
 import uk.gov.nationalarchives.droid.profile.referencedata.Format;
 
 /**
+ * Writes nodes as CSV.  Rows streamed from a node row reader are written 
+ * through a single reused line buffer, in the same format as nodes.  The
+ * columns are laid out by a {@link CsvRowFormatter}.
+ * 
  * @author rflitcroft
  *
  */
-public class CsvItemWriter implements ItemWriter<ProfileResourceNode> {
-
-    private static final String FILE_URI_SCHEME = "file";
-
-    private static final String[] HEADERS = {
-        "ID",
-        "PARENT_ID",
-        "URI",
-        "FILE_PATH",
-        "NAME",
-        "METHOD",
-        "STATUS",
-        "SIZE",
-        "TYPE",
-        "EXT",
-        "LAST_MODIFIED",
-        "EXTENSION_MISMATCH",
-        "MD5_HASH",
-        "FORMAT_COUNT",
-        "PUID",
-        "MIME_TYPE",
-        "FORMAT_NAME",
-        "FORMAT_VERSION",
-    };
+public class CsvItemWriter implements ItemWriter<ProfileResourceNode>, NodeRowWriter {
+
+    private static final String LINE_END = CSVWriter.DEFAULT_LINE_END;
     
     private final Log log = LogFactory.getLog(getClass());
 
     private CSVWriter csvWriter;
+    private Writer out;
+    private final CsvRowFormatter formatter = new CsvRowFormatter();
+    private Long lineNodeId;
     private DroidGlobalConfig config;
-    private FastDateFormat dateFormat = DateFormatUtils.ISO_DATETIME_FORMAT;
     private ExportOptions options = ExportOptions.ONE_ROW_PER_FILE;
     
     /**
@@ -95,34 +75,11 @@ public class CsvItemWriter implements ItemWriter<ProfileResourceNode> {
     private void writeOneRowPerFile(List<? extends ProfileResourceNode> nodes) {
         try {
             for (ProfileResourceNode node : nodes) {
-                NodeMetaData metaData = node.getMetaData();
-                List<String> nodeEntries = new ArrayList<String>();
-                nodeEntries.add(nullSafeNumber(node.getId()));
-                //ProfileResourceNode parent = node.getParent();
-                //nodeEntries.add(parent != null ? nullSafeNumber(parent.getId()) : "");
-                nodeEntries.add(nullSafeNumber(node.getParentId()));
-                nodeEntries.add(node.getUri().toString());
-                nodeEntries.add(toFilePath(node.getUri()));
-                nodeEntries.add(toFileName(metaData.getName()));
-                nodeEntries.add(nullSafeName(metaData.getIdentificationMethod()));
-                nodeEntries.add(metaData.getNodeStatus().getStatus());
-                nodeEntries.add(nullSafeNumber(metaData.getSize()));
-                nodeEntries.add(metaData.getResourceType().getResourceType());
-                nodeEntries.add(metaData.getExtension());
-                nodeEntries.add(nullSafeDate(metaData.getLastModifiedDate(), dateFormat));
-                nodeEntries.add(node.getExtensionMismatch().toString());
-                nodeEntries.add(metaData.getHash());
-                nodeEntries.add(nullSafeNumber(node.getIdentificationCount()));
-                
+                formatter.startLine(node);
                 for (Format format : node.getFormatIdentifications()) {
-                    nodeEntries.add(format.getPuid());
-                    nodeEntries.add(format.getMimeType());
-                    nodeEntries.add(format.getName());
-                    nodeEntries.add(format.getVersion());
+                    formatter.addFormat(format);
                 }
-                
-
-                csvWriter.writeNext(nodeEntries.toArray(new String[0]));
+                csvWriter.writeNext(formatter.getFields());
             }
             csvWriter.flush();
             
@@ -135,31 +92,10 @@ public class CsvItemWriter implements ItemWriter<ProfileResourceNode> {
     private void writeOneRowPerFormat(List<? extends ProfileResourceNode> nodes) {
         try {
             for (ProfileResourceNode node : nodes) {
-                NodeMetaData metaData = node.getMetaData();
-                //ProfileResourceNode parent = node.getParent();
                 for (Format format : node.getFormatIdentifications()) {
-                    String[] nodeEntries = new String[] {
-                        nullSafeNumber(node.getId()),
-                        //parent != null ? nullSafeNumber(parent.getId()) : "",
-                        nullSafeNumber(node.getParentId()),
-                        node.getUri().toString(),
-                        toFilePath(node.getUri()),
-                        toFileName(metaData.getName()),
-                        nullSafeName(metaData.getIdentificationMethod()),
-                        metaData.getNodeStatus().getStatus(),
-                        nullSafeNumber(metaData.getSize()),
-                        metaData.getResourceType().getResourceType(),
-                        metaData.getExtension(),
-                        nullSafeDate(metaData.getLastModifiedDate(), dateFormat),
-                        node.getExtensionMismatch().toString(),
-                        metaData.getHash(),
-                        nullSafeNumber(node.getIdentificationCount()),
-                        format.getPuid(),
-                        format.getMimeType(),
-                        format.getName(),
-                        format.getVersion(),
-                    };
-                    csvWriter.writeNext(nodeEntries);
+                    formatter.startLine(node);
+                    formatter.addFormat(format);
+                    csvWriter.writeNext(formatter.getFields());
                 }
             }
             csvWriter.flush();
@@ -170,6 +106,64 @@ public class CsvItemWriter implements ItemWriter<ProfileResourceNode> {
         }
     }
 
+    /**
+     * Writes a row.  With one row per file, the identifications of a node 
+     * are added to its line until a row for another node is written.
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeRow(NodeRow row) {
+        try {
+            if (options == ExportOptions.ONE_ROW_PER_FORMAT) {
+                if (row.isIdentified()) {
+                    startLine(row);
+                    addFormat(row);
+                    endLine();
+                }
+            } else {
+                if (lineNodeId == null || !lineNodeId.equals(row.getId())) {
+                    endLine();
+                    startLine(row);
+                }
+                if (row.isIdentified()) {
+                    addFormat(row);
+                }
+            }
+        } catch (IOException e) {
+            log.error(e);
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void endRows() {
+        try {
+            endLine();
+        } catch (IOException e) {
+            log.error(e);
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    private void startLine(NodeRow row) {
+        lineNodeId = row.getId();
+        formatter.startLine(row);
+    }
+
+    private void addFormat(NodeRow row) {
+        formatter.addFormat(row);
+    }
+
+    private void endLine() throws IOException {
+        if (lineNodeId != null) {
+            formatter.writeLine(out, LINE_END);
+            lineNodeId = null;
+        }
+    }
+
     /**
      * @param csvWriter the csvWriter to write to.
      */
@@ -182,8 +176,9 @@ public class CsvItemWriter implements ItemWriter<ProfileResourceNode> {
      */
     @Override
     public void open(Writer writer) {
+        out = writer;
         csvWriter = new CSVWriter(writer);
-        csvWriter.writeNext(HEADERS);
+        csvWriter.writeNext(CsvRowFormatter.getHeaders());
     }
 
     /**
@@ -207,30 +202,6 @@ public class CsvItemWriter implements ItemWriter<ProfileResourceNode> {
         }
     }
     
-    private static String nullSafeName(Enum<?> value) {
-        return value == null ? "" : value.toString();
-    }
-    
-    private static String nullSafeNumber(Number number) {
-        return number == null ? "" : number.toString();
-    }
-    
-    private static String nullSafeDate(Date date, FastDateFormat format) {
-        return date == null ? "" : format.format(date);
-    }
-    
-    private static String toFilePath(URI uri) {
-        if (FILE_URI_SCHEME.equals(uri.getScheme())) {
-            return new File(uri).getAbsolutePath();
-        }
-        
-        return null;
-    }
-
-    private static String toFileName(String name) {
-        return FilenameUtils.getName(name);
-    }
-    
     /**
      * @param config the config to set
      */
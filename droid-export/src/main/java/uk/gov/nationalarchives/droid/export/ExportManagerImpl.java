@@ -35,6 +35,10 @@ import uk.gov.nationalarchives.droid.profile.ProfileContextLocator;
 import uk.gov.nationalarchives.droid.profile.ProfileInstance;
 import uk.gov.nationalarchives.droid.profile.ProfileInstanceManager;
 import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.export.NodeRow;
+import uk.gov.nationalarchives.droid.profile.export.NodeRowCallback;
+import uk.gov.nationalarchives.droid.profile.export.NodeRowReader;
+import uk.gov.nationalarchives.droid.profile.export.NodeRowWriter;
 
 /**
  * @author rflitcroft
@@ -46,6 +50,7 @@ public class ExportManagerImpl implements ExportManager {
     
     private ProfileContextLocator profileContextLocator;
     private ItemWriter<ProfileResourceNode> itemWriter;
+    private NodeRowWriter rowWriter;
     
     private ExecutorService executor = Executors.newSingleThreadExecutor();
     
@@ -82,6 +87,15 @@ public class ExportManagerImpl implements ExportManager {
     public void setItemWriter(ItemWriter<ProfileResourceNode> itemWriter) {
         this.itemWriter = itemWriter;
     }
+
+    /**
+     * Sets the writer for rows streamed from a profile's node row reader.
+     * Profiles without a row reader are exported through the item writer.
+     * @param rowWriter the rowWriter to set
+     */
+    public void setRowWriter(NodeRowWriter rowWriter) {
+        this.rowWriter = rowWriter;
+    }
     
     private final class ExportTask implements Runnable {
         
@@ -140,21 +154,13 @@ public class ExportManagerImpl implements ExportManager {
                     }
                     ProfileInstance profile = profileContextLocator.getProfileInstance(profileId);
                     ProfileInstanceManager profileContext = profileContextLocator.openProfileInstanceManager(profile);
-                    ItemReader<ProfileResourceNode> reader = profileContext.getNodeItemReader();
-                    ItemReaderCallback<ProfileResourceNode> callback = new ItemReaderCallback<ProfileResourceNode>() {
-                        @Override
-                        public void onItem(List<? extends ProfileResourceNode> itemChunk) 
-                            throws JobCancellationException {
-                            itemWriter.write(itemChunk);
-                            if (cancelled) {
-                                log.info("Export interrupted");
-                                throw new JobCancellationException("Cancelled");
-                            }
-                        }
-                    };
-                    
                     Filter filter = filterOverride != null ? filterOverride : profile.getFilter();
-                    reader.readAll(callback, filter);
+                    NodeRowReader rowReader = rowWriter == null ? null : profileContext.getNodeRowReader();
+                    if (rowReader != null) {
+                        exportRows(rowReader, filter);
+                    } else {
+                        exportItems(profileContext.getNodeItemReader(), filter);
+                    }
                     stopWatch.stop();
                     log.info(String.format("Time for export [%s]: %s ms", profileId, stopWatch.getTime()));
                     stopWatch.reset();
@@ -177,6 +183,40 @@ public class ExportManagerImpl implements ExportManager {
                 }
             }
         }
+
+        private void exportRows(NodeRowReader rowReader, Filter filter) throws JobCancellationException {
+            NodeRowCallback callback = new NodeRowCallback() {
+                @Override
+                public void onRow(NodeRow row) throws JobCancellationException {
+                    rowWriter.writeRow(row);
+                    if (cancelled) {
+                        log.info("Export interrupted");
+                        throw new JobCancellationException("Cancelled");
+                    }
+                }
+            };
+            try {
+                rowReader.readAll(filter, callback);
+            } finally {
+                rowWriter.endRows();
+            }
+        }
+
+        private void exportItems(ItemReader<ProfileResourceNode> reader, Filter filter)
+            throws JobCancellationException {
+            ItemReaderCallback<ProfileResourceNode> callback = new ItemReaderCallback<ProfileResourceNode>() {
+                @Override
+                public void onItem(List<? extends ProfileResourceNode> itemChunk) 
+                    throws JobCancellationException {
+                    itemWriter.write(itemChunk);
+                    if (cancelled) {
+                        log.info("Export interrupted");
+                        throw new JobCancellationException("Cancelled");
+                    }
+                }
+            };
+            reader.readAll(callback, filter);
+        }
     }
 
     
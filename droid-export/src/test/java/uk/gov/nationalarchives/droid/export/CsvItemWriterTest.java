@@ -10,10 +10,12 @@ package uk.gov.nationalarchives.droid.export;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -35,6 +37,7 @@ import uk.gov.nationalarchives.droid.export.interfaces.ExportOptions;
 import uk.gov.nationalarchives.droid.export.interfaces.JobOptions;
 import uk.gov.nationalarchives.droid.profile.NodeMetaData;
 import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.export.NodeRow;
 import uk.gov.nationalarchives.droid.profile.referencedata.Format;
 
 /**
@@ -362,4 +365,73 @@ public class CsvItemWriterTest {
         
         return format;
     }
+
+    @Test
+    public void testWriteRowsWithOneRowPerFile() {
+        StringWriter out = new StringWriter();
+        CsvItemWriter rowWriter = new CsvItemWriter();
+        rowWriter.setOptions(ExportOptions.ONE_ROW_PER_FILE);
+        rowWriter.open(out);
+        int headerLength = out.toString().length();
+
+        NodeRow row = new NodeRow();
+        setRow(row, 1L, "a \"quoted\" name.txt", 2);
+        row.setFormat("fmt/1", "text/plain", "Plain Text", "1.0");
+        rowWriter.writeRow(row);
+        row.setFormat("fmt/2", "text/plain", "Plain, Text", "2.0");
+        rowWriter.writeRow(row);
+        setRow(row, 2L, "b.txt", null);
+        row.setNoFormat();
+        rowWriter.writeRow(row);
+        rowWriter.endRows();
+
+        assertEquals(
+              "\"1\",\"\",\"zip:file:/a.zip!/1\",,\"a \"\"quoted\"\" name.txt\",\"Signature\",\"Done\",\"100\","
+            + "\"File\",\"txt\",\"\",\"false\",,\"2\","
+            + "\"fmt/1\",\"text/plain\",\"Plain Text\",\"1.0\",\"fmt/2\",\"text/plain\",\"Plain, Text\",\"2.0\"\n"
+            + "\"2\",\"\",\"zip:file:/a.zip!/2\",,\"b.txt\",\"Signature\",\"Done\",\"100\","
+            + "\"File\",\"txt\",\"\",\"false\",,\"\"\n",
+            out.toString().substring(headerLength));
+    }
+
+    @Test
+    public void testWriteRowsWithOneRowPerFormatSkipsUnidentifiedNodes() {
+        StringWriter out = new StringWriter();
+        CsvItemWriter rowWriter = new CsvItemWriter();
+        rowWriter.setOptions(ExportOptions.ONE_ROW_PER_FORMAT);
+        rowWriter.open(out);
+        int headerLength = out.toString().length();
+
+        NodeRow row = new NodeRow();
+        setRow(row, 1L, "a.txt", null);
+        row.setNoFormat();
+        rowWriter.writeRow(row);
+        setRow(row, 2L, "b.txt", 2);
+        row.setFormat("fmt/1", "text/plain", "Plain Text", "1.0");
+        rowWriter.writeRow(row);
+        row.setFormat("fmt/2", "text/plain", "Plain Text", "2.0");
+        rowWriter.writeRow(row);
+        rowWriter.endRows();
+
+        String[] lines = out.toString().substring(headerLength).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("\"2\",\"\",\"zip:file:/a.zip!/2\",,\"b.txt\",\"Signature\",\"Done\",\"100\","
+            + "\"File\",\"txt\",\"\",\"false\",,\"2\",\"fmt/2\",\"text/plain\",\"Plain Text\",\"2.0\"", lines[1]);
+    }
+
+    private static void setRow(NodeRow row, Long id, String name, Integer identificationCount) {
+        row.setId(id);
+        row.setParentId(null);
+        row.setUri("zip:file:/a.zip!/" + id);
+        row.setName(name);
+        row.setIdentificationMethod(IdentificationMethod.BINARY_SIGNATURE);
+        row.setNodeStatus(NodeStatus.DONE);
+        row.setSize(100L);
+        row.setResourceType(ResourceType.FILE);
+        row.setExtension("txt");
+        row.setLastModifiedDate(null);
+        row.setExtensionMismatch(false);
+        row.setHash(null);
+        row.setIdentificationCount(identificationCount);
+    }
 }
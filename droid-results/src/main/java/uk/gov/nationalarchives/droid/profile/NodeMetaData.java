@@ -28,7 +28,8 @@ import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
 @Embeddable
 public class NodeMetaData {
     
-    private static final int MD5_LENGTH = 32;
+    private static final int HASH_LENGTH = 160;
+    private static final int HASH_ALGORITHM_LENGTH = 32;
 
     @Index(name = "idx_prn_file_size")
     @Column(name = "file_size")
@@ -63,8 +64,11 @@ public class NodeMetaData {
     private ResourceType  resourceType;
     
     @Index(name = "idx_prn_hash")
-    @Column(name = "hash", length = MD5_LENGTH)
+    @Column(name = "hash", length = HASH_LENGTH)
     private String hash;
+    
+    @Column(name = "hash_algorithm", length = HASH_ALGORITHM_LENGTH)
+    private String hashAlgorithm;
   
     /**
      * @return the size
@@ -196,5 +200,19 @@ public class NodeMetaData {
     public String getHash() {
         return hash;
     }
+    
+    /**
+     * @param hashAlgorithm the name of the algorithm the hash was generated with.
+     */
+    public void setHashAlgorithm(String hashAlgorithm) {
+        this.hashAlgorithm = hashAlgorithm;
+    }
+    
+    /**
+     * @return the name of the algorithm the hash was generated with.
+     */
+    public String getHashAlgorithm() {
+        return hashAlgorithm;
+    }
 
 }
@@ -10,7 +10,10 @@ package uk.gov.nationalarchives.droid.profile;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -22,7 +25,10 @@ import org.apache.commons.logging.LogFactory;
 import uk.gov.nationalarchives.droid.core.interfaces.config.DroidGlobalConfig;
 import uk.gov.nationalarchives.droid.core.interfaces.config.DroidGlobalProperty;
 import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileException;
+import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileInfo;
+import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureType;
 import uk.gov.nationalarchives.droid.results.handlers.ProgressObserver;
+import uk.gov.nationalarchives.droid.results.handlers.StreamResultWriter.LineFormat;
 
 
 /**
@@ -37,6 +43,10 @@ public class ProfileContextLocator {
     private static final String HIBERNATE_CREATE = "hibernate.hbm2ddl.auto";
     private static final String BLANK_PROFILE = "profile.template";
     private static final String SIG_PROFILE = "profile\\.\\d+\\.template";
+    private static final String DEFAULT_HASH_ALGORITHM = "md5";
+    private static final String DEFAULT_RESULTS_STORE = "database";
+    private static final List<String> RESULTS_STORES = Arrays.asList(DEFAULT_RESULTS_STORE, "segments");
+    private static final String STREAM_ID = "stream";
     
     private final Log log = LogFactory.getLog(getClass());
     private DroidGlobalConfig globalConfig;
@@ -62,12 +72,16 @@ public class ProfileContextLocator {
                     .getInt(DroidGlobalProperty.DEFAULT_THROTTLE.getName()));
             profileInstance.setGenerateHash(globalConfig.getProperties()
                     .getBoolean(DroidGlobalProperty.GENERATE_HASH.getName()));
+            profileInstance.setHashAlgorithm(globalConfig.getProperties()
+                    .getString(DroidGlobalProperty.HASH_ALGORITHM.getName()));
             profileInstance.setProcessArchiveFiles(globalConfig.getProperties()
                     .getBoolean(DroidGlobalProperty.PROCESS_ARCHIVES.getName()));
             profileInstance.setMaxBytesToScan(globalConfig.getProperties()
                     .getLong(DroidGlobalProperty.MAX_BYTES_TO_SCAN.getName()));
             profileInstance.setMatchAllExtensions(globalConfig.getProperties()
                     .getBoolean(DroidGlobalProperty.EXTENSION_ALL.getName()));
+            profileInstance.setResultsStore(globalConfig.getProperties()
+                    .getString(DroidGlobalProperty.RESULTS_STORE.getName(), DEFAULT_RESULTS_STORE));
             return profileInstance;
         }
     }
@@ -112,28 +126,21 @@ public class ProfileContextLocator {
      * Opens a profile instance manager for a pre-existing profile context.
      * @param profile the profile to obtain a profile manager for.
      * @return a profile instance manager for a pre-existing profile context
+     * @throws IllegalArgumentException if the profile's results store is not "database" or "segments".
      */
     public ProfileInstanceManager openProfileInstanceManager(ProfileInstance profile) {
         
+        final String resultsStore = getResultsStore(profile);
         File profileHome = new File(globalConfig.getProfilesDir(), profile.getUuid());
         File databasePath = new File(profileHome, "/db");
         File signatureFile = new File(profileHome, profile.getSignatureFileName());
         File containerSignatureFile = new File(profileHome, profile.getContainerSignatureFileName());
         File submissionQueueFile = new File(profileHome, "submissionQueue.xml");
 
-        // Some global properties are needed to initialise the profile context.
-        Properties props = new Properties();
-        props.setProperty("defaultThrottle", String.valueOf(profile.getThrottle()));
-        props.setProperty("signatureFilePath", signatureFile.getPath());
+        Properties props = getIdentificationProperties(profile, signatureFile, containerSignatureFile);
         props.setProperty("submissionQueueFile", submissionQueueFile.getPath());
-        props.setProperty("tempDirLocation", globalConfig.getTempDir().getPath());
         props.setProperty("profileHome", profileHome.getPath());
-        
-        props.setProperty("containerSigPath", containerSignatureFile.getPath()); 
-        props.setProperty("processArchives", String.valueOf(profile.getProcessArchiveFiles()));
-        props.setProperty("generateHash", String.valueOf(profile.getGenerateHash()));
-        props.setProperty("maxBytesToScan", String.valueOf(profile.getMaxBytesToScan()));
-        props.setProperty("matchAllExtensions", String.valueOf(profile.getMatchAllExtensions()));
+        props.setProperty("resultsStore", resultsStore);
 
         String createUrl = globalConfig.getProperties().getString("database.createUrl");
         if (createUrl == null || createUrl.isEmpty()) {
@@ -161,6 +168,92 @@ public class ProfileContextLocator {
         return profileManager;
     }
 
+    /*
+     * The results store names the beans the profile's results are read and written with.
+     * Profiles saved before results could be kept in segments always used the database.
+     */
+    private static String getResultsStore(ProfileInstance profile) {
+        final String resultsStore = profile.getResultsStore();
+        if (resultsStore == null) {
+            return DEFAULT_RESULTS_STORE;
+        }
+        if (!RESULTS_STORES.contains(resultsStore)) {
+            throw new IllegalArgumentException(String.format(
+                    "Unknown results store [%s] for profile [%s]: it must be one of %s",
+                    resultsStore, profile.getUuid(), RESULTS_STORES));
+        }
+        return resultsStore;
+    }
+
+    /**
+     * Identifies resources without a profile, writing each result to the output as
+     * soon as it is known.  The resources are identified with the default settings
+     * of a new profile, using the signature files given where they are.
+     * @param signatures the signature files to identify the resources with.
+     * @param resources the resources to identify.
+     * @param output the writer to write the results to, which is not closed.
+     * @param format the format to write the results in.
+     * @throws IOException if the resources could not be walked.
+     * @throws InterruptedException if interrupted while waiting for identification to finish.
+     */
+    public void streamResources(Map<SignatureType, SignatureFileInfo> signatures,
+            List<AbstractProfileResource> resources, Writer output, LineFormat format)
+        throws IOException, InterruptedException {
+        
+        final ProfileInstance profile = (ProfileInstance) new ProfileTransformer().transform(STREAM_ID);
+        final ProfileSpec profileSpec = new ProfileSpec();
+        for (AbstractProfileResource resource : resources) {
+            profileSpec.addResource(resource);
+        }
+        Properties props = getIdentificationProperties(profile, 
+                signatures.get(SignatureType.BINARY).getFile(), signatures.get(SignatureType.CONTAINER).getFile());
+        props.setProperty("streamFormat", format.name());
+        profileInstanceLocator.streamProfileSpec(profileSpec, props, output);
+    }
+
+    /*
+     * Some global properties are needed to initialise an identification context.
+     */
+    private Properties getIdentificationProperties(ProfileInstance profile, File signatureFile,
+            File containerSignatureFile) {
+
+        Properties props = new Properties();
+        props.setProperty("defaultThrottle", String.valueOf(profile.getThrottle()));
+        props.setProperty("signatureFilePath", signatureFile.getPath());
+        props.setProperty("tempDirLocation", globalConfig.getTempDir().getPath());
+        props.setProperty("containerSigPath", containerSignatureFile.getPath()); 
+        props.setProperty("processArchives", String.valueOf(profile.getProcessArchiveFiles()));
+        props.setProperty("generateHash", String.valueOf(profile.getGenerateHash()));
+        // Profiles saved before the hash algorithm could be chosen always used MD5.
+        final String hashAlgorithm = profile.getHashAlgorithm();
+        props.setProperty("hashAlgorithm", hashAlgorithm == null ? DEFAULT_HASH_ALGORITHM : hashAlgorithm);
+        props.setProperty("maxBytesToScan", String.valueOf(profile.getMaxBytesToScan()));
+        props.setProperty("matchAllExtensions", String.valueOf(profile.getMatchAllExtensions()));
+        props.setProperty("threadCount", String.valueOf(globalConfig.getProperties().getInt(
+                DroidGlobalProperty.THREAD_COUNT.getName(), 0)));
+        props.setProperty("workQueueSize", String.valueOf(globalConfig.getProperties().getInt(
+                DroidGlobalProperty.WORK_QUEUE_SIZE.getName(), 0)));
+        props.setProperty("postProcessThreadCount", String.valueOf(globalConfig.getProperties().getInt(
+                DroidGlobalProperty.POST_PROCESS_THREAD_COUNT.getName(), 0)));
+        props.setProperty("postProcessQueueSize", String.valueOf(globalConfig.getProperties().getInt(
+                DroidGlobalProperty.POST_PROCESS_QUEUE_SIZE.getName(), 0)));
+        props.setProperty("directoryListingThreads", String.valueOf(globalConfig.getProperties().getInt(
+                DroidGlobalProperty.DIRECTORY_LISTING_THREADS.getName(), 0)));
+        props.setProperty("memoryMapFiles", String.valueOf(globalConfig.getProperties().getBoolean(
+                DroidGlobalProperty.MEMORY_MAP_FILES.getName(), false)));
+        props.setProperty("memoryMapThreshold", String.valueOf(globalConfig.getProperties().getLong(
+                DroidGlobalProperty.MEMORY_MAP_THRESHOLD.getName(), Long.MAX_VALUE)));
+        props.setProperty("automatonMatching", String.valueOf(globalConfig.getProperties().getBoolean(
+                DroidGlobalProperty.AUTOMATON_MATCHING.getName(), false)));
+        props.setProperty("signatureSnapshots", String.valueOf(globalConfig.getProperties().getBoolean(
+                DroidGlobalProperty.SIGNATURE_SNAPSHOTS.getName(), false)));
+        props.setProperty("archiveSpoolMemory", String.valueOf(globalConfig.getProperties().getLong(
+                DroidGlobalProperty.ARCHIVE_SPOOL_MEMORY.getName(), 0L)));
+        props.setProperty("archiveSpoolMaxEntrySize", String.valueOf(globalConfig.getProperties().getLong(
+                DroidGlobalProperty.ARCHIVE_SPOOL_MAX_ENTRY_SIZE.getName(), 0L)));
+        return props;
+    }
+
     private void setCreateSchemaProperties(boolean create, Properties props) {
         if (create) {
             props.setProperty(HIBERNATE_GENERATE_DDL, "true");
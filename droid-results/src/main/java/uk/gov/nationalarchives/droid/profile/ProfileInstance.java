@@ -98,6 +98,9 @@ public class ProfileInstance {
     @XmlElement(name = "GenerateHash")
     private Boolean generateHash;
     
+    @XmlElement(name = "HashAlgorithm")
+    private String hashAlgorithm;
+    
     @XmlElement(name = "ProcessArchiveFiles")
     private Boolean processArchiveFiles;
     
@@ -107,6 +110,9 @@ public class ProfileInstance {
     @XmlElement(name = "MatchAllExtensions")
     private Boolean matchAllExtensions;
     
+    @XmlElement(name = "ResultsStore")
+    private String resultsStore;
+    
     @XmlTransient
     private Set<ProfileEventListener> eventListeners = new HashSet<ProfileEventListener>();
     
@@ -518,6 +524,38 @@ public class ProfileInstance {
         this.generateHash = generateHash;
     }
     
+    /**
+     * 
+     * @return The hash algorithm, or comma separated algorithms, to generate hashes with.
+     */
+    public String getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+    
+    /**
+     * 
+     * @param hashAlgorithm The hash algorithm, or comma separated algorithms, to generate hashes with.
+     */
+    public void setHashAlgorithm(String hashAlgorithm) {
+        this.hashAlgorithm = hashAlgorithm;
+    }
+    
+    /**
+     * 
+     * @return Where the profile keeps its results: "database" or "segments".
+     */
+    public String getResultsStore() {
+        return resultsStore;
+    }
+    
+    /**
+     * 
+     * @param resultsStore Where the profile keeps its results: "database" or "segments".
+     */
+    public void setResultsStore(String resultsStore) {
+        this.resultsStore = resultsStore;
+    }
+    
     /**
      * 
      * @return Whether to process archive files or not.
@@ -8,6 +8,8 @@
  */
 package uk.gov.nationalarchives.droid.profile;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.sql.Connection;
 import java.util.Properties;
 
@@ -58,4 +60,16 @@ public interface ProfileInstanceLocator {
      * @param profileId the profile ID
      */
     void bootDatabase(String profileId);
+
+    /**
+     * Identifies the resources of a profile spec without a profile, writing each
+     * result to the output as soon as it is known.  Nothing else is kept.
+     * @param profileSpec the resources to identify.
+     * @param properties properties to be passed to the identification context.
+     * @param output the writer to write results to, which is not closed.
+     * @throws IOException if the resources could not be walked.
+     * @throws InterruptedException if interrupted while waiting for identification to finish.
+     */
+    void streamProfileSpec(ProfileSpec profileSpec, Properties properties, Writer output)
+        throws IOException, InterruptedException;
 }
@@ -16,6 +16,7 @@ import java.util.concurrent.Future;
 import uk.gov.nationalarchives.droid.core.interfaces.filter.expressions.Criterion;
 import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileException;
 import uk.gov.nationalarchives.droid.export.interfaces.ItemReader;
+import uk.gov.nationalarchives.droid.profile.export.NodeRowReader;
 import uk.gov.nationalarchives.droid.planet.xml.dao.PlanetsXMLData;
 import uk.gov.nationalarchives.droid.profile.referencedata.Format;
 import uk.gov.nationalarchives.droid.profile.referencedata.ReferenceData;
@@ -117,6 +118,13 @@ public interface ProfileInstanceManager {
      */
     ItemReader<ProfileResourceNode> getNodeItemReader();
     
+    /**
+     * Gets a reader which reads nodes for export as rows,
+     * via a method-lookup.
+     * @return a new NodeRowReader
+     */
+    NodeRowReader getNodeRowReader();
+    
     /**
      * @deprecated Planets xml is generated using xslt transforms from normal reports now.
      * Gets data required for planets.
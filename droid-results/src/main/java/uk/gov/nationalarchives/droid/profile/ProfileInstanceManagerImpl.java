@@ -14,11 +14,9 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.FutureTask;
 import java.util.concurrent.Semaphore;
 
 import org.apache.commons.logging.Log;
@@ -37,6 +35,7 @@ import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileExce
 import uk.gov.nationalarchives.droid.export.interfaces.ItemReader;
 import uk.gov.nationalarchives.droid.planet.xml.dao.PlanetsXMLDao;
 import uk.gov.nationalarchives.droid.planet.xml.dao.PlanetsXMLData;
+import uk.gov.nationalarchives.droid.profile.export.NodeRowReader;
 import uk.gov.nationalarchives.droid.profile.referencedata.Format;
 import uk.gov.nationalarchives.droid.profile.referencedata.ReferenceData;
 import uk.gov.nationalarchives.droid.profile.referencedata.ReferenceDataService;
@@ -49,7 +48,6 @@ import uk.gov.nationalarchives.droid.results.handlers.ProgressMonitor;
 import uk.gov.nationalarchives.droid.signature.FormatCallback;
 import uk.gov.nationalarchives.droid.signature.SaxSignatureFileParser;
 import uk.gov.nationalarchives.droid.signature.SignatureParser;
-import uk.gov.nationalarchives.droid.submitter.ProfileSpecJobCounter;
 import uk.gov.nationalarchives.droid.submitter.ProfileSpecWalker;
 import uk.gov.nationalarchives.droid.submitter.ProfileWalkState;
 import uk.gov.nationalarchives.droid.submitter.ProfileWalkerDao;
@@ -191,32 +189,13 @@ public class ProfileInstanceManagerImpl implements ProfileInstanceManager {
             // replay any queued requests
             submissionGateway.replay();
 
-            // start walking the profile spec
+            // start walking the profile spec.  The walker estimates the number
+            // of jobs as it goes, so the profile is only walked once.
             profileInstance.start();
-            // start a thread to estimate the number of jobs, and
-            // update the progress monitor when it's done.
-            final ProfileSpecJobCounter counter = new ProfileSpecJobCounter(profileInstance.getProfileSpec());
-            final FutureTask<Long> countFuture = new FutureTask<Long>(counter) {
-                @Override
-                protected void done() {
-                    if (!isCancelled()) {
-                        try {
-                            specWalker.getProgressMonitor().setTargetCount(get());
-                        } catch (InterruptedException e) {
-                            log.debug(e);
-                        } catch (ExecutionException e) {
-                            log.error(e);
-                        }
-                    }
-                }
-            };
-
-            ExecutorService executor = Executors.newSingleThreadExecutor();
-            executor.submit(countFuture);
 
             ExecutorService mainSubmitter = Executors.newSingleThreadExecutor();
 
-            Runnable walk = new WalkerTask(countFuture, counter);
+            Runnable walk = new WalkerTask();
             task = mainSubmitter.submit(walk);
             mainSubmitter.shutdown();
         }
@@ -226,14 +205,6 @@ public class ProfileInstanceManagerImpl implements ProfileInstanceManager {
     
     private final class WalkerTask implements Runnable {
         
-        private ProfileSpecJobCounter counter;
-        private Future<Long> countFuture;
-        
-        WalkerTask(Future<Long> countFuture, ProfileSpecJobCounter counter) {
-            this.countFuture = countFuture;
-            this.counter = counter;
-        }
-        
         @Override
         public void run() {
             try {
@@ -247,12 +218,11 @@ public class ProfileInstanceManagerImpl implements ProfileInstanceManager {
                 throw new ProfileException(e);
             } finally {
                 postWalk();
-                counter.cancel();
-                countFuture.cancel(false);
+                // Results may still be queued for the database until they are saved:
+                submissionGateway.save();
                 if (!inError) {
                     profileInstance.finish();
                 }
-                submissionGateway.save();
                 profileWalkerDao.delete();
             }
         }
@@ -425,6 +395,16 @@ public class ProfileInstanceManagerImpl implements ProfileInstanceManager {
         return null;
     }
 
+    /**
+     * Gets a reader which reads nodes for export as rows. Spring will provide 
+     * the implementation via a method lookup. 
+     * 
+     * @return a new NodeRowReader
+     */
+    public NodeRowReader getNodeRowReader() {
+        return null;
+    }
+
     /**
      * Gets data required for planets.
      * 
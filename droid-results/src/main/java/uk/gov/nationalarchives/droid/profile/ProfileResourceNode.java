@@ -377,6 +377,13 @@ public class ProfileResourceNode {
     public void setFinished(Date date) {
         this.finished = date;
     }
-    
+
+    /**
+     * @return the date the node was finished profiling.
+     */
+    public Date getFinished() {
+        return finished;
+    }
+
     
 }
@@ -8,6 +8,8 @@
  */
 package uk.gov.nationalarchives.droid.profile;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.HashMap;
@@ -21,7 +23,10 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.core.io.ClassPathResource;
 
+import uk.gov.nationalarchives.droid.core.interfaces.AsynchDroid;
 import uk.gov.nationalarchives.droid.profile.datasource.DerbyPooledDataSource;
+import uk.gov.nationalarchives.droid.submitter.ProfileSpecWalker;
+import uk.gov.nationalarchives.droid.submitter.ProfileWalkState;
 
 /**
  * @author rflitcroft
@@ -36,6 +41,10 @@ public class SpringProfileInstanceFactory implements ProfileInstanceLocator {
 
     private static final String PROFILE_MANAGER = "profileManager";
 
+    private static final String STREAM_OUTPUT = "streamOutput";
+    private static final String SPEC_WALKER = "profileSpecWalker";
+    private static final String SUBMISSION_GATEWAY = "submissionGateway";
+
     private Map<String, GenericApplicationContext> profileInstanceManagers =
          new HashMap<String, GenericApplicationContext>();
 
@@ -55,14 +64,9 @@ public class SpringProfileInstanceFactory implements ProfileInstanceLocator {
             xmlReader.setResourceLoader(ctx);
             xmlReader.setEntityResolver(new ResourceEntityResolver(ctx));
 
-            PropertyPlaceholderConfigurer config = new PropertyPlaceholderConfigurer();
-            config.setLocalOverride(true);
-            config.setProperties(properties);
-            config.setLocations(new ClassPathResource[] {
+            addPropertyPlaceholders(ctx, properties, new ClassPathResource[] {
                 new ClassPathResource("jpa.properties"),
                 new ClassPathResource("archive-puids.properties"), });
-            
-            ctx.addBeanFactoryPostProcessor(config);
             ctx.refresh();
             //ctx.registerShutdownHook();
             profileInstanceManagers.put(profile.getUuid(), ctx);
@@ -76,6 +80,41 @@ public class SpringProfileInstanceFactory implements ProfileInstanceLocator {
 
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void streamProfileSpec(ProfileSpec profileSpec, Properties properties, Writer output)
+        throws IOException, InterruptedException {
+
+        GenericApplicationContext ctx = new GenericApplicationContext();
+        ctx.getBeanFactory().registerSingleton(STREAM_OUTPUT, output);
+        XmlBeanDefinitionReader xmlReader = new XmlBeanDefinitionReader(ctx);
+        xmlReader.loadBeanDefinitions(new ClassPathResource("META-INF/spring-stream.xml"));
+
+        addPropertyPlaceholders(ctx, properties, new ClassPathResource[] {
+            new ClassPathResource("archive-puids.properties"), });
+        ctx.refresh();
+        try {
+            ProfileSpecWalker specWalker = (ProfileSpecWalker) ctx.getBean(SPEC_WALKER);
+            AsynchDroid submissionGateway = (AsynchDroid) ctx.getBean(SUBMISSION_GATEWAY);
+            specWalker.walk(profileSpec, new ProfileWalkState());
+            submissionGateway.awaitFinished();
+            submissionGateway.save();
+        } finally {
+            ctx.close();
+        }
+    }
+
+    private static void addPropertyPlaceholders(GenericApplicationContext ctx, Properties properties,
+            ClassPathResource[] locations) {
+        PropertyPlaceholderConfigurer config = new PropertyPlaceholderConfigurer();
+        config.setLocalOverride(true);
+        config.setProperties(properties);
+        config.setLocations(locations);
+        ctx.addBeanFactoryPostProcessor(config);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -10,9 +10,12 @@ package uk.gov.nationalarchives.droid.profile.datasource;
 
 import java.io.File;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLNonTransientConnectionException;
+import java.sql.Statement;
 
 import org.apache.commons.dbcp.BasicDataSource;
 import org.apache.commons.logging.Log;
@@ -30,12 +33,20 @@ public class DerbyPooledDataSource extends BasicDataSource {
     private static final long serialVersionUID = -8613139738021279720L;
     private static final String NO_CREATE_URL = "{none}";
     
+    private static final String NODE_TABLE = "PROFILE_RESOURCE_NODE";
+    private static final String HASH_ALGORITHM_COLUMN = "HASH_ALGORITHM";
+    private static final String ADD_HASH_ALGORITHM =
+        "ALTER TABLE profile_resource_node ADD COLUMN hash_algorithm VARCHAR(32) DEFAULT 'MD5'";
+    private static final String WIDEN_HASH =
+        "ALTER TABLE profile_resource_node ALTER COLUMN hash SET DATA TYPE VARCHAR(160)";
+    
     private final Log log = LogFactory.getLog(getClass());
     
     private String createUrl = NO_CREATE_URL;
     
     /**
-     * Starts the database.
+     * Starts the database, upgrading the schema of a profile saved by an
+     * earlier version of DROID.
      * @throws SQLException if the database could not be booted.
      */
     public void init() throws SQLException {
@@ -50,7 +61,12 @@ public class DerbyPooledDataSource extends BasicDataSource {
         String driverClassName = getDriverClassName();
         try {
             Class.forName(driverClassName);
-            DriverManager.getConnection(url).close();
+            Connection connection = DriverManager.getConnection(url);
+            try {
+                upgradeSchema(connection);
+            } finally {
+                connection.close();
+            }
         } catch (ClassNotFoundException e) {
             String message = String.format("Invalid driver class name: %s", driverClassName);
             log.error(message, e);
@@ -58,6 +74,37 @@ public class DerbyPooledDataSource extends BasicDataSource {
         }
     }
     
+    /**
+     * Profiles saved before hashes could be generated with other algorithms
+     * have no hash algorithm column, and a hash column only wide enough for MD5.
+     * Their hashes are all MD5, so the column is added with that default.
+     * A new database has no tables yet, and is left for hibernate to create.
+     */
+    private void upgradeSchema(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        ResultSet tables = metaData.getTables(null, null, NODE_TABLE, null);
+        boolean hasNodeTable = tables.next();
+        tables.close();
+        if (hasNodeTable) {
+            ResultSet columns = metaData.getColumns(null, null, NODE_TABLE, HASH_ALGORITHM_COLUMN);
+            boolean hasHashAlgorithm = columns.next();
+            columns.close();
+            if (!hasHashAlgorithm) {
+                log.info(String.format("Adding hash algorithm to database [%s]", getUrl()));
+                Statement statement = connection.createStatement();
+                try {
+                    statement.execute(ADD_HASH_ALGORITHM);
+                    statement.execute(WIDEN_HASH);
+                } finally {
+                    statement.close();
+                }
+                if (!connection.getAutoCommit()) {
+                    connection.commit();
+                }
+            }
+        }
+    }
+    
     private String getCreateURL() {
         String url = getUrl() + ";create=true";
         if (createUrl != null && !createUrl.isEmpty() && !NO_CREATE_URL.equals(createUrl)) {
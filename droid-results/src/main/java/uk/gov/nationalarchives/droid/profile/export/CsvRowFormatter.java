@@ -0,0 +1,231 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.profile.export;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang.time.DateFormatUtils;
+import org.apache.commons.lang.time.FastDateFormat;
+
+import uk.gov.nationalarchives.droid.profile.NodeMetaData;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+
+/**
+ * Lays out the columns of a CSV export row, from a node or from a {@link NodeRow}.
+ * A row starts with the columns of the node, followed by the columns of each
+ * identification added to it.
+ *
+ * <p/>The fields of the row are kept both as values, and as a line quoted as an
+ * opencsv CSVWriter with its default settings quotes them, so a row is the same
+ * whichever way it is written.  The formatter is reused for every row, so it is
+ * not thread safe.
+ *
+ * @version 6.0.0
+ */
+public final class CsvRowFormatter {
+
+    private static final String FILE_URI_SCHEME = "file";
+    private static final String FILE_URI_PREFIX = FILE_URI_SCHEME + ':';
+    private static final char SEPARATOR = ',';
+    private static final char QUOTE = '"';
+    private static final int INITIAL_LINE_LENGTH = 1024;
+    private static final int INITIAL_FIELDS = 32;
+
+    private static final String[] HEADERS = {
+        "ID",
+        "PARENT_ID",
+        "URI",
+        "FILE_PATH",
+        "NAME",
+        "METHOD",
+        "STATUS",
+        "SIZE",
+        "TYPE",
+        "EXT",
+        "LAST_MODIFIED",
+        "EXTENSION_MISMATCH",
+        "MD5_HASH",
+        "FORMAT_COUNT",
+        "PUID",
+        "MIME_TYPE",
+        "FORMAT_NAME",
+        "FORMAT_VERSION",
+    };
+
+    private final FastDateFormat dateFormat = DateFormatUtils.ISO_DATETIME_FORMAT;
+    private final StringBuilder line = new StringBuilder(INITIAL_LINE_LENGTH);
+    private final List<String> fields = new ArrayList<String>(INITIAL_FIELDS);
+    private char[] lineChars = new char[INITIAL_LINE_LENGTH];
+
+    /**
+     * @return the column headers of an export.
+     */
+    public static String[] getHeaders() {
+        return HEADERS.clone();
+    }
+
+    /**
+     * Starts a row of the column headers.
+     */
+    public void startHeaders() {
+        clear();
+        for (String header : HEADERS) {
+            addField(header);
+        }
+    }
+
+    /**
+     * Starts a row with the columns of a node.
+     * @param node the node.
+     */
+    public void startLine(ProfileResourceNode node) {
+        final NodeMetaData metaData = node.getMetaData();
+        clear();
+        addField(nullSafeNumber(node.getId()));
+        addField(nullSafeNumber(node.getParentId()));
+        addField(node.getUri().toString());
+        addField(toFilePath(node.getUri()));
+        addField(FilenameUtils.getName(metaData.getName()));
+        addField(nullSafeName(metaData.getIdentificationMethod()));
+        addField(metaData.getNodeStatus().getStatus());
+        addField(nullSafeNumber(metaData.getSize()));
+        addField(metaData.getResourceType().getResourceType());
+        addField(metaData.getExtension());
+        addField(nullSafeDate(metaData.getLastModifiedDate()));
+        addField(String.valueOf(node.getExtensionMismatch()));
+        addField(metaData.getHash());
+        addField(nullSafeNumber(node.getIdentificationCount()));
+    }
+
+    /**
+     * Starts a row with the columns of the node in a node row.
+     * @param row the node row.
+     */
+    public void startLine(NodeRow row) {
+        clear();
+        addField(nullSafeNumber(row.getId()));
+        addField(nullSafeNumber(row.getParentId()));
+        addField(row.getUri());
+        addField(toFilePath(row.getUri()));
+        addField(FilenameUtils.getName(row.getName()));
+        addField(nullSafeName(row.getIdentificationMethod()));
+        addField(row.getNodeStatus().getStatus());
+        addField(nullSafeNumber(row.getSize()));
+        addField(row.getResourceType().getResourceType());
+        addField(row.getExtension());
+        addField(nullSafeDate(row.getLastModifiedDate()));
+        addField(String.valueOf(row.getExtensionMismatch()));
+        addField(row.getHash());
+        addField(nullSafeNumber(row.getIdentificationCount()));
+    }
+
+    /**
+     * Adds the columns of an identification to the row.
+     * @param format the format identified.
+     */
+    public void addFormat(Format format) {
+        addField(format.getPuid());
+        addField(format.getMimeType());
+        addField(format.getName());
+        addField(format.getVersion());
+    }
+
+    /**
+     * Adds the columns of the identification in a node row to the row.
+     * @param row the node row.
+     */
+    public void addFormat(NodeRow row) {
+        addField(row.getPuid());
+        addField(row.getMimeType());
+        addField(row.getFormatName());
+        addField(row.getFormatVersion());
+    }
+
+    /**
+     * Writes the quoted fields of the row through a reused buffer.
+     * @param out the writer to write the row to.
+     * @param lineEnd the line end to write after the row.
+     * @throws IOException if the row could not be written.
+     */
+    public void writeLine(Writer out, String lineEnd) throws IOException {
+        final int lineLength = line.length();
+        final int length = lineLength + lineEnd.length();
+        if (lineChars.length < length) {
+            lineChars = new char[Math.max(length, lineChars.length * 2)];
+        }
+        line.getChars(0, lineLength, lineChars, 0);
+        lineEnd.getChars(0, lineEnd.length(), lineChars, lineLength);
+        out.write(lineChars, 0, length);
+    }
+
+    /**
+     * @return the values of the fields of the row.
+     */
+    public String[] getFields() {
+        return fields.toArray(new String[fields.size()]);
+    }
+
+    /**
+     * @param uri the uri of a resource.
+     * @return the absolute path of the resource, or null if it is not a file.
+     */
+    public static String toFilePath(URI uri) {
+        if (FILE_URI_SCHEME.equals(uri.getScheme())) {
+            return new File(uri).getAbsolutePath();
+        }
+        return null;
+    }
+
+    private static String toFilePath(String uri) {
+        return uri.startsWith(FILE_URI_PREFIX) ? toFilePath(URI.create(uri)) : null;
+    }
+
+    private void clear() {
+        line.setLength(0);
+        fields.clear();
+    }
+
+    private void addField(String value) {
+        if (!fields.isEmpty()) {
+            line.append(SEPARATOR);
+        }
+        fields.add(value);
+        if (value != null) {
+            line.append(QUOTE);
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                if (c == QUOTE) {
+                    line.append(QUOTE);
+                }
+                line.append(c);
+            }
+            line.append(QUOTE);
+        }
+    }
+
+    private static String nullSafeName(Enum<?> value) {
+        return value == null ? "" : value.toString();
+    }
+
+    private static String nullSafeNumber(Number number) {
+        return number == null ? "" : number.toString();
+    }
+
+    private String nullSafeDate(Date date) {
+        return date == null ? "" : dateFormat.format(date);
+    }
+}
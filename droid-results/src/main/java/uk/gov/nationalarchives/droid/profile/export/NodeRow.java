@@ -0,0 +1,290 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.profile.export;
+
+import java.util.Date;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
+import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
+
+/**
+ * A node joined to one of its identifications, as read for export.
+ * A {@link NodeRowReader} refills the same row for every row it reads,
+ * so a row must not be kept once the callback it was passed to returns.
+ * 
+ * <p/>A node with no identifications is read as a single row which is
+ * not identified.
+ * 
+ * @version 6.0.0
+ */
+public final class NodeRow {
+
+    private Long id;
+    private Long parentId;
+    private String uri;
+    private String name;
+    private IdentificationMethod identificationMethod;
+    private NodeStatus nodeStatus;
+    private Long size;
+    private ResourceType resourceType;
+    private String extension;
+    private Date lastModifiedDate;
+    private Boolean extensionMismatch;
+    private String hash;
+    private Integer identificationCount;
+    private boolean identified;
+    private String puid;
+    private String mimeType;
+    private String formatName;
+    private String formatVersion;
+
+    /**
+     * Sets the identification in this row.
+     * @param formatPuid the puid, or null for the null format.
+     * @param formatMimeType the mime type of the format.
+     * @param name the name of the format.
+     * @param version the version of the format.
+     */
+    public void setFormat(String formatPuid, String formatMimeType, String name, String version) {
+        this.identified = true;
+        this.puid = formatPuid;
+        this.mimeType = formatMimeType;
+        this.formatName = name;
+        this.formatVersion = version;
+    }
+
+    /**
+     * Clears the identification in this row, for a node which has none.
+     */
+    public void setNoFormat() {
+        this.identified = false;
+        this.puid = null;
+        this.mimeType = null;
+        this.formatName = null;
+        this.formatVersion = null;
+    }
+
+    /**
+     * @return whether this row holds an identification of the node.
+     */
+    public boolean isIdentified() {
+        return identified;
+    }
+
+    /**
+     * @return the puid of the identification, or null for the null format.
+     */
+    public String getPuid() {
+        return puid;
+    }
+
+    /**
+     * @return the mime type of the identification.
+     */
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * @return the name of the identified format.
+     */
+    public String getFormatName() {
+        return formatName;
+    }
+
+    /**
+     * @return the version of the identified format.
+     */
+    public String getFormatVersion() {
+        return formatVersion;
+    }
+
+    /**
+     * @return the node id.
+     */
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * @param id the node id.
+     */
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    /**
+     * @return the id of the parent node, or null for a root node.
+     */
+    public Long getParentId() {
+        return parentId;
+    }
+
+    /**
+     * @param parentId the id of the parent node, or null for a root node.
+     */
+    public void setParentId(Long parentId) {
+        this.parentId = parentId;
+    }
+
+    /**
+     * @return the uri of the node.
+     */
+    public String getUri() {
+        return uri;
+    }
+
+    /**
+     * @param uri the uri of the node.
+     */
+    public void setUri(String uri) {
+        this.uri = uri;
+    }
+
+    /**
+     * @return the name of the node.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param name the name of the node.
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return how the node was identified.
+     */
+    public IdentificationMethod getIdentificationMethod() {
+        return identificationMethod;
+    }
+
+    /**
+     * @param identificationMethod how the node was identified.
+     */
+    public void setIdentificationMethod(IdentificationMethod identificationMethod) {
+        this.identificationMethod = identificationMethod;
+    }
+
+    /**
+     * @return the status of the node.
+     */
+    public NodeStatus getNodeStatus() {
+        return nodeStatus;
+    }
+
+    /**
+     * @param nodeStatus the status of the node.
+     */
+    public void setNodeStatus(NodeStatus nodeStatus) {
+        this.nodeStatus = nodeStatus;
+    }
+
+    /**
+     * @return the size of the node in bytes.
+     */
+    public Long getSize() {
+        return size;
+    }
+
+    /**
+     * @param size the size of the node in bytes.
+     */
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    /**
+     * @return the type of the node.
+     */
+    public ResourceType getResourceType() {
+        return resourceType;
+    }
+
+    /**
+     * @param resourceType the type of the node.
+     */
+    public void setResourceType(ResourceType resourceType) {
+        this.resourceType = resourceType;
+    }
+
+    /**
+     * @return the file extension of the node.
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @param extension the file extension of the node.
+     */
+    public void setExtension(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @return when the node was last modified.
+     */
+    public Date getLastModifiedDate() {
+        return lastModifiedDate;
+    }
+
+    /**
+     * @param lastModifiedDate when the node was last modified.
+     */
+    public void setLastModifiedDate(Date lastModifiedDate) {
+        this.lastModifiedDate = lastModifiedDate;
+    }
+
+    /**
+     * @return whether the extension of the node does not match its format.
+     */
+    public Boolean getExtensionMismatch() {
+        return extensionMismatch;
+    }
+
+    /**
+     * @param extensionMismatch whether the extension of the node does not match its format.
+     */
+    public void setExtensionMismatch(Boolean extensionMismatch) {
+        this.extensionMismatch = extensionMismatch;
+    }
+
+    /**
+     * @return the hash of the node.
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * @param hash the hash of the node.
+     */
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    /**
+     * @return the number of formats the node was identified as.
+     */
+    public Integer getIdentificationCount() {
+        return identificationCount;
+    }
+
+    /**
+     * @param identificationCount the number of formats the node was identified as.
+     */
+    public void setIdentificationCount(Integer identificationCount) {
+        this.identificationCount = identificationCount;
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.profile.export;
+
+import uk.gov.nationalarchives.droid.export.interfaces.JobCancellationException;
+
+/**
+ * Receives the rows read by a {@link NodeRowReader}.
+ * 
+ * @version 6.0.0
+ */
+public interface NodeRowCallback {
+
+    /**
+     * Called for each row read.
+     * @param row the row, which is only valid until this method returns.
+     * @throws JobCancellationException if the read should stop.
+     */
+    void onRow(NodeRow row) throws JobCancellationException;
+}
@@ -0,0 +1,30 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.profile.export;
+
+import uk.gov.nationalarchives.droid.core.interfaces.filter.Filter;
+import uk.gov.nationalarchives.droid.export.interfaces.JobCancellationException;
+
+/**
+ * Reads the nodes of a profile for export as rows, one for each identification
+ * of each node, without building a node for each one.  The rows for a node are
+ * read one after another, and nodes are read in id order.
+ * 
+ * @version 6.0.0
+ */
+public interface NodeRowReader {
+
+    /**
+     * Reads every row, passing each one to the callback.
+     * @param filter an optional filter.  A node matching it is read with all its identifications.
+     * @param callback the callback to pass the rows to.
+     * @throws JobCancellationException if the callback cancelled the read.
+     */
+    void readAll(Filter filter, NodeRowCallback callback) throws JobCancellationException;
+}
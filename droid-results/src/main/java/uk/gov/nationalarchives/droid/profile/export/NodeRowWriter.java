@@ -0,0 +1,28 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.profile.export;
+
+/**
+ * Writes the rows read by a {@link NodeRowReader}.
+ * 
+ * @version 6.0.0
+ */
+public interface NodeRowWriter {
+
+    /**
+     * Writes a row.
+     * @param row the row to write.
+     */
+    void writeRow(NodeRow row);
+
+    /**
+     * Finishes writing the rows of a profile.
+     */
+    void endRows();
+}
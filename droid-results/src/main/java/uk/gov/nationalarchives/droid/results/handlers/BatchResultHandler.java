@@ -9,23 +9,9 @@
 package uk.gov.nationalarchives.droid.results.handlers;
 
 import java.net.URI;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
-import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
-import javax.persistence.EntityManager;
-import javax.persistence.EntityManagerFactory;
-import javax.persistence.PersistenceContext;
-import javax.persistence.Query;
-
-
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
-
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationErrorType;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationException;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
@@ -44,57 +30,40 @@ import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
 import uk.gov.nationalarchives.droid.profile.referencedata.Format;
 
 /**
+ * A result handler which assigns node ids itself, and hands the nodes to a
+ * {@link ResultWriter} to be written to the profile's results store - in
+ * batches on the writer's own thread for the {@link JdbcResultWriter}.
+ * Formats are looked up in a {@link FormatCache} of the format table.
+ * 
  * @author matt
  *
  */
 public class BatchResultHandler implements ResultHandler {
 
-    /**
-     * 
-     */
-    private static final int DEFAULT_BATCH_SIZE = 50;
-
-    private Log log = LogFactory.getLog(getClass());
-
-    @PersistenceContext
-    private EntityManager entityManager;
-    
-    private EntityManagerFactory entityManagerFactory;
-    
+    private FormatCache formatCache;
+    private ResultWriter resultWriter;
+    private ResultHandlerDao resultHandlerDao;
     private ProgressMonitor progressMonitor;
 
     private AtomicLong nodeIdValue;
-    private List<ProfileResourceNode> batchedNodes;
-    private int batchSize = DEFAULT_BATCH_SIZE;
-    
-    /**
-     * Constructs a batch result handler.
-     */
-    public BatchResultHandler() {
-        //Long maxNodeId = getMaxNodeId();
-        //nodeIdValue = new AtomicLong(maxNodeId + 1);
-        batchedNodes = Collections.synchronizedList(new ArrayList<ProfileResourceNode>());
-    }
     
     /**
      * {@inheritDoc}
      */
     @Override
     public void init() {
-        Long maxNodeId = getMaxNodeId();
-        nodeIdValue = maxNodeId == null ? new AtomicLong(0L) : new AtomicLong(maxNodeId + 1);        
+        Long maxNodeId = resultWriter.getMaxNodeId();
+        nodeIdValue = maxNodeId == null ? new AtomicLong(0L) : new AtomicLong(maxNodeId + 1);
+        resultWriter.start();
     }    
     
-    
-    @Transactional
-    private Long getMaxNodeId() {
-        String maxNodeQuery = "select max(node_id) from profile_resource_node";
-        Query q = entityManager.createNativeQuery(maxNodeQuery);
-        Object result = q.getSingleResult();
-        return (Long) result;
+    /**
+     * Commits any queued results, and stops the result writer.
+     */
+    public void close() {
+        resultWriter.close();
     }
     
-    
     /**
      * {@inheritDoc}
      */
@@ -114,6 +83,7 @@ public class BatchResultHandler implements ResultHandler {
         metaData.setExtension(ResourceUtils.getExtension(requestMetaData.getName()));
         metaData.setResourceType(results.isArchive() ? ResourceType.CONTAINER : ResourceType.FILE);
         metaData.setHash(requestMetaData.getHash());
+        metaData.setHashAlgorithm(requestMetaData.getHashAlgorithm());
         
         metaData.setNodeStatus(NodeStatus.DONE);
 
@@ -130,11 +100,18 @@ public class BatchResultHandler implements ResultHandler {
                 node.getMetaData().setIdentificationMethod(result.getMethod());
                 //log.debug(String.format("Handling ID puid[%s]; uri[%s]", result.getPuid(), results.getUri()));
                 Format format = loadFormat(result.getPuid());
-                node.addFormatIdentification(format);
+                // A puid with no format is reported by the format cache, and not written:
+                if (format != null) {
+                    node.addFormatIdentification(format);
+                }
+            }
+            if (node.getFormatIdentifications().isEmpty()) {
+                node.addFormatIdentification(Format.NULL);
+                node.setZeroIdentifications();
             }
         }
         progressMonitor.stopJob(node);
-        batchNode(node);
+        resultWriter.insert(node);
         return new ResourceId(node.getId(), node.getPrefix());
     }
 
@@ -162,7 +139,7 @@ public class BatchResultHandler implements ResultHandler {
         node.addFormatIdentification(Format.NULL);
 
         progressMonitor.stopJob(node);
-        batchNode(node);
+        resultWriter.insert(node);
         return new ResourceId(node.getId(), node.getPrefix());
     }
 
@@ -195,10 +172,16 @@ public class BatchResultHandler implements ResultHandler {
         final Long nodeId = identifier.getNodeId();
         ProfileResourceNode node;
         if (nodeId != null) {
-            node = loadNode(nodeId);
-            node.getMetaData().setNodeStatus(NodeStatus.ERROR);
-            // Need to initialise the collection eagerly...
-            node.getFormatIdentifications().size();
+            // Errors on nodes already handled are rare (archives which could not be
+            // expanded), so the node is read back once its update has been committed:
+            // Without a dao the results can not be read back, so only the uri is reported:
+            resultWriter.updateStatus(nodeId, NodeStatus.ERROR);
+            if (resultHandlerDao != null) {
+                resultWriter.flush();
+                node = resultHandlerDao.loadNode(nodeId);
+            } else {
+                node = new ProfileResourceNode(uri);
+            }
         } else {
             node = new ProfileResourceNode(uri);
             node.setFinished(new Date());
@@ -215,11 +198,12 @@ public class BatchResultHandler implements ResultHandler {
             metaData.setExtension(request.getExtension());
             metaData.setLastModified(request.getRequestMetaData().getTime());
             metaData.setHash(requestMetaData.getHash());
+            metaData.setHashAlgorithm(requestMetaData.getHashAlgorithm());
             
             node.addFormatIdentification(Format.NULL);
             setNodeIds(node, identifier.getParentResourceId());
+            resultWriter.insert(node);
         }
-        batchNode(node);
         progressMonitor.stopJob(node);
     }
 
@@ -238,34 +222,14 @@ public class BatchResultHandler implements ResultHandler {
         node.setPrefixPlusOne(parentsPrefixString + nodePrefixPlusOne);
     }
     
-    private void batchNode(ProfileResourceNode node) {
-        //entityManager.persist(node);
-        batchedNodes.add(node);
-        if (nodeIdValue.get() % batchSize == 0) {
-            commit();
-        }
-    }
-    
-    /**
-     * 
-     * @param nodeId the id of the node to load.
-     * @return The loaded node.
-     */
-    @Transactional(propagation = Propagation.REQUIRED)
-    public ProfileResourceNode loadNode(Long nodeId) {
-        return entityManager.find(ProfileResourceNode.class, nodeId);
-    }
-    
     /**
      * 
      * @param puid The puid of the format to load.
      * @return The format
      */
-    @Transactional(propagation = Propagation.REQUIRED)
     public Format loadFormat(String puid) {
-        return entityManager.find(Format.class, puid);
+        return formatCache.get(puid);
     }    
-    
   
     /**
      * @param progressMonitor
@@ -275,119 +239,43 @@ public class BatchResultHandler implements ResultHandler {
         this.progressMonitor = progressMonitor;
     }
     
-
     /**
-     * 
-     * {@inheritDoc}
+     * @param formatCache the cache to look formats up in.
      */
-    @Override
-    public void deleteCascade(Long nodeId) {
-        deleteNode(nodeId);
+    public void setFormatCache(FormatCache formatCache) {
+        this.formatCache = formatCache;
     }
     
     /**
-     * 
-     * @param factory the factory to use to create entity managers.
+     * @param resultWriter the writer which writes results to the results store.
      */
-    public void setEntityManagerFactory(EntityManagerFactory factory) {
-        this.entityManagerFactory = factory;
+    public void setResultWriter(ResultWriter resultWriter) {
+        this.resultWriter = resultWriter;
     }
     
     /**
-     * 
-     * @param nodeId The id of the node to delete.
+     * @param resultHandlerDao the dao to read back nodes which are updated, or null
+     *        if the results store can not be read.
      */
-    @Transactional(propagation = Propagation.REQUIRED)
-    public void deleteNode(Long nodeId) {
-        ProfileResourceNode node = entityManager.getReference(ProfileResourceNode.class, nodeId);
-        log.warn(String.format("Deleting Node [%s]", node.getUri()));
-        String nodesToRemove = "from ProfileResourceNode n " 
-                + " where n.prefix >= ? " 
-                + " and n.prefix < ? ";
-        Query q = entityManager.createQuery(nodesToRemove);
-        q.setParameter(1, node.getPrefix());
-        q.setParameter(2, node.getPrefixPlusOne());
-        for (Object o : q.getResultList()) {
-            entityManager.remove(o);
-        }
+    public void setResultHandlerDao(ResultHandlerDao resultHandlerDao) {
+        this.resultHandlerDao = resultHandlerDao;
     }
-            
-    
-    
+
     /**
-     * Commits any batched-up nodes to the database using extended entity manager.
+     * 
+     * {@inheritDoc}
      */
-    /*
     @Override
-    @Transactional(propagation = Propagation.REQUIRED)
-    public synchronized void commit() {
-        try {
-            try {
-                transaction.begin();
-            } catch (NotSupportedException e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
-            } catch (SystemException e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
-            }
-            entityManager.joinTransaction();
-            try {
-                transaction.commit();
-            } catch (RollbackException e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
-            } catch (HeuristicMixedException e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
-            } catch (HeuristicRollbackException e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
-            } catch (SystemException e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
-            }
-        //CHECKSTYLE:OFF
-        } catch (RuntimeException ex) {
-            log.error(ex);
-        }
-        //CHECKSTYLE:ON
+    public void deleteCascade(Long nodeId) {
+        resultWriter.delete(nodeId);
     }
-    */
     
     /**
-     * Commits any batched-up nodes to the database using local entity manager.
-     * 
-     * We use a local entity manager in a synchronized method, 
-     * because using the @Transactional annotation seems to produce threading issues.
-     * This method can be called by several threads at the same time.
-     * 
-     * It is unclear why this method isn't amenable to using the annotation, as all the
-     * previous implementations, including ResultHandlerImpl used the annotation without
-     * issue.  This produces a slightly sub-optimal result, as threads get blocked
-     * when calling the commit method.  However, the net result of batching up the 
-     * database inserts is about a third faster than not doing so.
-     * 
+     * Waits until every result handled so far has been stored.
      */
     @Override
-    public synchronized void commit() {
-        try {
-            EntityManager em = entityManagerFactory.createEntityManager();
-            em.getTransaction().begin();
-            synchronized (batchedNodes) {
-                for (ProfileResourceNode node : batchedNodes) {
-                    em.persist(node);
-                }
-                batchedNodes.clear();
-            }
-            em.getTransaction().commit();
-            em.close();
-        //CHECKSTYLE:OFF
-        } catch (RuntimeException ex) {
-            log.error(ex);
-        }
-        //CHECKSTYLE:ON
+    public void commit() {
+        resultWriter.flush();
     }
 
 }
-
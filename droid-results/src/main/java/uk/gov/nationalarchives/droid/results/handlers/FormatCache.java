@@ -0,0 +1,177 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.handlers;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileException;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+import uk.gov.nationalarchives.droid.signature.FormatCallback;
+import uk.gov.nationalarchives.droid.signature.SaxSignatureFileParser;
+
+/**
+ * A cache of the format table, shared by everything which needs to turn
+ * a puid into a format.  The table is read once, the first time a format
+ * is needed, and puids which are not in the cache are looked up singly.
+ * A puid which is not in the table either is remembered, and only looked up once.
+ * <p/>
+ * Without a data source, the formats are read from a signature file instead,
+ * for identification which keeps no profile database.
+ * 
+ * @version 6.0.0
+ */
+public class FormatCache {
+
+    private static final String SELECT_FORMATS = "select puid, mime_type, name, version from format";
+    private static final String SELECT_FORMAT = SELECT_FORMATS + " where puid = ?";
+
+    // Held in the cache for a puid with no format, as the cache can't hold nulls:
+    private static final Format UNKNOWN = new Format();
+
+    private final Log log = LogFactory.getLog(getClass());
+
+    private DataSource dataSource;
+    private String signatureFile;
+    private volatile ConcurrentMap<String, Format> formats;
+
+    /**
+     * @param puid The puid of the format to load, or an empty string for the null format.
+     * @return The format, or null if there is no format with the puid.
+     */
+    public Format get(String puid) {
+        ConcurrentMap<String, Format> cache = formats;
+        if (cache == null) {
+            cache = loadFormats();
+        }
+        Format format = cache.get(puid);
+        if (format == null) {
+            format = queryFormat(puid);
+            if (format != null) {
+                cache.put(puid, format);
+            } else if (cache.putIfAbsent(puid, UNKNOWN) == null) {
+                log.warn(String.format("There is no format with puid [%s]", puid));
+            }
+        }
+        return format == UNKNOWN ? null : format;
+    }
+
+    /*
+     * The format table is filled from the signature file when a profile is created,
+     * which can be after the cache is created, so it is read on first use.
+     */
+    private synchronized ConcurrentMap<String, Format> loadFormats() {
+        if (formats == null && dataSource == null) {
+            formats = readSignatureFile();
+        } else if (formats == null) {
+            final ConcurrentMap<String, Format> cache = new ConcurrentHashMap<String, Format>();
+            try {
+                final Connection connection = dataSource.getConnection();
+                try {
+                    final PreparedStatement statement = connection.prepareStatement(SELECT_FORMATS);
+                    try {
+                        final ResultSet results = statement.executeQuery();
+                        while (results.next()) {
+                            final Format format = toFormat(results);
+                            cache.put(format.getPuid() == null ? "" : format.getPuid(), format);
+                        }
+                    } finally {
+                        statement.close();
+                    }
+                } finally {
+                    connection.close();
+                }
+            } catch (SQLException e) {
+                log.error(e);
+                throw new RuntimeException(e.getMessage(), e);
+            }
+            formats = cache;
+        }
+        return formats;
+    }
+
+    private ConcurrentMap<String, Format> readSignatureFile() {
+        final ConcurrentMap<String, Format> cache = new ConcurrentHashMap<String, Format>();
+        cache.put("", Format.NULL);
+        try {
+            new SaxSignatureFileParser(new File(signatureFile).toURI()).formats(new FormatCallback() {
+                @Override
+                public void onFormat(Format format) {
+                    cache.put(format.getPuid(), format);
+                }
+            });
+        } catch (SignatureFileException e) {
+            log.error(e);
+            throw new RuntimeException(e.getMessage(), e);
+        }
+        return cache;
+    }
+
+    private Format queryFormat(String puid) {
+        if (dataSource == null) {
+            return null;
+        }
+        try {
+            final Connection connection = dataSource.getConnection();
+            try {
+                final PreparedStatement statement = connection.prepareStatement(SELECT_FORMAT);
+                try {
+                    statement.setString(1, puid);
+                    final ResultSet results = statement.executeQuery();
+                    return results.next() ? toFormat(results) : null;
+                } finally {
+                    statement.close();
+                }
+            } finally {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            log.error(e);
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    private static Format toFormat(ResultSet results) throws SQLException {
+        final String puid = results.getString(1);
+        if ("".equals(puid)) {
+            return Format.NULL;
+        }
+        final Format format = new Format();
+        format.setPuid(puid);
+        format.setMimeType(results.getString(2));
+        format.setName(results.getString(3));
+        format.setVersion(results.getString(4));
+        return format;
+    }
+
+    /**
+     * @param dataSource the data source to read formats from.
+     */
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * @param signatureFile the path of the signature file to read formats from
+     *        if there is no data source.
+     */
+    public void setSignatureFile(String signatureFile) {
+        this.signatureFile = signatureFile;
+    }
+}
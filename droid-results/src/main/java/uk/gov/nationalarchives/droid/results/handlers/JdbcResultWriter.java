@@ -0,0 +1,755 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.handlers;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
+import uk.gov.nationalarchives.droid.profile.NodeMetaData;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+
+/**
+ * Writes profile resource nodes to the database on a thread of its own, using
+ * JDBC batches rather than persisting each node through the entity manager.
+ *
+ * <p/>Writes are queued on a bounded queue, so the threads producing results only
+ * wait when the writer has fallen a full queue behind.  The writer commits writes in
+ * groups: once it has taken a write, it goes on gathering writes until it has a full
+ * batch, or until the maximum commit delay has passed since it took the first one,
+ * and then commits the group in one transaction.  A flush ends the group it is in
+ * straight away.  Writes are applied in the order they were queued, so a status
+ * update or a delete always sees the nodes written before it.
+ *
+ * <p/>If a group can not be committed, each write in it is tried again in a transaction
+ * of its own, so only the writes which fail are lost.  The first failure is thrown by
+ * the next flush or close, so it is never silently swallowed.  If the writer thread
+ * itself stops, every write still queued is failed, and every later write or flush throws.
+ *
+ * <p/>The writer keeps counts of the rows and transactions it has committed, and of
+ * the time spent committing them, so the depth of the queue, the commit latency and
+ * the rate rows are written at can be logged or monitored.
+ *
+ * <p/>Node ids must be assigned before nodes are written, as the writer inserts them
+ * with the rest of the node.
+ *
+ * @version 6.0.0
+ */
+public class JdbcResultWriter implements ResultWriter {
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 10000;
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final long DEFAULT_MAX_COMMIT_DELAY = 100;
+    private static final double NANOS_PER_MILLI = 1000000.0;
+    private static final double NANOS_PER_SECOND = 1000000000.0;
+    private static final long STOPPED_CHECK_MILLIS = 100;
+
+    private static final String INSERT_NODE = "insert into profile_resource_node "
+        + "(node_id, parent_id, uri, prefix, prefix_plus_one, identification_count, finished_timestamp, "
+        + "extension_mismatch, text_encoding, file_size, last_modified_date, name, extension, "
+        + "node_status, identification_method, resource_type, hash, hash_algorithm) "
+        + "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String MAX_NODE_ID = "select max(node_id) from profile_resource_node";
+
+    private static final String INSERT_IDENTIFICATION = "insert into identification (node_id, puid) values (?, ?)";
+
+    private static final String UPDATE_STATUS = "update profile_resource_node set node_status = ? where node_id = ?";
+
+    private static final String SELECT_PREFIXES =
+        "select prefix, prefix_plus_one from profile_resource_node where node_id = ?";
+
+    private static final String DELETE_IDENTIFICATIONS = "delete from identification where node_id in "
+        + "(select node_id from profile_resource_node where prefix >= ? and prefix < ?)";
+
+    private static final String DELETE_NODES = "delete from profile_resource_node where prefix >= ? and prefix < ?";
+
+    private final Log log = LogFactory.getLog(getClass());
+
+    private DataSource dataSource;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private long maxCommitDelay = DEFAULT_MAX_COMMIT_DELAY;
+
+    private BlockingQueue<Write> writes;
+    private Thread writerThread;
+
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+    private volatile RuntimeException stopped;
+
+    private final AtomicLong rowsCommitted = new AtomicLong();
+    private final AtomicLong writesFailed = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong commitNanos = new AtomicLong();
+    private final AtomicLong lastCommitNanos = new AtomicLong();
+    private volatile long startNanos;
+
+    /**
+     * Starts the writer thread.
+     */
+    @Override
+    public synchronized void start() {
+        if (writerThread == null) {
+            writes = new ArrayBlockingQueue<Write>(queueCapacity);
+            stopped = null;
+            failure.set(null);
+            startNanos = System.nanoTime();
+            writerThread = new Thread(new Writer(), "Result writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+        }
+    }
+
+    /**
+     * Reads the highest node id in the database.
+     * {@inheritDoc}
+     */
+    @Override
+    public Long getMaxNodeId() {
+        try {
+            final Connection connection = dataSource.getConnection();
+            try {
+                final PreparedStatement statement = connection.prepareStatement(MAX_NODE_ID);
+                try {
+                    final ResultSet results = statement.executeQuery();
+                    results.next();
+                    final long maxNodeId = results.getLong(1);
+                    return results.wasNull() ? null : maxNodeId;
+                } finally {
+                    statement.close();
+                }
+            } finally {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            log.error(e);
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Queues a node and its format identifications to be inserted.
+     * @param node the node to insert, which must already have its id and prefixes.
+     */
+    @Override
+    public void insert(ProfileResourceNode node) {
+        queue(new InsertNode(node));
+    }
+
+    /**
+     * Queues an update to the status of a node.
+     * @param nodeId the id of the node.
+     * @param status the new status of the node.
+     */
+    @Override
+    public void updateStatus(Long nodeId, NodeStatus status) {
+        queue(new UpdateStatus(nodeId, status));
+    }
+
+    /**
+     * Queues the deletion of a node and all the nodes beneath it.
+     * @param nodeId the id of the node to delete.
+     */
+    @Override
+    public void delete(Long nodeId) {
+        queue(new DeleteNode(nodeId));
+    }
+
+    /**
+     * Waits until every write queued before this call has been committed, or has failed.
+     * @throws RuntimeException if any write has failed since the last flush, or if the
+     * writer thread has stopped.
+     */
+    @Override
+    public void flush() {
+        final Flush flush = new Flush();
+        queue(flush);
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (flush.done.await(STOPPED_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+                checkNotStopped();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        checkNotStopped();
+        final RuntimeException failed = failure.getAndSet(null);
+        if (failed != null) {
+            throw failed;
+        }
+    }
+
+    /**
+     * Commits any queued writes, and stops the writer thread.
+     * @throws RuntimeException if any write has failed since the last flush.
+     */
+    @Override
+    public synchronized void close() {
+        if (writerThread != null) {
+            try {
+                flush();
+            } finally {
+                writerThread.interrupt();
+                writerThread = null;
+                log.info(String.format("Result writer committed %d nodes in %d transactions, "
+                        + "averaging %.1f ms a transaction and %.0f nodes a second; %d writes failed",
+                        getRowsCommitted(), getCommits(), getAverageCommitMillis(), getRowsPerSecond(),
+                        getWritesFailed()));
+            }
+        }
+    }
+
+    /*
+     * Results must not be lost if a producing thread is interrupted while the queue
+     * is full, so the interrupt is held back until the write has been queued.
+     * A write queued as the writer thread stops may never be taken, so it is failed here.
+     */
+    private void queue(Write write) {
+        checkNotStopped();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (writes.offer(write, STOPPED_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+                checkNotStopped();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (stopped != null) {
+            failQueuedWrites();
+            throw stopped;
+        }
+    }
+
+    private void checkNotStopped() {
+        final RuntimeException stoppedBy = stopped;
+        if (stoppedBy != null) {
+            throw stoppedBy;
+        }
+    }
+
+    private void failQueuedWrites() {
+        final List<Write> queued = new ArrayList<Write>();
+        writes.drainTo(queued);
+        for (Write write : queued) {
+            write.done();
+        }
+    }
+
+    /**
+     * @return the number of writes queued and not yet taken by the writer.
+     */
+    public int getQueueDepth() {
+        final BlockingQueue<Write> queued = writes;
+        return queued == null ? 0 : queued.size();
+    }
+
+    /**
+     * @return the number of nodes committed since the writer was started.
+     */
+    public long getRowsCommitted() {
+        return rowsCommitted.get();
+    }
+
+    /**
+     * @return the number of writes which could not be committed since the writer was started.
+     */
+    public long getWritesFailed() {
+        return writesFailed.get();
+    }
+
+    /**
+     * @return the number of transactions committed since the writer was started.
+     */
+    public long getCommits() {
+        return commits.get();
+    }
+
+    /**
+     * @return the time the last transaction took to write and commit, in milliseconds.
+     */
+    public double getLastCommitMillis() {
+        return lastCommitNanos.get() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @return the average time a transaction took to write and commit, in milliseconds.
+     */
+    public double getAverageCommitMillis() {
+        final long committed = commits.get();
+        return committed == 0 ? 0 : commitNanos.get() / NANOS_PER_MILLI / committed;
+    }
+
+    /**
+     * @return the average number of nodes committed a second since the writer was started.
+     */
+    public double getRowsPerSecond() {
+        final long elapsed = System.nanoTime() - startNanos;
+        return elapsed <= 0 ? 0 : rowsCommitted.get() * NANOS_PER_SECOND / elapsed;
+    }
+
+    /**
+     * @param dataSource the data source to write to.
+     */
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * @param queueCapacity the number of writes which can be queued before producers wait.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * @param batchSize the maximum number of writes committed in one transaction.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param maxCommitDelay the longest time, in milliseconds, the writer waits for a group
+     * of writes to fill a batch before committing it.  With no delay, the writer commits
+     * whatever is queued as soon as it takes it.
+     */
+    public void setMaxCommitDelay(long maxCommitDelay) {
+        this.maxCommitDelay = maxCommitDelay;
+    }
+
+    /**
+     * Takes writes off the queue and commits them, until it is interrupted.
+     */
+    private final class Writer implements Runnable {
+
+        @Override
+        public void run() {
+            final List<Write> batch = new ArrayList<Write>(batchSize);
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    batch.add(writes.take());
+                    gather(batch);
+                    write(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                log.debug(e);
+                if (!batch.isEmpty()) {
+                    write(batch);
+                }
+            } catch (RuntimeException e) {
+                log.error("Result writer stopped: " + e.getMessage(), e);
+                stopped = new IllegalStateException("The result writer has stopped: " + e.getMessage(), e);
+                for (Write write : batch) {
+                    write.done();
+                }
+                failQueuedWrites();
+            }
+        }
+
+        /*
+         * Adds writes to the batch until it is full, a flush is added, or the
+         * maximum commit delay has passed since the first write in it was taken.
+         */
+        private void gather(List<Write> batch) throws InterruptedException {
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxCommitDelay);
+            boolean fenced = batch.get(0).isFence();
+            while (!fenced && batch.size() < batchSize) {
+                final int gathered = batch.size();
+                writes.drainTo(batch, batchSize - gathered);
+                for (int i = gathered; i < batch.size() && !fenced; i++) {
+                    fenced = batch.get(i).isFence();
+                }
+                final long remaining = deadline - System.nanoTime();
+                if (fenced || batch.size() >= batchSize || remaining <= 0) {
+                    break;
+                }
+                final Write next = writes.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+                fenced = next.isFence();
+            }
+        }
+
+        /*
+         * Commits the batch as one group.  If the group fails, each write is tried
+         * again on its own, so a single bad write does not lose the rest of the group.
+         */
+        private void write(List<Write> batch) {
+            try {
+                final Exception groupFailure = commit(batch);
+                if (groupFailure != null) {
+                    if (batch.size() == 1) {
+                        failed(batch.get(0), groupFailure);
+                    } else {
+                        log.warn(String.format("Could not commit %d writes together, so writing them one at a time: %s",
+                                batch.size(), groupFailure.getMessage()));
+                        for (Write write : batch) {
+                            if (!write.isFence()) {
+                                final Exception writeFailure = commit(Collections.singletonList(write));
+                                if (writeFailure != null) {
+                                    failed(write, writeFailure);
+                                }
+                            }
+                        }
+                    }
+                }
+            } finally {
+                for (Write write : batch) {
+                    write.done();
+                }
+            }
+        }
+
+        /*
+         * Commits writes in one transaction, returning why they could not be committed, or null.
+         */
+        private Exception commit(List<Write> group) {
+            final long started = System.nanoTime();
+            try {
+                final Connection connection = dataSource.getConnection();
+                try {
+                    connection.setAutoCommit(false);
+                    final Statements statements = new Statements(connection);
+                    try {
+                        for (Write write : group) {
+                            write.apply(statements);
+                        }
+                        statements.executeBatches();
+                        connection.commit();
+                    } catch (SQLException e) {
+                        rollback(connection);
+                        return e;
+                    } catch (RuntimeException e) {
+                        rollback(connection);
+                        return e;
+                    } finally {
+                        statements.close();
+                    }
+                } finally {
+                    connection.close();
+                }
+            } catch (SQLException e) {
+                return e;
+            }
+            committed(group, System.nanoTime() - started);
+            return null;
+        }
+
+        private void rollback(Connection connection) {
+            try {
+                connection.rollback();
+            } catch (SQLException e) {
+                log.error(e);
+            }
+        }
+
+        private void failed(Write write, Exception e) {
+            log.error(String.format("Could not write %s: %s", write, e.getMessage()), e);
+            writesFailed.incrementAndGet();
+            failure.compareAndSet(null, new RuntimeException(
+                    String.format("Could not write %s: %s", write, e.getMessage()), e));
+        }
+    }
+
+    private void committed(List<Write> batch, long nanos) {
+        int rows = 0;
+        for (Write write : batch) {
+            rows += write.rows();
+        }
+        rowsCommitted.addAndGet(rows);
+        commits.incrementAndGet();
+        commitNanos.addAndGet(nanos);
+        lastCommitNanos.set(nanos);
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Committed %d nodes in %.1f ms; %d writes queued; %.0f nodes a second",
+                    rows, nanos / NANOS_PER_MILLI, getQueueDepth(), getRowsPerSecond()));
+        }
+    }
+
+    /**
+     * The statements writes are applied to, in one transaction.  Inserts are
+     * batched, and the batches are executed before any other kind of write.
+     */
+    private static final class Statements {
+
+        private final Connection connection;
+        private final PreparedStatement insertNode;
+        private final PreparedStatement insertIdentification;
+        private boolean batched;
+
+        Statements(Connection connection) throws SQLException {
+            this.connection = connection;
+            insertNode = connection.prepareStatement(INSERT_NODE);
+            insertIdentification = connection.prepareStatement(INSERT_IDENTIFICATION);
+        }
+
+        void insert(ProfileResourceNode node) throws SQLException {
+            final NodeMetaData metaData = node.getMetaData();
+            final Long nodeId = node.getId();
+            insertNode.setLong(1, nodeId);
+            setLong(insertNode, 2, node.getParentId());
+            insertNode.setString(3, node.getUri().toString());
+            insertNode.setString(4, node.getPrefix());
+            insertNode.setString(5, node.getPrefixPlusOne());
+            final Integer identificationCount = node.getIdentificationCount();
+            if (identificationCount == null) {
+                insertNode.setNull(6, Types.INTEGER);
+            } else {
+                insertNode.setInt(6, identificationCount);
+            }
+            setTimestamp(insertNode, 7, node.getFinished());
+            insertNode.setBoolean(8, Boolean.TRUE.equals(node.getExtensionMismatch()));
+            insertNode.setNull(9, Types.INTEGER);
+            setLong(insertNode, 10, metaData.getSize());
+            setTimestamp(insertNode, 11, metaData.getLastModifiedDate());
+            insertNode.setString(12, metaData.getName());
+            insertNode.setString(13, metaData.getExtension());
+            setOrdinal(insertNode, 14, metaData.getNodeStatus());
+            setOrdinal(insertNode, 15, metaData.getIdentificationMethod());
+            setOrdinal(insertNode, 16, metaData.getResourceType());
+            insertNode.setString(17, metaData.getHash());
+            insertNode.setString(18, metaData.getHashAlgorithm());
+            insertNode.addBatch();
+
+            for (Format format : node.getFormatIdentifications()) {
+                insertIdentification.setLong(1, nodeId);
+                // The NULL format has a null puid, but is stored with an empty one:
+                final String puid = format.getPuid();
+                insertIdentification.setString(2, puid == null ? "" : puid);
+                insertIdentification.addBatch();
+            }
+            batched = true;
+        }
+
+        void updateStatus(Long nodeId, NodeStatus status) throws SQLException {
+            executeBatches();
+            final PreparedStatement update = connection.prepareStatement(UPDATE_STATUS);
+            try {
+                setOrdinal(update, 1, status);
+                update.setLong(2, nodeId);
+                update.executeUpdate();
+            } finally {
+                update.close();
+            }
+        }
+
+        void delete(Long nodeId) throws SQLException {
+            executeBatches();
+            String prefix = null;
+            String prefixPlusOne = null;
+            final PreparedStatement select = connection.prepareStatement(SELECT_PREFIXES);
+            try {
+                select.setLong(1, nodeId);
+                final ResultSet results = select.executeQuery();
+                if (results.next()) {
+                    prefix = results.getString(1);
+                    prefixPlusOne = results.getString(2);
+                }
+                results.close();
+            } finally {
+                select.close();
+            }
+            if (prefix != null) {
+                executeDelete(DELETE_IDENTIFICATIONS, prefix, prefixPlusOne);
+                executeDelete(DELETE_NODES, prefix, prefixPlusOne);
+            }
+        }
+
+        void executeBatches() throws SQLException {
+            if (batched) {
+                insertNode.executeBatch();
+                insertIdentification.executeBatch();
+                batched = false;
+            }
+        }
+
+        void close() throws SQLException {
+            insertNode.close();
+            insertIdentification.close();
+        }
+
+        private void executeDelete(String sql, String prefix, String prefixPlusOne) throws SQLException {
+            final PreparedStatement delete = connection.prepareStatement(sql);
+            try {
+                delete.setString(1, prefix);
+                delete.setString(2, prefixPlusOne);
+                delete.executeUpdate();
+            } finally {
+                delete.close();
+            }
+        }
+
+        private static void setLong(PreparedStatement statement, int index, Long value) throws SQLException {
+            if (value == null) {
+                statement.setNull(index, Types.BIGINT);
+            } else {
+                statement.setLong(index, value);
+            }
+        }
+
+        private static void setTimestamp(PreparedStatement statement, int index, Date value) throws SQLException {
+            if (value == null) {
+                statement.setNull(index, Types.TIMESTAMP);
+            } else {
+                statement.setTimestamp(index, new Timestamp(value.getTime()));
+            }
+        }
+
+        private static void setOrdinal(PreparedStatement statement, int index, Enum<?> value) throws SQLException {
+            if (value == null) {
+                statement.setNull(index, Types.INTEGER);
+            } else {
+                statement.setInt(index, value.ordinal());
+            }
+        }
+    }
+
+    /**
+     * A write queued for the writer thread.
+     */
+    private abstract static class Write {
+
+        abstract void apply(Statements statements) throws SQLException;
+
+        /**
+         * @return the number of nodes the write inserts.
+         */
+        int rows() {
+            return 0;
+        }
+
+        /**
+         * @return whether the write must be committed as soon as it is taken.
+         */
+        boolean isFence() {
+            return false;
+        }
+
+        /**
+         * Called once the write has been committed, or has failed.
+         */
+        void done() { }
+    }
+
+    private static final class InsertNode extends Write {
+        private final ProfileResourceNode node;
+
+        InsertNode(ProfileResourceNode node) {
+            this.node = node;
+        }
+
+        @Override
+        void apply(Statements statements) throws SQLException {
+            statements.insert(node);
+        }
+
+        @Override
+        int rows() {
+            return 1;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("node [%d] %s", node.getId(), node.getUri());
+        }
+    }
+
+    private static final class UpdateStatus extends Write {
+        private final Long nodeId;
+        private final NodeStatus status;
+
+        UpdateStatus(Long nodeId, NodeStatus status) {
+            this.nodeId = nodeId;
+            this.status = status;
+        }
+
+        @Override
+        void apply(Statements statements) throws SQLException {
+            statements.updateStatus(nodeId, status);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("the status of node [%d]", nodeId);
+        }
+    }
+
+    private static final class DeleteNode extends Write {
+        private final Long nodeId;
+
+        DeleteNode(Long nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        @Override
+        void apply(Statements statements) throws SQLException {
+            statements.delete(nodeId);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("the deletion of node [%d]", nodeId);
+        }
+    }
+
+    private static final class Flush extends Write {
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        @Override
+        void apply(Statements statements) {
+            // the batch the flush is in is committed before it is done.
+        }
+
+        @Override
+        boolean isFence() {
+            return true;
+        }
+
+        @Override
+        void done() {
+            done.countDown();
+        }
+    }
+
+}
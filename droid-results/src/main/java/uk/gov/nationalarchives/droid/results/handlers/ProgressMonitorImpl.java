@@ -10,34 +10,53 @@ package uk.gov.nationalarchives.droid.results.handlers;
 
 import java.net.URI;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
 import uk.gov.nationalarchives.droid.profile.ProfileResultObserver;
 
 /**
- * @author rflitcroft
+ * Counts identification progress.
+ * 
+ * <p/>Counting progress doesn't lock.  Progress observers are notified by whichever 
+ * thread changes the progress percentage, unless another thread is already notifying them, 
+ * and no more often than every {@link #MIN_NOTIFY_INTERVAL_MILLIS} milliseconds, 
+ * except when progress reaches 100 percent.
  * 
+ * @author rflitcroft
  */
 public class ProgressMonitorImpl implements ProgressMonitor {
 
+    /**
+     * The minimum time between progress notifications, in milliseconds.
+     */
+    static final long MIN_NOTIFY_INTERVAL_MILLIS = 100;
+    
     private static final int UNITY_PERCENT = 100;
 
-    private volatile long count;
-    private volatile int progressPercentage = INDETERMINATE_PROGRESS;
-    private long target = INDETERMINATE_PROGRESS;
+    private final AtomicLong count = new AtomicLong();
+    private volatile long target = INDETERMINATE_PROGRESS;
 
-    private Set<URI> jobsInProgress = Collections.synchronizedSet(new HashSet<URI>());
-    private ProgressObserver observer;
+    private final Set<URI> jobsInProgress = Collections.newSetFromMap(new ConcurrentHashMap<URI, Boolean>());
+    private volatile ProgressObserver observer;
     private ProfileResultObserver resultObserver;
+    
+    private final Lock notifyLock = new ReentrantLock();
+    private final AtomicBoolean notifyPending = new AtomicBoolean();
+    private int notifiedPercentage = INDETERMINATE_PROGRESS;
+    private long notifiedAt;
 
     /**
      * {@inheritDoc}
      */
     @Override
     public long getIdentificationCount() {
-        return count;
+        return count.get();
     }
 
     /**
@@ -61,33 +80,47 @@ public class ProgressMonitorImpl implements ProgressMonitor {
      */
     @Override
     public int getProgressPercentage() {
-        return progressPercentage;
+        final long currentTarget = target;
+        if (currentTarget <= 0) {
+            return INDETERMINATE_PROGRESS;
+        }
+        final long progress = UNITY_PERCENT * count.get() / currentTarget;
+        return progress > UNITY_PERCENT ? UNITY_PERCENT : (int) progress;
     }
 
   /**
    * Increments the internal count.
    */
  
-    synchronized void increment() {
-        count++;
-        if (target == ProgressMonitor.INDETERMINATE_PROGRESS) {
-            progressPercentage = ProgressMonitor.INDETERMINATE_PROGRESS;
-        } else {
-            calcProgress();
-        }
+    void increment() {
+        count.incrementAndGet();
+        notifyProgress();
     }
 
-    private void calcProgress() {
-        if (target > 0) {
-            // Avoid any / by zero problems...
-            int oldProg = progressPercentage;
-            int newProg = (int) (UNITY_PERCENT * count / target);
-            if (newProg > UNITY_PERCENT) {
-                newProg = UNITY_PERCENT;
-            }
-            progressPercentage = newProg;
-            if (observer != null && newProg != oldProg) {
-                observer.onProgress(progressPercentage);
+    /*
+     * Tells the observer about the current progress, if it has changed.
+     * If another thread is already notifying the observer, this thread does
+     * not wait, but leaves a pending flag which the other thread checks once 
+     * it has released the lock, so the final progress is never missed.
+     */
+    private void notifyProgress() {
+        if (observer == null) {
+            return;
+        }
+        notifyPending.set(true);
+        while (notifyPending.get() && notifyLock.tryLock()) {
+            try {
+                notifyPending.set(false);
+                final int progress = getProgressPercentage();
+                final long now = System.currentTimeMillis();
+                if (progress != INDETERMINATE_PROGRESS && progress != notifiedPercentage 
+                        && (progress == UNITY_PERCENT || now - notifiedAt >= MIN_NOTIFY_INTERVAL_MILLIS)) {
+                    observer.onProgress(progress);
+                    notifiedPercentage = progress;
+                    notifiedAt = now;
+                }
+            } finally {
+                notifyLock.unlock();
             }
         }
     }
@@ -96,9 +129,9 @@ public class ProgressMonitorImpl implements ProgressMonitor {
      * {@inheritDoc}
      */
     @Override
-    public synchronized void setTargetCount(long targetCount) {
+    public void setTargetCount(long targetCount) {
         this.target = targetCount;
-        calcProgress();
+        notifyProgress();
     }
 
     /**
@@ -149,8 +182,8 @@ public class ProgressMonitorImpl implements ProgressMonitor {
      */
     public void initialise(long targetCount, long currentCount) {
         this.target = targetCount;
-        this.count = currentCount;
-        calcProgress();
+        this.count.set(currentCount);
+        notifyProgress();
     }
     
 }
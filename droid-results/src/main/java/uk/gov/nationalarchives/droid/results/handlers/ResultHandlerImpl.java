@@ -71,6 +71,7 @@ public class ResultHandlerImpl implements ResultHandler {
         metaData.setExtension(ResourceUtils.getExtension(requestMetaData.getName()));
         metaData.setResourceType(results.isArchive() ? ResourceType.CONTAINER : ResourceType.FILE);
         metaData.setHash(requestMetaData.getHash());
+        metaData.setHashAlgorithm(requestMetaData.getHashAlgorithm());
         
         metaData.setNodeStatus(NodeStatus.DONE);
 
@@ -129,6 +130,7 @@ public class ResultHandlerImpl implements ResultHandler {
             metaData.setExtension(request.getExtension());
             metaData.setLastModified(request.getRequestMetaData().getTime());
             metaData.setHash(requestMetaData.getHash());
+            metaData.setHashAlgorithm(requestMetaData.getHashAlgorithm());
             
             node.addFormatIdentification(Format.NULL);
             resultHandlerDao.save(node, identifier.getParentResourceId());
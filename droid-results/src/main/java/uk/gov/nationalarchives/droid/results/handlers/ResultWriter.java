@@ -0,0 +1,61 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.handlers;
+
+import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+
+/**
+ * Writes profile resource nodes to the store a profile keeps its results in.
+ * Writes are applied in the order they are made, but need not be stored until
+ * the writer is flushed.
+ * 
+ * @version 6.0.0
+ */
+public interface ResultWriter {
+
+    /**
+     * Prepares the writer to accept writes.
+     */
+    void start();
+
+    /**
+     * @return the highest node id already stored, or null if no nodes are stored.
+     */
+    Long getMaxNodeId();
+
+    /**
+     * Writes a node and its format identifications.
+     * @param node the node to write, which must already have its id and prefixes.
+     */
+    void insert(ProfileResourceNode node);
+
+    /**
+     * Updates the status of a node.
+     * @param nodeId the id of the node.
+     * @param status the new status of the node.
+     */
+    void updateStatus(Long nodeId, NodeStatus status);
+
+    /**
+     * Deletes a node and all the nodes beneath it.
+     * @param nodeId the id of the node to delete.
+     */
+    void delete(Long nodeId);
+
+    /**
+     * Waits until every write made before this call has been stored.
+     */
+    void flush();
+
+    /**
+     * Stores any outstanding writes, and stops the writer.
+     */
+    void close();
+}
@@ -0,0 +1,267 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.handlers;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang.time.DateFormatUtils;
+import org.apache.commons.lang.time.FastDateFormat;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
+import uk.gov.nationalarchives.droid.profile.NodeMetaData;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.export.CsvRowFormatter;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+
+/**
+ * A result writer which keeps no results, but writes each node as a line of
+ * CSV or JSON as soon as it is inserted, for identification without a profile.
+ * The CSV lines are laid out by the {@link CsvRowFormatter} of a CSV export
+ * with one row per file.
+ * <p/>
+ * Nodes which have been written can not be changed, so status updates and
+ * deletions are only logged.  The writer it writes to is flushed, but not
+ * closed, when it is closed.
+ *
+ * @version 6.0.0
+ */
+public class StreamResultWriter implements ResultWriter {
+
+    /**
+     * The formats nodes can be written in.
+     */
+    public enum LineFormat {
+        /** Comma separated values, with a header line. */
+        CSV,
+        /** A JSON object on each line. */
+        JSON
+    }
+
+    private static final char SEPARATOR = ',';
+    private static final char QUOTE = '"';
+    private static final String LINE_END = "\n";
+    private static final int INITIAL_LINE_LENGTH = 1024;
+    private static final int HEX = 16;
+    private static final int UNICODE_ESCAPE_LENGTH = 4;
+    private static final char LAST_CONTROL_CHAR = 0x1f;
+
+    private final Log log = LogFactory.getLog(getClass());
+
+    private final StringBuilder line = new StringBuilder(INITIAL_LINE_LENGTH);
+    private final CsvRowFormatter csvRow = new CsvRowFormatter();
+    private final FastDateFormat dateFormat = DateFormatUtils.ISO_DATETIME_FORMAT;
+    private Writer output;
+    private LineFormat format = LineFormat.CSV;
+
+    /**
+     * Writes the CSV header line.
+     */
+    @Override
+    public synchronized void start() {
+        if (format == LineFormat.CSV) {
+            csvRow.startHeaders();
+            writeCsvLine();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long getMaxNodeId() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void insert(ProfileResourceNode node) {
+        if (format == LineFormat.JSON) {
+            line.setLength(0);
+            appendJson(node);
+            writeJsonLine();
+        } else {
+            csvRow.startLine(node);
+            for (Format identification : node.getFormatIdentifications()) {
+                csvRow.addFormat(identification);
+            }
+            writeCsvLine();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateStatus(Long nodeId, NodeStatus status) {
+        log.warn(String.format("Node [%d] has already been written, so its status can not be changed to [%s]",
+                nodeId, status.getStatus()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete(Long nodeId) {
+        log.warn(String.format("Node [%d] has already been written, so it can not be deleted", nodeId));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void flush() {
+        try {
+            output.flush();
+        } catch (IOException e) {
+            log.error(e);
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Flushes the lines written, leaving the writer open.
+     */
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private void appendJson(ProfileResourceNode node) {
+        final NodeMetaData metaData = node.getMetaData();
+        line.append('{');
+        addJsonNumber("id", node.getId());
+        line.append(SEPARATOR);
+        addJsonNumber("parentId", node.getParentId());
+        line.append(SEPARATOR);
+        addJsonString("uri", node.getUri().toString());
+        line.append(SEPARATOR);
+        addJsonString("filePath", CsvRowFormatter.toFilePath(node.getUri()));
+        line.append(SEPARATOR);
+        addJsonString("name", FilenameUtils.getName(metaData.getName()));
+        line.append(SEPARATOR);
+        addJsonString("method", metaData.getIdentificationMethod() == null
+                ? null : metaData.getIdentificationMethod().toString());
+        line.append(SEPARATOR);
+        addJsonString("status", metaData.getNodeStatus().getStatus());
+        line.append(SEPARATOR);
+        addJsonNumber("size", metaData.getSize());
+        line.append(SEPARATOR);
+        addJsonString("type", metaData.getResourceType().getResourceType());
+        line.append(SEPARATOR);
+        addJsonString("extension", metaData.getExtension());
+        line.append(SEPARATOR);
+        addJsonString("lastModified", metaData.getLastModifiedDate() == null
+                ? null : dateFormat.format(metaData.getLastModifiedDate()));
+        line.append(SEPARATOR);
+        appendJsonName("extensionMismatch");
+        line.append(node.getExtensionMismatch() == null ? "null" : node.getExtensionMismatch().toString());
+        line.append(SEPARATOR);
+        addJsonString("hash", metaData.getHash());
+        line.append(SEPARATOR);
+        addJsonNumber("formatCount", node.getIdentificationCount());
+        line.append(SEPARATOR);
+        appendJsonName("formats");
+        line.append('[');
+        boolean first = true;
+        for (Format identification : node.getFormatIdentifications()) {
+            if (!first) {
+                line.append(SEPARATOR);
+            }
+            first = false;
+            line.append('{');
+            addJsonString("puid", identification.getPuid());
+            line.append(SEPARATOR);
+            addJsonString("mimeType", identification.getMimeType());
+            line.append(SEPARATOR);
+            addJsonString("name", identification.getName());
+            line.append(SEPARATOR);
+            addJsonString("version", identification.getVersion());
+            line.append('}');
+        }
+        line.append("]}");
+    }
+
+    private void addJsonNumber(String name, Number value) {
+        appendJsonName(name);
+        line.append(value == null ? "null" : value.toString());
+    }
+
+    private void addJsonString(String name, String value) {
+        appendJsonName(name);
+        appendJsonString(value);
+    }
+
+    private void appendJsonName(String name) {
+        appendJsonString(name);
+        line.append(':');
+    }
+
+    private void appendJsonString(String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append(QUOTE);
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == QUOTE || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c <= LAST_CONTROL_CHAR) {
+                final String hex = Integer.toString(c, HEX);
+                line.append("\\u");
+                for (int pad = hex.length(); pad < UNICODE_ESCAPE_LENGTH; pad++) {
+                    line.append('0');
+                }
+                line.append(hex);
+            } else {
+                line.append(c);
+            }
+        }
+        line.append(QUOTE);
+    }
+
+    private void writeJsonLine() {
+        line.append(LINE_END);
+        try {
+            output.append(line);
+        } catch (IOException e) {
+            log.error(e);
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    private void writeCsvLine() {
+        try {
+            csvRow.writeLine(output, LINE_END);
+        } catch (IOException e) {
+            log.error(e);
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param output the writer to write the lines to.
+     */
+    public void setOutput(Writer output) {
+        this.output = output;
+    }
+
+    /**
+     * @param format the format to write nodes in.
+     */
+    public void setFormat(LineFormat format) {
+        this.format = format;
+    }
+}
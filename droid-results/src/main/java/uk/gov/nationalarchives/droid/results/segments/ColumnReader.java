@@ -0,0 +1,112 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.segments;
+
+/**
+ * Decodes the values of one column of a segment, written by a {@link ColumnWriter}.
+ * 
+ * @version 6.0.0
+ */
+final class ColumnReader {
+
+    private static final int SEVEN_BITS = 0x7F;
+    private static final int CONTINUE = 0x80;
+    private static final int BITS = 7;
+
+    private final byte[] bytes;
+    private int position;
+
+    private String previousString;
+    private Long previousLong;
+    private String[] dictionary;
+
+    /**
+     * @param bytes the bytes of the segment.
+     * @param offset the offset of the column in the bytes.
+     */
+    ColumnReader(byte[] bytes, int offset) {
+        this.bytes = bytes;
+        this.position = offset;
+    }
+
+    long readUnsigned() {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = bytes[position++] & 0xFF;
+            value |= (long) (b & SEVEN_BITS) << shift;
+            shift += BITS;
+        } while ((b & CONTINUE) != 0);
+        return value;
+    }
+
+    long readSigned() {
+        final long value = readUnsigned();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    Long readNullable() {
+        final long value = readUnsigned();
+        if (value == 0) {
+            return null;
+        }
+        final long zigzag = value - 1;
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    Long readDelta() {
+        final Long delta = readNullable();
+        if (delta == null) {
+            return null;
+        }
+        previousLong = previousLong == null ? delta : previousLong + delta;
+        return previousLong;
+    }
+
+    <T extends Enum<T>> T readOrdinal(T[] values) {
+        final int ordinal = bytes[position++] & 0xFF;
+        return ordinal == 0 ? null : values[ordinal - 1];
+    }
+
+    String readString() {
+        final int length = (int) readUnsigned();
+        if (length == 0) {
+            return null;
+        }
+        final String value = new String(bytes, position, length - 1, ColumnWriter.UTF8);
+        position += length - 1;
+        return value;
+    }
+
+    String readFrontCoded() {
+        final int shared = (int) readUnsigned();
+        if (shared == 0) {
+            return null;
+        }
+        final String suffix = readString();
+        final String value = shared == 1 ? suffix : previousString.substring(0, shared - 1) + suffix;
+        previousString = value;
+        return value;
+    }
+
+    /**
+     * Reads the next value of a dictionary column; the dictionary itself is read first.
+     * @return the next value.
+     */
+    String readFromDictionary() {
+        if (dictionary == null) {
+            dictionary = new String[(int) readUnsigned()];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = readString();
+            }
+        }
+        return dictionary[(int) readUnsigned()];
+    }
+}
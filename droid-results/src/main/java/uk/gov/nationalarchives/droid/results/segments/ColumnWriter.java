@@ -0,0 +1,165 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.segments;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes the values of one column of a segment.  Whole numbers are written
+ * as variable length integers, so small values and small differences take a
+ * byte; strings are written as UTF-8.
+ * 
+ * @version 6.0.0
+ */
+final class ColumnWriter {
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int SEVEN_BITS = 0x7F;
+    private static final int CONTINUE = 0x80;
+    private static final int BITS = 7;
+    private static final int SIGN_SHIFT = 63;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    private String previousString;
+    private Long previousLong;
+
+    /**
+     * Writes a whole number which is never negative.
+     * @param value the value to write.
+     */
+    void writeUnsigned(long value) {
+        long remaining = value;
+        while ((remaining & ~SEVEN_BITS) != 0) {
+            bytes.write((int) (remaining & SEVEN_BITS) | CONTINUE);
+            remaining >>>= BITS;
+        }
+        bytes.write((int) remaining);
+    }
+
+    /**
+     * Writes a whole number which may be negative, so numbers close to zero are short.
+     * @param value the value to write.
+     */
+    void writeSigned(long value) {
+        writeUnsigned((value << 1) ^ (value >> SIGN_SHIFT));
+    }
+
+    /**
+     * @param value a value which may be null.
+     */
+    void writeNullable(Long value) {
+        if (value == null) {
+            writeUnsigned(0);
+        } else {
+            writeUnsigned(((value << 1) ^ (value >> SIGN_SHIFT)) + 1);
+        }
+    }
+
+    /**
+     * Writes the difference between a value and the last value written this way,
+     * which is short for increasing ids and for times close together.
+     * @param value a value which may be null.
+     */
+    void writeDelta(Long value) {
+        if (value == null) {
+            writeNullable(null);
+        } else {
+            writeNullable(previousLong == null ? value : value - previousLong);
+            previousLong = value;
+        }
+    }
+
+    /**
+     * @param value an enumeration value which may be null.
+     */
+    void writeOrdinal(Enum<?> value) {
+        bytes.write(value == null ? 0 : value.ordinal() + 1);
+    }
+
+    /**
+     * @param value a string which may be null.
+     */
+    void writeString(String value) {
+        if (value == null) {
+            writeUnsigned(0);
+        } else {
+            final byte[] encoded = value.getBytes(UTF8);
+            writeUnsigned(encoded.length + 1);
+            bytes.write(encoded, 0, encoded.length);
+        }
+    }
+
+    /**
+     * Writes a string as the length of the start it shares with the last string
+     * written this way, followed by the rest of it.  Sorted or related strings,
+     * such as the uris and prefixes of nodes in the same folder, share long starts.
+     * @param value a string which may be null.
+     */
+    void writeFrontCoded(String value) {
+        if (value == null) {
+            writeUnsigned(0);
+        } else {
+            int shared = 0;
+            if (previousString != null) {
+                final int limit = Math.min(previousString.length(), value.length());
+                while (shared < limit && previousString.charAt(shared) == value.charAt(shared)) {
+                    shared++;
+                }
+                if (shared > 0 && Character.isHighSurrogate(value.charAt(shared - 1))) {
+                    shared--;
+                }
+            }
+            writeUnsigned(shared + 1);
+            writeString(value.substring(shared));
+            previousString = value;
+        }
+    }
+
+    /**
+     * Writes strings with few distinct values, such as extensions, as a dictionary
+     * of the distinct values followed by the index of each value in the dictionary.
+     * @param values the values to write, which may include nulls.
+     */
+    void writeDictionary(List<String> values) {
+        final List<String> dictionary = new ArrayList<String>();
+        final Map<String, Integer> indexes = new HashMap<String, Integer>();
+        final int[] rows = new int[values.size()];
+        for (int i = 0; i < rows.length; i++) {
+            final String value = values.get(i);
+            Integer index = indexes.get(value);
+            if (index == null) {
+                index = dictionary.size();
+                dictionary.add(value);
+                indexes.put(value, index);
+            }
+            rows[i] = index;
+        }
+        writeUnsigned(dictionary.size());
+        for (String value : dictionary) {
+            writeString(value);
+        }
+        for (int row : rows) {
+            writeUnsigned(row);
+        }
+    }
+
+    /**
+     * @return the bytes written.
+     */
+    byte[] toByteArray() {
+        return bytes.toByteArray();
+    }
+}
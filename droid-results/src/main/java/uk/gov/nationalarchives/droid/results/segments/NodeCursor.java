@@ -0,0 +1,61 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.segments;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+
+/**
+ * Reads the nodes in a {@link NodeSegmentStore} one at a time, decoding a
+ * segment at a time.  The cursor reads the store as it was when the cursor
+ * was created; changes made to nodes since are applied as they are read.
+ * 
+ * @version 6.0.0
+ */
+public final class NodeCursor {
+
+    private final NodeSegmentStore store;
+    private final Iterator<NodeSegment> segments;
+    private final Iterator<List<ProfileResourceNode>> inMemory;
+    private Iterator<ProfileResourceNode> nodes = Collections.<ProfileResourceNode>emptyList().iterator();
+
+    /**
+     * @param store the store to read.
+     * @param snapshot the segments and in-memory nodes to read.
+     */
+    NodeCursor(NodeSegmentStore store, NodeSegmentStore.Snapshot snapshot) {
+        this.store = store;
+        this.segments = snapshot.getSegments().iterator();
+        this.inMemory = snapshot.getInMemory().iterator();
+    }
+
+    /**
+     * @return the next node, or null if there are no more nodes.
+     */
+    public ProfileResourceNode next() {
+        while (true) {
+            while (nodes.hasNext()) {
+                final ProfileResourceNode node = store.visible(nodes.next());
+                if (node != null) {
+                    return node;
+                }
+            }
+            if (segments.hasNext()) {
+                nodes = store.decode(segments.next()).iterator();
+            } else if (inMemory.hasNext()) {
+                nodes = inMemory.next().iterator();
+            } else {
+                return null;
+            }
+        }
+    }
+}
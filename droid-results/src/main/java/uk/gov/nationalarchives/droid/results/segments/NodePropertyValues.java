@@ -0,0 +1,160 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.segments;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import uk.gov.nationalarchives.droid.core.interfaces.filter.expressions.Criterion;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.expressions.PropertyValues;
+import uk.gov.nationalarchives.droid.profile.NodeMetaData;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+
+/**
+ * The values of the properties a filter can refer to, for a node and one of its
+ * identifications.  These are the values the database compares when it joins a
+ * node to its identifications to filter it.
+ * 
+ * @version 6.0.0
+ */
+final class NodePropertyValues implements PropertyValues {
+
+    private static final Map<String, Property> PROPERTIES = new HashMap<String, Property>();
+
+    private ProfileResourceNode node;
+    private Format format;
+
+    /**
+     * The properties which can be filtered on.
+     */
+    private enum Property {
+        NAME("metaData.name"),
+        SIZE("metaData.size"),
+        LAST_MODIFIED_DATE("metaData.lastModifiedDate"),
+        RESOURCE_TYPE("metaData.resourceType"),
+        IDENTIFICATION_METHOD("metaData.identificationMethod"),
+        NODE_STATUS("metaData.nodeStatus"),
+        EXTENSION("metaData.extension"),
+        IDENTIFICATION_COUNT("identificationCount"),
+        EXTENSION_MISMATCH("extensionMismatch"),
+        PUID("format.puid"),
+        MIME_TYPE("format.mimeType"),
+        FORMAT_NAME("format.name");
+
+        private final String propertyName;
+
+        private Property(String propertyName) {
+            this.propertyName = propertyName;
+        }
+    }
+
+    static {
+        for (Property property : Property.values()) {
+            PROPERTIES.put(property.propertyName, property);
+        }
+    }
+
+    /**
+     * Decides whether a node satisfies a criterion.  As when the database joins a node
+     * to its identifications, the node satisfies the criterion if any of its
+     * identifications does.
+     * @param criterion the criterion, which may be null.
+     * @param node the node.
+     * @return whether the node satisfies the criterion.
+     */
+    static boolean matches(Criterion criterion, ProfileResourceNode node) {
+        if (criterion == null) {
+            return true;
+        }
+        final NodePropertyValues values = new NodePropertyValues();
+        final List<Format> formats = node.getFormatIdentifications();
+        if (formats.isEmpty()) {
+            return criterion.evaluate(values.of(node, null));
+        }
+        for (Format format : formats) {
+            if (criterion.evaluate(values.of(node, format))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param resourceNode the node to give the values of.
+     * @param identification one of the identifications of the node, or null.
+     * @return these property values.
+     */
+    NodePropertyValues of(ProfileResourceNode resourceNode, Format identification) {
+        this.node = resourceNode;
+        this.format = identification;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getValue(String propertyName) {
+        final Property property = PROPERTIES.get(propertyName);
+        if (property == null) {
+            throw new IllegalArgumentException("Cannot filter on the property: " + propertyName);
+        }
+        final NodeMetaData metaData = node.getMetaData();
+        Object value;
+        switch (property) {
+            case NAME:
+                value = metaData.getName();
+                break;
+            case SIZE:
+                value = metaData.getSize();
+                break;
+            case LAST_MODIFIED_DATE:
+                value = metaData.getLastModifiedDate();
+                break;
+            case RESOURCE_TYPE:
+                value = metaData.getResourceType();
+                break;
+            case IDENTIFICATION_METHOD:
+                value = metaData.getIdentificationMethod();
+                break;
+            case NODE_STATUS:
+                value = metaData.getNodeStatus();
+                break;
+            case EXTENSION:
+                value = metaData.getExtension();
+                break;
+            case IDENTIFICATION_COUNT:
+                value = node.getIdentificationCount();
+                break;
+            case EXTENSION_MISMATCH:
+                value = node.getExtensionMismatch();
+                break;
+            default:
+                value = getFormatValue(property);
+        }
+        return value;
+    }
+
+    private Object getFormatValue(Property property) {
+        Object value = null;
+        if (format != null) {
+            if (property == Property.PUID) {
+                // The puid of the null format is stored as an empty string:
+                value = Format.NULL.equals(format) ? "" : format.getPuid();
+            } else if (property == Property.MIME_TYPE) {
+                value = format.getMimeType();
+            } else {
+                value = format.getName();
+            }
+        }
+        return value;
+    }
+}
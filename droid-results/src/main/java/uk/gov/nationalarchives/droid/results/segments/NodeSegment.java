@@ -0,0 +1,372 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.segments;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
+import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
+import uk.gov.nationalarchives.droid.profile.NodeMetaData;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+import uk.gov.nationalarchives.droid.results.handlers.FormatCache;
+
+/**
+ * A segment of nodes stored column by column.  Each column is encoded to suit
+ * the values in it: ids, sizes and times as variable length differences,
+ * uris, names and prefixes front coded against the previous row, extensions
+ * and hash algorithms through a dictionary, and identifications as numbers
+ * from the profile's {@link PuidDictionary}.
+ * 
+ * <p/>A segment file starts with a header giving the number of rows, the
+ * range of node ids in them, and the length of each column, so a column can
+ * be decoded without decoding the others.  The last column summarises the
+ * distinct parent ids in the segment, and is read with the header, so the
+ * children of a node can be found without decoding segments which hold none.
+ * 
+ * @version 6.0.0
+ */
+final class NodeSegment {
+
+    private static final int MAGIC = 0x44534547;
+    private static final int VERSION = 2;
+    private static final int HEADER_LENGTH = 32;
+
+    private static final int ID = 0;
+    private static final int PARENT_ID = 1;
+    private static final int URI_COLUMN = 2;
+    private static final int PREFIX = 3;
+    private static final int PREFIX_PLUS_ONE = 4;
+    private static final int IDENTIFICATION_COUNT = 5;
+    private static final int FINISHED = 6;
+    private static final int EXTENSION_MISMATCH = 7;
+    private static final int SIZE = 8;
+    private static final int LAST_MODIFIED = 9;
+    private static final int NAME = 10;
+    private static final int EXTENSION = 11;
+    private static final int NODE_STATUS = 12;
+    private static final int IDENTIFICATION_METHOD = 13;
+    private static final int RESOURCE_TYPE = 14;
+    private static final int HASH = 15;
+    private static final int HASH_ALGORITHM = 16;
+    private static final int FORMATS = 17;
+    private static final int PARENTS = 18;
+    private static final int COLUMNS = 19;
+    private static final long NO_PARENT = -1;
+
+    private final File file;
+    private final int size;
+    private final long minId;
+    private final long maxId;
+    private long[] parents;
+    private byte[] bytes;
+    private int[] offsets;
+
+    private NodeSegment(File file, int size, long minId, long maxId) {
+        this.file = file;
+        this.size = size;
+        this.minId = minId;
+        this.maxId = maxId;
+    }
+
+    /**
+     * Encodes nodes as a segment.
+     * @param nodes the nodes to encode.
+     * @param puids the dictionary to number the puids identified with.
+     * @return the bytes of the segment.
+     */
+    static byte[] encode(List<ProfileResourceNode> nodes, PuidDictionary puids) {
+        final ColumnWriter[] columns = new ColumnWriter[COLUMNS];
+        for (int i = 0; i < COLUMNS; i++) {
+            columns[i] = new ColumnWriter();
+        }
+        final List<String> extensions = new ArrayList<String>(nodes.size());
+        final List<String> hashAlgorithms = new ArrayList<String>(nodes.size());
+        final SortedSet<Long> parents = new TreeSet<Long>();
+        long minId = Long.MAX_VALUE;
+        long maxId = Long.MIN_VALUE;
+        for (ProfileResourceNode node : nodes) {
+            final NodeMetaData metaData = node.getMetaData();
+            final long id = node.getId();
+            minId = Math.min(minId, id);
+            maxId = Math.max(maxId, id);
+            columns[ID].writeDelta(id);
+            final Long parentId = node.getParentId();
+            columns[PARENT_ID].writeNullable(parentId == null ? null : id - parentId);
+            parents.add(parentId == null ? NO_PARENT : parentId);
+            columns[URI_COLUMN].writeFrontCoded(node.getUri().toString());
+            columns[PREFIX].writeFrontCoded(node.getPrefix());
+            columns[PREFIX_PLUS_ONE].writeFrontCoded(node.getPrefixPlusOne());
+            final Integer count = node.getIdentificationCount();
+            columns[IDENTIFICATION_COUNT].writeNullable(count == null ? null : count.longValue());
+            columns[FINISHED].writeDelta(timeOf(node.getFinished()));
+            columns[EXTENSION_MISMATCH].writeUnsigned(Boolean.TRUE.equals(node.getExtensionMismatch()) ? 1 : 0);
+            columns[SIZE].writeNullable(metaData.getSize());
+            columns[LAST_MODIFIED].writeDelta(timeOf(metaData.getLastModifiedDate()));
+            columns[NAME].writeFrontCoded(metaData.getName());
+            extensions.add(metaData.getExtension());
+            columns[NODE_STATUS].writeOrdinal(metaData.getNodeStatus());
+            columns[IDENTIFICATION_METHOD].writeOrdinal(metaData.getIdentificationMethod());
+            columns[RESOURCE_TYPE].writeOrdinal(metaData.getResourceType());
+            columns[HASH].writeString(metaData.getHash());
+            hashAlgorithms.add(metaData.getHashAlgorithm());
+            final List<Format> formats = node.getFormatIdentifications();
+            columns[FORMATS].writeUnsigned(formats.size());
+            for (Format format : formats) {
+                // The NULL format has a null puid, but is stored with an empty one:
+                final String puid = format.getPuid();
+                columns[FORMATS].writeUnsigned(puids.numberOf(puid == null ? "" : puid));
+            }
+        }
+        columns[EXTENSION].writeDictionary(extensions);
+        columns[HASH_ALGORITHM].writeDictionary(hashAlgorithms);
+        columns[PARENTS].writeUnsigned(parents.size());
+        for (Long parent : parents) {
+            columns[PARENTS].writeDelta(parent);
+        }
+
+        final byte[][] encoded = new byte[COLUMNS][];
+        int length = HEADER_LENGTH + COLUMNS * 4;
+        for (int i = 0; i < COLUMNS; i++) {
+            encoded[i] = columns[i].toByteArray();
+            length += encoded[i].length;
+        }
+        final ByteBuffer segment = ByteBuffer.allocate(length);
+        segment.putInt(MAGIC).putInt(VERSION).putInt(nodes.size()).putLong(minId).putLong(maxId).putInt(COLUMNS);
+        for (byte[] column : encoded) {
+            segment.putInt(column.length);
+        }
+        for (byte[] column : encoded) {
+            segment.put(column);
+        }
+        return segment.array();
+    }
+
+    /**
+     * Reads the header and the parent summary of a segment file, without reading its other columns.
+     * @param file the segment file.
+     * @return the segment.
+     * @throws IOException if the file could not be read, or is not a segment.
+     */
+    static NodeSegment readHeader(File file) throws IOException {
+        final RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            final byte[] header = new byte[HEADER_LENGTH + COLUMNS * 4];
+            in.readFully(header);
+            final ByteBuffer buffer = ByteBuffer.wrap(header);
+            final NodeSegment segment = fromHeader(file, buffer);
+            long offset = header.length;
+            for (int i = 0; i < PARENTS; i++) {
+                offset += buffer.getInt();
+            }
+            final int length = buffer.getInt();
+            if (offset + length != in.length()) {
+                throw new IOException("Segment is incomplete: " + file);
+            }
+            final byte[] summary = new byte[length];
+            in.seek(offset);
+            in.readFully(summary);
+            segment.parents = readParents(new ColumnReader(summary, 0));
+            return segment;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads a segment file.
+     * @param file the segment file.
+     * @return the segment.
+     * @throws IOException if the file could not be read, or is not a segment.
+     */
+    static NodeSegment read(File file) throws IOException {
+        final RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            final byte[] bytes = new byte[(int) in.length()];
+            in.readFully(bytes);
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            final NodeSegment segment = fromHeader(file, buffer);
+            final int[] offsets = new int[COLUMNS];
+            int offset = HEADER_LENGTH + COLUMNS * 4;
+            for (int i = 0; i < COLUMNS; i++) {
+                offsets[i] = offset;
+                offset += buffer.getInt();
+            }
+            if (offset != bytes.length) {
+                throw new IOException("Segment is incomplete: " + file);
+            }
+            segment.bytes = bytes;
+            segment.offsets = offsets;
+            segment.parents = readParents(segment.column(PARENTS));
+            return segment;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static long[] readParents(ColumnReader column) {
+        final long[] parents = new long[(int) column.readUnsigned()];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = column.readDelta();
+        }
+        return parents;
+    }
+
+    private static NodeSegment fromHeader(File file, ByteBuffer header) throws IOException {
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Not a results segment: " + file);
+        }
+        final int size = header.getInt();
+        final long minId = header.getLong();
+        final long maxId = header.getLong();
+        if (header.getInt() != COLUMNS) {
+            throw new IOException("Not a results segment: " + file);
+        }
+        return new NodeSegment(file, size, minId, maxId);
+    }
+
+    /**
+     * @return the file the segment is stored in.
+     */
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the number of nodes in the segment.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the lowest node id in the segment.
+     */
+    long getMinId() {
+        return minId;
+    }
+
+    /**
+     * @return the highest node id in the segment.
+     */
+    long getMaxId() {
+        return maxId;
+    }
+
+    /**
+     * Answers from the parent summary, without decoding any nodes.
+     * @param parentId the id of a parent node, or -1 for the nodes with no parent.
+     * @return whether any node in the segment has the parent.
+     */
+    boolean holdsChildrenOf(long parentId) {
+        return Arrays.binarySearch(parents, parentId) >= 0;
+    }
+
+    /**
+     * Decodes only the ids and parent ids of the nodes.
+     * @return the parent id of each node, or -1 for a node with no parent.
+     */
+    long[] getParentIds() {
+        final ColumnReader ids = column(ID);
+        final ColumnReader parentIds = column(PARENT_ID);
+        final long[] parents = new long[size];
+        for (int row = 0; row < size; row++) {
+            final long id = ids.readDelta();
+            final Long difference = parentIds.readNullable();
+            parents[row] = difference == null ? NO_PARENT : id - difference;
+        }
+        return parents;
+    }
+
+    /**
+     * Decodes the nodes.
+     * @param puids the dictionary the puids were numbered in.
+     * @param formats the cache to look formats up in.
+     * @return the nodes, in the order they were written.
+     */
+    List<ProfileResourceNode> getNodes(PuidDictionary puids, FormatCache formats) {
+        final ColumnReader[] columns = new ColumnReader[COLUMNS];
+        for (int i = 0; i < COLUMNS; i++) {
+            columns[i] = column(i);
+        }
+        final NodeStatus[] statuses = NodeStatus.values();
+        final IdentificationMethod[] methods = IdentificationMethod.values();
+        final ResourceType[] resourceTypes = ResourceType.values();
+        final List<ProfileResourceNode> nodes = new ArrayList<ProfileResourceNode>(size);
+        for (int row = 0; row < size; row++) {
+            final long id = columns[ID].readDelta();
+            final Long parentDifference = columns[PARENT_ID].readNullable();
+            final ProfileResourceNode node = new ProfileResourceNode(URI.create(columns[URI_COLUMN].readFrontCoded()));
+            node.setId(id);
+            node.setParentId(parentDifference == null ? null : id - parentDifference);
+            node.setPrefix(columns[PREFIX].readFrontCoded());
+            node.setPrefixPlusOne(columns[PREFIX_PLUS_ONE].readFrontCoded());
+            final Long count = columns[IDENTIFICATION_COUNT].readNullable();
+            node.setFinished(dateOf(columns[FINISHED].readDelta()));
+            node.setExtensionMismatch(columns[EXTENSION_MISMATCH].readUnsigned() != 0);
+            final NodeMetaData metaData = node.getMetaData();
+            metaData.setSize(columns[SIZE].readNullable());
+            metaData.setLastModifiedDate(dateOf(columns[LAST_MODIFIED].readDelta()));
+            metaData.setName(columns[NAME].readFrontCoded());
+            metaData.setExtension(columns[EXTENSION].readFromDictionary());
+            metaData.setNodeStatus(columns[NODE_STATUS].readOrdinal(statuses));
+            metaData.setIdentificationMethod(columns[IDENTIFICATION_METHOD].readOrdinal(methods));
+            metaData.setResourceType(columns[RESOURCE_TYPE].readOrdinal(resourceTypes));
+            metaData.setHash(columns[HASH].readString());
+            metaData.setHashAlgorithm(columns[HASH_ALGORITHM].readFromDictionary());
+            final int formatCount = (int) columns[FORMATS].readUnsigned();
+            for (int i = 0; i < formatCount; i++) {
+                node.addFormatIdentification(formatOf(puids.puidOf((int) columns[FORMATS].readUnsigned()), formats));
+            }
+            // Adding formats counts the identifications, except for nodes with none:
+            if (count == null) {
+                node.setNoFormatsIdentified();
+            } else if (count == 0) {
+                node.setZeroIdentifications();
+            }
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    private ColumnReader column(int column) {
+        return new ColumnReader(bytes, offsets[column]);
+    }
+
+    private static Format formatOf(String puid, FormatCache formats) {
+        if (puid.length() == 0) {
+            return Format.NULL;
+        }
+        Format format = formats.get(puid);
+        if (format == null) {
+            format = new Format();
+            format.setPuid(puid);
+        }
+        return format;
+    }
+
+    private static Long timeOf(Date date) {
+        return date == null ? null : date.getTime();
+    }
+
+    private static Date dateOf(Long time) {
+        return time == null ? null : new Date(time);
+    }
+}
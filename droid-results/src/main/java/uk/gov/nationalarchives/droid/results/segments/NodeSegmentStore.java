@@ -0,0 +1,495 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.segments;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.results.handlers.FormatCache;
+
+/**
+ * An append-only store of profile resource nodes, kept in a directory of
+ * segment files rather than in the profile database.  Nodes are added to an
+ * open segment in memory; when it holds the segment size, it is encoded
+ * column by column into a {@link NodeSegment} file which is never written
+ * again.  Flushing writes the open segment too, replacing the last copy of it.
+ * 
+ * <p/>Status updates and deletions are appended to a change log rather than
+ * rewriting segments, and are applied to nodes as they are read.  A deletion
+ * hides the node and every node beneath it which was stored before the deletion.
+ * 
+ * <p/>Nodes are read by scanning the segments in the order they were written,
+ * which suits exports and reports, which read every node.  Finding the children
+ * of a node only decodes the segments which hold some of them.
+ * 
+ * @version 6.0.0
+ */
+public class NodeSegmentStore {
+
+    private static final int DEFAULT_SEGMENT_SIZE = 16384;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final String PUIDS = "puids.dat";
+    private static final String CHANGES = "changes.dat";
+    private static final byte STATUS_CHANGE = 'S';
+    private static final byte DELETION = 'D';
+
+    private final Log log = LogFactory.getLog(getClass());
+
+    private File directory;
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    private FormatCache formatCache;
+
+    private PuidDictionary puids;
+
+    // guarded by this:
+    private final List<NodeSegment> segments = new ArrayList<NodeSegment>();
+    private final SortedMap<Integer, List<ProfileResourceNode>> sealing = 
+        new TreeMap<Integer, List<ProfileResourceNode>>();
+    private List<ProfileResourceNode> openSegment = new ArrayList<ProfileResourceNode>();
+    private int openIndex;
+    private long maxNodeId = -1;
+
+    private final Map<Long, NodeStatus> statuses = new ConcurrentHashMap<Long, NodeStatus>();
+    private final List<Deletion> deletions = new CopyOnWriteArrayList<Deletion>();
+
+    // guarded by writeLock:
+    private final Object writeLock = new Object();
+    private FileOutputStream changesFile;
+    private DataOutputStream changes;
+
+    /**
+     * Opens the store, reading what is already in its directory.
+     * @throws IOException if the store could not be read.
+     */
+    public void open() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create the results directory: " + directory);
+        }
+        puids = new PuidDictionary(new File(directory, PUIDS));
+        puids.load();
+
+        final File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                final String name = file.getName();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        Arrays.sort(files);
+        synchronized (this) {
+            for (File file : files) {
+                final NodeSegment segment = NodeSegment.readHeader(file);
+                maxNodeId = Math.max(maxNodeId, segment.getMaxId());
+                segments.add(segment);
+            }
+            openIndex = segments.size();
+            // The last segment is still open if it was flushed before it was full:
+            if (openIndex > 0 && segments.get(openIndex - 1).size() < segmentSize) {
+                final NodeSegment last = segments.remove(--openIndex);
+                openSegment = new ArrayList<ProfileResourceNode>(
+                        NodeSegment.read(last.getFile()).getNodes(puids, formatCache));
+            }
+        }
+
+        final File changesLog = new File(directory, CHANGES);
+        readChanges(changesLog);
+        synchronized (writeLock) {
+            changesFile = new FileOutputStream(changesLog, true);
+            changes = new DataOutputStream(new BufferedOutputStream(changesFile));
+        }
+    }
+
+    private void readChanges(File changesLog) throws IOException {
+        if (changesLog.exists()) {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(changesLog)));
+            try {
+                while (true) {
+                    final byte type = in.readByte();
+                    if (type == STATUS_CHANGE) {
+                        final long nodeId = in.readLong();
+                        statuses.put(nodeId, NodeStatus.values()[in.readInt()]);
+                    } else if (type == DELETION) {
+                        final String prefix = in.readUTF();
+                        final String prefixPlusOne = in.readUTF();
+                        deletions.add(new Deletion(prefix, prefixPlusOne, in.readLong()));
+                    } else {
+                        log.warn("Ignoring an unknown change in " + changesLog);
+                        break;
+                    }
+                }
+            } catch (EOFException e) {
+                // the end of the log, or a change which was never completely written.
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Writes any nodes not yet written, and closes the store.
+     */
+    public void close() {
+        flush();
+        synchronized (writeLock) {
+            try {
+                changes.close();
+            } catch (IOException e) {
+                log.error(e);
+            }
+        }
+    }
+
+    /**
+     * @return the highest node id stored, or null if the store is empty.
+     */
+    public synchronized Long getMaxNodeId() {
+        return maxNodeId < 0 ? null : maxNodeId;
+    }
+
+    /**
+     * Adds a node to the store.
+     * @param node the node to add, which must already have its id and prefixes.
+     */
+    public void append(ProfileResourceNode node) {
+        boolean sealed = false;
+        synchronized (this) {
+            openSegment.add(node);
+            maxNodeId = Math.max(maxNodeId, node.getId());
+            if (openSegment.size() >= segmentSize) {
+                sealing.put(openIndex++, openSegment);
+                openSegment = new ArrayList<ProfileResourceNode>();
+                sealed = true;
+            }
+        }
+        // Full segments are written outside the lock, so other threads can go on adding nodes:
+        if (sealed) {
+            synchronized (writeLock) {
+                writeSealedSegments();
+            }
+        }
+    }
+
+    /**
+     * Changes the status of a stored node.
+     * @param nodeId the id of the node.
+     * @param status the new status of the node.
+     */
+    public void updateStatus(Long nodeId, NodeStatus status) {
+        statuses.put(nodeId, status);
+        synchronized (writeLock) {
+            try {
+                changes.writeByte(STATUS_CHANGE);
+                changes.writeLong(nodeId);
+                changes.writeInt(status.ordinal());
+            } catch (IOException e) {
+                throw failed(e);
+            }
+        }
+    }
+
+    /**
+     * Deletes a node, and every node beneath it.
+     * @param nodeId the id of the node to delete.
+     */
+    public void delete(Long nodeId) {
+        final ProfileResourceNode node = loadNode(nodeId);
+        if (node != null) {
+            final Deletion deletion;
+            synchronized (this) {
+                deletion = new Deletion(node.getPrefix(), node.getPrefixPlusOne(), maxNodeId);
+            }
+            deletions.add(deletion);
+            synchronized (writeLock) {
+                try {
+                    changes.writeByte(DELETION);
+                    changes.writeUTF(deletion.prefix);
+                    changes.writeUTF(deletion.prefixPlusOne);
+                    changes.writeLong(deletion.maxNodeId);
+                } catch (IOException e) {
+                    throw failed(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes every node added and every change made before this call to disk.
+     */
+    public void flush() {
+        synchronized (writeLock) {
+            final List<ProfileResourceNode> nodes;
+            final int index;
+            synchronized (this) {
+                nodes = new ArrayList<ProfileResourceNode>(openSegment);
+                index = openIndex;
+            }
+            writeSealedSegments();
+            if (!nodes.isEmpty()) {
+                final boolean sealed;
+                synchronized (this) {
+                    sealed = index < openIndex;
+                }
+                // A segment sealed since the nodes were taken holds them all:
+                if (sealed) {
+                    writeSealedSegments();
+                } else {
+                    writeSegment(index, nodes);
+                }
+            }
+            try {
+                changes.flush();
+                changesFile.getFD().sync();
+            } catch (IOException e) {
+                throw failed(e);
+            }
+        }
+    }
+
+    /*
+     * Called holding the write lock, so segments are written in the order they were sealed.
+     */
+    private void writeSealedSegments() {
+        while (true) {
+            final int index;
+            final List<ProfileResourceNode> nodes;
+            synchronized (this) {
+                if (sealing.isEmpty()) {
+                    break;
+                }
+                index = sealing.firstKey();
+                nodes = sealing.get(index);
+            }
+            final NodeSegment segment = writeSegment(index, nodes);
+            synchronized (this) {
+                sealing.remove(index);
+                segments.add(segment);
+            }
+        }
+    }
+
+    private NodeSegment writeSegment(int index, List<ProfileResourceNode> nodes) {
+        final File file = new File(directory, String.format("%s%06d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        final File temp = new File(directory, file.getName() + ".tmp");
+        try {
+            final byte[] bytes = NodeSegment.encode(nodes, puids);
+            // The puids a segment uses must be saved before the segment is:
+            puids.save();
+            final FileOutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(bytes);
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+                throw new IOException("Could not replace the results segment " + file);
+            }
+            return NodeSegment.readHeader(file);
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * @param nodeId the id of a node.
+     * @return the node, or null if it is not stored or has been deleted.
+     */
+    public ProfileResourceNode loadNode(Long nodeId) {
+        final long id = nodeId;
+        final Snapshot snapshot = snapshot();
+        for (NodeSegment segment : snapshot.segments) {
+            if (segment.getMinId() <= id && id <= segment.getMaxId()) {
+                for (ProfileResourceNode node : decode(segment)) {
+                    if (node.getId() == id) {
+                        return visible(node);
+                    }
+                }
+            }
+        }
+        for (List<ProfileResourceNode> nodes : snapshot.inMemory) {
+            for (ProfileResourceNode node : nodes) {
+                if (node.getId() == id) {
+                    return visible(node);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the children of a node.  The parent summary read with each segment's header
+     * tells which segments hold some of them, so only those segments are read and decoded.
+     * @param parentId the id of the parent node, or null for the nodes with no parent.
+     * @return the children of the node, in the order they were stored.
+     */
+    public List<ProfileResourceNode> findChildren(Long parentId) {
+        final long parent = parentId == null ? -1 : parentId;
+        final List<ProfileResourceNode> children = new ArrayList<ProfileResourceNode>();
+        final Snapshot snapshot = snapshot();
+        for (NodeSegment header : snapshot.segments) {
+            if (header.holdsChildrenOf(parent)) {
+                final NodeSegment segment = read(header);
+                final long[] parents = segment.getParentIds();
+                final List<ProfileResourceNode> nodes = segment.getNodes(puids, formatCache);
+                for (int i = 0; i < parents.length; i++) {
+                    if (parents[i] == parent) {
+                        addVisible(children, nodes.get(i));
+                    }
+                }
+            }
+        }
+        for (List<ProfileResourceNode> nodes : snapshot.inMemory) {
+            for (ProfileResourceNode node : nodes) {
+                final Long nodeParent = node.getParentId();
+                if (nodeParent == null ? parentId == null : nodeParent.equals(parentId)) {
+                    addVisible(children, node);
+                }
+            }
+        }
+        return children;
+    }
+
+    /**
+     * @return a cursor over every node in the store, in the order they were stored.
+     */
+    public NodeCursor cursor() {
+        return new NodeCursor(this, snapshot());
+    }
+
+    private synchronized Snapshot snapshot() {
+        final Snapshot snapshot = new Snapshot();
+        snapshot.segments.addAll(segments);
+        snapshot.inMemory.addAll(sealing.values());
+        snapshot.inMemory.add(new ArrayList<ProfileResourceNode>(openSegment));
+        return snapshot;
+    }
+
+    /**
+     * @param segment the header of a segment.
+     * @return the visible nodes in the segment.
+     */
+    List<ProfileResourceNode> decode(NodeSegment segment) {
+        return read(segment).getNodes(puids, formatCache);
+    }
+
+    private NodeSegment read(NodeSegment header) {
+        try {
+            return NodeSegment.read(header.getFile());
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    private void addVisible(List<ProfileResourceNode> nodes, ProfileResourceNode node) {
+        final ProfileResourceNode visible = visible(node);
+        if (visible != null) {
+            nodes.add(visible);
+        }
+    }
+
+    /**
+     * Applies the changes made to a node since it was stored.
+     * @param node a stored node.
+     * @return the node, or null if it has been deleted.
+     */
+    ProfileResourceNode visible(ProfileResourceNode node) {
+        final long id = node.getId();
+        final String prefix = node.getPrefix();
+        for (Deletion deletion : deletions) {
+            if (id <= deletion.maxNodeId && prefix.compareTo(deletion.prefix) >= 0 
+                    && prefix.compareTo(deletion.prefixPlusOne) < 0) {
+                return null;
+            }
+        }
+        final NodeStatus status = statuses.get(id);
+        if (status != null) {
+            node.getMetaData().setNodeStatus(status);
+        }
+        return node;
+    }
+
+    private RuntimeException failed(IOException e) {
+        log.error(e);
+        return new RuntimeException(e.getMessage(), e);
+    }
+
+    /**
+     * @param directory the directory the store is kept in.
+     */
+    public void setDirectory(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param segmentSize the number of nodes in each segment.
+     */
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * @param formatCache the cache to look up the formats of stored identifications in.
+     */
+    public void setFormatCache(FormatCache formatCache) {
+        this.formatCache = formatCache;
+    }
+
+    /**
+     * The segments and in-memory nodes in the store at one moment.
+     */
+    static final class Snapshot {
+        private final List<NodeSegment> segments = new ArrayList<NodeSegment>();
+        private final List<List<ProfileResourceNode>> inMemory = new ArrayList<List<ProfileResourceNode>>();
+
+        List<NodeSegment> getSegments() {
+            return segments;
+        }
+
+        List<List<ProfileResourceNode>> getInMemory() {
+            return inMemory;
+        }
+    }
+
+    /**
+     * The prefix range of a deleted node, and the highest node id stored when it was deleted.
+     */
+    private static final class Deletion {
+        private final String prefix;
+        private final String prefixPlusOne;
+        private final long maxNodeId;
+
+        Deletion(String prefix, String prefixPlusOne, long maxNodeId) {
+            this.prefix = prefix;
+            this.prefixPlusOne = prefixPlusOne;
+            this.maxNodeId = maxNodeId;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.segments;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Numbers the puids identified in a profile, so segments store each
+ * identification as a small number.  The dictionary only ever grows, and new
+ * puids are appended to its file before any segment which uses them is written.
+ * 
+ * @version 6.0.0
+ */
+final class PuidDictionary {
+
+    private final File file;
+    private final List<String> puids = new ArrayList<String>();
+    private final Map<String, Integer> numbers = new HashMap<String, Integer>();
+    private int saved;
+
+    /**
+     * @param file the file the dictionary is kept in.
+     */
+    PuidDictionary(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the puids already in the dictionary's file.
+     * @throws IOException if the file could not be read.
+     */
+    synchronized void load() throws IOException {
+        if (file.exists()) {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                while (true) {
+                    add(in.readUTF());
+                }
+            } catch (EOFException e) {
+                // the end of the dictionary, or a puid which was never completely written.
+            } finally {
+                in.close();
+            }
+        }
+        saved = puids.size();
+    }
+
+    /**
+     * @param puid a puid, or an empty string for the null format.
+     * @return the number of the puid, which is added to the dictionary if it is new.
+     */
+    synchronized int numberOf(String puid) {
+        final Integer number = numbers.get(puid);
+        return number == null ? add(puid) : number;
+    }
+
+    /**
+     * @param number the number of a puid.
+     * @return the puid.
+     */
+    synchronized String puidOf(int number) {
+        return puids.get(number);
+    }
+
+    /**
+     * Appends the puids added since the dictionary was last saved to its file.
+     * @throws IOException if the file could not be written.
+     */
+    synchronized void save() throws IOException {
+        if (saved < puids.size()) {
+            final FileOutputStream out = new FileOutputStream(file, true);
+            try {
+                final DataOutputStream data = new DataOutputStream(out);
+                for (int i = saved; i < puids.size(); i++) {
+                    data.writeUTF(puids.get(i));
+                }
+                data.flush();
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            saved = puids.size();
+        }
+    }
+
+    private int add(String puid) {
+        final int number = puids.size();
+        puids.add(puid);
+        numbers.put(puid, number);
+        return number;
+    }
+}
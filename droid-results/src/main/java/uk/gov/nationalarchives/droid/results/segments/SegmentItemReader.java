@@ -0,0 +1,101 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.segments;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import uk.gov.nationalarchives.droid.core.interfaces.filter.Filter;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.expressions.Criterion;
+import uk.gov.nationalarchives.droid.export.interfaces.ItemReader;
+import uk.gov.nationalarchives.droid.export.interfaces.ItemReaderCallback;
+import uk.gov.nationalarchives.droid.export.interfaces.JobCancellationException;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.SqlUtils;
+
+/**
+ * Reads the nodes in a {@link NodeSegmentStore} for export, a segment at a time.
+ * 
+ * @version 6.0.0
+ */
+public class SegmentItemReader implements ItemReader<ProfileResourceNode> {
+
+    private NodeSegmentStore store;
+    private int chunkSize;
+    private NodeCursor cursor;
+    private Criterion criterion;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProfileResourceNode read() {
+        ProfileResourceNode node = cursor.next();
+        while (node != null && !NodePropertyValues.matches(criterion, node)) {
+            node = cursor.next();
+        }
+        return node;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readAll(ItemReaderCallback<ProfileResourceNode> callback, Filter filter) 
+        throws JobCancellationException {
+        open(filter);
+        try {
+            List<ProfileResourceNode> chunk = new ArrayList<ProfileResourceNode>();
+            ProfileResourceNode node;
+            while ((node = read()) != null) {
+                chunk.add(node);
+                if (chunk.size() == chunkSize) {
+                    callback.onItem(chunk);
+                    chunk = new ArrayList<ProfileResourceNode>();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                callback.onItem(chunk);
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void open(Filter filter) {
+        criterion = filter != null && filter.isEnabled() ? SqlUtils.getQueryBuilder(filter) : null;
+        cursor = store.cursor();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        cursor = null;
+    }
+
+    /**
+     * @param store the store to read.
+     */
+    public void setStore(NodeSegmentStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @param chunkSize the number of nodes to pass to the callback at a time.
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+}
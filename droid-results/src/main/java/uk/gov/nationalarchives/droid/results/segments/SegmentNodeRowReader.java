@@ -0,0 +1,82 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.segments;
+
+import java.util.List;
+
+import uk.gov.nationalarchives.droid.core.interfaces.filter.Filter;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.expressions.Criterion;
+import uk.gov.nationalarchives.droid.export.interfaces.JobCancellationException;
+import uk.gov.nationalarchives.droid.profile.NodeMetaData;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.SqlUtils;
+import uk.gov.nationalarchives.droid.profile.export.NodeRow;
+import uk.gov.nationalarchives.droid.profile.export.NodeRowCallback;
+import uk.gov.nationalarchives.droid.profile.export.NodeRowReader;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+
+/**
+ * Reads the nodes in a {@link NodeSegmentStore} for export as rows.
+ * Nodes are read in the order they were stored, which is id order.
+ * 
+ * @version 6.0.0
+ */
+public class SegmentNodeRowReader implements NodeRowReader {
+
+    private NodeSegmentStore store;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readAll(Filter filter, NodeRowCallback callback) throws JobCancellationException {
+        final Criterion criterion = filter != null && filter.isEnabled() ? SqlUtils.getQueryBuilder(filter) : null;
+        final NodeRow row = new NodeRow();
+        final NodeCursor cursor = store.cursor();
+        ProfileResourceNode node;
+        while ((node = cursor.next()) != null) {
+            if (NodePropertyValues.matches(criterion, node)) {
+                setNode(row, node);
+                final List<Format> formats = node.getFormatIdentifications();
+                if (formats.isEmpty()) {
+                    row.setNoFormat();
+                    callback.onRow(row);
+                }
+                for (Format format : formats) {
+                    row.setFormat(format.getPuid(), format.getMimeType(), format.getName(), format.getVersion());
+                    callback.onRow(row);
+                }
+            }
+        }
+    }
+
+    private static void setNode(NodeRow row, ProfileResourceNode node) {
+        final NodeMetaData metaData = node.getMetaData();
+        row.setId(node.getId());
+        row.setParentId(node.getParentId());
+        row.setUri(node.getUri().toString());
+        row.setName(metaData.getName());
+        row.setIdentificationMethod(metaData.getIdentificationMethod());
+        row.setNodeStatus(metaData.getNodeStatus());
+        row.setSize(metaData.getSize());
+        row.setResourceType(metaData.getResourceType());
+        row.setExtension(metaData.getExtension());
+        row.setLastModifiedDate(metaData.getLastModifiedDate());
+        row.setExtensionMismatch(node.getExtensionMismatch());
+        row.setHash(metaData.getHash());
+        row.setIdentificationCount(node.getIdentificationCount());
+    }
+
+    /**
+     * @param store the store to read.
+     */
+    public void setStore(NodeSegmentStore store) {
+        this.store = store;
+    }
+}
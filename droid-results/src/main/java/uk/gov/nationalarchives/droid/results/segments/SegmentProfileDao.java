@@ -0,0 +1,134 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.segments;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.Filter;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.expressions.QueryBuilder;
+import uk.gov.nationalarchives.droid.profile.ProfileDao;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.SqlUtils;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+
+/**
+ * Finds nodes kept in a {@link NodeSegmentStore}.  Formats are reference data,
+ * which is still kept in the profile database.
+ * 
+ * @version 6.0.0
+ */
+public class SegmentProfileDao implements ProfileDao {
+
+    private static final int NO_MATCH = 0;
+    private static final int DIRECT_MATCH = 1;
+    private static final int DESCENDANT_MATCH = 2;
+
+    private NodeSegmentStore store;
+    private ProfileDao formatDao;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void saveFormat(Format format) {
+        formatDao.saveFormat(format);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Format> getAllFormats() {
+        return formatDao.getAllFormats();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ProfileResourceNode> findProfileResourceNodes(Long parentId) {
+        final List<ProfileResourceNode> children = store.findChildren(parentId);
+        for (ProfileResourceNode child : children) {
+            child.setFilterStatus(DIRECT_MATCH);
+        }
+        return children;
+    }
+
+    /**
+     * A node matching the filter has a filter status of 1.  A folder or container
+     * which does not match has a filter status of 2 if something beneath it does,
+     * and is left out if nothing does.
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ProfileResourceNode> findProfileResourceNodes(Long parentId, Filter filter) {
+        final QueryBuilder criterion = SqlUtils.getQueryBuilder(filter);
+        final List<ProfileResourceNode> children = store.findChildren(parentId);
+        final List<ProfileResourceNode> unmatched = new ArrayList<ProfileResourceNode>();
+        for (ProfileResourceNode child : children) {
+            if (NodePropertyValues.matches(criterion, child)) {
+                child.setFilterStatus(DIRECT_MATCH);
+            } else {
+                child.setFilterStatus(NO_MATCH);
+                if (child.getMetaData().getResourceType() != ResourceType.FILE) {
+                    unmatched.add(child);
+                }
+            }
+        }
+        if (!unmatched.isEmpty()) {
+            markDescendantMatches(criterion, unmatched);
+        }
+        final List<ProfileResourceNode> result = new ArrayList<ProfileResourceNode>();
+        for (ProfileResourceNode child : children) {
+            if (child.getFilterStatus() != NO_MATCH) {
+                result.add(child);
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Looks for matching descendants of the unmatched nodes in a single scan of the store.
+     */
+    private void markDescendantMatches(QueryBuilder criterion, List<ProfileResourceNode> unmatched) {
+        final NodeCursor cursor = store.cursor();
+        ProfileResourceNode node;
+        while (!unmatched.isEmpty() && (node = cursor.next()) != null) {
+            final String prefix = node.getPrefix();
+            for (Iterator<ProfileResourceNode> it = unmatched.iterator(); it.hasNext();) {
+                final ProfileResourceNode ancestor = it.next();
+                if (prefix.compareTo(ancestor.getPrefix()) > 0 
+                        && prefix.compareTo(ancestor.getPrefixPlusOne()) < 0) {
+                    if (NodePropertyValues.matches(criterion, node)) {
+                        ancestor.setFilterStatus(DESCENDANT_MATCH);
+                        it.remove();
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param store the store the nodes are kept in.
+     */
+    public void setStore(NodeSegmentStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @param formatDao the profile dao which keeps the formats.
+     */
+    public void setFormatDao(ProfileDao formatDao) {
+        this.formatDao = formatDao;
+    }
+}
@@ -0,0 +1,249 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.segments;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import uk.gov.nationalarchives.droid.core.interfaces.filter.expressions.Criterion;
+import uk.gov.nationalarchives.droid.profile.NodeMetaData;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+import uk.gov.nationalarchives.droid.report.dao.GroupByField;
+import uk.gov.nationalarchives.droid.report.dao.ReportDao;
+import uk.gov.nationalarchives.droid.report.dao.ReportFieldEnum;
+import uk.gov.nationalarchives.droid.report.dao.ReportLineItem;
+
+/**
+ * Reports on the nodes in a {@link NodeSegmentStore}, aggregating them in a
+ * single scan of the store.  The figures are the ones the database reports
+ * give: when a report is on, or grouped by, a format field, each identification
+ * of a node is counted; otherwise each node is counted once.
+ * 
+ * @version 6.0.0
+ */
+public class SegmentReportDao implements ReportDao {
+
+    private static final String YEAR = "year";
+    private static final String MONTH = "month";
+    private static final String DAY = "day";
+
+    private static final Comparator<List<String>> GROUP_ORDER = new Comparator<List<String>>() {
+        @Override
+        public int compare(List<String> o1, List<String> o2) {
+            int result = 0;
+            for (int i = 0; i < o1.size() && result == 0; i++) {
+                result = o1.get(i).compareTo(o2.get(i));
+            }
+            return result;
+        }
+    };
+
+    private NodeSegmentStore store;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ReportLineItem> getReportData(Criterion filter, ReportFieldEnum reportField) {
+        return getReportData(filter, reportField, new ArrayList<GroupByField>());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ReportLineItem> getReportData(Criterion filter, ReportFieldEnum reportField,
+            List<GroupByField> groupByFields) {
+        final List<GroupByField> groups = groupByFields == null 
+            ? Collections.<GroupByField>emptyList() : groupByFields;
+        boolean perIdentification = isFormatField(reportField);
+        for (GroupByField group : groups) {
+            perIdentification |= isFormatField(group.getGroupByField());
+        }
+
+        final Map<List<String>, Aggregate> aggregates = new TreeMap<List<String>, Aggregate>(GROUP_ORDER);
+        final NodeCursor cursor = store.cursor();
+        ProfileResourceNode node;
+        while ((node = cursor.next()) != null) {
+            if (NodePropertyValues.matches(filter, node)) {
+                if (perIdentification) {
+                    for (Format format : node.getFormatIdentifications()) {
+                        aggregate(aggregates, reportField, groups, node, format);
+                    }
+                } else {
+                    aggregate(aggregates, reportField, groups, node, null);
+                }
+            }
+        }
+
+        // An ungrouped report always has a line, even if nothing was counted:
+        if (groups.isEmpty() && aggregates.isEmpty()) {
+            aggregates.put(new ArrayList<String>(), new Aggregate());
+        }
+        final List<ReportLineItem> lineItems = new ArrayList<ReportLineItem>(aggregates.size());
+        for (Map.Entry<List<String>, Aggregate> entry : aggregates.entrySet()) {
+            final ReportLineItem lineItem = entry.getValue().toLineItem();
+            if (!groups.isEmpty()) {
+                lineItem.setGroupByValues(entry.getKey());
+            }
+            lineItems.add(lineItem);
+        }
+        return lineItems;
+    }
+
+    private static void aggregate(Map<List<String>, Aggregate> aggregates, ReportFieldEnum reportField,
+            List<GroupByField> groups, ProfileResourceNode node, Format format) {
+        final List<String> groupValues = new ArrayList<String>(groups.size());
+        for (GroupByField group : groups) {
+            groupValues.add(groupValue(valueOf(group.getGroupByField(), node, format), group.getFunction()));
+        }
+        Aggregate aggregate = aggregates.get(groupValues);
+        if (aggregate == null) {
+            aggregate = new Aggregate();
+            aggregates.put(groupValues, aggregate);
+        }
+        aggregate.add(valueOf(reportField, node, format));
+    }
+
+    private static boolean isFormatField(ReportFieldEnum field) {
+        return field == ReportFieldEnum.PUID || field == ReportFieldEnum.MIME_TYPE 
+            || field == ReportFieldEnum.FILE_FORMAT || field == ReportFieldEnum.FORMAT_VERSION;
+    }
+
+    private static Object valueOf(ReportFieldEnum field, ProfileResourceNode node, Format format) {
+        final NodeMetaData metaData = node.getMetaData();
+        Object value;
+        switch (field) {
+            case FILE_NAME:
+                value = metaData.getName();
+                break;
+            case FILE_SIZE:
+                value = metaData.getSize();
+                break;
+            case LAST_MODIFIED_DATE:
+                value = metaData.getLastModifiedDate();
+                break;
+            case RESOURCE_TYPE:
+                value = metaData.getResourceType();
+                break;
+            case IDENTIFICATION_METHOD:
+                value = metaData.getIdentificationMethod();
+                break;
+            case IDENTIFICATION_STATUS:
+                value = metaData.getNodeStatus();
+                break;
+            case FILE_EXTENSION:
+                value = metaData.getExtension();
+                break;
+            case PUID:
+                value = Format.NULL.equals(format) ? "" : format.getPuid();
+                break;
+            case MIME_TYPE:
+                value = format.getMimeType();
+                break;
+            case FILE_FORMAT:
+                value = format.getName();
+                break;
+            default:
+                value = format.getVersion();
+        }
+        return value;
+    }
+
+    /*
+     * Gives the value a node is grouped under, as the database gives it:
+     * enumerations are stored as their ordinals.
+     */
+    private static String groupValue(Object value, String function) {
+        String groupValue;
+        if (value == null) {
+            groupValue = "";
+        } else if (value instanceof Enum<?>) {
+            groupValue = String.valueOf(((Enum<?>) value).ordinal());
+        } else if (value instanceof Date) {
+            final Date date = (Date) value;
+            if (function == null || function.length() == 0) {
+                groupValue = new Timestamp(date.getTime()).toString();
+            } else {
+                final Calendar calendar = Calendar.getInstance();
+                calendar.setTime(date);
+                if (YEAR.equalsIgnoreCase(function)) {
+                    groupValue = String.valueOf(calendar.get(Calendar.YEAR));
+                } else if (MONTH.equalsIgnoreCase(function)) {
+                    groupValue = String.valueOf(calendar.get(Calendar.MONTH) + 1);
+                } else if (DAY.equalsIgnoreCase(function)) {
+                    groupValue = String.valueOf(calendar.get(Calendar.DAY_OF_MONTH));
+                } else {
+                    throw new IllegalArgumentException("Cannot group by the function: " + function);
+                }
+            }
+        } else {
+            groupValue = value.toString();
+        }
+        return groupValue;
+    }
+
+    /**
+     * @param store the store the nodes are kept in.
+     */
+    public void setStore(NodeSegmentStore store) {
+        this.store = store;
+    }
+
+    /**
+     * The count of the values of a field in a group, and their sum and range
+     * if they are sizes or dates.
+     */
+    private static final class Aggregate {
+        private long count;
+        private long sum;
+        private Long minimum;
+        private Long maximum;
+        private boolean dates;
+
+        void add(Object value) {
+            if (value != null) {
+                count++;
+                if (value instanceof Number || value instanceof Date) {
+                    dates = value instanceof Date;
+                    final long number = dates ? ((Date) value).getTime() : ((Number) value).longValue();
+                    sum += number;
+                    minimum = minimum == null ? number : Math.min(minimum, number);
+                    maximum = maximum == null ? number : Math.max(maximum, number);
+                }
+            }
+        }
+
+        ReportLineItem toLineItem() {
+            final ReportLineItem lineItem = new ReportLineItem();
+            lineItem.setCount(count);
+            if (minimum != null) {
+                if (dates) {
+                    lineItem.setEarliestDate(new Timestamp(minimum));
+                    lineItem.setLatestDate(new Timestamp(maximum));
+                } else {
+                    lineItem.setSum(sum);
+                    lineItem.setMinimum(minimum);
+                    lineItem.setMaximum(maximum);
+                    // The database averages whole numbers as a whole number:
+                    lineItem.setAverage((double) (sum / count));
+                }
+            }
+            return lineItem;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.segments;
+
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.ResourceUtils;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+import uk.gov.nationalarchives.droid.results.handlers.FormatCache;
+import uk.gov.nationalarchives.droid.results.handlers.ResultHandlerDao;
+
+/**
+ * Saves, reads and deletes results kept in a {@link NodeSegmentStore}.
+ * 
+ * @version 6.0.0
+ */
+public class SegmentResultHandlerDao implements ResultHandlerDao {
+
+    private NodeSegmentStore store;
+    private FormatCache formatCache;
+
+    /**
+     * A node without an id is given the next id after the highest one stored.
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void save(ProfileResourceNode node, ResourceId parentId) {
+        if (node.getId() == null) {
+            final Long maxNodeId = store.getMaxNodeId();
+            node.setId(maxNodeId == null ? 0L : maxNodeId + 1);
+        }
+        final Long nodeId = node.getId();
+        String parentsPrefixString = "";
+        if (parentId != null) {
+            parentsPrefixString = parentId.getPath();
+            node.setParentId(parentId.getId());
+        }
+        node.setPrefix(parentsPrefixString + ResourceUtils.getBase128Integer(nodeId));
+        node.setPrefixPlusOne(parentsPrefixString + ResourceUtils.getBase128Integer(nodeId + 1));
+        store.append(node);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Format loadFormat(String puid) {
+        return formatCache.get(puid);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProfileResourceNode loadNode(Long nodeId) {
+        return store.loadNode(nodeId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteNode(Long nodeId) {
+        store.delete(nodeId);
+    }
+
+    /**
+     * @param store the store the results are kept in.
+     */
+    public void setStore(NodeSegmentStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @param formatCache the cache to look formats up in.
+     */
+    public void setFormatCache(FormatCache formatCache) {
+        this.formatCache = formatCache;
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.segments;
+
+import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.results.handlers.ResultWriter;
+
+/**
+ * Writes results to a {@link NodeSegmentStore}.  Appending a node only adds it
+ * to the open segment in memory, so nodes are written on the thread that
+ * identified them, without a queue.
+ * 
+ * @version 6.0.0
+ */
+public class SegmentResultWriter implements ResultWriter {
+
+    private NodeSegmentStore store;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void start() {
+        // The store is opened when it is created.
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long getMaxNodeId() {
+        return store.getMaxNodeId();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void insert(ProfileResourceNode node) {
+        store.append(node);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateStatus(Long nodeId, NodeStatus status) {
+        store.updateStatus(nodeId, status);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete(Long nodeId) {
+        store.delete(nodeId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() {
+        store.flush();
+    }
+
+    /**
+     * Flushes the store, which is closed with the profile.
+     */
+    @Override
+    public void close() {
+        store.flush();
+    }
+
+    /**
+     * @param store the store to write to.
+     */
+    public void setStore(NodeSegmentStore store) {
+        this.store = store;
+    }
+}
@@ -11,10 +11,8 @@ package uk.gov.nationalarchives.droid.signature;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
-
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -24,6 +22,7 @@ import org.xml.sax.helpers.DefaultHandler;
 
 import uk.gov.nationalarchives.droid.core.interfaces.signature.ErrorCode;
 import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileException;
+import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileSnapshot;
 import uk.gov.nationalarchives.droid.profile.referencedata.Format;
 
 /**
@@ -53,19 +52,28 @@ public class SaxSignatureFileParser implements SignatureParser {
     @Override
     public void formats(FormatCallback callback) throws SignatureFileException {
 
-        FileFormatHandler handler = new FileFormatHandler(callback);
-
-        SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
+        // The snapshot is shared with the droid core reading the same signature file.
+        // Formats are only passed on once the whole snapshot has been replayed, so a
+        // snapshot which can't be replayed can be parsed again without repeating any.
         try {
-            SAXParser saxParser = saxParserFactory.newSAXParser();
-            saxParser.parse(file, handler);
+            final SignatureFileSnapshot snapshot = SignatureFileSnapshot.forFile(file, false);
+            FileFormatHandler handler = new FileFormatHandler();
+            try {
+                snapshot.replay(handler);
+            } catch (RuntimeException e) {
+                log.warn(String.format("Could not replay the snapshot of signature file [%s], parsing it again: %s",
+                        file.toURI(), e.getMessage()), e);
+                snapshot.reparse();
+                handler = new FileFormatHandler();
+                snapshot.replay(handler);
+            }
+            for (Format format : handler.formats) {
+                callback.onFormat(format);
+            }
         } catch (SAXException e) {
             throw new SignatureFileException(String.format(
                     INVALID_SIGNATURE_FILE, file.toURI()), e,
                     ErrorCode.INVALID_SIGNATURE_FILE);
-        } catch (ParserConfigurationException e) {
-            log.error(e);
-            throw new RuntimeException(e.getMessage(), e);
         } catch (IOException e) {
             log.error(e);
             throw new RuntimeException(e.getMessage(), e);
@@ -104,11 +112,7 @@ public class SaxSignatureFileParser implements SignatureParser {
      */
     private static final class FileFormatHandler extends DefaultHandler {
 
-        private FormatCallback callback;
-
-        public FileFormatHandler(FormatCallback callback) {
-            this.callback = callback;
-        }
+        private final List<Format> formats = new ArrayList<Format>();
 
         @Override
         public void startElement(String uri, String localName, String qName,
@@ -120,7 +124,7 @@ public class SaxSignatureFileParser implements SignatureParser {
                 format.setName(notNull(attributes.getValue("Name")));
                 format.setMimeType(notNull(attributes.getValue("MIMEType")));
                 format.setVersion(notNull(attributes.getValue("Version")));
-                callback.onFormat(format);
+                formats.add(format);
             }
         }
         
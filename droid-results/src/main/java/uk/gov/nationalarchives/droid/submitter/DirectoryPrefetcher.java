@@ -0,0 +1,247 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.submitter;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lists directories, and reads the attributes of the files in them, on several
+ * threads ahead of a file walker.
+ *
+ * <p/>The file walker still visits files and directories one at a time, in the same order,
+ * so node ids and parent prefixes are assigned exactly as before, and the walk can still be
+ * resumed.  But the walker is given files whose listings and attributes have already been read,
+ * so it rarely has to wait for a slow file system.  Up to the maximum number of directories
+ * can be listed before the walker reaches them; if the walker reaches a directory which
+ * hasn't been listed yet, it lists it itself.  A directory gives back its place once the
+ * walker has read its listing, skipped it, or finished with it, or when the walk stops.
+ *
+ * @version 6.0.0
+ */
+class DirectoryPrefetcher {
+
+    private final ExecutorService executor;
+    private final Semaphore prefetchPermits;
+    private final Set<PrefetchedFile> permitHolders =
+        Collections.newSetFromMap(new ConcurrentHashMap<PrefetchedFile, Boolean>());
+
+    /**
+     * @param threads the number of threads listing directories.
+     * @param maxPrefetchedDirectories the maximum number of directories listed before they are walked.
+     */
+    DirectoryPrefetcher(int threads, int maxPrefetchedDirectories) {
+        executor = Executors.newFixedThreadPool(threads, new ListingThreadFactory());
+        prefetchPermits = new Semaphore(maxPrefetchedDirectories);
+    }
+
+    /**
+     * Starts listing a directory to walk, and the directories beneath it if the walk is recursive.
+     * @param root the root directory of a walk.
+     * @param recursive whether child directories will be walked.
+     * @return a file for the directory, which lists its children in advance.
+     */
+    File prefetch(File root, boolean recursive) {
+        PrefetchedFile prefetched = new PrefetchedFile(root.getPath(), recursive);
+        prefetched.readAttributes();
+        prefetched.startListing();
+        return prefetched;
+    }
+
+    /**
+     * Lets go of the listing of a directory once it has been walked or skipped, so the
+     * listings of the whole tree are not kept until the end of the walk.
+     * @param directory a directory which has been walked or skipped.
+     */
+    static void release(File directory) {
+        if (directory instanceof PrefetchedFile) {
+            ((PrefetchedFile) directory).release();
+        }
+    }
+
+    /**
+     * Stops any listings in progress, and gives back the places of directories
+     * which were listed but never walked.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+        for (PrefetchedFile holder : permitHolders) {
+            holder.releasePermit();
+        }
+    }
+
+    /**
+     * @return the number of directories which can still be listed ahead of the walk.
+     */
+    int availablePermits() {
+        return prefetchPermits.availablePermits();
+    }
+
+    /**
+     * A file whose attributes, and listing if it is a directory, are read in advance.
+     */
+    private final class PrefetchedFile extends File {
+
+        private static final long serialVersionUID = -4000237567395736418L;
+
+        private final boolean recursive;
+        private boolean directory;
+        private boolean normalFile;
+        private long length;
+        private long lastModified;
+        private FutureTask<File[]> listing;
+        private final AtomicBoolean permitHeld = new AtomicBoolean();
+
+        PrefetchedFile(String path, boolean recursive) {
+            super(path);
+            this.recursive = recursive;
+        }
+
+        PrefetchedFile(File parent, String name, boolean recursive) {
+            super(parent, name);
+            this.recursive = recursive;
+        }
+
+        /*
+         * Called before the file is visible to any other thread.
+         */
+        private void readAttributes() {
+            directory = super.isDirectory();
+            normalFile = !directory && super.isFile();
+            length = super.length();
+            lastModified = super.lastModified();
+            if (directory) {
+                listing = new FutureTask<File[]>(new Callable<File[]>() {
+                    @Override
+                    public File[] call() {
+                        return listChildren();
+                    }
+                });
+            }
+        }
+
+        private void startListing() {
+            if (directory && prefetchPermits.tryAcquire()) {
+                permitHeld.set(true);
+                permitHolders.add(this);
+                try {
+                    executor.execute(listing);
+                } catch (RejectedExecutionException e) {
+                    // shut down - the walker will list the directory itself.
+                    releasePermit();
+                }
+            }
+        }
+
+        private void releasePermit() {
+            if (permitHeld.compareAndSet(true, false)) {
+                permitHolders.remove(this);
+                prefetchPermits.release();
+            }
+        }
+
+        private File[] listChildren() {
+            final String[] names = list();
+            if (names == null) {
+                return null;
+            }
+            final PrefetchedFile[] children = new PrefetchedFile[names.length];
+            for (int i = 0; i < names.length; i++) {
+                children[i] = new PrefetchedFile(this, names[i], recursive);
+                children[i].readAttributes();
+            }
+            if (recursive) {
+                for (PrefetchedFile child : children) {
+                    child.startListing();
+                }
+            }
+            return children;
+        }
+
+        /**
+         * Returns the children listed in advance, or lists them now if they
+         * have not been listed yet.
+         * @return the children of this directory, or null if it could not be listed.
+         */
+        @Override
+        public File[] listFiles() {
+            if (listing == null) {
+                return super.listFiles();
+            }
+            // runs the listing on this thread, unless it has already started on another.
+            listing.run();
+            try {
+                return listing.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return super.listFiles();
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException(cause);
+            } finally {
+                releasePermit();
+            }
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        @Override
+        public boolean isFile() {
+            return normalFile;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public long lastModified() {
+            return lastModified;
+        }
+
+        private void release() {
+            listing = null;
+            releasePermit();
+        }
+    }
+
+    /**
+     * Creates daemon threads for listing directories.
+     */
+    private static final class ListingThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "directory-listing-thread-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
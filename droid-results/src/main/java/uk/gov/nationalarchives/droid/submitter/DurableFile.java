@@ -0,0 +1,64 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.submitter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+
+/**
+ * Writes the state files of a profile so that a crash part way through
+ * a save leaves either the old file or the new one, never half of either.
+ *
+ * @version 6.0.0
+ */
+final class DurableFile {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private DurableFile() { }
+
+    /**
+     * Marshals an object to a temporary file, forces it to disk, then renames it over the target.
+     * @param marshaller the marshaller to use.
+     * @param data the object to marshal.
+     * @param target the file to replace.
+     * @throws JAXBException if the object could not be marshalled.
+     * @throws IOException if the file could not be written or renamed.
+     */
+    static void marshal(Marshaller marshaller, Object data, File target) throws JAXBException, IOException {
+        final File temp = new File(target.getPath() + TEMP_SUFFIX);
+        final FileOutputStream out = new FileOutputStream(temp);
+        try {
+            marshaller.marshal(data, out);
+            out.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        replace(temp, target);
+    }
+
+    private static void replace(File temp, File target) throws IOException {
+        // Renaming over an existing file fails on some platforms:
+        if (!temp.renameTo(target)) {
+            if (target.exists() && !target.delete()) {
+                throw new IOException(String.format("Could not replace file: %s", target.getAbsolutePath()));
+            }
+            if (!temp.renameTo(target)) {
+                throw new IOException(String.format("Could not rename file: %s to %s",
+                        temp.getAbsolutePath(), target.getAbsolutePath()));
+            }
+        }
+    }
+
+}
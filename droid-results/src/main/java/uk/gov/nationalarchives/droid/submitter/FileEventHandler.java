@@ -23,6 +23,7 @@ import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
 import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
 import uk.gov.nationalarchives.droid.core.interfaces.ResultHandler;
+import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveCheckpoint;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.IdentificationRequestFactory;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
 import uk.gov.nationalarchives.droid.profile.throttle.SubmissionThrottle;
@@ -68,7 +69,7 @@ public class FileEventHandler {
      */
     public void onEvent(File file, ResourceId parentId, ResourceId nodeId) {
 
-        URI uri = file.toURI();
+        URI uri = SubmitterUtils.toURI(file, false);
         RequestMetaData metaData = new RequestMetaData(file.length(), file
                 .lastModified(), file.getName());
 
@@ -105,6 +106,32 @@ public class FileEventHandler {
         }
     }
 
+    /**
+     * Carries on expanding an archive which was identified before, from a checkpoint of its progress.
+     * 
+     * @param file
+     *            the archive file
+     * @param identifier
+     *            the identifier of the archive, holding the id of its existing node
+     * @param checkpoint
+     *            the progress through the archive so far
+     * @throws IOException
+     *            if the archive could not be read
+     */
+    public void onResume(File file, RequestIdentifier identifier, ArchiveCheckpoint checkpoint) 
+        throws IOException {
+        RequestMetaData metaData = new RequestMetaData(file.length(), file
+                .lastModified(), file.getName());
+        IdentificationRequest request = requestFactory.newRequest(metaData, identifier);
+        FileInputStream in = new FileInputStream(file);
+        try {
+            request.open(in);
+        } finally {
+            in.close();
+        }
+        droidCore.resumeArchive(request, checkpoint);
+    }
+
     /**
      * @return the submission throttle
      */
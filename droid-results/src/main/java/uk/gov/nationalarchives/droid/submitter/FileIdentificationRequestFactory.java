@@ -11,6 +11,7 @@ package uk.gov.nationalarchives.droid.submitter;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.IdentificationRequestFactory;
+import uk.gov.nationalarchives.droid.core.interfaces.hash.HashGenerator;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.FileSystemIdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
 
@@ -20,12 +21,51 @@ import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
  */
 public class FileIdentificationRequestFactory implements IdentificationRequestFactory {
 
+    private boolean memoryMapFiles;
+    private long memoryMapThreshold = Long.MAX_VALUE;
+    private HashGenerator hashGenerator;
+    private boolean generateHash;
+    
     /**
      * {@inheritDoc}
      */
     @Override
     public final IdentificationRequest newRequest(RequestMetaData metaData, RequestIdentifier identifier) {
-        return new FileSystemIdentificationRequest(metaData, identifier);
+        final Long size = metaData.getSize();
+        final boolean memoryMapped = memoryMapFiles && size != null && size >= memoryMapThreshold;
+        if (generateHash && hashGenerator != null) {
+            metaData.setRunningHash(hashGenerator.newRunningHash());
+        }
+        return new FileSystemIdentificationRequest(metaData, identifier, memoryMapped);
+    }
+    
+    /**
+     * @param memoryMapFiles whether files at least as big as the
+     * memory map threshold are read through memory mapping.
+     */
+    public void setMemoryMapFiles(boolean memoryMapFiles) {
+        this.memoryMapFiles = memoryMapFiles;
+    }
+    
+    /**
+     * @param memoryMapThreshold the minimum size of file, in bytes, to memory map.
+     */
+    public void setMemoryMapThreshold(long memoryMapThreshold) {
+        this.memoryMapThreshold = memoryMapThreshold;
+    }
+    
+    /**
+     * @param hashGenerator the hash generator used to hash files as they are read.
+     */
+    public void setHashGenerator(HashGenerator hashGenerator) {
+        this.hashGenerator = hashGenerator;
+    }
+    
+    /**
+     * @param generateHash whether files are hashed as they are read.
+     */
+    public void setGenerateHash(boolean generateHash) {
+        this.generateHash = generateHash;
     }
     
 }
@@ -49,10 +49,14 @@ public class FileWalker extends DirectoryWalker {
      */
     private static final String FILE_SYSTEM_UNAVAILABLE = "File system appears to be unavailable for file: [%s]";
 
+    /*
+     * Children are recorded with URIs which don't end in a slash, even if they 
+     * are directories, so the file system isn't asked about every child as it is listed.
+     */
     private static final Transformer FILE_TO_URI_TRANSFORMER = new Transformer() {
         @Override
         public Object transform(Object input) {
-            return ((File) input).toURI();
+            return SubmitterUtils.toURI((File) input, false);
         }
     };
     
@@ -72,6 +76,8 @@ public class FileWalker extends DirectoryWalker {
     private FileWalkerHandler fileHandler;
     private FileWalkerHandler directoryHandler;
     private FileWalkerHandler restrictedDirectoryHandler;
+    private ProfileSizeEstimator sizeEstimator;
+    private DirectoryPrefetcher directoryPrefetcher;
     
     private boolean fastForward;
     private List<ProgressEntry> recoveryRoad;
@@ -96,6 +102,7 @@ public class FileWalker extends DirectoryWalker {
      * @throws IOException if an IO exception occured
      */
     public void walk() throws IOException {
+        File rootDir = new File(root);
         if (progress != null) {
             // fast-forward to the recovery point
             fastForward = true;
@@ -103,9 +110,12 @@ public class FileWalker extends DirectoryWalker {
         } else {
             // initialise an empty progress queue and start from scratch
             progress = new ArrayDeque<ProgressEntry>();
+            if (directoryPrefetcher != null) {
+                rootDir = directoryPrefetcher.prefetch(rootDir, recursive);
+            }
         }
         
-        walk(new File(root), null);
+        walk(rootDir, null);
     }
     
     private static List<ProgressEntry> reverseProgress(Deque<ProgressEntry> progress) {
@@ -119,19 +129,19 @@ public class FileWalker extends DirectoryWalker {
     
     /**
      * {@inheritDoc}
+     * 
+     * <p/>The directory walker has already found the file isn't a directory, and 
+     * only files which then turn out not to be normal files are checked to see 
+     * whether the file system is still available.
      */
     @SuppressWarnings("unchecked")
     @Override
     protected void handleFile(File file, int depth, Collection results) 
         throws IOException {
         
-        if (!SubmitterUtils.isFileSystemAvailable(file, root)) {
-            log.error(String.format(FILE_SYSTEM_UNAVAILABLE, file.getAbsolutePath()));
-            throw new IOException(file.getAbsolutePath());
-        }
-        
+        final URI fileUri = SubmitterUtils.toURI(file, false);
         if (fastForward) {
-            if (recoveryRoad.get(depth - 1).containsChild(file.toURI())) {
+            if (recoveryRoad.get(depth - 1).containsChild(fileUri)) {
                 // FOUND IT!!
                 fastForward = false;
             } else {
@@ -142,8 +152,14 @@ public class FileWalker extends DirectoryWalker {
         ProgressEntry progressEntry = progress.peek();
         if (file.isFile()) {
             fileHandler.handle(file, depth, progressEntry);
+        } else if (!SubmitterUtils.isFileSystemAvailable(file, root)) {
+            log.error(String.format(FILE_SYSTEM_UNAVAILABLE, file.getAbsolutePath()));
+            throw new IOException(file.getAbsolutePath());
+        }
+        progressEntry.removeChild(fileUri);
+        if (sizeEstimator != null && recursive) {
+            sizeEstimator.onChildWalked(false);
         }
-        progressEntry.removeChild(file.toURI());
     }
     
     @SuppressWarnings("unchecked")
@@ -151,12 +167,13 @@ public class FileWalker extends DirectoryWalker {
     protected boolean handleDirectory(File dir, int depth, Collection results) throws IOException {
         boolean processDir = true;
         
-        if (!SubmitterUtils.isFileSystemAvailable(dir, root)) {
+        // Below the root, the directory walker has just found this is a directory. 
+        if (depth == 0 && !SubmitterUtils.isFileSystemAvailable(dir, root)) {
             log.error(String.format(FILE_SYSTEM_UNAVAILABLE, dir.getAbsolutePath()));
             throw new IOException(dir.getAbsolutePath());
         }
 
-        URI dirUri = dir.toURI();
+        URI dirUri = SubmitterUtils.toURI(dir, true);
         
         if (fastForward) {
             if (!(depth < recoveryRoad.size() && recoveryRoad.get(depth).getUri().equals(dirUri))) {
@@ -170,6 +187,13 @@ public class FileWalker extends DirectoryWalker {
                 }
             }
         }
+        
+        if (sizeEstimator != null && recursive && depth > 0 && !fastForward) {
+            sizeEstimator.onChildWalked(true);
+        }
+        if (!processDir) {
+            DirectoryPrefetcher.release(dir);
+        }
         return processDir;
     }
     
@@ -198,11 +222,14 @@ public class FileWalker extends DirectoryWalker {
                 unprocessedChildren = TransformedList.decorate(new ArrayList<URI>(), FILE_TO_URI_TRANSFORMER); 
                 unprocessedChildren.addAll(Arrays.asList(children));
                 directoryId = directoryHandler.handle(directory, depth, parent);
+                if (sizeEstimator != null) {
+                    sizeEstimator.onDirectoryListed(children.length, recursive);
+                }
             }
         } else {
             directoryId = directoryHandler.handle(directory, depth, parent);
         }
-        progress.push(new ProgressEntry(directory.toURI(), directoryId, unprocessedChildren));
+        progress.push(new ProgressEntry(SubmitterUtils.toURI(directory, true), directoryId, unprocessedChildren));
     }
     
     
@@ -225,8 +252,9 @@ public class FileWalker extends DirectoryWalker {
         
         progress.pop();
         if (!progress.isEmpty()) {
-            progress.peek().removeChild(directory.toURI());
+            progress.peek().removeChild(SubmitterUtils.toURI(directory, true));
         }
+        DirectoryPrefetcher.release(directory);
     }
     
     /**
@@ -250,6 +278,21 @@ public class FileWalker extends DirectoryWalker {
         this.restrictedDirectoryHandler = restrictedDirectoryHandler;
     }
     
+    /**
+     * @param sizeEstimator an estimator told about the resources found as the walk proceeds.
+     */
+    void setSizeEstimator(ProfileSizeEstimator sizeEstimator) {
+        this.sizeEstimator = sizeEstimator;
+    }
+    
+    /**
+     * @param directoryPrefetcher lists directories ahead of the walk.  It is not used
+     * when a walk is resumed.
+     */
+    void setDirectoryPrefetcher(DirectoryPrefetcher directoryPrefetcher) {
+        this.directoryPrefetcher = directoryPrefetcher;
+    }
+    
     /**
      * @return the progress
      */
@@ -351,7 +394,9 @@ public class FileWalker extends DirectoryWalker {
          * @param childUri the child uri to remove
          */
         private void removeChild(URI childUri) {
-            children.remove(childUri);
+            if (!children.remove(childUri)) {
+                children.remove(otherChildUri(childUri));
+            }
         }
         
         /**
@@ -360,7 +405,17 @@ public class FileWalker extends DirectoryWalker {
          * @return true if the progress entry contains the child specified.
          */
         public boolean containsChild(URI childUri) {
-            return children != null && children.contains(childUri);
+            return children != null 
+                && (children.contains(childUri) || children.contains(otherChildUri(childUri)));
+        }
+        
+        /*
+         * Child directories may be recorded with or without a trailing slash, 
+         * so both forms of a directory URI are matched.
+         */
+        private static URI otherChildUri(URI childUri) {
+            final String uri = childUri.toString();
+            return URI.create(uri.endsWith("/") ? uri.substring(0, uri.length() - 1) : uri + "/");
         }
     }
     
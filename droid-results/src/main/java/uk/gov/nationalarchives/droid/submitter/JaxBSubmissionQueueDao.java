@@ -8,36 +8,81 @@
  */
 package uk.gov.nationalarchives.droid.submitter;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveCheckpoint;
 
 /**
+ * Persists the submission queue as an XML snapshot, followed by a journal of the
+ * requests added and removed since the snapshot was written.
+ *
+ * <p/>Adding and removing requests only queues a journal record, so archive workers
+ * do not wait on each other or on a save.  Saving appends the records queued since
+ * the last save, along with the checkpoints which have moved on, so a save costs
+ * in proportion to what has changed rather than to the size of the queue.  Once
+ * the journal holds more than the compaction threshold of records, it is folded
+ * into a new snapshot.
+ *
  * @author rflitcroft
  *
  */
 public class JaxBSubmissionQueueDao implements SubmissionQueue {
 
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final String ENCODING = "UTF-8";
+    private static final int DEFAULT_COMPACTION_THRESHOLD = 1000;
+
+    private static final char ADD = '+';
+    private static final char REMOVE = '-';
+    private static final char CHECKPOINT = '*';
+
+    private static final String CR_REFERENCE = "&#13;";
+    private static final String LF_REFERENCE = "&#10;";
+
     private final Log log = LogFactory.getLog(getClass());
 
     private String targetFileName;
+    private int compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
     private final JAXBContext context;
- 
-    private SubmissionQueueData queue = new SubmissionQueueData();
+
+    private final Queue<String> records = new ConcurrentLinkedQueue<String>();
+    private final ConcurrentMap<Long, SavedCheckpoint> checkpoints =
+        new ConcurrentHashMap<Long, SavedCheckpoint>();
+
+    private boolean snapshotWritten;
+    private int journalRecords;
 
     /**
      * @throws JAXBException if the JAXBContext could not be instantiated.
      */
     public JaxBSubmissionQueueDao() throws JAXBException {
-        
+
         context = JAXBContext.newInstance(new Class[] {
             SubmissionQueueData.class,
         });
@@ -48,57 +93,249 @@ public class JaxBSubmissionQueueDao implements SubmissionQueue {
      */
     @Override
     public SubmissionQueueData list() {
-        
         File in = new File(targetFileName);
-        if (in.exists()) {
+        File journal = getJournalFile();
+        if (in.exists() || journal.exists()) {
             try {
-                Unmarshaller unmarshaller = context.createUnmarshaller();
-                return (SubmissionQueueData) unmarshaller.unmarshal(in);
+                return read(in, journal);
             } catch (JAXBException e) {
                 log.error(e);
                 throw new RuntimeException(e.getMessage(), e);
+            } catch (IOException e) {
+                log.error(e);
+                throw new RuntimeException(e.getMessage(), e);
             }
         }
-        
+
         return null;
     }
-    
+
     /**
      * {@inheritDoc}
      */
     @Override
     public synchronized void save() {
         try {
-            Marshaller marshaller = context.createMarshaller();
-            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-            marshaller.marshal(queue, new File(targetFileName));
+            final List<String> changes = new ArrayList<String>();
+            for (String record = records.poll(); record != null; record = records.poll()) {
+                changes.add(record);
+            }
+            // Archives may still be walked while the queue is saved:
+            for (SavedCheckpoint checkpoint : checkpoints.values()) {
+                final ArchiveCheckpoint changed = checkpoint.changedSinceSave();
+                if (changed != null) {
+                    final SubmissionQueueData data = new SubmissionQueueData();
+                    data.putCheckpoint(changed);
+                    changes.add(toRecord(CHECKPOINT, data));
+                }
+            }
+
+            if (!snapshotWritten) {
+                // The queue of this run replaces whatever was saved by an earlier one:
+                final SubmissionQueueData data = new SubmissionQueueData();
+                for (String record : changes) {
+                    apply(data, record);
+                }
+                writeSnapshot(data);
+                snapshotWritten = true;
+            } else if (!changes.isEmpty()) {
+                appendToJournal(changes);
+                journalRecords += changes.size();
+                if (journalRecords > compactionThreshold) {
+                    writeSnapshot(read(new File(targetFileName), getJournalFile()));
+                }
+            }
         } catch (JAXBException e) {
             log.error(e);
             throw new RuntimeException(e.getMessage(), e);
+        } catch (IOException e) {
+            log.error(e);
+            throw new RuntimeException(e.getMessage(), e);
         }
     }
-    
+
     /**
      * @param targetFileName the targetFileName to set
      */
     public void setTargetFileName(String targetFileName) {
         this.targetFileName = targetFileName;
     }
-    
+
+    /**
+     * @param compactionThreshold the number of journal records after which
+     * the journal is folded into a new snapshot.
+     */
+    public void setCompactionThreshold(int compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized void add(RequestIdentifier request) {
-        queue.add(request);
+    public void add(RequestIdentifier request) {
+        final SubmissionQueueData data = new SubmissionQueueData();
+        data.add(request);
+        records.add(toRecord(ADD, data));
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized void remove(RequestIdentifier request) {
-        queue.remove(request);
+    public void add(RequestIdentifier request, ArchiveCheckpoint checkpoint) {
+        add(request);
+        checkpoints.put(checkpoint.getNodeId(), new SavedCheckpoint(checkpoint));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove(RequestIdentifier request) {
+        // The checkpoint goes first, so a save never writes it after the removal:
+        if (request.getNodeId() != null) {
+            checkpoints.remove(request.getNodeId());
+        }
+        final SubmissionQueueData data = new SubmissionQueueData();
+        data.add(request);
+        records.add(toRecord(REMOVE, data));
+    }
+
+    private File getJournalFile() {
+        return new File(targetFileName + JOURNAL_SUFFIX);
+    }
+
+    /*
+     * Marshals a journal record onto a single line.  The fragment is not formatted, so any
+     * line breaks in it come from the data, such as an archive entry name, and are written
+     * as character references which the unmarshaller reads back as the same characters.
+     */
+    private String toRecord(char type, SubmissionQueueData data) {
+        try {
+            final Marshaller marshaller = context.createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+            final StringWriter record = new StringWriter();
+            record.write(type);
+            marshaller.marshal(data, record);
+            return record.toString().replace("\r", CR_REFERENCE).replace("\n", LF_REFERENCE);
+        } catch (JAXBException e) {
+            log.error(e);
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /*
+     * Applies a journal record to the queue data.  Records may be applied more than once,
+     * if the journal outlives a snapshot it was folded into, so adds are not repeated.
+     */
+    private void apply(SubmissionQueueData data, String record) throws JAXBException {
+        final Unmarshaller unmarshaller = context.createUnmarshaller();
+        final SubmissionQueueData change =
+            (SubmissionQueueData) unmarshaller.unmarshal(new StringReader(record.substring(1)));
+        switch (record.charAt(0)) {
+            case ADD:
+                for (RequestIdentifier request : change.getReplayUris()) {
+                    if (!data.getReplayUris().contains(request)) {
+                        data.add(request);
+                    }
+                }
+                break;
+            case REMOVE:
+                for (RequestIdentifier request : change.getReplayUris()) {
+                    data.remove(request);
+                }
+                break;
+            case CHECKPOINT:
+                for (ArchiveCheckpoint checkpoint : change.getCheckpoints()) {
+                    data.putCheckpoint(checkpoint);
+                }
+                break;
+            default:
+                throw new JAXBException(String.format("Unknown submission queue record: %s", record));
+        }
     }
-    
+
+    private SubmissionQueueData read(File snapshot, File journal) throws JAXBException, IOException {
+        SubmissionQueueData data = new SubmissionQueueData();
+        if (snapshot.exists()) {
+            Unmarshaller unmarshaller = context.createUnmarshaller();
+            data = (SubmissionQueueData) unmarshaller.unmarshal(snapshot);
+        }
+        if (journal.exists()) {
+            final BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(journal), ENCODING));
+            try {
+                for (String record = reader.readLine(); record != null; record = reader.readLine()) {
+                    try {
+                        apply(data, record);
+                    } catch (JAXBException e) {
+                        // Only the last record can be torn, by a crash while it was written.
+                        log.warn(String.format("Ignoring unreadable submission queue record: %s", record), e);
+                        break;
+                    }
+                }
+            } finally {
+                IOUtils.closeQuietly(reader);
+            }
+        }
+        return data;
+    }
+
+    private void appendToJournal(List<String> changes) throws IOException {
+        final FileOutputStream out = new FileOutputStream(getJournalFile(), true);
+        try {
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(out, ENCODING));
+            for (String record : changes) {
+                writer.write(record);
+                writer.write('\n');
+            }
+            writer.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeSnapshot(SubmissionQueueData data) throws JAXBException, IOException {
+        Marshaller marshaller = context.createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+        DurableFile.marshal(marshaller, data, new File(targetFileName));
+        final File journal = getJournalFile();
+        if (!journal.delete() && journal.exists()) {
+            throw new IOException(String.format("Could not delete submission queue journal: %s",
+                    journal.getAbsolutePath()));
+        }
+        journalRecords = 0;
+    }
+
+    /**
+     * A checkpoint in the queue, with the progress it had when it was last saved.
+     */
+    private static final class SavedCheckpoint {
+
+        private final ArchiveCheckpoint checkpoint;
+        private int savedEntries = -1;
+        private int savedDirectories = -1;
+
+        SavedCheckpoint(ArchiveCheckpoint checkpoint) {
+            this.checkpoint = checkpoint;
+        }
+
+        /**
+         * @return a copy of the checkpoint if it has moved on since it was last saved, or null.
+         */
+        ArchiveCheckpoint changedSinceSave() {
+            final ArchiveCheckpoint copy = checkpoint.copy();
+            final int entries = copy.getEntriesDone();
+            final int directories = copy.getDirectories().size();
+            if (entries == savedEntries && directories == savedDirectories) {
+                return null;
+            }
+            savedEntries = entries;
+            savedDirectories = directories;
+            return copy;
+        }
+    }
+
 }
@@ -15,6 +15,11 @@ import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Utility class for DroidCore to count in-flight jobs.
+ * 
+ * <p/>Counting doesn't lock.  The lock is only taken by threads waiting for
+ * the counts to reach zero, and by the thread whose decrement reaches zero 
+ * to wake them up.
+ * 
  * @author rflitcroft
  *
  */
@@ -30,38 +35,22 @@ class JobCounter {
      * Increments the job counter.
      */
     void increment() {
-        lock.lock();
-        try {
-            jobCount.incrementAndGet();
-        } finally {
-            lock.unlock();
-        }
+        jobCount.incrementAndGet();
     }
     
     /**
      * Increments the post-process job counter.
      */
     void incrementPostProcess() {
-        lock.lock();
-        try {
-            postProcessCount.incrementAndGet();
-        } finally {
-            lock.unlock();
-        }
+        postProcessCount.incrementAndGet();
     }
 
     /**
      * Decrements the job counter.
      */
     void decrement() {
-        lock.lock();
-        try {
-            int cnt = jobCount.decrementAndGet();
-            if (cnt == 0) {
-                idle.signalAll();
-            }
-        } finally {
-            lock.unlock();
+        if (jobCount.decrementAndGet() == 0) {
+            signalIdle();
         }
     }
     
@@ -69,12 +58,15 @@ class JobCounter {
      * Decrements the post-process job counter.
      */
     void decrementPostProcess() {
+        if (postProcessCount.decrementAndGet() == 0) {
+            signalIdle();
+        }
+    }
+    
+    private void signalIdle() {
         lock.lock();
         try {
-            int cnt = postProcessCount.decrementAndGet();
-            if (cnt == 0) {
-                idle.signalAll();
-            }
+            idle.signalAll();
         } finally {
             lock.unlock();
         }
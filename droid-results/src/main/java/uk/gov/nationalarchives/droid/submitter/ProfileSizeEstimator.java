@@ -0,0 +1,100 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.submitter;
+
+import uk.gov.nationalarchives.droid.results.handlers.ProgressMonitor;
+
+/**
+ * Estimates the number of identification jobs in a profile while it is walked,
+ * so the profile does not need to be walked twice just to count them.
+ *
+ * <p/>Every resource found so far is counted exactly.  Directories which
+ * have not been listed yet are estimated from the walk so far: the proportion
+ * of walked children which were directories, and the average number of children
+ * in the directories listed.  The target count of the progress monitor is updated
+ * each time a directory is listed, so it grows as the walk proceeds.
+ *
+ * <p/>This is NOT thread safe - it belongs to a single walk of a profile.
+ *
+ * @version 6.0.0
+ */
+class ProfileSizeEstimator {
+
+    private final ProgressMonitor progressMonitor;
+    private final long baseCount;
+
+    private long resourcesFound;
+    private long directoriesListed;
+    private long childrenListed;
+    private long childrenWalked;
+    private long directoriesWalked;
+
+    /**
+     * @param progressMonitor the progress monitor whose target count is estimated.
+     */
+    ProfileSizeEstimator(ProgressMonitor progressMonitor) {
+        this.progressMonitor = progressMonitor;
+        // A resumed profile has already counted the jobs before the walk resumes.
+        this.baseCount = progressMonitor.getIdentificationCount();
+    }
+
+    /**
+     * Counts a resource at the root of the profile spec.
+     */
+    void onRootResource() {
+        resourcesFound++;
+    }
+
+    /**
+     * Counts the children of a directory once it has been listed.
+     * @param numChildren the number of children in the directory.
+     * @param recursive whether the child directories will also be listed.
+     */
+    void onDirectoryListed(int numChildren, boolean recursive) {
+        resourcesFound += numChildren;
+        if (recursive) {
+            directoriesListed++;
+            childrenListed += numChildren;
+        }
+        progressMonitor.setTargetCount(getEstimatedSize());
+    }
+
+    /**
+     * Counts a child of a recursively listed directory as it is walked.
+     * @param directory whether the child is a directory.
+     */
+    void onChildWalked(boolean directory) {
+        childrenWalked++;
+        if (directory) {
+            directoriesWalked++;
+        }
+    }
+
+    /**
+     * Once the walk has finished, every resource has been found, so this is exact.
+     * @return the number of jobs found so far, with any counted before the walk resumed.
+     */
+    long getCountedSize() {
+        return baseCount + resourcesFound;
+    }
+
+    /**
+     * @return the estimated number of jobs in the profile.
+     */
+    long getEstimatedSize() {
+        long estimate = baseCount + resourcesFound;
+        if (childrenWalked > 0 && directoriesListed > 0) {
+            final long childrenNotWalked = childrenListed - childrenWalked;
+            final double directoriesNotListed = (double) childrenNotWalked * directoriesWalked / childrenWalked;
+            final double averageChildren = (double) childrenListed / directoriesListed;
+            estimate += (long) (directoriesNotListed * averageChildren);
+        }
+        return estimate;
+    }
+}
@@ -24,6 +24,10 @@ import uk.gov.nationalarchives.droid.submitter.ProfileWalkState.WalkStatus;
 
 /**
  * Iterates over all resources in the profile spec.
+ * The target count of the progress monitor is estimated as the resources are found,
+ * and set to the exact number found once the walk has finished.
+ * Directories can be listed on other threads ahead of the walk, but they are still
+ * walked in order on the calling thread.
  * This is NOT thread safe, and you must instantiate a new instance for
  * any concurrent walking.
  * 
@@ -32,12 +36,17 @@ import uk.gov.nationalarchives.droid.submitter.ProfileWalkState.WalkStatus;
  */
 public class ProfileSpecWalkerImpl implements ProfileSpecWalker {
 
+    private static final int DEFAULT_MAX_PREFETCHED_DIRECTORIES = 1024;
+    
     private final Log log = LogFactory.getLog(getClass());
 
     private FileEventHandler fileEventHandler;
     private DirectoryEventHandler directoryEventHandler;
     private ProgressMonitor progressMonitor;
     
+    private int directoryListingThreads;
+    private int maxPrefetchedDirectories = DEFAULT_MAX_PREFETCHED_DIRECTORIES;
+    
     private transient volatile boolean cancelled;
     
     /**
@@ -47,6 +56,21 @@ public class ProfileSpecWalkerImpl implements ProfileSpecWalker {
     public void walk(final ProfileSpec profileSpec, final ProfileWalkState walkState) throws IOException {
         
         final List<AbstractProfileResource> resources = profileSpec.getResources();
+        final ProfileSizeEstimator sizeEstimator = new ProfileSizeEstimator(progressMonitor);
+        final DirectoryPrefetcher directoryPrefetcher = directoryListingThreads > 0 
+            ? new DirectoryPrefetcher(directoryListingThreads, maxPrefetchedDirectories) : null;
+        try {
+            walk(resources, walkState, sizeEstimator, directoryPrefetcher);
+        } finally {
+            if (directoryPrefetcher != null) {
+                directoryPrefetcher.shutdown();
+            }
+        }
+    }
+    
+    private void walk(final List<AbstractProfileResource> resources, final ProfileWalkState walkState, 
+            final ProfileSizeEstimator sizeEstimator, final DirectoryPrefetcher directoryPrefetcher) 
+        throws IOException {
 
         boolean fastForward = false;
         
@@ -67,6 +91,10 @@ public class ProfileSpecWalkerImpl implements ProfileSpecWalker {
                 break;
             }
             
+            if (!fastForward) {
+                sizeEstimator.onRootResource();
+            }
+            
             if (resource.isDirectory()) {
                 FileWalker fileWalker;
                 if (!fastForward) {
@@ -74,11 +102,13 @@ public class ProfileSpecWalkerImpl implements ProfileSpecWalker {
                 }
                 
                 fileWalker = walkState.getCurrentFileWalker();
+                fileWalker.setSizeEstimator(sizeEstimator);
+                fileWalker.setDirectoryPrefetcher(directoryPrefetcher);
                 
                 fileWalker.setFileHandler(new FileWalkerHandler() {
                     @Override
                     public ResourceId handle(File file, int depth, ProgressEntry parent) { 
-                        progressMonitor.startJob(file.toURI());
+                        progressMonitor.startJob(SubmitterUtils.toURI(file, false));
                         ResourceId parentId = parent == null ? null : parent.getResourceId();
                         fileEventHandler.onEvent(file, parentId, null);
                         return null;
@@ -88,7 +118,7 @@ public class ProfileSpecWalkerImpl implements ProfileSpecWalker {
                 fileWalker.setDirectoryHandler(new FileWalkerHandler() {
                     @Override
                     public ResourceId handle(File file, int depth, ProgressEntry parent) {
-                        progressMonitor.startJob(file.toURI());
+                        progressMonitor.startJob(SubmitterUtils.toURI(file, true));
                         ResourceId parentId = parent == null ? null : parent.getResourceId();
                         return directoryEventHandler.onEvent(file, parentId, depth, false);
                     }
@@ -97,7 +127,7 @@ public class ProfileSpecWalkerImpl implements ProfileSpecWalker {
                 fileWalker.setRestrictedDirectoryHandler(new FileWalkerHandler() {
                     @Override
                     public ResourceId handle(File file, int depth, ProgressEntry parent) {
-                        progressMonitor.startJob(file.toURI());
+                        progressMonitor.startJob(SubmitterUtils.toURI(file, true));
                         ResourceId parentId = parent == null ? null : parent.getResourceId();
                         return directoryEventHandler.onEvent(file, parentId, depth, true);
                     }
@@ -113,7 +143,8 @@ public class ProfileSpecWalkerImpl implements ProfileSpecWalker {
             fastForward = false;
         }
         walkState.setWalkStatus(WalkStatus.FINISHED);
-        progressMonitor.setTargetCount(progressMonitor.getIdentificationCount());
+        // Jobs may still be queued or running, so the target is what the walk found, not what has finished.
+        progressMonitor.setTargetCount(sizeEstimator.getCountedSize());
     }
     
     /**
@@ -133,6 +164,22 @@ public class ProfileSpecWalkerImpl implements ProfileSpecWalker {
         this.directoryEventHandler = directoryEventHandler;
     }
 
+    /**
+     * @param directoryListingThreads the number of threads listing directories ahead 
+     * of the walk, or zero to list each directory only when the walk reaches it.
+     */
+    public void setDirectoryListingThreads(int directoryListingThreads) {
+        this.directoryListingThreads = directoryListingThreads;
+    }
+    
+    /**
+     * @param maxPrefetchedDirectories the maximum number of directories listed 
+     * ahead of the walk.
+     */
+    public void setMaxPrefetchedDirectories(int maxPrefetchedDirectories) {
+        this.maxPrefetchedDirectories = maxPrefetchedDirectories;
+    }
+    
     /**
      *  To cancel Profile speck walker.
      */
@@ -40,9 +40,9 @@ public class ProfileWalkState {
     private WalkStatus walkStatus = WalkStatus.NOT_STARTED;
     
     /**
-     * Default Constructor. 
+     * Default Constructor, for a walk which has not started. 
      */
-    ProfileWalkState() {
+    public ProfileWalkState() {
     }
     
     /**
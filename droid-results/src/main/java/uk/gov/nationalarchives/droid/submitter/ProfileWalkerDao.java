@@ -9,6 +9,7 @@
 package uk.gov.nationalarchives.droid.submitter;
 
 import java.io.File;
+import java.io.IOException;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -65,7 +66,8 @@ public class ProfileWalkerDao {
     }
 
     /**
-     * Saves a file walker to XML.
+     * Saves a file walker to XML.  The previous walk state is only replaced once 
+     * the new one is on disk, so a crash while saving cannot lose both.
      * @param walkState the file walker to save
      */
     public void save(ProfileWalkState walkState) {
@@ -75,13 +77,16 @@ public class ProfileWalkerDao {
         try {
             Marshaller m = context.createMarshaller();
             m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-            m.marshal(walkState, xml);
+            DurableFile.marshal(m, walkState, xml);
         } catch (PropertyException e) {
             log.error(e);
             throw new RuntimeException(e);
         } catch (JAXBException e) {
             log.error(e);
             throw new RuntimeException(e);
+        } catch (IOException e) {
+            log.error(e);
+            throw new RuntimeException(e);
         }
     }
 
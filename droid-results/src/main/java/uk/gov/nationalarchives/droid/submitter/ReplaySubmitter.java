@@ -9,13 +9,17 @@
 package uk.gov.nationalarchives.droid.submitter;
 
 import java.io.File;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
 import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
+import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveCheckpoint;
 import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
 import uk.gov.nationalarchives.droid.results.handlers.ResultHandlerDao;
 
@@ -30,37 +34,64 @@ public class ReplaySubmitter {
      * 
      */
     private static final int FIVE = 5;
+    private final Log log = LogFactory.getLog(getClass());
     private FileEventHandler fileEventHandler;
     private SubmissionQueue submissionQueue;
     private ResultHandlerDao resultHandlerDao;
     
     /**
      * Re-submits all unfinished archival nodes as new Identification requests.
-     * All existing data under those nodes are destroyed.
+     * All existing data under those nodes are destroyed, unless the node is an archive
+     * which was the only unfinished archive under it, and which has a checkpoint.
+     * Those archives carry on from their checkpoint, keeping the entries already identified.
      * 
      */
     public void replay() {
         
         SubmissionQueueData queueData = submissionQueue.list();
         if (queueData != null) {
-            // de-duplicate any resources with the same ancestor ID
-            Set<Long> ancestorIds = new HashSet<Long>();
+            // de-duplicate any resources with the same ancestor ID, counting how many there are:
+            Map<Long, RequestIdentifier> ancestors = new HashMap<Long, RequestIdentifier>();
+            Map<Long, Integer> ancestorCounts = new HashMap<Long, Integer>();
             List<RequestIdentifier> identifiers = queueData.getReplayUris();
-            for (Iterator<RequestIdentifier> it = identifiers.iterator(); it.hasNext();) {
-                RequestIdentifier identifier = it.next();
-                ancestorIds.add(identifier.getAncestorId());
+            for (RequestIdentifier identifier : identifiers) {
+                final Long ancestorId = identifier.getAncestorId();
+                final Integer count = ancestorCounts.get(ancestorId);
+                ancestorCounts.put(ancestorId, count == null ? 1 : count + 1);
+                ancestors.put(ancestorId, identifier);
             }
             
-            // Delete and re-submit all the distinct nodes as new requests
-            for (Long ancestorId : ancestorIds) {
+            for (Map.Entry<Long, RequestIdentifier> ancestor : ancestors.entrySet()) {
+                final Long ancestorId = ancestor.getKey();
+                final RequestIdentifier identifier = ancestor.getValue();
                 ProfileResourceNode node = resultHandlerDao.loadNode(ancestorId);
-                ResourceId parentId = getParentResourceId(node);
-                resultHandlerDao.deleteNode(node.getId());
                 File file = new File(node.getUri());
-                fileEventHandler.onEvent(file, parentId, null);
+                
+                // An archive nested in the ancestor can't be resumed without its parent,
+                // so only an ancestor which is the sole unfinished archive can resume:
+                final ArchiveCheckpoint checkpoint = ancestorCounts.get(ancestorId) == 1 
+                    && ancestorId.equals(identifier.getNodeId()) ? queueData.getCheckpoint(ancestorId) : null;
+                if (checkpoint == null || !resume(file, identifier, checkpoint)) {
+                    // Delete and re-submit the node as a new request
+                    ResourceId parentId = getParentResourceId(node);
+                    resultHandlerDao.deleteNode(node.getId());
+                    fileEventHandler.onEvent(file, parentId, null);
+                }
             }
         }
     }
+    
+    private boolean resume(File file, RequestIdentifier identifier, ArchiveCheckpoint checkpoint) {
+        boolean resumed = false;
+        try {
+            fileEventHandler.onResume(file, identifier, checkpoint);
+            resumed = true;
+        } catch (IOException e) {
+            log.warn(String.format("Could not resume the archive [%s] - it will be identified again: %s", 
+                    file.getAbsolutePath(), e.getMessage()));
+        }
+        return resumed;
+    }
 
     
     private ResourceId getParentResourceId(ProfileResourceNode node) {
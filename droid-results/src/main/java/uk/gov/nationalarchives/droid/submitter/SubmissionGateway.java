@@ -10,14 +10,16 @@ package uk.gov.nationalarchives.droid.submitter;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -29,21 +31,30 @@ import uk.gov.nationalarchives.droid.core.interfaces.IdentificationException;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResult;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultCollection;
+import uk.gov.nationalarchives.droid.core.interfaces.LazyIdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
 import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
 import uk.gov.nationalarchives.droid.core.interfaces.ResultHandler;
+import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveCheckpoint;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveFormatResolver;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveHandler;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveHandlerFactory;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.ContainerIdentifier;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.ContainerIdentifierFactory;
+import uk.gov.nationalarchives.droid.core.interfaces.archive.ResumableArchiveHandler;
 import uk.gov.nationalarchives.droid.core.interfaces.control.PauseBefore;
 import uk.gov.nationalarchives.droid.core.interfaces.hash.HashGenerator;
+import uk.gov.nationalarchives.droid.core.interfaces.hash.RunningHash;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
 
 /**
  * Acts as a DroidCore proxy by keeping track of in-flight identification
  * requests. Requests are removed from the queue when the droid ID task finishes
  * All requests should come through this pipeline.
+ * 
+ * <p/>If a post-process executor is set, requests which may be containers or archives 
+ * are handed to it once their binary signatures have been matched, so container 
+ * identification and archive expansion don't tie up the threads matching signatures.
  * @author rflitcroft
  * 
  *
@@ -66,6 +77,7 @@ public class SubmissionGateway implements AsynchDroid {
     private DroidCore droidCore;
     private ResultHandler resultHandler;
     private ExecutorService executorService;
+    private ExecutorService postProcessExecutorService;
     private boolean processArchives;
     private ArchiveFormatResolver archiveFormatResolver;
     private ArchiveFormatResolver containerFormatResolver;
@@ -80,7 +92,8 @@ public class SubmissionGateway implements AsynchDroid {
     private final JobCounter jobCounter = new JobCounter();
     private ReplaySubmitter replaySubmitter;
     
-    private Set<IdentificationRequest> requests = new HashSet<IdentificationRequest>();
+    private final Set<IdentificationRequest> requests = 
+        Collections.newSetFromMap(new ConcurrentHashMap<IdentificationRequest, Boolean>());
 
     
     /**
@@ -96,6 +109,9 @@ public class SubmissionGateway implements AsynchDroid {
         Callable<IdentificationResultCollection> callable = new Callable<IdentificationResultCollection>() {
             @Override
             public IdentificationResultCollection call() throws IOException {
+                if (request instanceof LazyIdentificationRequest) {
+                    ((LazyIdentificationRequest) request).open();
+                }
                 droidCore.setMaxBytesToScan(maxBytesToScan);
                 IdentificationResultCollection results = droidCore.matchBinarySignatures(request);
                 return results;
@@ -103,16 +119,48 @@ public class SubmissionGateway implements AsynchDroid {
         };
         
         FutureTask<IdentificationResultCollection> task = new SubmissionFutureTask(callable, request);
-        executorService.submit(task);
+        try {
+            executorService.submit(task);
+        } catch (RuntimeException e) {
+            finishRequest(request, false);
+            throw e;
+        }
         return task;
     }
     
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void resumeArchive(final IdentificationRequest request, final ArchiveCheckpoint checkpoint) {
+        jobCounter.incrementPostProcess();
+        requests.add(request);
+        Runnable resume = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    queueArchive(request.getIdentifier(), checkpoint.getArchiveFormat(), checkpoint);
+                    expandArchive(request, checkpoint.getArchiveFormat(), checkpoint);
+                } finally {
+                    closeRequest(request);
+                }
+            }
+        };
+        if (postProcessExecutorService != null) {
+            postProcessExecutorService.execute(resume);
+        } else {
+            executorService.execute(resume);
+        }
+    }
+    
     /**
      * {@inheritDoc}
      */
     @Override
     public void replay() {
-        replaySubmitter.replay();
+        if (replaySubmitter != null) {
+            replaySubmitter.replay();
+        }
     }
     
     private final class SubmissionFutureTask extends FutureTask<IdentificationResultCollection> {
@@ -127,28 +175,15 @@ public class SubmissionGateway implements AsynchDroid {
         @Override
         protected void done() {
             boolean jobCountDecremented = false;
+            boolean postProcessing = false;
             try {
                 generateHash(request);
                 IdentificationResultCollection results = get();
-                IdentificationResultCollection containerResults = handleContainer(request, results);
-                if (containerResults == null) {
-                    // no container results - process the normal results.
-                    droidCore.removeLowerPriorityHits(results);
-                    results = handleExtensions(request, results);
-                    
-                    // Are we processing archive formats?
-                    if (processArchives && archiveFormatResolver != null) {
-                        jobCountDecremented = handleArchive(request, results);
-                    } else { // just process the results so far:
-                        results.setArchive(getArchiveFormat(results) != null);
-                        ResourceId id = resultHandler.handle(results);
-                        request.getIdentifier().setResourceId(id);
-                    }
-                } else { // we have possible container formats:
-                    droidCore.removeLowerPriorityHits(containerResults);
-                    containerResults = handleExtensions(request, containerResults);
-                    ResourceId id = resultHandler.handle(containerResults);
-                    request.getIdentifier().setResourceId(id);
+                if (postProcessExecutorService != null && needsPostProcessing(results)) {
+                    postProcessExecutorService.execute(new PostProcessTask(request, results));
+                    postProcessing = true;
+                } else {
+                    jobCountDecremented = processResults(request, results);
                 }
             } catch (ExecutionException e) {
                 final Throwable cause = e.getCause();
@@ -157,39 +192,137 @@ public class SubmissionGateway implements AsynchDroid {
                         request, IdentificationErrorType.OTHER, cause));
             } catch (InterruptedException e) {
                 log.debug(e);
+            } catch (RejectedExecutionException e) {
+                log.debug(e);
             } catch (IOException e) {
                 resultHandler.handleError(new IdentificationException(
                         request, IdentificationErrorType.OTHER, e));
             } finally {
-                closeRequest();
-                if (!jobCountDecremented) {
-                    jobCounter.decrement();
+                if (!postProcessing) {
+                    finishRequest(request, jobCountDecremented);
                 }
             }
         }
+    }
+    
+    /**
+     * Identifies a possible container, or expands an archive, using the 
+     * post-process executor rather than the thread which matched the binary signatures.
+     */
+    private final class PostProcessTask implements Runnable {
+        
+        private final IdentificationRequest request;
+        private final IdentificationResultCollection results;
+        private final long queuedAt = System.currentTimeMillis();
+        
+        PostProcessTask(IdentificationRequest request, IdentificationResultCollection results) {
+            this.request = request;
+            this.results = results;
+        }
         
-        private void closeRequest() {
-            requests.remove(request);
+        @Override
+        public void run() {
+            final long startedAt = System.currentTimeMillis();
+            boolean jobCountDecremented = false;
             try {
-                request.close();
-            } catch (IOException e) {
-                log.error(String.format("Error closing request [%s]", request.getIdentifier().getUri()), e);
+                jobCountDecremented = processResults(request, results);
+            //CHECKSTYLE:OFF - an error here must not stop the post-process threads.
+            } catch (Exception e) {
+            //CHECKSTYLE:ON
+                log.error(e.getMessage(), e);
+                resultHandler.handleError(new IdentificationException(
+                        request, IdentificationErrorType.OTHER, e));
+            } finally {
+                finishRequest(request, jobCountDecremented);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Post-processed [%s] in %d ms, after waiting %d ms", 
+                        request.getIdentifier().getUri(), System.currentTimeMillis() - startedAt, 
+                        startedAt - queuedAt));
+            }
+        }
+    }
+    
+    private void finishRequest(IdentificationRequest request, boolean jobCountDecremented) {
+        closeRequest(request);
+        if (!jobCountDecremented) {
+            jobCounter.decrement();
+        }
+    }
+    
+    private void closeRequest(IdentificationRequest request) {
+        requests.remove(request);
+        try {
+            request.close();
+        } catch (IOException e) {
+            log.error(String.format("Error closing request [%s]", request.getIdentifier().getUri()), e);
+        }
+    }
+    
+    /*
+     * Works out whether the results could need container identification or 
+     * archive expansion.  Only the raw binary signature results are checked, 
+     * so requests which only look like an archive from their extension are 
+     * processed directly.
+     */
+    private boolean needsPostProcessing(IdentificationResultCollection results) {
+        return (containerFormatResolver != null && getContainerFormat(results) != null)
+            || (processArchives && archiveFormatResolver != null && getArchiveFormat(results) != null);
+    }
+    
+    /*
+     * Records the results of a request, identifying it as a container
+     * or expanding it as an archive if need be.  Returns whether the job
+     * count was already decremented for this request.
+     */
+    private boolean processResults(IdentificationRequest request, IdentificationResultCollection results)
+        throws IOException {
+        boolean jobCountDecremented = false;
+        IdentificationResultCollection containerResults = handleContainer(request, results);
+        if (containerResults == null) {
+            // no container results - process the normal results.
+            droidCore.removeLowerPriorityHits(results);
+            IdentificationResultCollection extensionResults = handleExtensions(request, results);
+            
+            // Are we processing archive formats?
+            if (processArchives && archiveFormatResolver != null) {
+                jobCountDecremented = handleArchive(request, extensionResults);
+            } else { // just process the results so far:
+                extensionResults.setArchive(getArchiveFormat(extensionResults) != null);
+                ResourceId id = resultHandler.handle(extensionResults);
+                request.getIdentifier().setResourceId(id);
             }
+        } else { // we have possible container formats:
+            droidCore.removeLowerPriorityHits(containerResults);
+            containerResults = handleExtensions(request, containerResults);
+            ResourceId id = resultHandler.handle(containerResults);
+            request.getIdentifier().setResourceId(id);
         }
+        return jobCountDecremented;
     }
     
     private void generateHash(IdentificationRequest request) throws IOException {
         if (generateHash) {
             try {
-                InputStream in = request.getSourceInputStream();
-                try {
-                    String hash = hashGenerator.hash(in);
-                    request.getRequestMetaData().setHash(hash);
-                } finally {
-                    if (in != null) {
-                        in.close();
+                final RequestMetaData metaData = request.getRequestMetaData();
+                final RunningHash runningHash = metaData.getRunningHash();
+                if (runningHash != null && runningHash.getBytesHashed() == request.size()) {
+                    // every byte was hashed while the request was read for identification.
+                    metaData.setHash(runningHash.getHash(null));
+                } else {
+                    InputStream in = request.getSourceInputStream();
+                    try {
+                        // only the bytes not already hashed are read again.
+                        String hash = runningHash == null ? hashGenerator.hash(in) : runningHash.getHash(in);
+                        metaData.setHash(hash);
+                    } finally {
+                        if (in != null) {
+                            in.close();
+                        }
                     }
                 }
+                metaData.setHashAlgorithm(hashGenerator.getAlgorithm());
+                metaData.setRunningHash(null);
             //CHECKSTYLE:OFF - generating a hash can't prejudice any other results
             } catch (Exception e) {
                 log.error(e);
@@ -246,28 +379,11 @@ public class SubmissionGateway implements AsynchDroid {
             if (identifier.getAncestorId() == null) {
                 identifier.setAncestorId(id.getId());
             }
-            submissionQueue.add(request.getIdentifier());
+            // Queue the archive before the job finishes, so a pause always saves it:
+            ArchiveCheckpoint checkpoint = queueArchive(identifier, archiveFormat, null);
             jobCounter.decrement();
             jobCountDecremented = true;
-            try {
-                ArchiveHandler handler = archiveHandlerFactory.getHandler(archiveFormat);
-                handler.handle(request);
-                // CHECKSTYLE:OFF
-            } catch (Exception e) {
-                // CHECKSTYLE:ON
-                String causeMessage = "";
-                if (e.getCause() != null) {
-                    causeMessage = e.getCause().getMessage();
-                }
-                final String message = String.format(ARCHIVE_ERROR, 
-                        archiveFormat, request.getIdentifier().getUri().toString(), e.getMessage(), causeMessage);
-                log.warn(message);
-                resultHandler.handleError(new IdentificationException(
-                        request, IdentificationErrorType.OTHER, e));
-            } finally {
-                submissionQueue.remove(request.getIdentifier());
-                jobCounter.decrementPostProcess();
-            }
+            expandArchive(request, archiveFormat, checkpoint);
         } else {
             ResourceId id = resultHandler.handle(results);
             request.getIdentifier().setNodeId(id.getId());
@@ -275,13 +391,66 @@ public class SubmissionGateway implements AsynchDroid {
         return jobCountDecremented;
     }
 
+    /*
+     * Adds an archive to the submission queue while it is expanded.  If its handler can
+     * resume, the archive is queued with a checkpoint of its progress, which is returned.
+     * Without a submission queue, nothing is recorded, as the archive can not be resumed.
+     */
+    private ArchiveCheckpoint queueArchive(RequestIdentifier identifier, String archiveFormat, 
+            ArchiveCheckpoint resumeFrom) {
+        ArchiveCheckpoint checkpoint = null;
+        if (archiveHandlerFactory.getHandler(archiveFormat) instanceof ResumableArchiveHandler) {
+            checkpoint = resumeFrom != null ? resumeFrom : new ArchiveCheckpoint(identifier.getNodeId(), archiveFormat);
+            if (submissionQueue != null) {
+                submissionQueue.add(identifier, checkpoint);
+            }
+        } else if (submissionQueue != null) {
+            submissionQueue.add(identifier);
+        }
+        return checkpoint;
+    }
+    
+    /*
+     * Expands a queued archive, from its checkpoint if it has one, removing it 
+     * from the queue when it is done.  The post-process count must be 
+     * incremented before this is called, and is decremented by it.
+     */
+    private void expandArchive(IdentificationRequest request, String archiveFormat, ArchiveCheckpoint checkpoint) {
+        final RequestIdentifier identifier = request.getIdentifier();
+        try {
+            ArchiveHandler handler = archiveHandlerFactory.getHandler(archiveFormat);
+            if (checkpoint != null) {
+                ((ResumableArchiveHandler) handler).handle(request, checkpoint);
+            } else {
+                handler.handle(request);
+            }
+            // CHECKSTYLE:OFF
+        } catch (Exception e) {
+            // CHECKSTYLE:ON
+            String causeMessage = "";
+            if (e.getCause() != null) {
+                causeMessage = e.getCause().getMessage();
+            }
+            final String message = String.format(ARCHIVE_ERROR, 
+                    archiveFormat, identifier.getUri().toString(), e.getMessage(), causeMessage);
+            log.warn(message);
+            resultHandler.handleError(new IdentificationException(
+                    request, IdentificationErrorType.OTHER, e));
+        } finally {
+            if (submissionQueue != null) {
+                submissionQueue.remove(identifier);
+            }
+            jobCounter.decrementPostProcess();
+        }
+    }
+
     private IdentificationResultCollection handleContainer(IdentificationRequest request, 
             IdentificationResultCollection results)
         throws IOException {
         // process a container format (ole2, odf, ooxml etc)
-        String containerFormat = getContainerFormat(results);
+        String containerFormat = containerFormatResolver == null ? null : getContainerFormat(results);
         try {
-            if (containerFormatResolver != null && containerFormat != null) {
+            if (containerFormat != null) {
                 ContainerIdentifier containerIdentifier = containerIdentifierFactory.getIdentifier(containerFormat);
                 containerIdentifier.setMaxBytesToScan(maxBytesToScan);
                 IdentificationResultCollection containerResults = containerIdentifier.submit(request);
@@ -392,6 +561,14 @@ public class SubmissionGateway implements AsynchDroid {
         this.executorService = executorService;
     }
     
+    /**
+     * @param postProcessExecutorService the executor which identifies containers and 
+     * expands archives.  If not set, this is done by the thread which matched the request.
+     */
+    public void setPostProcessExecutorService(ExecutorService postProcessExecutorService) {
+        this.postProcessExecutorService = postProcessExecutorService;
+    }
+    
     /**
      * @param processArchives the processArchives to set
      */
@@ -407,7 +584,8 @@ public class SubmissionGateway implements AsynchDroid {
     }
     
     /**
-     * @param submissionQueue the submissionQueue to set
+     * @param submissionQueue the queue archives are recorded in while they are expanded,
+     *        so they can be resumed, or null if results are not kept.
      */
     public void setSubmissionQueue(SubmissionQueue submissionQueue) {
         this.submissionQueue = submissionQueue;
@@ -419,11 +597,13 @@ public class SubmissionGateway implements AsynchDroid {
     @Override
     public void save() {
         resultHandler.commit(); // flush any remaining entities out to the database.
-        submissionQueue.save();
+        if (submissionQueue != null) {
+            submissionQueue.save();
+        }
     }
     
     /**
-     * @param replaySubmitter the replaySubmitter to set
+     * @param replaySubmitter the submitter which replays queued requests, or null if there is none.
      */
     public void setReplaySubmitter(ReplaySubmitter replaySubmitter) {
         this.replaySubmitter = replaySubmitter;
@@ -444,11 +624,14 @@ public class SubmissionGateway implements AsynchDroid {
     }
     
     /**
-     * Shuts down the executor service and closes any in-flight requests.
+     * Shuts down the executor services and closes any in-flight requests.
      * @throws IOException if temp files could not be deleted.
      */
     public void close() throws IOException {
         executorService.shutdownNow();
+        if (postProcessExecutorService != null) {
+            postProcessExecutorService.shutdownNow();
+        }
         for (IdentificationRequest request : requests) {
             request.close();
         }
@@ -9,6 +9,7 @@
 package uk.gov.nationalarchives.droid.submitter;
 
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveCheckpoint;
 
 
 
@@ -25,7 +26,15 @@ public interface SubmissionQueue {
     void add(RequestIdentifier request);
     
     /**
-     * Removes a request from the queue.
+     * Adds an archive to the queue, with a checkpoint recording its progress,
+     * which is saved with the queue.
+     * @param request the archive to add
+     * @param checkpoint the checkpoint of the archive
+     */
+    void add(RequestIdentifier request, ArchiveCheckpoint checkpoint);
+    
+    /**
+     * Removes a request from the queue, along with its checkpoint if it has one.
      * @param request the request to remove
      */
     void remove(RequestIdentifier request);
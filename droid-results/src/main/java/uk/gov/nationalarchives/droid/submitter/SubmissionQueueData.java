@@ -9,7 +9,9 @@
 package uk.gov.nationalarchives.droid.submitter;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -17,6 +19,7 @@ import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveCheckpoint;
 
 /**
  * @author rflitcroft
@@ -30,6 +33,9 @@ public class SubmissionQueueData {
     @XmlElement(name = "Resource")
     private List<RequestIdentifier> uris = new ArrayList<RequestIdentifier>();
     
+    @XmlElement(name = "Checkpoint")
+    private List<ArchiveCheckpoint> checkpoints = new ArrayList<ArchiveCheckpoint>();
+    
     /**
      * Default Constructor .
      */
@@ -43,12 +49,77 @@ public class SubmissionQueueData {
         uris.add(uri);
     }
     
+    /**
+     * 
+     * @param uri the URI of an archive to add
+     * @param checkpoint the checkpoint of the archive
+     */
+    public void add(RequestIdentifier uri, ArchiveCheckpoint checkpoint) {
+        uris.add(uri);
+        checkpoints.add(checkpoint);
+    }
+    
     /**
      * 
      * @param uri the URi to remove
      */
     public void remove(RequestIdentifier uri) {
         uris.remove(uri);
+        final Long nodeId = uri.getNodeId();
+        if (nodeId != null) {
+            for (Iterator<ArchiveCheckpoint> it = checkpoints.iterator(); it.hasNext();) {
+                if (nodeId.equals(it.next().getNodeId())) {
+                    it.remove();
+                    break;
+                }
+            }
+        }
+    }
+    
+    /**
+     * @return a copy of the queue data, with copies of the checkpoints as they stand.
+     */
+    SubmissionQueueData snapshot() {
+        final SubmissionQueueData snapshot = new SubmissionQueueData();
+        snapshot.uris.addAll(uris);
+        for (ArchiveCheckpoint checkpoint : checkpoints) {
+            snapshot.checkpoints.add(checkpoint.copy());
+        }
+        return snapshot;
+    }
+    
+    /**
+     * Adds a checkpoint, or replaces the checkpoint of the same archive.
+     * @param checkpoint the checkpoint to put
+     */
+    void putCheckpoint(ArchiveCheckpoint checkpoint) {
+        for (ListIterator<ArchiveCheckpoint> it = checkpoints.listIterator(); it.hasNext();) {
+            if (it.next().getNodeId().equals(checkpoint.getNodeId())) {
+                it.set(checkpoint);
+                return;
+            }
+        }
+        checkpoints.add(checkpoint);
+    }
+    
+    /**
+     * @return the checkpoints
+     */
+    List<ArchiveCheckpoint> getCheckpoints() {
+        return checkpoints;
+    }
+    
+    /**
+     * @param nodeId the node id of an archive
+     * @return the checkpoint of the archive, or null if it has none.
+     */
+    ArchiveCheckpoint getCheckpoint(Long nodeId) {
+        for (ArchiveCheckpoint checkpoint : checkpoints) {
+            if (checkpoint.getNodeId().equals(nodeId)) {
+                return checkpoint;
+            }
+        }
+        return null;
     }
     
     /**
@@ -0,0 +1,41 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.profile;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.interfaces.config.DroidGlobalConfig;
+
+public class ProfileContextLocatorTest {
+
+    @Test
+    public void testUnknownResultsStoreIsReportedBeforeTheProfileIsOpened() {
+        DroidGlobalConfig globalConfig = mock(DroidGlobalConfig.class);
+        ProfileInstanceLocator profileInstanceLocator = mock(ProfileInstanceLocator.class);
+        ProfileContextLocator locator = new ProfileContextLocator();
+        locator.setGlobalConfig(globalConfig);
+        locator.setProfileInstanceLocator(profileInstanceLocator);
+
+        ProfileInstance profile = new ProfileInstance(ProfileState.STOPPED);
+        profile.setUuid("profile1");
+        profile.setResultsStore("segmnets");
+        try {
+            locator.openProfileInstanceManager(profile);
+            fail("Expected the results store to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("[segmnets]"));
+        }
+        verifyZeroInteractions(profileInstanceLocator);
+    }
+}
@@ -10,6 +10,7 @@ package uk.gov.nationalarchives.droid.profile;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.net.URI;
 import java.util.Collection;
 import java.util.Collections;
@@ -22,6 +23,7 @@ import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.mock;
@@ -43,6 +45,7 @@ import uk.gov.nationalarchives.droid.core.interfaces.config.RuntimeConfig;
 import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileInfo;
 import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureType;
 import uk.gov.nationalarchives.droid.results.handlers.ProgressObserver;
+import uk.gov.nationalarchives.droid.results.handlers.StreamResultWriter.LineFormat;
 /**
  * @author rflitcroft
  *
@@ -57,6 +60,9 @@ public class ProfileManagerIntegrationTest {
     @Autowired
     private ProfileManager profileManager;
     
+    @Autowired
+    private ProfileContextLocator profileContextLocator;
+    
     @BeforeClass
     public static void setupFiles() throws IOException {
         RuntimeConfig.configureRuntimeEnvironment();
@@ -135,6 +141,24 @@ public class ProfileManagerIntegrationTest {
         
     }
 
+    @Test
+    public void testStreamResourcesWritesALineForEachFileWithoutAProfile() throws Exception {
+        File testFile = new File("test_sig_files/sample.pdf");
+        Map<SignatureType, SignatureFileInfo> signatureFiles = new HashMap<SignatureType, SignatureFileInfo>();
+        signatureFiles.put(SignatureType.BINARY, binarySignatureFileInfo);
+        signatureFiles.put(SignatureType.CONTAINER, containerSignatureFileInfo);
+        
+        StringWriter output = new StringWriter();
+        profileContextLocator.streamResources(signatureFiles, 
+                Collections.<AbstractProfileResource>singletonList(new FileProfileResource(testFile)),
+                output, LineFormat.CSV);
+        
+        String[] lines = output.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[1].contains("\"" + testFile.getAbsolutePath() + "\""));
+        assertTrue(lines[1].contains("\"application/pdf\""));
+    }
+
     @Test
     public void testStartProfileSpecPersistsJobsForEachFileInANonRecursiveDirResourceNode() throws Exception {
         try {
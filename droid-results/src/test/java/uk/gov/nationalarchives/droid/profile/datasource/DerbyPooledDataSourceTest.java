@@ -0,0 +1,103 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.profile.datasource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that profiles saved by an earlier version of DROID are upgraded when they are opened.
+ */
+public class DerbyPooledDataSourceTest {
+
+    private static final String URL = "jdbc:derby:memory:oldProfile";
+    private static final String SHA256_HASH = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+
+    private DerbyPooledDataSource dataSource;
+
+    @Before
+    public void setup() throws Exception {
+        Class.forName("org.apache.derby.jdbc.EmbeddedDriver");
+        dataSource = new DerbyPooledDataSource();
+        dataSource.setDriverClassName("org.apache.derby.jdbc.EmbeddedDriver");
+        dataSource.setUrl(URL);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        dataSource.close();
+        try {
+            DriverManager.getConnection(URL + ";drop=true");
+        } catch (SQLException e) {
+            // a dropped database always reports an exception.
+        }
+    }
+
+    @Test
+    public void testProfileSavedWithoutHashAlgorithmIsUpgradedToMd5() throws SQLException {
+        Connection connection = DriverManager.getConnection(URL + ";create=true");
+        try {
+            Statement statement = connection.createStatement();
+            statement.execute("create table profile_resource_node ("
+                + "node_id bigint not null primary key, uri varchar(4000) not null, "
+                + "name varchar(255) not null, hash varchar(32))");
+            statement.execute("insert into profile_resource_node values "
+                + "(1, 'file:/old.txt', 'old.txt', 'd41d8cd98f00b204e9800998ecf8427e')");
+            statement.close();
+        } finally {
+            connection.close();
+        }
+
+        dataSource.init();
+
+        connection = dataSource.getConnection();
+        try {
+            Statement statement = connection.createStatement();
+            statement.execute("insert into profile_resource_node (node_id, uri, name, hash, hash_algorithm) "
+                + "values (2, 'file:/new.txt', 'new.txt', '" + SHA256_HASH + "', 'SHA-256')");
+            ResultSet results = statement.executeQuery(
+                "select hash_algorithm, hash from profile_resource_node order by node_id");
+            assertTrue(results.next());
+            assertEquals("MD5", results.getString(1));
+            assertTrue(results.next());
+            assertEquals("SHA-256", results.getString(1));
+            assertEquals(SHA256_HASH, results.getString(2));
+            assertFalse(results.next());
+            statement.close();
+            connection.rollback();
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void testNewDatabaseIsLeftEmpty() throws SQLException {
+        dataSource.init();
+
+        Connection connection = dataSource.getConnection();
+        try {
+            ResultSet tables = connection.getMetaData().getTables(null, null, "PROFILE_RESOURCE_NODE", null);
+            assertFalse(tables.next());
+            tables.close();
+        } finally {
+            connection.close();
+        }
+    }
+}
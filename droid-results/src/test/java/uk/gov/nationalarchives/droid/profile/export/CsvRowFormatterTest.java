@@ -0,0 +1,90 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.profile.export;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
+import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+
+public class CsvRowFormatterTest {
+
+    private final CsvRowFormatter formatter = new CsvRowFormatter();
+
+    @Test
+    public void testNodeAndNodeRowAreLaidOutTheSame() throws IOException {
+        ProfileResourceNode node = new ProfileResourceNode(URI.create("zip:file:/a.zip!/b.txt"));
+        node.setId(2L);
+        node.setParentId(1L);
+        node.setExtensionMismatch(false);
+        node.getMetaData().setName("b.txt");
+        node.getMetaData().setExtension("txt");
+        node.getMetaData().setSize(100L);
+        node.getMetaData().setNodeStatus(NodeStatus.DONE);
+        node.getMetaData().setIdentificationMethod(IdentificationMethod.BINARY_SIGNATURE);
+        node.getMetaData().setResourceType(ResourceType.FILE);
+        node.getMetaData().setHash("say \"hi\"");
+        Format format = new Format();
+        format.setPuid("x-fmt/111");
+        format.setName("Plain Text File");
+        node.addFormatIdentification(format);
+
+        NodeRow row = new NodeRow();
+        row.setId(2L);
+        row.setParentId(1L);
+        row.setUri("zip:file:/a.zip!/b.txt");
+        row.setName("b.txt");
+        row.setExtension("txt");
+        row.setSize(100L);
+        row.setNodeStatus(NodeStatus.DONE);
+        row.setIdentificationMethod(IdentificationMethod.BINARY_SIGNATURE);
+        row.setResourceType(ResourceType.FILE);
+        row.setExtensionMismatch(false);
+        row.setHash("say \"hi\"");
+        row.setIdentificationCount(1);
+        row.setFormat("x-fmt/111", null, "Plain Text File", null);
+
+        formatter.startLine(node);
+        formatter.addFormat(format);
+        String[] nodeFields = formatter.getFields();
+        String nodeLine = line();
+        formatter.startLine(row);
+        formatter.addFormat(row);
+
+        assertArrayEquals(nodeFields, formatter.getFields());
+        assertEquals(nodeLine, line());
+        assertEquals("\"2\",\"1\",\"zip:file:/a.zip!/b.txt\",,\"b.txt\",\"Signature\",\"Done\",\"100\","
+            + "\"File\",\"txt\",\"\",\"false\",\"say \"\"hi\"\"\",\"1\",\"x-fmt/111\",,\"Plain Text File\",\n",
+            nodeLine);
+    }
+
+    @Test
+    public void testHeadersHaveTheColumnsOfOneIdentification() throws IOException {
+        formatter.startHeaders();
+        assertEquals(18, formatter.getFields().length);
+        assertArrayEquals(CsvRowFormatter.getHeaders(), formatter.getFields());
+        assertEquals("\"ID\",", line().substring(0, 5));
+    }
+
+    private String line() throws IOException {
+        StringWriter out = new StringWriter();
+        formatter.writeLine(out, "\n");
+        return out.toString();
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.profile.export;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
+import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
+import uk.gov.nationalarchives.droid.export.interfaces.JobCancellationException;
+
+public class JdbcNodeRowReaderTest {
+
+    private EmbeddedDataSource dataSource;
+    private JdbcNodeRowReader reader;
+
+    @Before
+    public void setup() throws SQLException {
+        dataSource = new EmbeddedDataSource();
+        dataSource.setDatabaseName("memory:JdbcNodeRowReaderTest");
+        dataSource.setCreateDatabase("create");
+        execute("create table format (puid varchar(255) not null primary key, "
+            + "mime_type varchar(255), name varchar(255), version varchar(255))");
+        execute("create table profile_resource_node (node_id bigint not null primary key, parent_id bigint, "
+            + "uri varchar(4000) not null, identification_count integer, extension_mismatch smallint not null, "
+            + "file_size bigint, last_modified_date timestamp, name varchar(255) not null, "
+            + "extension varchar(255), node_status integer, identification_method integer, "
+            + "resource_type integer not null, hash varchar(160))");
+        execute("create table identification (node_id bigint not null, puid varchar(255) not null, "
+            + "primary key (node_id, puid))");
+        execute("insert into format values ('', '', '', '')");
+        execute("insert into format values ('fmt/18', 'application/pdf', 'Acrobat PDF 1.4', '1.4')");
+        execute("insert into format values ('fmt/19', 'application/pdf', 'Acrobat PDF 1.5', '1.5')");
+        execute("insert into profile_resource_node values (2, 1, 'file:/dir/b.pdf', 2, 0, 100, null, "
+            + "'b.pdf', 'pdf', 1, 1, 2, null)");
+        execute("insert into profile_resource_node values (1, null, 'file:/dir', null, 0, null, null, "
+            + "'dir', '', 1, null, 0, null)");
+        execute("insert into profile_resource_node values (3, 1, 'file:/dir/c.txt', 0, 0, 10, null, "
+            + "'c.txt', 'txt', 1, 0, 2, null)");
+        execute("insert into identification values (2, 'fmt/18')");
+        execute("insert into identification values (2, 'fmt/19')");
+        execute("insert into identification values (3, '')");
+
+        reader = new JdbcNodeRowReader();
+        reader.setDataSource(dataSource);
+        reader.setFetchSize(2);
+    }
+
+    @After
+    public void tearDown() {
+        EmbeddedDataSource drop = new EmbeddedDataSource();
+        drop.setDatabaseName("memory:JdbcNodeRowReaderTest");
+        drop.setConnectionAttributes("drop=true");
+        try {
+            drop.getConnection();
+        } catch (SQLException e) {
+            // a dropped database always reports an exception.
+        }
+    }
+
+    @Test
+    public void testRowsAreReadInNodeOrderWithOneRowPerFormat() throws JobCancellationException {
+        final List<String> rows = new ArrayList<String>();
+        reader.readAll(null, new NodeRowCallback() {
+            @Override
+            public void onRow(NodeRow row) {
+                rows.add(row.getId() + ":" + row.getPuid() + ":" + row.isIdentified());
+            }
+        });
+
+        assertEquals(4, rows.size());
+        assertEquals("1:null:false", rows.get(0));
+        assertTrue(rows.contains("2:fmt/18:true"));
+        assertTrue(rows.contains("2:fmt/19:true"));
+        assertEquals("3:null:true", rows.get(3));
+    }
+
+    @Test
+    public void testColumnsAreReadIntoTheRow() throws JobCancellationException {
+        final List<NodeRow> rows = new ArrayList<NodeRow>();
+        reader.readAll(null, new NodeRowCallback() {
+            @Override
+            public void onRow(NodeRow row) {
+                if (row.getId() == 2L && "fmt/18".equals(row.getPuid())) {
+                    assertEquals(Long.valueOf(1), row.getParentId());
+                    assertEquals("file:/dir/b.pdf", row.getUri());
+                    assertEquals("b.pdf", row.getName());
+                    assertEquals(IdentificationMethod.values()[1], row.getIdentificationMethod());
+                    assertEquals(NodeStatus.DONE, row.getNodeStatus());
+                    assertEquals(Long.valueOf(100), row.getSize());
+                    assertEquals(ResourceType.FILE, row.getResourceType());
+                    assertFalse(row.getExtensionMismatch());
+                    assertEquals(Integer.valueOf(2), row.getIdentificationCount());
+                    assertEquals("application/pdf", row.getMimeType());
+                    assertEquals("Acrobat PDF 1.4", row.getFormatName());
+                    assertEquals("1.4", row.getFormatVersion());
+                    rows.add(row);
+                } else if (row.getId() == 1L) {
+                    assertNull(row.getParentId());
+                    assertNull(row.getSize());
+                    assertNull(row.getIdentificationMethod());
+                    assertNull(row.getIdentificationCount());
+                    assertEquals(ResourceType.FOLDER, row.getResourceType());
+                }
+            }
+        });
+        assertEquals(1, rows.size());
+    }
+
+    @Test(expected = JobCancellationException.class)
+    public void testCancellationStopsTheRead() throws JobCancellationException {
+        reader.readAll(null, new NodeRowCallback() {
+            @Override
+            public void onRow(NodeRow row) throws JobCancellationException {
+                throw new JobCancellationException("Cancelled");
+            }
+        });
+    }
+
+    private void execute(String sql) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            Statement statement = connection.createStatement();
+            statement.execute(sql);
+            statement.close();
+        } finally {
+            connection.close();
+        }
+    }
+}
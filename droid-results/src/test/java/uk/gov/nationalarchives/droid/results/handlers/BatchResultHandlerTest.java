@@ -0,0 +1,167 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.handlers;
+
+import java.net.URI;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResult;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultCollection;
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+
+public class BatchResultHandlerTest {
+
+    private EmbeddedDataSource dataSource;
+    private EmbeddedDataSource formatSource;
+    private JdbcResultWriter writer;
+    private ProgressMonitor progressMonitor;
+    private BatchResultHandler resultHandler;
+
+    @Before
+    public void setup() throws SQLException {
+        dataSource = JdbcResultWriterTest.createDatabase("BatchResultHandlerTest");
+        execute("insert into format values ('', '', '', '')");
+        execute("insert into format values ('fmt/18', 'application/pdf', 'Acrobat PDF 1.4', '1.4')");
+        execute("insert into profile_resource_node (node_id, uri, prefix, prefix_plus_one, extension_mismatch, "
+                + "name, resource_type) values (41, 'file:/old.txt', 'p', 'q', 0, 'old.txt', 0)");
+
+        writer = new JdbcResultWriter();
+        writer.setDataSource(dataSource);
+        progressMonitor = mock(ProgressMonitor.class);
+
+        resultHandler = new BatchResultHandler();
+        FormatCache formatCache = new FormatCache();
+        formatSource = spy(dataSource);
+        formatCache.setDataSource(formatSource);
+        resultHandler.setFormatCache(formatCache);
+        resultHandler.setResultWriter(writer);
+        resultHandler.setProgressMonitor(progressMonitor);
+        resultHandler.init();
+    }
+
+    @After
+    public void tearDown() {
+        resultHandler.close();
+        JdbcResultWriterTest.dropDatabase("BatchResultHandlerTest");
+    }
+
+    @Test
+    public void testResultsAreWrittenWithIdsAfterTheHighestInTheDatabase() throws SQLException {
+        ResourceId parentId = resultHandler.handle(newResults("parent.zip", "fmt/18", null));
+        ResourceId childId = resultHandler.handle(newResults("child.pdf", "fmt/18", parentId));
+        resultHandler.commit();
+
+        assertEquals(42L, parentId.getId());
+        assertEquals(43L, childId.getId());
+        assertTrue(childId.getPath().startsWith(parentId.getPath()));
+        assertEquals(3, count("select count(*) from profile_resource_node"));
+        assertEquals(2, count("select count(*) from identification where puid = 'fmt/18'"));
+        assertEquals(42, count("select parent_id from profile_resource_node where node_id = 43"));
+        verify(progressMonitor, times(2)).stopJob(any(ProfileResourceNode.class));
+    }
+
+    @Test
+    public void testFormatsAreReadOnceAndShared() {
+        Format format = resultHandler.loadFormat("fmt/18");
+        assertEquals("Acrobat PDF 1.4", format.getName());
+        assertEquals("application/pdf", format.getMimeType());
+        assertSame(format, resultHandler.loadFormat("fmt/18"));
+        assertSame(Format.NULL, resultHandler.loadFormat(""));
+    }
+
+    @Test
+    public void testFormatAddedAfterTheCacheWasLoadedIsFound() throws SQLException {
+        resultHandler.loadFormat("fmt/18");
+        execute("insert into format values ('x-fmt/111', 'text/plain', 'Plain Text File', '')");
+        assertEquals("Plain Text File", resultHandler.loadFormat("x-fmt/111").getName());
+    }
+
+    @Test
+    public void testUnknownPuidIsLookedUpOnceAndNotWritten() throws SQLException {
+        assertNull(resultHandler.loadFormat("fmt/999"));
+        ResourceId nodeId = resultHandler.handle(newResults("unknown.dat", "fmt/999", null));
+        resultHandler.handle(newResults("unknown2.dat", "fmt/999", null));
+        resultHandler.commit();
+
+        // once to read the format table, and once to look for the puid:
+        verify(formatSource, times(2)).getConnection();
+        assertEquals(3, count("select count(*) from profile_resource_node"));
+        assertEquals(0, count("select count(*) from identification where puid = 'fmt/999'"));
+        assertEquals(1, count("select count(*) from identification where puid = '' and node_id = "
+                + nodeId.getId()));
+        assertEquals(0, count("select identification_count from profile_resource_node where node_id = "
+                + nodeId.getId()));
+    }
+
+    private static IdentificationResultCollection newResults(String name, String puid, ResourceId parentId) {
+        RequestIdentifier identifier = new RequestIdentifier(URI.create("file:/dir/" + name));
+        identifier.setParentResourceId(parentId);
+        IdentificationRequest request = mock(IdentificationRequest.class);
+        when(request.getIdentifier()).thenReturn(identifier);
+
+        IdentificationResultCollection results = new IdentificationResultCollection(request);
+        results.setRequestMetaData(new RequestMetaData(100L, 0L, name));
+        results.setFileLength(100L);
+        IdentificationResult result = mock(IdentificationResult.class);
+        when(result.getPuid()).thenReturn(puid);
+        when(result.getMethod()).thenReturn(IdentificationMethod.BINARY_SIGNATURE);
+        results.addResult(result);
+        return results;
+    }
+
+    private void execute(String sql) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            Statement statement = connection.createStatement();
+            statement.execute(sql);
+            statement.close();
+        } finally {
+            connection.close();
+        }
+    }
+
+    private long count(String sql) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            Statement statement = connection.createStatement();
+            ResultSet results = statement.executeQuery(sql);
+            results.next();
+            long value = results.getLong(1);
+            statement.close();
+            return value;
+        } finally {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.handlers;
+
+import java.net.URI;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
+import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+
+public class JdbcResultWriterTest {
+
+    private EmbeddedDataSource dataSource;
+    private JdbcResultWriter writer;
+
+    @Before
+    public void setup() throws SQLException {
+        dataSource = createDatabase("JdbcResultWriterTest");
+        writer = new JdbcResultWriter();
+        writer.setDataSource(dataSource);
+        writer.setBatchSize(3);
+        writer.setQueueCapacity(5);
+        writer.start();
+    }
+
+    @After
+    public void tearDown() {
+        writer.close();
+        dropDatabase("JdbcResultWriterTest");
+    }
+
+    @Test
+    public void testNodesAndIdentificationsAreInsertedInBatches() throws SQLException {
+        Format pdf = new Format();
+        pdf.setPuid("fmt/18");
+        for (long id = 1; id <= 10; id++) {
+            ProfileResourceNode node = newNode(id, id == 1 ? null : 1L);
+            if (id % 2 == 0) {
+                node.addFormatIdentification(pdf);
+            }
+            writer.insert(node);
+        }
+        writer.flush();
+
+        assertEquals(10, count("select count(*) from profile_resource_node"));
+        assertEquals(5, count("select count(*) from identification where puid = 'fmt/18'"));
+        assertEquals(10, count("select count(*) from identification where puid = ''"));
+        assertEquals(9, count("select count(*) from profile_resource_node where parent_id = 1"));
+        assertEquals(NodeStatus.DONE.ordinal(),
+                count("select node_status from profile_resource_node where node_id = 4"));
+        assertEquals(1, count("select identification_count from profile_resource_node where node_id = 4"));
+    }
+
+    @Test
+    public void testStatusUpdateIsAppliedAfterTheInsertQueuedBeforeIt() throws SQLException {
+        writer.insert(newNode(1, null));
+        writer.updateStatus(1L, NodeStatus.ERROR);
+        writer.flush();
+
+        assertEquals(NodeStatus.ERROR.ordinal(),
+                count("select node_status from profile_resource_node where node_id = 1"));
+    }
+
+    @Test
+    public void testDeleteRemovesNodeAndDescendants() throws SQLException {
+        ProfileResourceNode parent = newNode(1, null);
+        ProfileResourceNode child = newNode(2, 1L);
+        child.setPrefix(parent.getPrefix() + child.getPrefix());
+        child.setPrefixPlusOne(parent.getPrefix() + child.getPrefixPlusOne());
+        writer.insert(parent);
+        writer.insert(child);
+        writer.insert(newNode(3, null));
+        writer.delete(1L);
+        writer.flush();
+
+        assertEquals(1, count("select count(*) from profile_resource_node"));
+        assertEquals(1, count("select count(*) from identification"));
+        assertEquals(3, count("select node_id from profile_resource_node"));
+    }
+
+    @Test
+    public void testFailedWriteIsReportedAndTheRestOfItsGroupIsKept() throws SQLException {
+        writer.insert(newNode(1, null));
+        writer.flush();
+        writer.insert(newNode(1, null));
+        writer.insert(newNode(2, null));
+        try {
+            writer.flush();
+            fail("Expected the duplicate node to be reported");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("node [1]"));
+        }
+        assertEquals(2, count("select count(*) from profile_resource_node"));
+        assertEquals(1, writer.getWritesFailed());
+
+        writer.insert(newNode(3, null));
+        writer.flush();
+        assertEquals(3, count("select count(*) from profile_resource_node"));
+    }
+
+    @Test
+    public void testWriteWhichThrowsIsReportedAndDoesNotStopTheWriter() throws SQLException {
+        ProfileResourceNode broken = newNode(1, null);
+        broken.setMetaData(null);
+        writer.insert(broken);
+        try {
+            writer.flush();
+            fail("Expected the broken node to be reported");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof NullPointerException);
+        }
+
+        writer.insert(newNode(2, null));
+        writer.flush();
+        assertEquals(1, count("select count(*) from profile_resource_node"));
+    }
+
+    @Test
+    public void testFailureIsReportedOnClose() throws SQLException {
+        writer.insert(newNode(1, null));
+        writer.flush();
+        writer.insert(newNode(1, null));
+        try {
+            writer.close();
+            fail("Expected the duplicate node to be reported");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("node [1]"));
+        }
+        writer.close();
+    }
+
+    @Test
+    public void testFullBatchIsCommittedWithoutWaitingForTheCommitDelay() throws Exception {
+        restartWriter(3, 60000);
+        for (long id = 1; id <= 3; id++) {
+            writer.insert(newNode(id, null));
+        }
+
+        awaitCount(3);
+        assertEquals(1, writer.getCommits());
+    }
+
+    @Test
+    public void testPartBatchIsCommittedOnceTheCommitDelayHasPassed() throws Exception {
+        restartWriter(1000, 50);
+        writer.insert(newNode(1, null));
+        writer.insert(newNode(2, null));
+
+        awaitCount(2);
+    }
+
+    @Test
+    public void testFlushDoesNotWaitForTheCommitDelay() throws SQLException {
+        restartWriter(1000, 60000);
+        long started = System.currentTimeMillis();
+        writer.insert(newNode(1, null));
+        writer.flush();
+
+        assertTrue(System.currentTimeMillis() - started < 30000);
+        assertEquals(1, count("select count(*) from profile_resource_node"));
+    }
+
+    @Test
+    public void testMetricsCountCommittedRowsAndTransactions() {
+        for (long id = 1; id <= 7; id++) {
+            writer.insert(newNode(id, null));
+        }
+        writer.updateStatus(1L, NodeStatus.ERROR);
+        writer.flush();
+
+        assertEquals(7, writer.getRowsCommitted());
+        assertTrue(writer.getCommits() >= 3);
+        assertEquals(0, writer.getQueueDepth());
+        assertTrue(writer.getAverageCommitMillis() > 0);
+        assertTrue(writer.getLastCommitMillis() > 0);
+        assertTrue(writer.getRowsPerSecond() > 0);
+    }
+
+    private void restartWriter(int batchSize, long maxCommitDelay) {
+        writer.close();
+        writer = new JdbcResultWriter();
+        writer.setDataSource(dataSource);
+        writer.setBatchSize(batchSize);
+        writer.setMaxCommitDelay(maxCommitDelay);
+        writer.start();
+    }
+
+    private void awaitCount(long nodes) throws Exception {
+        long giveUp = System.currentTimeMillis() + 30000;
+        while (count("select count(*) from profile_resource_node") < nodes) {
+            assertTrue("Nodes were not committed", System.currentTimeMillis() < giveUp);
+            Thread.sleep(10);
+        }
+        assertEquals(nodes, count("select count(*) from profile_resource_node"));
+    }
+
+    private static ProfileResourceNode newNode(long id, Long parentId) {
+        ProfileResourceNode node = new ProfileResourceNode(URI.create("file:/dir/file" + id + ".txt"));
+        node.setId(id);
+        node.setParentId(parentId);
+        node.setPrefix(String.valueOf((char) ('A' + id)));
+        node.setPrefixPlusOne(String.valueOf((char) ('A' + id + 1)));
+        node.setFinished(new Date());
+        node.setExtensionMismatch(false);
+        node.getMetaData().setName("file" + id + ".txt");
+        node.getMetaData().setExtension("txt");
+        node.getMetaData().setSize(id * 100);
+        node.getMetaData().setLastModified(System.currentTimeMillis());
+        node.getMetaData().setNodeStatus(NodeStatus.DONE);
+        node.getMetaData().setIdentificationMethod(IdentificationMethod.BINARY_SIGNATURE);
+        node.getMetaData().setResourceType(ResourceType.FILE);
+        node.setZeroIdentifications();
+        node.addFormatIdentification(Format.NULL);
+        return node;
+    }
+
+    private long count(String sql) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            Statement statement = connection.createStatement();
+            ResultSet results = statement.executeQuery(sql);
+            assertTrue(results.next());
+            long value = results.getLong(1);
+            assertFalse(results.next());
+            statement.close();
+            return value;
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Creates an in-memory database with the tables the results are written to.
+     */
+    static EmbeddedDataSource createDatabase(String name) throws SQLException {
+        EmbeddedDataSource dataSource = new EmbeddedDataSource();
+        dataSource.setDatabaseName("memory:" + name);
+        dataSource.setCreateDatabase("create");
+        Connection connection = dataSource.getConnection();
+        try {
+            Statement statement = connection.createStatement();
+            statement.execute("create table format (puid varchar(255) not null primary key, "
+                + "mime_type varchar(255), name varchar(255), version varchar(255))");
+            statement.execute("create table profile_resource_node ("
+                + "node_id bigint generated by default as identity primary key, parent_id bigint, "
+                + "uri varchar(4000) not null, prefix varchar(255), prefix_plus_one varchar(255), "
+                + "identification_count integer, finished_timestamp timestamp, extension_mismatch smallint not null, "
+                + "text_encoding integer, file_size bigint, last_modified_date timestamp, "
+                + "name varchar(255) not null, extension varchar(255), node_status integer, "
+                + "identification_method integer, resource_type integer not null, "
+                + "hash varchar(160), hash_algorithm varchar(32))");
+            statement.execute("create table identification (node_id bigint not null, puid varchar(255) not null, "
+                + "primary key (node_id, puid))");
+            statement.close();
+        } finally {
+            connection.close();
+        }
+        return dataSource;
+    }
+
+    static void dropDatabase(String name) {
+        EmbeddedDataSource dataSource = new EmbeddedDataSource();
+        dataSource.setDatabaseName("memory:" + name);
+        dataSource.setConnectionAttributes("drop=true");
+        try {
+            dataSource.getConnection();
+        } catch (SQLException e) {
+            // a dropped database always reports an exception.
+        }
+    }
+}
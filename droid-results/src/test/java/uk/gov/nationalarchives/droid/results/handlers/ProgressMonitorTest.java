@@ -8,18 +8,24 @@
  */
 package uk.gov.nationalarchives.droid.results.handlers;
 
+import java.net.URI;
 import java.util.concurrent.CountDownLatch;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.atMost;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.ProfileResultObserver;
+
 /**
  * @author rflitcroft
  *
@@ -124,6 +130,84 @@ public class ProgressMonitorTest {
         }
     }
     
+    @Test
+    public void testJobsStoppedFromMultipleThreadsAreAllCounted() throws InterruptedException {
+        
+        final int threadCount = 20;
+        final int jobCount = 100;
+        progressMonitor.setTargetCount(threadCount * jobCount);
+        ProfileResultObserver resultObserver = mock(ProfileResultObserver.class);
+        progressMonitor.setResultObserver(resultObserver);
+        
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch stopLatch = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            final int threadNumber = i;
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                        for (int j = 0; j < jobCount; j++) {
+                            URI uri = URI.create("file:/thread" + threadNumber + "/file" + j);
+                            progressMonitor.startJob(uri);
+                            progressMonitor.stopJob(new ProfileResourceNode(uri));
+                        }
+                    } catch (InterruptedException e) {
+                    }
+                    stopLatch.countDown();
+                }
+            } .start();
+        }
+        
+        startLatch.countDown();
+        stopLatch.await();
+        
+        assertEquals(threadCount * jobCount, progressMonitor.getIdentificationCount());
+        assertEquals(100, progressMonitor.getProgressPercentage());
+        verify(resultObserver, times(threadCount * jobCount)).onResult(any(ProfileResourceNode.class));
+    }
+    
+    @Test
+    public void testFinalProgressIsNotifiedWhenReachedWhileAnotherThreadIsNotifying() throws InterruptedException {
+        
+        final Thread finisher = new Thread() {
+            @Override
+            public void run() {
+                progressMonitor.increment();
+            }
+        };
+        progressMonitor = new ProgressMonitorImpl() {
+            private boolean finishing;
+            
+            @Override
+            public int getProgressPercentage() {
+                final int progress = super.getProgressPercentage();
+                // finish while the first thread holds the notify lock, with a throttled progress.
+                if (progress == 66 && !finishing) {
+                    finishing = true;
+                    finisher.start();
+                    try {
+                        finisher.join();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return progress;
+            }
+        };
+        ProgressObserver observer = mock(ProgressObserver.class);
+        progressMonitor.setTargetCount(3);
+        progressMonitor.setPercentIncrementObserver(observer);
+        
+        progressMonitor.increment();
+        progressMonitor.increment();
+        
+        assertEquals(100, progressMonitor.getProgressPercentage());
+        verify(observer).onProgress(33);
+        verify(observer).onProgress(100);
+    }
+    
     private final class LatchedThread extends Thread {
         
         private CountDownLatch start;
@@ -0,0 +1,129 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.handlers;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.net.URI;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationErrorType;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationException;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResult;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultCollection;
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.results.handlers.StreamResultWriter.LineFormat;
+
+/**
+ * Checks that results are written as lines as soon as they are handled,
+ * with formats read from the signature file.
+ */
+public class StreamResultWriterTest {
+
+    private StringWriter output;
+    private StreamResultWriter writer;
+    private ProgressMonitor progressMonitor;
+    private BatchResultHandler resultHandler;
+
+    @Before
+    public void setup() {
+        output = new StringWriter();
+        writer = new StreamResultWriter();
+        writer.setOutput(output);
+        progressMonitor = mock(ProgressMonitor.class);
+
+        resultHandler = new BatchResultHandler();
+        FormatCache formatCache = new FormatCache();
+        formatCache.setSignatureFile("test_sig_files/DROID_SignatureFile_V26.xml");
+        resultHandler.setFormatCache(formatCache);
+        resultHandler.setResultWriter(writer);
+        resultHandler.setProgressMonitor(progressMonitor);
+    }
+
+    @Test
+    public void testResultsAreWrittenAsCsvLines() {
+        resultHandler.init();
+        ResourceId parentId = resultHandler.handle(newResults("parent \"1\".zip", "fmt/18", null));
+        resultHandler.handle(newResults("child.pdf", "fmt/18", parentId));
+        resultHandler.close();
+
+        String[] lines = output.toString().split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("\"ID\",\"PARENT_ID\",\"URI\""));
+        assertTrue(lines[1].startsWith("\"0\",\"\",\"file:/dir/parent%20%221%22.zip\""));
+        assertTrue(lines[1].contains(",\"parent \"\"1\"\".zip\","));
+        assertTrue(lines[2].startsWith("\"1\",\"0\","));
+        assertTrue(lines[2].endsWith(",\"1\",\"fmt/18\",\"application/pdf\","
+                + "\"Acrobat PDF 1.4 - Portable Document Format\",\"1.4\""));
+        verify(progressMonitor, times(2)).stopJob(any(ProfileResourceNode.class));
+    }
+
+    @Test
+    public void testResultsAreWrittenAsJsonLines() {
+        writer.setFormat(LineFormat.JSON);
+        resultHandler.init();
+        resultHandler.handle(newResults("a \"b\"\tc.pdf", "fmt/18", null));
+        resultHandler.commit();
+
+        String line = output.toString();
+        assertTrue(line.endsWith("}\n"));
+        assertEquals(1, line.split("\n").length);
+        assertTrue(line.startsWith("{\"id\":0,\"parentId\":null,\"uri\":"));
+        assertTrue(line.contains("\"name\":\"a \\\"b\\\"\\u0009c.pdf\""));
+        assertTrue(line.contains("\"size\":100,"));
+        assertTrue(line.contains("\"formats\":[{\"puid\":\"fmt/18\",\"mimeType\":\"application/pdf\","));
+    }
+
+    @Test
+    public void testErrorOnWrittenNodeIsReportedWithoutReadingItBack() {
+        resultHandler.init();
+        ResourceId id = resultHandler.handle(newResults("archive.zip", "fmt/18", null));
+
+        IdentificationRequest request = mock(IdentificationRequest.class);
+        RequestIdentifier identifier = new RequestIdentifier(URI.create("file:/dir/archive.zip"));
+        identifier.setNodeId(id.getId());
+        when(request.getIdentifier()).thenReturn(identifier);
+        resultHandler.handleError(new IdentificationException(request, IdentificationErrorType.OTHER, new Exception()));
+        resultHandler.close();
+
+        assertEquals(2, output.toString().split("\n").length);
+        verify(progressMonitor, times(2)).stopJob(any(ProfileResourceNode.class));
+    }
+
+    private static IdentificationResultCollection newResults(String name, String puid, ResourceId parentId) {
+        RequestIdentifier identifier = new RequestIdentifier(new File("/dir/" + name).toURI());
+        identifier.setParentResourceId(parentId);
+        IdentificationRequest request = mock(IdentificationRequest.class);
+        when(request.getIdentifier()).thenReturn(identifier);
+
+        IdentificationResultCollection results = new IdentificationResultCollection(request);
+        results.setRequestMetaData(new RequestMetaData(100L, 0L, name));
+        results.setFileLength(100L);
+        IdentificationResult result = mock(IdentificationResult.class);
+        when(result.getPuid()).thenReturn(puid);
+        when(result.getMethod()).thenReturn(IdentificationMethod.BINARY_SIGNATURE);
+        results.addResult(result);
+        return results;
+    }
+}
@@ -0,0 +1,237 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.segments;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
+import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+import uk.gov.nationalarchives.droid.results.handlers.FormatCache;
+
+public class NodeSegmentStoreTest {
+
+    private File directory;
+    private FormatCache formatCache;
+    private NodeSegmentStore store;
+
+    @Before
+    public void setup() throws IOException {
+        directory = new File("tmp/segments-test");
+        FileUtils.deleteDirectory(directory);
+        formatCache = mock(FormatCache.class);
+        when(formatCache.get("fmt/18")).thenReturn(newFormat("fmt/18", "Acrobat PDF 1.4", "application/pdf"));
+        when(formatCache.get("x-fmt/111")).thenReturn(newFormat("x-fmt/111", "Plain Text File", "text/plain"));
+        store = openStore();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testNodesAreReadBackAsTheyWereWritten() throws IOException {
+        ProfileResourceNode folder = newNode(1, null, ResourceType.FOLDER);
+        ProfileResourceNode file = newNode(2, 1L, ResourceType.FILE);
+        file.addFormatIdentification(formatCache.get("fmt/18"));
+        file.getMetaData().setHash("0123456789abcdef");
+        file.getMetaData().setHashAlgorithm("md5");
+        store.append(folder);
+        store.append(file);
+        store.close();
+        store = openStore();
+
+        ProfileResourceNode read = store.loadNode(2L);
+        assertEquals(file.getUri(), read.getUri());
+        assertEquals(Long.valueOf(1), read.getParentId());
+        assertEquals(file.getPrefix(), read.getPrefix());
+        assertEquals(file.getPrefixPlusOne(), read.getPrefixPlusOne());
+        assertEquals(file.getMetaData().getName(), read.getMetaData().getName());
+        assertEquals(file.getMetaData().getExtension(), read.getMetaData().getExtension());
+        assertEquals(file.getMetaData().getSize(), read.getMetaData().getSize());
+        assertEquals(file.getMetaData().getLastModifiedDate(), read.getMetaData().getLastModifiedDate());
+        assertEquals(file.getFinished(), read.getFinished());
+        assertEquals(NodeStatus.DONE, read.getMetaData().getNodeStatus());
+        assertEquals(IdentificationMethod.BINARY_SIGNATURE, read.getMetaData().getIdentificationMethod());
+        assertEquals(ResourceType.FILE, read.getMetaData().getResourceType());
+        assertEquals("0123456789abcdef", read.getMetaData().getHash());
+        assertEquals("md5", read.getMetaData().getHashAlgorithm());
+        assertEquals(Integer.valueOf(1), read.getIdentificationCount());
+        assertEquals(2, read.getFormatIdentifications().size());
+        assertEquals("Acrobat PDF 1.4", read.getFormatIdentifications().get(1).getName());
+        assertEquals(Long.valueOf(2), store.getMaxNodeId());
+    }
+
+    @Test
+    public void testFullSegmentsAreSealedAndTheOpenSegmentIsReloaded() throws IOException {
+        for (long id = 1; id <= 10; id++) {
+            store.append(newNode(id, null, ResourceType.FILE));
+        }
+        assertEquals(2, directory.listFiles(new SegmentFilter()).length);
+        store.close();
+        assertEquals(3, directory.listFiles(new SegmentFilter()).length);
+
+        store = openStore();
+        for (long id = 11; id <= 12; id++) {
+            store.append(newNode(id, null, ResourceType.FILE));
+        }
+        assertEquals(12, readAll().size());
+        store.close();
+        assertEquals(3, directory.listFiles(new SegmentFilter()).length);
+
+        store = openStore();
+        List<ProfileResourceNode> nodes = readAll();
+        assertEquals(12, nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            assertEquals(Long.valueOf(i + 1), nodes.get(i).getId());
+        }
+    }
+
+    @Test
+    public void testStatusUpdatesAndDeletionsSurviveReopening() throws IOException {
+        ProfileResourceNode parent = newNode(1, null, ResourceType.FOLDER);
+        ProfileResourceNode child = newNode(2, 1L, ResourceType.FILE);
+        child.setPrefix(parent.getPrefix() + child.getPrefix());
+        child.setPrefixPlusOne(parent.getPrefix() + child.getPrefixPlusOne());
+        store.append(parent);
+        store.append(child);
+        store.append(newNode(3, null, ResourceType.FILE));
+        store.updateStatus(3L, NodeStatus.ERROR);
+        store.delete(1L);
+        store.close();
+
+        store = openStore();
+        assertNull(store.loadNode(1L));
+        assertNull(store.loadNode(2L));
+        assertEquals(NodeStatus.ERROR, store.loadNode(3L).getMetaData().getNodeStatus());
+        assertEquals(1, readAll().size());
+    }
+
+    @Test
+    public void testDeletedNodeIdCanBeReused() {
+        store.append(newNode(1, null, ResourceType.FILE));
+        store.delete(1L);
+        ProfileResourceNode replacement = newNode(2, null, ResourceType.FILE);
+        replacement.setPrefix(newNode(1, null, ResourceType.FILE).getPrefix());
+        store.append(replacement);
+
+        assertEquals(Long.valueOf(2), store.loadNode(2L).getId());
+    }
+
+    @Test
+    public void testFindChildrenOnlyFindsChildrenOfTheParent() {
+        store.append(newNode(1, null, ResourceType.FOLDER));
+        for (long id = 2; id <= 9; id++) {
+            store.append(newNode(id, id % 2 == 0 ? 1L : null, ResourceType.FILE));
+        }
+
+        assertEquals(5, store.findChildren(null).size());
+        List<ProfileResourceNode> children = store.findChildren(1L);
+        assertEquals(4, children.size());
+        assertEquals(Long.valueOf(2), children.get(0).getId());
+        assertEquals(Long.valueOf(8), children.get(3).getId());
+    }
+
+    @Test
+    public void testSegmentHeaderSummarisesTheParentsInTheSegment() throws IOException {
+        store.append(newNode(1, null, ResourceType.FOLDER));
+        store.append(newNode(2, null, ResourceType.FOLDER));
+        store.append(newNode(3, 1L, ResourceType.FILE));
+        store.append(newNode(4, 1L, ResourceType.FILE));
+        for (long id = 5; id <= 8; id++) {
+            store.append(newNode(id, 2L, ResourceType.FILE));
+        }
+
+        NodeSegment first = NodeSegment.readHeader(new File(directory, "segment-000000.dat"));
+        assertTrue(first.holdsChildrenOf(-1));
+        assertTrue(first.holdsChildrenOf(1));
+        assertFalse(first.holdsChildrenOf(2));
+        NodeSegment second = NodeSegment.readHeader(new File(directory, "segment-000001.dat"));
+        assertFalse(second.holdsChildrenOf(-1));
+        assertFalse(second.holdsChildrenOf(1));
+        assertTrue(second.holdsChildrenOf(2));
+        assertEquals(4, store.findChildren(2L).size());
+    }
+
+    private NodeSegmentStore openStore() throws IOException {
+        NodeSegmentStore newStore = new NodeSegmentStore();
+        newStore.setDirectory(directory);
+        newStore.setFormatCache(formatCache);
+        newStore.setSegmentSize(4);
+        newStore.open();
+        return newStore;
+    }
+
+    private List<ProfileResourceNode> readAll() {
+        List<ProfileResourceNode> nodes = new ArrayList<ProfileResourceNode>();
+        NodeCursor cursor = store.cursor();
+        ProfileResourceNode node;
+        while ((node = cursor.next()) != null) {
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    static Format newFormat(String puid, String name, String mimeType) {
+        Format format = new Format();
+        format.setPuid(puid);
+        format.setName(name);
+        format.setMimeType(mimeType);
+        format.setVersion("");
+        return format;
+    }
+
+    static ProfileResourceNode newNode(long id, Long parentId, ResourceType resourceType) {
+        ProfileResourceNode node = new ProfileResourceNode(URI.create("file:/dir/file" + id + ".txt"));
+        node.setId(id);
+        node.setParentId(parentId);
+        node.setPrefix(String.valueOf((char) ('A' + id)));
+        node.setPrefixPlusOne(String.valueOf((char) ('A' + id + 1)));
+        node.setFinished(new Date(1300000000000L + id));
+        node.setExtensionMismatch(false);
+        node.getMetaData().setName("file" + id + ".txt");
+        node.getMetaData().setExtension("txt");
+        node.getMetaData().setSize(id * 100);
+        node.getMetaData().setLastModified(1200000000000L + id * 1000);
+        node.getMetaData().setNodeStatus(NodeStatus.DONE);
+        node.getMetaData().setIdentificationMethod(IdentificationMethod.BINARY_SIGNATURE);
+        node.getMetaData().setResourceType(resourceType);
+        node.setZeroIdentifications();
+        node.addFormatIdentification(Format.NULL);
+        return node;
+    }
+
+    private static final class SegmentFilter implements java.io.FileFilter {
+        @Override
+        public boolean accept(File file) {
+            return file.getName().startsWith("segment-") && file.getName().endsWith(".dat");
+        }
+    }
+}
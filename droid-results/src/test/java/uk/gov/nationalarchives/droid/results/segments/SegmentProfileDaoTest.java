@@ -0,0 +1,117 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.segments;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.CriterionFieldEnum;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.CriterionOperator;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.FilterValue;
+import uk.gov.nationalarchives.droid.profile.FilterCriterionImpl;
+import uk.gov.nationalarchives.droid.profile.FilterImpl;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.results.handlers.FormatCache;
+
+public class SegmentProfileDaoTest {
+
+    private File directory;
+    private NodeSegmentStore store;
+    private SegmentProfileDao profileDao;
+
+    @Before
+    public void setup() throws IOException {
+        directory = new File("tmp/segment-profile-dao-test");
+        FileUtils.deleteDirectory(directory);
+        store = new NodeSegmentStore();
+        store.setDirectory(directory);
+        store.setFormatCache(mock(FormatCache.class));
+        store.setSegmentSize(2);
+        store.open();
+
+        // 1 (folder) contains 2 (folder) which contains 3.pdf; 4.txt is at the root.
+        store.append(newNode(1, null, "", ResourceType.FOLDER, "dir"));
+        store.append(newNode(2, 1L, "B", ResourceType.FOLDER, "subdir"));
+        store.append(newNode(3, 2L, "BC", ResourceType.FILE, "report.pdf"));
+        store.append(newNode(4, null, "", ResourceType.FILE, "readme.txt"));
+
+        profileDao = new SegmentProfileDao();
+        profileDao.setStore(store);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testFindChildrenWithoutFilter() {
+        List<ProfileResourceNode> roots = profileDao.findProfileResourceNodes(null);
+        assertEquals(2, roots.size());
+        assertEquals(Long.valueOf(1), roots.get(0).getId());
+        assertEquals(1, roots.get(0).getFilterStatus());
+        assertEquals(1, profileDao.findProfileResourceNodes(2L).size());
+    }
+
+    @Test
+    public void testFoldersWithMatchingDescendantsAreIncludedWithFilterStatusTwo() {
+        FilterImpl filter = newFilter(CriterionFieldEnum.FILE_EXTENSION, CriterionOperator.EQ, "pdf");
+
+        List<ProfileResourceNode> roots = profileDao.findProfileResourceNodes(null, filter);
+        assertEquals(1, roots.size());
+        assertEquals(Long.valueOf(1), roots.get(0).getId());
+        assertEquals(2, roots.get(0).getFilterStatus());
+
+        List<ProfileResourceNode> children = profileDao.findProfileResourceNodes(2L, filter);
+        assertEquals(1, children.size());
+        assertEquals(1, children.get(0).getFilterStatus());
+    }
+
+    @Test
+    public void testNothingMatches() {
+        FilterImpl filter = newFilter(CriterionFieldEnum.FILE_NAME, CriterionOperator.STARTS_WITH, "zzz");
+        assertEquals(0, profileDao.findProfileResourceNodes(null, filter).size());
+    }
+
+    static FilterImpl newFilter(CriterionFieldEnum field, CriterionOperator operator, String value) {
+        FilterImpl filter = new FilterImpl();
+        filter.setEnabled(true);
+        filter.setNarrowed(true);
+        FilterCriterionImpl criterion = new FilterCriterionImpl();
+        criterion.setSelectedValues(new ArrayList<FilterValue>());
+        criterion.setField(field);
+        criterion.setOperator(operator);
+        criterion.setValueFreeText(value);
+        filter.addFilterCiterion(criterion, 0);
+        return filter;
+    }
+
+    private static ProfileResourceNode newNode(long id, Long parentId, String parentPrefix, 
+            ResourceType type, String name) {
+        ProfileResourceNode node = NodeSegmentStoreTest.newNode(id, parentId, type);
+        node.setPrefix(parentPrefix + node.getPrefix());
+        node.setPrefixPlusOne(parentPrefix + node.getPrefixPlusOne());
+        node.getMetaData().setName(name);
+        int dot = name.lastIndexOf('.');
+        node.getMetaData().setExtension(dot < 0 ? "" : name.substring(dot + 1));
+        return node;
+    }
+}
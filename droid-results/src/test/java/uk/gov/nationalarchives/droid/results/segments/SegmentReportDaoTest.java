@@ -0,0 +1,114 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.segments;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.expressions.Restrictions;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.report.dao.GroupByField;
+import uk.gov.nationalarchives.droid.report.dao.ReportFieldEnum;
+import uk.gov.nationalarchives.droid.report.dao.ReportLineItem;
+import uk.gov.nationalarchives.droid.results.handlers.FormatCache;
+
+public class SegmentReportDaoTest {
+
+    private File directory;
+    private NodeSegmentStore store;
+    private SegmentReportDao reportDao;
+
+    @Before
+    public void setup() throws IOException {
+        directory = new File("tmp/segment-report-dao-test");
+        FileUtils.deleteDirectory(directory);
+        FormatCache formatCache = mock(FormatCache.class);
+        when(formatCache.get("fmt/18")).thenReturn(
+                NodeSegmentStoreTest.newFormat("fmt/18", "Acrobat PDF 1.4", "application/pdf"));
+        store = new NodeSegmentStore();
+        store.setDirectory(directory);
+        store.setFormatCache(formatCache);
+        store.setSegmentSize(2);
+        store.open();
+
+        // Sizes 100, 200 and 300; nodes 2 and 3 are PDFs.
+        for (long id = 1; id <= 3; id++) {
+            ProfileResourceNode node = NodeSegmentStoreTest.newNode(id, null, ResourceType.FILE);
+            if (id > 1) {
+                node.addFormatIdentification(formatCache.get("fmt/18"));
+            }
+            store.append(node);
+        }
+        reportDao = new SegmentReportDao();
+        reportDao.setStore(store);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testUngroupedSizeReport() {
+        List<ReportLineItem> items = reportDao.getReportData(null, ReportFieldEnum.FILE_SIZE);
+        assertEquals(1, items.size());
+        ReportLineItem item = items.get(0);
+        assertEquals(Long.valueOf(3), item.getCount());
+        assertEquals(Long.valueOf(600), item.getSum());
+        assertEquals(Long.valueOf(100), item.getMinimum());
+        assertEquals(Long.valueOf(300), item.getMaximum());
+        assertEquals(Double.valueOf(200), item.getAverage());
+    }
+
+    @Test
+    public void testFilteredReportWithNothingMatchingHasOneEmptyLine() {
+        List<ReportLineItem> items = reportDao.getReportData(
+                Restrictions.gt("metaData.size", 1000L), ReportFieldEnum.FILE_SIZE);
+        assertEquals(1, items.size());
+        assertEquals(Long.valueOf(0), items.get(0).getCount());
+        assertNull(items.get(0).getSum());
+    }
+
+    @Test
+    public void testSizesGroupedByPuidCountEachIdentification() {
+        GroupByField group = new GroupByField();
+        group.setGroupByField(ReportFieldEnum.PUID);
+        List<ReportLineItem> items = reportDao.getReportData(
+                null, ReportFieldEnum.FILE_SIZE, new ArrayList<GroupByField>(Arrays.asList(group)));
+
+        assertEquals(2, items.size());
+        assertEquals(Arrays.asList(""), items.get(0).getGroupByValues());
+        assertEquals(Long.valueOf(3), items.get(0).getCount());
+        assertEquals(Arrays.asList("fmt/18"), items.get(1).getGroupByValues());
+        assertEquals(Long.valueOf(2), items.get(1).getCount());
+        assertEquals(Long.valueOf(500), items.get(1).getSum());
+    }
+
+    @Test
+    public void testFilterOnFormatMatchesNodesWithAnyMatchingIdentification() {
+        List<ReportLineItem> items = reportDao.getReportData(
+                Restrictions.eq("format.puid", "fmt/18"), ReportFieldEnum.FILE_NAME);
+        assertEquals(Long.valueOf(2), items.get(0).getCount());
+    }
+}
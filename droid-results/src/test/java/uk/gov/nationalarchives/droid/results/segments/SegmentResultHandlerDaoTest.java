@@ -0,0 +1,75 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.results.segments;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.results.handlers.FormatCache;
+
+public class SegmentResultHandlerDaoTest {
+
+    private File directory;
+    private NodeSegmentStore store;
+    private SegmentResultHandlerDao resultHandlerDao;
+
+    @Before
+    public void setup() throws IOException {
+        directory = new File("tmp/segment-result-handler-dao-test");
+        FileUtils.deleteDirectory(directory);
+        store = new NodeSegmentStore();
+        store.setDirectory(directory);
+        store.setFormatCache(mock(FormatCache.class));
+        store.open();
+
+        resultHandlerDao = new SegmentResultHandlerDao();
+        resultHandlerDao.setStore(store);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testSavedNodesAreGivenIdsAndPrefixesBeneathTheirParent() {
+        ProfileResourceNode folder = newNode(ResourceType.FOLDER);
+        folder.setId(null);
+        resultHandlerDao.save(folder, null);
+        ProfileResourceNode file = newNode(ResourceType.FILE);
+        file.setId(null);
+        resultHandlerDao.save(file, new ResourceId(folder.getId(), folder.getPrefix()));
+
+        assertEquals(Long.valueOf(0), folder.getId());
+        assertEquals(Long.valueOf(1), file.getId());
+        assertEquals(folder.getId(), file.getParentId());
+        assertEquals(file.getUri(), resultHandlerDao.loadNode(1L).getUri());
+        assertEquals(1, store.findChildren(0L).size());
+
+        resultHandlerDao.deleteNode(0L);
+        assertNull(resultHandlerDao.loadNode(1L));
+    }
+
+    private static ProfileResourceNode newNode(ResourceType resourceType) {
+        return NodeSegmentStoreTest.newNode(0, null, resourceType);
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.submitter;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that directories listed ahead of the walk always give back their places.
+ */
+public class DirectoryPrefetcherTest {
+
+    private static final int MAX_PREFETCHED = 2;
+
+    private File root;
+    private DirectoryPrefetcher prefetcher;
+
+    @Before
+    public void setup() throws IOException {
+        root = File.createTempFile("prefetch", "");
+        root.delete();
+        assertTrue(new File(root, "a").mkdirs());
+        assertTrue(new File(root, "b").mkdirs());
+        prefetcher = new DirectoryPrefetcher(1, MAX_PREFETCHED);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        prefetcher.shutdown();
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Test
+    public void testSkippedDirectoriesGiveBackTheirPlaces() {
+        File prefetched = prefetcher.prefetch(root, true);
+        File[] children = prefetched.listFiles();
+        assertEquals(2, children.length);
+
+        // the children are skipped by the walker, so their listings are never read.
+        for (File child : children) {
+            DirectoryPrefetcher.release(child);
+        }
+        DirectoryPrefetcher.release(prefetched);
+        assertEquals(MAX_PREFETCHED, prefetcher.availablePermits());
+    }
+
+    @Test
+    public void testShutdownGivesBackPlacesOfDirectoriesNotWalked() {
+        File prefetched = prefetcher.prefetch(root, true);
+        prefetched.listFiles();
+
+        prefetcher.shutdown();
+        assertEquals(MAX_PREFETCHED, prefetcher.availablePermits());
+    }
+
+    @Test
+    public void testReleasingTwiceGivesBackOnePlace() {
+        File prefetched = prefetcher.prefetch(root, true);
+        File[] children = prefetched.listFiles();
+        for (File child : children) {
+            child.listFiles();
+            DirectoryPrefetcher.release(child);
+            DirectoryPrefetcher.release(child);
+        }
+        DirectoryPrefetcher.release(prefetched);
+        assertEquals(MAX_PREFETCHED, prefetcher.availablePermits());
+    }
+}
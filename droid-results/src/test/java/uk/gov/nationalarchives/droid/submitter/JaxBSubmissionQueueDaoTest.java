@@ -0,0 +1,188 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.submitter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URI;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
+import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveCheckpoint;
+
+public class JaxBSubmissionQueueDaoTest {
+
+    private File dir;
+    private File queueFile;
+    private File journalFile;
+    private JaxBSubmissionQueueDao submissionQueue;
+
+    @Before
+    public void setup() throws Exception {
+        dir = new File("tmp/" + getClass().getSimpleName());
+        FileUtils.deleteQuietly(dir);
+        dir.mkdirs();
+        queueFile = new File(dir, "submissionQueue.xml");
+        journalFile = new File(dir, "submissionQueue.xml.journal");
+        submissionQueue = newSubmissionQueue();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(dir);
+    }
+
+    @Test
+    public void testListReturnsNullWhenNothingHasBeenSaved() {
+        assertNull(submissionQueue.list());
+    }
+
+    @Test
+    public void testSavesAfterTheFirstAreAppendedToTheJournal() throws Exception {
+        submissionQueue.add(newIdentifier(1L));
+        submissionQueue.add(newIdentifier(2L));
+        submissionQueue.save();
+        assertTrue(queueFile.exists());
+        assertFalse(journalFile.exists());
+        final long snapshotLength = queueFile.length();
+
+        submissionQueue.remove(newIdentifier(1L));
+        submissionQueue.add(newIdentifier(3L));
+        submissionQueue.save();
+        assertEquals(snapshotLength, queueFile.length());
+        assertTrue(journalFile.exists());
+
+        SubmissionQueueData data = submissionQueue.list();
+        assertEquals(2, data.getReplayUris().size());
+        assertEquals(newIdentifier(2L), data.getReplayUris().get(0));
+        assertEquals(newIdentifier(3L), data.getReplayUris().get(1));
+    }
+
+    @Test
+    public void testCheckpointsAreJournalledOnlyWhenTheyMoveOn() throws Exception {
+        ArchiveCheckpoint checkpoint = new ArchiveCheckpoint(1L, "ZIP");
+        submissionQueue.add(newIdentifier(1L), checkpoint);
+        submissionQueue.save();
+
+        checkpoint.addDirectory("dir/", new ResourceId(5L, "Y"));
+        checkpoint.entryDone();
+        submissionQueue.save();
+        final long journalLength = journalFile.length();
+        submissionQueue.save();
+        assertEquals(journalLength, journalFile.length());
+
+        ArchiveCheckpoint saved = submissionQueue.list().getCheckpoint(1L);
+        assertEquals(1, saved.getEntriesDone());
+        assertEquals(new ResourceId(5L, "Y"), saved.getDirectories().get("dir/"));
+
+        submissionQueue.remove(newIdentifier(1L));
+        submissionQueue.save();
+        SubmissionQueueData data = submissionQueue.list();
+        assertEquals(0, data.getReplayUris().size());
+        assertNull(data.getCheckpoint(1L));
+    }
+
+    @Test
+    public void testJournalIsCompactedIntoTheSnapshot() throws Exception {
+        submissionQueue.setCompactionThreshold(3);
+        submissionQueue.save();
+        for (long i = 1; i <= 4; i++) {
+            submissionQueue.add(newIdentifier(i));
+            submissionQueue.save();
+        }
+        assertFalse(journalFile.exists());
+        assertEquals(4, submissionQueue.list().getReplayUris().size());
+
+        submissionQueue.remove(newIdentifier(2L));
+        submissionQueue.save();
+        assertTrue(journalFile.exists());
+        assertEquals(3, submissionQueue.list().getReplayUris().size());
+    }
+
+    @Test
+    public void testFirstSaveOfANewRunReplacesTheSavedQueue() throws Exception {
+        submissionQueue.add(newIdentifier(1L));
+        submissionQueue.save();
+        submissionQueue.add(newIdentifier(2L));
+        submissionQueue.save();
+
+        JaxBSubmissionQueueDao nextRun = newSubmissionQueue();
+        assertEquals(2, nextRun.list().getReplayUris().size());
+        nextRun.add(newIdentifier(3L));
+        nextRun.save();
+
+        assertFalse(journalFile.exists());
+        SubmissionQueueData data = nextRun.list();
+        assertEquals(1, data.getReplayUris().size());
+        assertEquals(newIdentifier(3L), data.getReplayUris().get(0));
+    }
+
+    @Test
+    public void testEntryNamesWithLineBreaksAreJournalledWhole() throws Exception {
+        ArchiveCheckpoint checkpoint = new ArchiveCheckpoint(1L, "ZIP");
+        submissionQueue.add(newIdentifier(1L), checkpoint);
+        submissionQueue.save();
+
+        checkpoint.addDirectory("first\nline/", new ResourceId(5L, "Y"));
+        checkpoint.addDirectory("second\n\nline/", new ResourceId(6L, "Y"));
+        checkpoint.entryDone();
+        submissionQueue.add(newIdentifier(2L));
+        submissionQueue.save();
+        assertEquals(2, FileUtils.readLines(journalFile, "UTF-8").size());
+
+        SubmissionQueueData data = submissionQueue.list();
+        assertEquals(2, data.getReplayUris().size());
+        ArchiveCheckpoint saved = data.getCheckpoint(1L);
+        assertEquals(2, saved.getDirectories().size());
+        assertEquals(new ResourceId(5L, "Y"), saved.getDirectories().get("first\nline/"));
+        assertEquals(new ResourceId(6L, "Y"), saved.getDirectories().get("second\n\nline/"));
+    }
+
+    @Test
+    public void testTornJournalRecordIsIgnored() throws Exception {
+        submissionQueue.save();
+        submissionQueue.add(newIdentifier(1L));
+        submissionQueue.save();
+
+        FileOutputStream out = new FileOutputStream(journalFile, true);
+        try {
+            out.write("+<SubmissionQueue><Resource NodeId=\"2\"".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        SubmissionQueueData data = submissionQueue.list();
+        assertEquals(1, data.getReplayUris().size());
+        assertEquals(newIdentifier(1L), data.getReplayUris().get(0));
+    }
+
+    private JaxBSubmissionQueueDao newSubmissionQueue() throws Exception {
+        JaxBSubmissionQueueDao dao = new JaxBSubmissionQueueDao();
+        dao.setTargetFileName(queueFile.getPath());
+        return dao;
+    }
+
+    private static RequestIdentifier newIdentifier(long nodeId) {
+        RequestIdentifier identifier = new RequestIdentifier(URI.create("file:/archives/archive" + nodeId + ".zip"));
+        identifier.setNodeId(nodeId);
+        identifier.setAncestorId(nodeId);
+        identifier.setPrefix("X");
+        return identifier;
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.submitter;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.results.handlers.ProgressMonitor;
+
+public class ProfileSizeEstimatorTest {
+
+    private ProgressMonitor progressMonitor;
+    
+    @Before
+    public void setup() {
+        progressMonitor = mock(ProgressMonitor.class);
+    }
+    
+    @Test
+    public void testNonRecursiveListingsAreCountedExactly() {
+        ProfileSizeEstimator estimator = new ProfileSizeEstimator(progressMonitor);
+        estimator.onRootResource();
+        estimator.onDirectoryListed(10, false);
+        
+        assertEquals(11, estimator.getEstimatedSize());
+        verify(progressMonitor).setTargetCount(11);
+    }
+    
+    @Test
+    public void testDirectoriesNotListedAreExtrapolatedFromTheWalkSoFar() {
+        ProfileSizeEstimator estimator = new ProfileSizeEstimator(progressMonitor);
+        estimator.onRootResource();
+        estimator.onDirectoryListed(8, true);
+        
+        // nothing walked yet, so only what has been found is counted:
+        assertEquals(9, estimator.getEstimatedSize());
+        
+        // half of the first four children walked are directories, so about two
+        // of the remaining four children should be directories with 8 children each.
+        estimator.onChildWalked(false);
+        estimator.onChildWalked(true);
+        estimator.onChildWalked(false);
+        estimator.onChildWalked(true);
+        assertEquals(9 + 2 * 8, estimator.getEstimatedSize());
+    }
+    
+    @Test
+    public void testEstimateIncludesJobsCountedBeforeAResumedWalk() {
+        when(progressMonitor.getIdentificationCount()).thenReturn(100L);
+        ProfileSizeEstimator estimator = new ProfileSizeEstimator(progressMonitor);
+        estimator.onDirectoryListed(5, false);
+        assertEquals(105, estimator.getEstimatedSize());
+    }
+}
@@ -13,9 +13,14 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -29,14 +34,19 @@ import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.matchers.TypeSafeMatcher;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
 import uk.gov.nationalarchives.droid.profile.AbstractProfileResource;
 import uk.gov.nationalarchives.droid.profile.DirectoryProfileResource;
 import uk.gov.nationalarchives.droid.profile.FileProfileResource;
 import uk.gov.nationalarchives.droid.profile.ProfileInstance;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
 import uk.gov.nationalarchives.droid.profile.ProfileSpec;
 import uk.gov.nationalarchives.droid.results.handlers.ProgressMonitor;
+import uk.gov.nationalarchives.droid.results.handlers.ProgressMonitorImpl;
+import uk.gov.nationalarchives.droid.results.handlers.ProgressObserver;
 
 /**
  * @author rflitcroft
@@ -216,6 +226,48 @@ public class ProfileSpecWalkerImplTest {
                 }), (ResourceId) any(), (ResourceId) isNull());
     }
 
+    @Test
+    public void testProgressStaysBelowCompleteWhileJobsAreStillInProgressAfterTheWalk() throws Exception {
+        File[] locations = new File[] {
+            canonicalFile(TEST_ROOT, "dir1"),
+            canonicalFile(TEST_ROOT, "dir2"),
+        };
+        ProfileSpec profileSpec = mock(ProfileSpec.class);
+        when(profileSpec.getResources()).thenReturn(buildRecursiveDirectoryResources(locations));
+
+        final ProgressMonitorImpl progressMonitor = new ProgressMonitorImpl();
+        ProgressObserver observer = mock(ProgressObserver.class);
+        progressMonitor.setPercentIncrementObserver(observer);
+
+        // Files in the second subdirectories are still being identified when the walk returns.
+        FileEventHandler fileEventHandler = mock(FileEventHandler.class);
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                File file = (File) invocation.getArguments()[0];
+                if (!file.getParentFile().getName().equals("subdir2")) {
+                    progressMonitor.stopJob(new ProfileResourceNode(SubmitterUtils.toURI(file, false)));
+                }
+                return null;
+            }
+        }).when(fileEventHandler).onEvent(any(File.class), (ResourceId) any(), (ResourceId) any());
+
+        ProfileSpecWalkerImpl walker = new ProfileSpecWalkerImpl();
+        walker.setProgressMonitor(progressMonitor);
+        walker.setFileEventHandler(fileEventHandler);
+        DirectoryEventHandler dirEventhandler = mock(DirectoryEventHandler.class);
+        when(dirEventhandler.onEvent(any(File.class), (ResourceId) any(), anyInt(), anyBoolean()))
+            .thenReturn(new ResourceId(1L, ""));
+        walker.setDirectoryEventHandler(dirEventhandler);
+
+        walker.walk(profileSpec, new ProfileWalkState());
+
+        assertEquals(20, progressMonitor.getIdentificationCount());
+        assertEquals(36, progressMonitor.getTargetCount());
+        assertTrue(progressMonitor.getProgressPercentage() < 100);
+        verify(observer, never()).onProgress(100);
+    }
+
     private List<AbstractProfileResource> buildFileResources(String[] locations) {
         List<AbstractProfileResource> resources = new ArrayList<AbstractProfileResource>();
 
@@ -383,6 +435,58 @@ public class ProfileSpecWalkerImplTest {
                 (ResourceId) isNull());
     }
 
+    @Test
+    public void testIterateRecursiveDirectoryResourcesWithDirectoryListingThreads() throws Exception {
+        File[] locations = new File[] {
+            canonicalFile(TEST_ROOT, "dir1"),
+            canonicalFile(TEST_ROOT, "dir2"),
+        };
+
+        ProfileSpec profileSpec = mock(ProfileSpec.class);
+        List<AbstractProfileResource> resources = buildRecursiveDirectoryResources(locations);
+        when(profileSpec.getResources()).thenReturn(resources);
+
+        ProfileSpecWalkerImpl walker = new ProfileSpecWalkerImpl();
+        walker.setDirectoryListingThreads(3);
+        walker.setMaxPrefetchedDirectories(2);
+        
+        ProgressMonitor progressMonitor = mock(ProgressMonitor.class);
+        walker.setProgressMonitor(progressMonitor);
+        FileEventHandler fileEventHandler = mock(FileEventHandler.class);
+        walker.setFileEventHandler(fileEventHandler);
+
+        DirectoryEventHandler dirEventhandler = mock(DirectoryEventHandler.class);
+        when(dirEventhandler.onEvent(canonicalFile(TEST_ROOT, "dir1"), 
+                null, 0, false)).thenReturn(new ResourceId(1L, ""));
+        when(dirEventhandler.onEvent(canonicalFile(TEST_ROOT, "dir2"), 
+                null, 0, false)).thenReturn(new ResourceId(2L, ""));
+        when(dirEventhandler.onEvent(canonicalFile(TEST_ROOT, "dir1/subdir1"), 
+                new ResourceId(1L, ""), 1, false)).thenReturn(new ResourceId(11L, ""));
+        when(dirEventhandler.onEvent(canonicalFile(TEST_ROOT, "dir1/subdir2"),
+                new ResourceId(1L, ""), 1, false)).thenReturn(new ResourceId(12L, ""));
+        when(dirEventhandler.onEvent(canonicalFile(TEST_ROOT, "dir2/subdir1"),
+                new ResourceId(2L, ""), 1, false)).thenReturn(new ResourceId(21L, ""));
+        when(dirEventhandler.onEvent(canonicalFile(TEST_ROOT, "dir2/subdir2"), 
+                new ResourceId(2L, ""), 1, false)).thenReturn(new ResourceId(22L, ""));
+        walker.setDirectoryEventHandler(dirEventhandler);
+
+        walker.walk(profileSpec, new ProfileWalkState());
+
+        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir1/file11.ext"), new ResourceId(1L, ""), null);
+        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir1/subdir1/file111.ext"),
+                new ResourceId(11L, ""), null);
+        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir1/subdir2/file125.ext"), 
+                new ResourceId(12L, ""), null);
+        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir2/file25.ext"), new ResourceId(2L, ""), null);
+        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir2/subdir1/file213.ext"), 
+                new ResourceId(21L, ""), null);
+        verify(fileEventHandler).onEvent(canonicalFile(TEST_ROOT, "dir2/subdir2/file224.ext"), 
+                new ResourceId(22L, ""), null);
+
+        verify(fileEventHandler, times(30)).onEvent(any(File.class), (ResourceId) any(),
+                (ResourceId) isNull());
+    }
+
     private static Matcher<File> newFileUriMatcher(final String fileName) {
         return new TypeSafeMatcher<File>() {
             @Override
@@ -0,0 +1,133 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.submitter;
+
+import java.io.File;
+import java.net.URI;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
+import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveCheckpoint;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.results.handlers.ResultHandlerDao;
+
+public class ReplaySubmitterTest {
+
+    private File queueFile;
+    private File archiveFile;
+    private JaxBSubmissionQueueDao submissionQueue;
+    private FileEventHandler fileEventHandler;
+    private ResultHandlerDao resultHandlerDao;
+    private ReplaySubmitter replaySubmitter;
+
+    @Before
+    public void setup() throws Exception {
+        queueFile = File.createTempFile("submissionQueue", ".xml");
+        archiveFile = File.createTempFile("archive", ".tar");
+
+        submissionQueue = new JaxBSubmissionQueueDao();
+        submissionQueue.setTargetFileName(queueFile.getPath());
+        fileEventHandler = mock(FileEventHandler.class);
+        resultHandlerDao = mock(ResultHandlerDao.class);
+
+        ProfileResourceNode node = new ProfileResourceNode(archiveFile.toURI());
+        node.setId(30L);
+        when(resultHandlerDao.loadNode(30L)).thenReturn(node);
+
+        replaySubmitter = new ReplaySubmitter();
+        replaySubmitter.setSubmissionQueue(submissionQueue);
+        replaySubmitter.setFileEventHandler(fileEventHandler);
+        replaySubmitter.setResultHandlerDao(resultHandlerDao);
+    }
+
+    @After
+    public void tearDown() {
+        queueFile.delete();
+        archiveFile.delete();
+    }
+
+    @Test
+    public void testArchiveWithCheckpointResumesFromSavedCheckpoint() throws Exception {
+        ArchiveCheckpoint checkpoint = new ArchiveCheckpoint(30L, "TAR");
+        checkpoint.addDirectory("saved/db/", new ResourceId(41L, "Y"));
+        checkpoint.entryDone();
+        checkpoint.entryDone();
+        submissionQueue.add(newArchiveIdentifier(), checkpoint);
+        submissionQueue.save();
+
+        replaySubmitter.replay();
+
+        ArgumentCaptor<ArchiveCheckpoint> captor = ArgumentCaptor.forClass(ArchiveCheckpoint.class);
+        verify(fileEventHandler).onResume(eq(archiveFile), eq(newArchiveIdentifier()), captor.capture());
+        ArchiveCheckpoint loaded = captor.getValue();
+        assertEquals(Long.valueOf(30L), loaded.getNodeId());
+        assertEquals("TAR", loaded.getArchiveFormat());
+        assertEquals(2, loaded.getEntriesDone());
+        assertEquals(new ResourceId(41L, "Y"), loaded.getDirectories().get("saved/db/"));
+        verify(resultHandlerDao, never()).deleteNode(any(Long.class));
+    }
+
+    @Test
+    public void testArchiveWithUnfinishedNestedArchiveIsIdentifiedAgain() throws Exception {
+        submissionQueue.add(newArchiveIdentifier(), new ArchiveCheckpoint(30L, "TAR"));
+        RequestIdentifier nested = new RequestIdentifier(new URI("tar:" + archiveFile.toURI() + "!/nested.zip"));
+        nested.setNodeId(35L);
+        nested.setAncestorId(30L);
+        submissionQueue.add(nested, new ArchiveCheckpoint(35L, "ZIP"));
+        submissionQueue.save();
+
+        replaySubmitter.replay();
+
+        verify(fileEventHandler, never()).onResume(any(File.class), any(RequestIdentifier.class),
+                any(ArchiveCheckpoint.class));
+        verify(resultHandlerDao).deleteNode(30L);
+        verify(fileEventHandler).onEvent(eq(archiveFile), any(ResourceId.class), any(ResourceId.class));
+    }
+
+    @Test
+    public void testArchiveWithoutCheckpointIsIdentifiedAgain() throws Exception {
+        submissionQueue.add(newArchiveIdentifier());
+        submissionQueue.save();
+
+        replaySubmitter.replay();
+
+        verify(resultHandlerDao).deleteNode(30L);
+        verify(fileEventHandler).onEvent(eq(archiveFile), any(ResourceId.class), any(ResourceId.class));
+    }
+
+    @Test
+    public void testRemovingArchiveRemovesItsCheckpoint() {
+        SubmissionQueueData queue = new SubmissionQueueData();
+        queue.add(newArchiveIdentifier(), new ArchiveCheckpoint(30L, "TAR"));
+        queue.remove(newArchiveIdentifier());
+        assertEquals(null, queue.getCheckpoint(30L));
+        assertEquals(0, queue.getReplayUris().size());
+    }
+
+    private RequestIdentifier newArchiveIdentifier() {
+        RequestIdentifier identifier = new RequestIdentifier(archiveFile.toURI());
+        identifier.setNodeId(30L);
+        identifier.setAncestorId(30L);
+        identifier.setPrefix("X");
+        return identifier;
+    }
+}
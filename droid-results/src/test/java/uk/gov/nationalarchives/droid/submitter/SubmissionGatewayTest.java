@@ -10,6 +10,7 @@ package uk.gov.nationalarchives.droid.submitter;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.Enumeration;
@@ -17,6 +18,7 @@ import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -24,6 +26,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -33,12 +36,14 @@ import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
 import uk.gov.nationalarchives.droid.core.BinarySignatureIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.BlockingThreadPoolExecutorFactory;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationException;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultCollection;
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
 import uk.gov.nationalarchives.droid.core.interfaces.ResultHandler;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveFormatResolver;
+import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveHandler;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveHandlerFactory;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.TrueZipArchiveHandler;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.ZipEntryRequestFactory;
@@ -125,6 +130,74 @@ public class SubmissionGatewayTest {
         assertEquals(10, allResults.size());
     }
 
+    @Test
+    public void testArchiveIsExpandedByPostProcessExecutor() throws Exception {
+
+        BinarySignatureIdentifier droid = new BinarySignatureIdentifier();
+        final SubmissionGateway submissionGateway = new SubmissionGateway();
+        submissionGateway.setDroidCore(droid);
+        
+        droid.setSignatureFile("test_sig_files/DROID_SignatureFile_V26.xml");
+        ResultHandler resultHandler = mock(ResultHandler.class);
+        submissionGateway.setResultHandler(resultHandler);
+        submissionGateway.setProcessArchives(true);
+        submissionGateway.setExecutorService(Executors.newFixedThreadPool(2));
+        
+        BlockingThreadPoolExecutorFactory postProcessFactory = new BlockingThreadPoolExecutorFactory();
+        postProcessFactory.setCorePoolSize(1);
+        postProcessFactory.setMaxPoolSize(1);
+        postProcessFactory.setWorkQueueSize(4);
+        postProcessFactory.setCallerRunsWhenFull(true);
+        postProcessFactory.setThreadNamePrefix("post-process-thread-");
+        submissionGateway.setPostProcessExecutorService(postProcessFactory.newInstance());
+        submissionGateway.setSubmissionQueue(mock(SubmissionQueue.class));
+
+        ArchiveFormatResolver archiveFormatResolver = mock(ArchiveFormatResolver.class);
+        when(archiveFormatResolver.forPuid("x-fmt/412")).thenReturn("ZIP");
+
+        final TrueZipArchiveHandler zipHandler = new TrueZipArchiveHandler();
+        zipHandler.setDroidCore(submissionGateway);
+        zipHandler.setFactory(new ZipEntryRequestFactory());
+        zipHandler.setResultHandler(resultHandler);
+
+        final AtomicReference<String> archiveThread = new AtomicReference<String>();
+        ArchiveHandler recordingHandler = new ArchiveHandler() {
+            @Override
+            public void handle(IdentificationRequest request) throws IOException {
+                archiveThread.set(Thread.currentThread().getName());
+                zipHandler.handle(request);
+            }
+        };
+        ArchiveHandlerFactory archiveHandlerFactory = mock(ArchiveHandlerFactory.class);
+        when(archiveHandlerFactory.getHandler("ZIP")).thenReturn(recordingHandler);
+
+        submissionGateway.setArchiveFormatResolver(archiveFormatResolver);
+        submissionGateway.setArchiveHandlerFactory(archiveHandlerFactory);
+        submissionGateway.setContainerFormatResolver(mock(ArchiveFormatResolver.class));
+        droid.init();
+
+        File file = new File("test_sig_files/persistence.jar");
+        RequestMetaData metaData = new RequestMetaData(file.length(), file.lastModified(), "persistence.jar");
+        RequestIdentifier identifier = new RequestIdentifier(file.toURI());
+        identifier.setParentId(1L);
+        identifier.setAncestorId(1L);
+        
+        IdentificationRequest request = new FileSystemIdentificationRequest(metaData, identifier);
+        InputStream in = new FileInputStream(file);
+        try {
+            request.open(in);
+        } finally {
+            in.close();
+        }
+
+        submissionGateway.submit(request);
+        submissionGateway.awaitFinished();
+
+        assertTrue(archiveThread.get(), archiveThread.get().startsWith("post-process-thread-"));
+        verify(resultHandler, times(10)).handle(any(IdentificationResultCollection.class));
+        submissionGateway.close();
+    }
+
     @Test
     public void testResultAvailableWhenIdentificationFailed() throws InterruptedException {
 
@@ -0,0 +1,46 @@
+/**
+ * <p>Copyright (c) The National Archives 2005-2010.  All rights reserved.
+ * See Licence.txt for full licence details.
+ * <p/>
+ *
+ * <p>DROID DCS Profile Tool
+ * <p/>
+ */
+package uk.gov.nationalarchives.droid.submitter;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import uk.gov.nationalarchives.droid.submitter.FileWalker.ProgressEntry;
+
+public class SubmitterUtilsTest {
+
+    @Test
+    public void testFileUrisAreTheSameAsTheFileSystemGives() throws Exception {
+        File dir = new File("test_sig_files");
+        assertEquals(dir.toURI(), SubmitterUtils.toURI(dir, true));
+        
+        File file = new File("test_sig_files/sample.pdf");
+        assertEquals(file.toURI(), SubmitterUtils.toURI(file, false));
+        
+        File strange = new File("tmp/a dir with spaces & % #/file [1].txt");
+        assertEquals(strange.toURI(), SubmitterUtils.toURI(strange, false));
+    }
+    
+    @Test
+    public void testProgressEntryMatchesDirectoriesWithOrWithoutTrailingSlash() throws Exception {
+        File dir = new File("test_sig_files");
+        ProgressEntry entry = new ProgressEntry(new File(".").toURI(), 1L, "X", 
+                new ArrayList<URI>(Arrays.asList(dir.toURI())));
+        
+        assertTrue(entry.containsChild(SubmitterUtils.toURI(dir, false)));
+        assertTrue(entry.containsChild(SubmitterUtils.toURI(dir, true)));
+    }
+}